@@ -1,12 +1,116 @@
 package com.jonathan.calendar;
 
+import com.jonathan.calendar.io.Journal;
+import com.jonathan.calendar.reminders.ReminderScheduler;
+import com.jonathan.calendar.server.CalendarServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+
 /**
  * The main class that starts the calendar application.
  * It creates an instance of CalendarManager and starts the application.
+ *
+ * <p>Run with {@code --journal <file>} to open the calendar saved at that file in journal mode,
+ * so every change is logged as it is made. {@code --fsync ALWAYS|PERIODIC|NEVER} chooses
+ * when the journal is forced to disk (PERIODIC by default).</p>
+ *
+ * <p>Run with {@code --batch <file>} to apply a file of events and commands without
+ * prompting, as described in {@link BatchRunner}, and exit. The exit status is 1 if any
+ * line could not be applied.</p>
+ *
+ * <p>Run with {@code --import <file>} to bulk-import a CSV or iCalendar ({@code .ics}) file
+ * with {@link BulkImporter} before the calendar is used.</p>
+ *
+ * <p>{@code --offset <n>} and {@code --limit <n>} show one page of every listing:
+ * {@code --offset} skips the first n events and {@code --limit} shows at most n.</p>
+ *
+ * <p>{@code --reminders on} prints a reminder before each upcoming event: an hour before
+ * HIGH priority events, a quarter of an hour before MID and five minutes before LOW.</p>
+ *
+ * <p>Run with {@code --serve <port>} to serve the calendar over HTTP with {@link CalendarServer}
+ * instead of starting the menu. The calendar is then created with {@link Calendar#concurrent()}.</p>
  */
 public class App {
-    public static void main(String[] args) {
-        CalendarManager manager = new CalendarManager();
+    public static void main(String[] args) throws IOException {
+        String journalFile = null;
+        String batchFile = null;
+        String importFile = null;
+        long offset = 0;
+        long limit = Long.MAX_VALUE;
+        Journal.FsyncPolicy policy = Journal.FsyncPolicy.PERIODIC;
+        boolean reminders = false;
+        int port = -1;
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            switch (args[i]) {
+                case "--journal":
+                    journalFile = args[i + 1];
+                    break;
+                case "--batch":
+                    batchFile = args[i + 1];
+                    break;
+                case "--import":
+                    importFile = args[i + 1];
+                    break;
+                case "--offset":
+                    offset = Long.parseLong(args[i + 1]);
+                    break;
+                case "--limit":
+                    limit = Long.parseLong(args[i + 1]);
+                    break;
+                case "--fsync":
+                    policy = Journal.FsyncPolicy.valueOf(args[i + 1].toUpperCase());
+                    break;
+                case "--serve":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--reminders":
+                    reminders = args[i + 1].equalsIgnoreCase("on");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        Calendar calendar = port >= 0 ? Calendar.concurrent() : new Calendar();
+        if (journalFile != null) {
+            calendar.openJournal(Paths.get(journalFile), policy);
+        }
+        if (importFile != null) {
+            BulkImporter.Report report = new BulkImporter(calendar).importFile(Paths.get(importFile));
+            for (String error : report.getErrors()) {
+                System.err.println(error);
+            }
+            System.out.println(report);
+        }
+        if (batchFile != null) {
+            BatchRunner runner = new BatchRunner(calendar, System.err);
+            int failures = runner.run(Paths.get(batchFile));
+            calendar.closeJournal();
+            System.out.println("Scheduled " + runner.getScheduled() + " events and applied "
+                    + runner.getCommands() + " commands; " + failures + " lines failed.");
+            System.exit(failures == 0 ? 0 : 1);
+        }
+        if (reminders) {
+            ReminderScheduler scheduler = new ReminderScheduler();
+            scheduler.addHandler(reminder -> System.out.println("Reminder: " + reminder.getEvent()));
+            calendar.setReminders(scheduler);
+            scheduler.start();
+        }
+        if (port >= 0) {
+            // Send each response as soon as it is written rather than waiting on the client's delayed ACKs.
+            if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+                System.setProperty("sun.net.httpserver.nodelay", "true");
+            }
+            CalendarServer server = new CalendarServer(calendar, new InetSocketAddress(port));
+            server.start();
+            System.out.println("Serving the calendar on http://localhost:" + server.getPort() + "/events");
+            return;
+        }
+        CalendarManager manager = new CalendarManager(calendar);
+        manager.setPage(offset, limit);
         manager.start();
     }
 }
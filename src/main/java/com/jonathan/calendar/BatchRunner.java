@@ -0,0 +1,181 @@
+package com.jonathan.calendar;
+
+import com.jonathan.calendar.io.CsvEventFormat;
+import com.jonathan.events.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Applies a file of calendar commands without prompting.
+ * Each line holds comma-separated fields. A line with five fields is an event to schedule:
+ * {@code description,TYPE,dd-MM-yyyy,HH:mm,PRIO}, as read by {@link CsvEventFormat}. Any other line is a command named by
+ * its first field:
+ * <ul>
+ *     <li>{@code update,ID,description,TYPE,dd-MM-yyyy,HH:mm,PRIO}</li>
+ *     <li>{@code remove,ID}</li>
+ *     <li>{@code save,FILE}</li>
+ *     <li>{@code load,FILE}</li>
+ * </ul>
+ * Fields may be quoted with double quotes to contain commas; a doubled quote inside
+ * a quoted field stands for one quote. Blank lines and lines starting with {@code #} are skipped.
+ *
+ * <p>The file is read line by line. Consecutive events are collected and scheduled as one
+ * batch, so an import file is applied as a single bulk insert. A command first schedules the
+ * events collected before it, so the file is applied in order. Lines that cannot be applied
+ * are reported with their line number and skipped.</p>
+ */
+public class BatchRunner {
+    private final Calendar calendar;
+    private final PrintStream errors;
+    private final List<Event> pending = new ArrayList<>();
+    private int scheduled;
+    private int commands;
+    private int failures;
+
+    /**
+     * Constructs a BatchRunner for the given calendar.
+     *
+     * @param calendar The calendar to apply the commands to.
+     * @param errors Where lines that cannot be applied are reported.
+     */
+    public BatchRunner(Calendar calendar, PrintStream errors) {
+        this.calendar = calendar;
+        this.errors = errors;
+    }
+
+    /**
+     * Applies every line of a batch file.
+     *
+     * @param file The batch file, in UTF-8.
+     * @return The number of lines that could not be applied.
+     * @throws IOException If the file cannot be read.
+     */
+    public int run(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return run(reader);
+        }
+    }
+
+    /**
+     * Applies every line read from a reader.
+     *
+     * @param reader The batch lines.
+     * @return The number of lines that could not be applied.
+     * @throws IOException If the lines cannot be read.
+     */
+    public int run(BufferedReader reader) throws IOException {
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            try {
+                apply(CsvEventFormat.split(trimmed));
+            } catch (IllegalArgumentException | DateTimeParseException | IOException | UncheckedIOException e) {
+                failures++;
+                errors.println("Line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+        flush();
+        return failures;
+    }
+
+    /**
+     * Retrieves the number of events scheduled so far, including updated ones.
+     *
+     * @return The number of scheduled events.
+     */
+    public int getScheduled() {
+        return scheduled;
+    }
+
+    /**
+     * Retrieves the number of commands other than event rows applied so far.
+     *
+     * @return The number of applied commands.
+     */
+    public int getCommands() {
+        return commands;
+    }
+
+    private void apply(List<String> fields) throws IOException {
+        if (fields.size() == CsvEventFormat.FIELDS) {
+            Event event = CsvEventFormat.parse(fields, 0);
+            event.setID(calendar.allocateID());
+            pending.add(event);
+            return;
+        }
+        String command = fields.get(0).toLowerCase(Locale.ROOT);
+        switch (command) {
+            case "update": {
+                expectFields(fields, 2 + CsvEventFormat.FIELDS);
+                Event event = CsvEventFormat.parse(fields, 2);
+                event.setID(parseID(fields.get(1)));
+                flush();
+                if (calendar.getEventByID(event.getID()) == null) {
+                    throw new IllegalArgumentException("Event not found: " + event.getID());
+                }
+                calendar.updateEvent(event);
+                scheduled++;
+                break;
+            }
+            case "remove": {
+                expectFields(fields, 2);
+                int id = parseID(fields.get(1));
+                flush();
+                if (calendar.removeEvent(id) == null) {
+                    throw new IllegalArgumentException("Event not found: " + id);
+                }
+                break;
+            }
+            case "save":
+                expectFields(fields, 2);
+                flush();
+                calendar.saveCalendar(Paths.get(fields.get(1)));
+                break;
+            case "load":
+                expectFields(fields, 2);
+                flush();
+                calendar.loadCalendar(Paths.get(fields.get(1)));
+                break;
+            default:
+                throw new IllegalArgumentException("Expected " + CsvEventFormat.FIELDS + " event fields or a command, found: " + fields.get(0));
+        }
+        commands++;
+    }
+
+    /**
+     * Schedules the events collected so far as one batch.
+     */
+    private void flush() {
+        if (!pending.isEmpty()) {
+            calendar.scheduleAll(pending);
+            scheduled += pending.size();
+            pending.clear();
+        }
+    }
+
+    private static void expectFields(List<String> fields, int count) {
+        if (fields.size() != count) {
+            throw new IllegalArgumentException("Expected " + count + " fields for " + fields.get(0) + ", found " + fields.size());
+        }
+    }
+
+    private static int parseID(String field) {
+        try {
+            return Integer.parseInt(field);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid event ID: " + field);
+        }
+    }
+}
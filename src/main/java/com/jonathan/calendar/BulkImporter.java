@@ -0,0 +1,130 @@
+package com.jonathan.calendar;
+
+import com.jonathan.calendar.io.EventFileParser;
+import com.jonathan.events.Event;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Imports large CSV or iCalendar files into a calendar.
+ * The file is parsed in parallel chunks by an {@link EventFileParser}. The parsed events get
+ * a contiguous range of new IDs in file order and are then scheduled in one bulk insert,
+ * so the calendar's indexes are rebuilt once rather than updated event by event.
+ */
+public class BulkImporter {
+    /**
+     * The outcome of an import.
+     */
+    public static final class Report {
+        private final int imported;
+        private final List<String> errors;
+        private final long elapsedNanos;
+
+        private Report(int imported, List<String> errors, long elapsedNanos) {
+            this.imported = imported;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Retrieves the number of imported events.
+         *
+         * @return The number of imported events.
+         */
+        public int getImported() {
+            return imported;
+        }
+
+        /**
+         * Retrieves the records that could not be imported, each prefixed with its line number.
+         *
+         * @return The error messages, in file order.
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        /**
+         * Retrieves how long the import took, from opening the file to the last scheduled event.
+         *
+         * @return The elapsed time in nanoseconds.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Computes the import throughput.
+         *
+         * @return The number of imported events per second.
+         */
+        public double eventsPerSecond() {
+            return elapsedNanos == 0 ? 0 : imported * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Imported %d events in %.1f ms (%.0f events/s); %d records failed.",
+                    imported, elapsedNanos / 1e6, eventsPerSecond(), errors.size());
+        }
+    }
+
+    private final Calendar calendar;
+    private final EventFileParser parser;
+
+    /**
+     * Constructs a BulkImporter that parses on the common fork-join pool.
+     *
+     * @param calendar The calendar to import into.
+     */
+    public BulkImporter(Calendar calendar) {
+        this(calendar, ForkJoinPool.commonPool(), EventFileParser.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs a BulkImporter.
+     *
+     * @param calendar The calendar to import into.
+     * @param pool The pool the file is parsed on.
+     * @param chunkSize The approximate number of bytes parsed per task.
+     */
+    public BulkImporter(Calendar calendar, ForkJoinPool pool, int chunkSize) {
+        this.calendar = calendar;
+        this.parser = new EventFileParser(pool, chunkSize);
+    }
+
+    /**
+     * Imports a file, picking its format from the file name.
+     *
+     * @param file The file, in UTF-8.
+     * @return The import report.
+     * @throws IOException If the file cannot be read.
+     */
+    public Report importFile(Path file) throws IOException {
+        return importFile(file, EventFileParser.Format.of(file));
+    }
+
+    /**
+     * Imports a file.
+     *
+     * @param file The file, in UTF-8.
+     * @param format The file format.
+     * @return The import report.
+     * @throws IOException If the file cannot be read.
+     */
+    public Report importFile(Path file, EventFileParser.Format format) throws IOException {
+        long start = System.nanoTime();
+        EventFileParser.Result result = parser.parse(file, format);
+        List<Event> events = result.getEvents();
+        if (!events.isEmpty()) {
+            int id = calendar.allocateIDs(events.size());
+            for (Event event : events) {
+                event.setID(id++);
+            }
+            calendar.scheduleAll(events);
+        }
+        return new Report(events.size(), result.getErrors(), System.nanoTime() - start);
+    }
+}
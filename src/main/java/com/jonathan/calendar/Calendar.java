@@ -1,24 +1,240 @@
 package com.jonathan.calendar;
 
+import com.jonathan.calendar.io.CalendarFile;
+import com.jonathan.calendar.io.Journal;
+import com.jonathan.calendar.metrics.CalendarMetrics;
+import com.jonathan.calendar.metrics.CalendarMetrics.Operation;
+import com.jonathan.calendar.reminders.ReminderScheduler;
+import com.jonathan.calendar.store.*;
 import com.jonathan.events.*;
 import java.io.*;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
-import java.time.LocalTime;
+import java.time.LocalDateTime;
+import java.time.Period;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * A calendar of events, backed by an {@link EventStore}.
+ * A calendar created with {@link #concurrent()} can be shared by several threads: its
+ * store is thread-safe and new IDs are handed out atomically by {@link #allocateID()}.
+ *
+ * <p>Recurring events are kept apart from the store, in a {@link SeriesIndex}. Date, year and
+ * range queries list each occurrence in the queried window, expanded on demand as a copy of
+ * its series; other listings show each series once, at its start.</p>
+ *
+ * <p>Events with a duration take up [date and time, end). Those that take place once are also
+ * kept in an {@link IntervalIndex}, so the events overlapping a time span are found in
+ * O(log n + k). Scheduling or updating an event reports the events it conflicts with, and
+ * {@link #findConflicts(LocalDateTime, LocalDateTime)} lists every conflict in a time span.</p>
+ *
+ * <p>Day, year and type searches are answered from a {@link QueryCache} when the same search
+ * was run before and no event it covers has changed since.</p>
+ *
+ * <p>Every change, search, listing, save and load is timed into the calendar's
+ * {@link CalendarMetrics}, together with the number of events returned and bytes moved.
+ * A streamed listing is timed until its stream is closed.</p>
+ *
+ * <p>With a {@link ReminderScheduler} set, every change to an event reschedules its reminder.</p>
+ *
+ * <p>{@link #snapshot()} takes a read-only, fully queryable copy of the calendar while writers
+ * carry on. The series and interval indexes are persistent, so the copy shares their nodes;
+ * with a {@link PersistentEventStore}, the default store, so does the store, and a snapshot
+ * costs O(1) however many events the calendar holds.</p>
+ */
 public class Calendar {
-    private Map<Integer, Event> events;
+    private static final Path CALENDARS_DIR = Paths.get("src/main/java/com/jonathan/calendars");
+    private static final long JOURNAL_SYNC_INTERVAL_MILLIS = 100;
+    private static final long DEFAULT_COMPACTION_THRESHOLD = 4L << 20;
+    private static final int STRIPES = 64;
+    private static final int DEFAULT_QUERY_CACHE_SIZE = 256;
+    private static final Comparator<Event> BY_PRIORITY = EventQuery.Order.PRIORITY.comparator();
+
+    private final Supplier<? extends EventStore> storeFactory;
+    private final boolean readOnly;
+    private volatile EventStore store;
+    private volatile SeriesIndex seriesIndex = new SeriesIndex();
+    private volatile IntervalIndex spans = new IntervalIndex();
+    private volatile EventCounters counters;
+    private volatile EventInterner interner;
+    private volatile ReminderScheduler reminders;
+    private final QueryCache queryCache = new QueryCache(DEFAULT_QUERY_CACHE_SIZE);
+    private final CalendarMetrics metrics = new CalendarMetrics();
     private Scanner scanner;
-    private int curIDNum = 0;
+    private final AtomicInteger curIDNum = new AtomicInteger();
+    private final Lock[] stripes = new Lock[STRIPES];
+    private final ReadWriteLock journalRotation = new ReentrantReadWriteLock();
+    private final ReadWriteLock changes = new ReentrantReadWriteLock();
+    private volatile Journal journal;
+    private Path journalSnapshot;
+    private volatile long compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    private ExecutorService compactor;
+    private Future<?> compaction;
+
+    /**
+     * Ways of loading a saved calendar.
+     */
+    public enum LoadMode {
+        /**
+         * Decode every event into an indexed in-memory store.
+         */
+        EAGER,
+        /**
+         * Memory-map the file and decode events only when a query returns them.
+         * Calendars saved with Java serialization are always loaded eagerly.
+         */
+        MAPPED
+    }
 
     /**
      * Constructs a Calendar object.
-     * Initializes the events map and the scanner for user input.
+     * Initializes a {@link PersistentEventStore}, so that snapshots cost O(1), and the scanner for user input.
      */
     public Calendar() {
-        this.events = new HashMap<>();
+        this(PersistentEventStore::new);
+    }
+
+    /**
+     * Constructs a Calendar object backed by the given event store.
+     * Calendars loaded into it later are held in new stores of the same class, if it is public
+     * and has a public constructor without arguments, and in a {@link PersistentEventStore} otherwise.
+     *
+     * @param store The store holding the calendar's events.
+     */
+    public Calendar(EventStore store) {
+        this(factoryLike(store), store);
+    }
+
+    /**
+     * Creates a factory of empty stores of the same class as a store, falling back to
+     * {@link PersistentEventStore} for stores that cannot be created without arguments.
+     */
+    private static Supplier<EventStore> factoryLike(EventStore store) {
+        Constructor<? extends EventStore> constructor;
+        try {
+            constructor = store.getClass().getConstructor();
+        } catch (NoSuchMethodException e) {
+            return PersistentEventStore::new;
+        }
+        if (!Modifier.isPublic(store.getClass().getModifiers())) {
+            return PersistentEventStore::new;
+        }
+        return () -> {
+            try {
+                return constructor.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot create a " + store.getClass().getName(), e);
+            }
+        };
+    }
+
+    /**
+     * Constructs a Calendar object whose events are held in stores created by the given factory,
+     * both initially and whenever a calendar is loaded.
+     *
+     * @param storeFactory Creates empty event stores.
+     */
+    public Calendar(Supplier<? extends EventStore> storeFactory) {
+        this(storeFactory, storeFactory.get());
+    }
+
+    private Calendar(Supplier<? extends EventStore> storeFactory, EventStore store) {
+        this(storeFactory, store, false);
+    }
+
+    private Calendar(Supplier<? extends EventStore> storeFactory, EventStore store, boolean readOnly) {
+        this.storeFactory = storeFactory;
+        this.store = store;
+        this.readOnly = readOnly;
         this.scanner = new Scanner(System.in);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Constructs a Calendar object that can be shared by several threads.
+     * Its events are held in a {@link ConcurrentEventStore}.
+     *
+     * @return The new calendar.
+     */
+    public static Calendar concurrent() {
+        return new Calendar(ConcurrentEventStore::new);
+    }
+
+    /**
+     * Constructs a Calendar object whose events are sharded by month, keeping only the most
+     * recently used months in memory. Its events are held in a {@link PartitionedEventStore};
+     * each store it creates keeps the segment files of its evicted months in a new subdirectory,
+     * which is deleted when loading a calendar replaces the store.
+     *
+     * @param directory The directory for the segment files.
+     * @param maxResidentEvents The number of events to keep in memory.
+     * @return The new calendar.
+     */
+    public static Calendar partitioned(Path directory, int maxResidentEvents) {
+        return new Calendar(() -> {
+            try {
+                Path segments = Files.createTempDirectory(Files.createDirectories(directory), "partitions-");
+                return new PartitionedEventStore(segments, maxResidentEvents);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Constructs a Calendar object whose snapshots are taken in O(1), like {@link #Calendar()}.
+     * Its events are held in a {@link PersistentEventStore}, which can also be shared by several threads.
+     *
+     * @return The new calendar.
+     */
+    public static Calendar persistent() {
+        return new Calendar(PersistentEventStore::new);
+    }
+
+    /**
+     * Takes a snapshot of the calendar: a read-only calendar holding the events as they are now,
+     * which later changes to this calendar do not affect. Every query can be run on the snapshot,
+     * for example to save a backup with {@link #saveCalendar(Path)} while writers carry on;
+     * changing or loading it throws an {@link UnsupportedOperationException}.
+     * Changes are held back only while the store and indexes are copied, which takes O(1) with a
+     * {@link PersistentEventStore} and O(n) with other stores.
+     *
+     * @return The snapshot.
+     */
+    public Calendar snapshot() {
+        changes.writeLock().lock();
+        try {
+            Calendar snapshot = new Calendar(storeFactory, store.snapshot(), true);
+            snapshot.seriesIndex = seriesIndex.snapshot();
+            snapshot.spans = spans.snapshot();
+            snapshot.curIDNum.set(curIDNum.get());
+            return snapshot;
+        } finally {
+            changes.writeLock().unlock();
+        }
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Calendar snapshots are read-only");
+        }
     }
 
     /**
@@ -27,7 +243,7 @@ public class Calendar {
      * @return The ID of the last added event.
      */
     public int getIDNum() {
-        return curIDNum;
+        return curIDNum.get();
     }
 
     /**
@@ -35,7 +251,101 @@ public class Calendar {
      * Used to assign a unique ID to each new event.
      */
     void nextID(){
-        curIDNum++;
+        curIDNum.incrementAndGet();
+    }
+
+    /**
+     * Hands out a new, unique event ID.
+     * Safe to call from several threads; no two calls return the same ID.
+     *
+     * @return The new ID.
+     */
+    public int allocateID() {
+        return curIDNum.incrementAndGet();
+    }
+
+    /**
+     * Hands out a contiguous range of new, unique event IDs.
+     * Safe to call from several threads; the range overlaps no other allocated ID.
+     *
+     * @param count The number of IDs to allocate.
+     * @return The first ID of the range; the others follow it consecutively.
+     */
+    public int allocateIDs(int count) {
+        return curIDNum.getAndAdd(count) + 1;
+    }
+
+    private void advanceIDPast(int id) {
+        curIDNum.accumulateAndGet(id, Math::max);
+    }
+
+    /**
+     * Shares the descriptions and date-times of this calendar's events with other calendars.
+     * Every event scheduled, updated or loaded from then on has its description and date-time
+     * replaced by the interner's canonical instances. Stores that copy events into their own
+     * representation, such as {@link ColumnarEventStore}, keep their own copies.
+     *
+     * @param interner The shared interner, or null to stop interning.
+     */
+    public void setInterner(EventInterner interner) {
+        this.interner = interner;
+    }
+
+    /**
+     * Fires reminders of this calendar's upcoming events through a scheduler.
+     * Reminders are scheduled for the current events at once and, from then on, whenever an
+     * event is scheduled, updated, removed or loaded.
+     *
+     * @param reminders The scheduler, or null to stop scheduling reminders.
+     */
+    public void setReminders(ReminderScheduler reminders) {
+        checkWritable();
+        ReminderScheduler previous = this.reminders;
+        this.reminders = reminders;
+        if (previous != null && previous != reminders) {
+            previous.cancelAll();
+        }
+        remindAll();
+    }
+
+    /**
+     * Reschedules the reminders of every event, after the events were replaced wholesale.
+     */
+    private void remindAll() {
+        ReminderScheduler scheduler = reminders;
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.cancelAll();
+        for (Event event : allEvents()) {
+            scheduler.schedule(event);
+        }
+    }
+
+    /**
+     * Retrieves the cache of day, year and type search results, with its hit and miss counters.
+     * Its capacity can be changed, or set to 0 to turn caching off.
+     *
+     * @return The query cache.
+     */
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * Retrieves the latencies, result sizes and bytes moved of this calendar's operations.
+     *
+     * @return The calendar's metrics.
+     */
+    public CalendarMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void intern(Event event) {
+        EventInterner pool = interner;
+        if (pool != null) {
+            pool.intern(event);
+        }
     }
 
     /**
@@ -44,18 +354,104 @@ public class Calendar {
      * @return The number of events in the calendar.
      */
     public int numEvents(){
-        return events.size();
+        return store.size() + seriesIndex.size();
     }
 
     /**
      * Schedules an event in the calendar.
+     * An event already stored under the same ID is replaced.
+     * Scheduled events are indexed by their current date and time, so they
+     * should be changed through {@link #updateEvent(Event)} rather than in place.
+     * An event with a recurrence is scheduled as a series.
+     * The event is scheduled even if it conflicts with others; the conflicts are only reported.
      *
      * @param event The event to be scheduled.
+     * @return The events it conflicts with, as found by {@link #conflictsWith(Event)}.
      */
-    public void scheduleEvent(Event event) {
-        events.put(event.getID(), event);
+    public List<Event> scheduleEvent(Event event) {
+        long start = System.nanoTime();
+        List<Event> conflicts = schedule(event);
+        metrics.record(Operation.SCHEDULE, start, conflicts.size());
+        return conflicts;
+    }
+
+    private List<Event> schedule(Event event) {
+        checkWritable();
+        List<Event> conflicts = conflictsWith(event);
+        // Changes to one event are journaled and applied under the same lock so that
+        // concurrent updates reach the journal, the store and the indexes in the same order.
+        Lock stripe = stripe(event.getID());
+        Journal log = journal;
+        if (log == null) {
+            stripe.lock();
+            try {
+                apply(event);
+            } finally {
+                stripe.unlock();
+            }
+            return conflicts;
+        }
+        journalRotation.readLock().lock();
+        stripe.lock();
+        try {
+            log.appendPut(event);
+            apply(event);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            stripe.unlock();
+            journalRotation.readLock().unlock();
+        }
+        compactIfNeeded(log);
+        return conflicts;
     }
     
+    /**
+     * Schedules many events at once, replacing events already stored under the same IDs.
+     * The store may rebuild its indexes once for the whole batch instead of updating them per event.
+     * The ID counter is moved past every scheduled ID.
+     *
+     * @param events The events to be scheduled.
+     */
+    public void scheduleAll(Collection<Event> events) {
+        long start = System.nanoTime();
+        putAll(events);
+        metrics.record(Operation.SCHEDULE_ALL, start);
+    }
+
+    private void putAll(Collection<Event> events) {
+        checkWritable();
+        int lastID = 0;
+        for (Event event : events) {
+            lastID = Math.max(lastID, event.getID());
+        }
+        advanceIDPast(lastID);
+        Journal log = journal;
+        if (log == null) {
+            List<Lock> locked = lockStripes(events);
+            try {
+                applyAll(events);
+            } finally {
+                unlock(locked);
+            }
+            return;
+        }
+        journalRotation.readLock().lock();
+        List<Lock> locked = lockStripes(events);
+        try {
+            for (Event event : events) {
+                log.appendPut(event);
+            }
+            applyAll(events);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            unlock(locked);
+            journalRotation.readLock().unlock();
+        }
+        compactIfNeeded(log);
+    }
+
     /**
      * Removes an event from the calendar.
      *
@@ -63,16 +459,339 @@ public class Calendar {
      * @return The removed event.
      */
     public Event removeEvent(int id) {
-        return events.remove(id);
+        long start = System.nanoTime();
+        Event removed = remove(id);
+        metrics.record(Operation.REMOVE, start);
+        return removed;
+    }
+
+    private Event remove(int id) {
+        checkWritable();
+        Lock stripe = stripe(id);
+        Journal log = journal;
+        if (log == null) {
+            stripe.lock();
+            try {
+                return discard(id);
+            } finally {
+                stripe.unlock();
+            }
+        }
+        Event removed;
+        journalRotation.readLock().lock();
+        stripe.lock();
+        try {
+            log.appendRemove(id);
+            removed = discard(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            stripe.unlock();
+            journalRotation.readLock().unlock();
+        }
+        compactIfNeeded(log);
+        return removed;
+    }
+
+    /**
+     * Retrieves the lock that orders the changes to events with a given ID. The store and
+     * the indexes are updated one after the other, so without it two writers changing the
+     * same event could leave them holding different versions of it.
+     *
+     * @param id The ID of the event.
+     * @return The lock of the ID's stripe.
+     */
+    private Lock stripe(int id) {
+        return stripes[Math.floorMod(id, STRIPES)];
+    }
+
+    /**
+     * Locks the stripes of every event in a batch, in stripe order so that batches never deadlock.
+     *
+     * @param events The events of the batch.
+     * @return The locks taken, to be released with {@link #unlock(List)}.
+     */
+    private List<Lock> lockStripes(Collection<Event> events) {
+        BitSet needed = new BitSet(STRIPES);
+        for (Event event : events) {
+            needed.set(Math.floorMod(event.getID(), STRIPES));
+        }
+        List<Lock> locked = new ArrayList<>(needed.cardinality());
+        for (int i = needed.nextSetBit(0); i >= 0; i = needed.nextSetBit(i + 1)) {
+            stripes[i].lock();
+            locked.add(stripes[i]);
+        }
+        return locked;
+    }
+
+    private static void unlock(List<Lock> locked) {
+        for (int i = locked.size() - 1; i >= 0; i--) {
+            locked.get(i).unlock();
+        }
+    }
+
+    /**
+     * Stores an event, in the series index if it recurs and in the store otherwise.
+     * It is removed from the other one, in case it was rescheduled as the other kind.
+     */
+    private void apply(Event event) {
+        intern(event);
+        Event previous;
+        Event replaced;
+        changes.readLock().lock();
+        try {
+            if (event.getRecurrence() != null) {
+                previous = seriesIndex.put(event);
+                replaced = store.remove(event.getID());
+                spans.remove(event.getID());
+                uncount(event.getID());
+            } else {
+                previous = store.put(event);
+                replaced = seriesIndex.remove(event.getID());
+                span(spans, event);
+                EventCounters counted = counters;
+                if (counted != null) {
+                    counted.put(event);
+                }
+            }
+        } finally {
+            changes.readLock().unlock();
+        }
+        invalidate(previous != null ? previous : replaced, event);
+        ReminderScheduler scheduler = reminders;
+        if (scheduler != null) {
+            scheduler.schedule(event);
+        }
+    }
+
+    private void uncount(int id) {
+        EventCounters counted = counters;
+        if (counted != null) {
+            counted.remove(id);
+        }
+    }
+
+    /**
+     * Evicts the cached results covering an event before and after a change. An event changed
+     * in place and then rescheduled no longer shows where it was, so the whole cache is evicted.
+     */
+    private void invalidate(Event previous, Event event) {
+        if (previous == event) {
+            queryCache.clear();
+        } else {
+            queryCache.invalidate(previous);
+            queryCache.invalidate(event);
+        }
+    }
+
+    /**
+     * Keeps an event that takes place once in the interval index if it has a duration, and out of it otherwise.
+     */
+    private static void span(IntervalIndex spans, Event event) {
+        if (event.hasDuration()) {
+            spans.put(event, event.getEnd());
+        } else {
+            spans.remove(event.getID());
+        }
+    }
+
+    /**
+     * Stores a batch of events, handing the events that take place once to the store in one bulk insert.
+     */
+    private void applyAll(Collection<Event> events) {
+        SeriesIndex series = seriesIndex;
+        IntervalIndex timed = spans;
+        List<Event> single = new ArrayList<>(events.size());
+        List<Event> previous = new ArrayList<>();
+        boolean cached = queryCache.size() > 0;
+        changes.readLock().lock();
+        try {
+            for (Event event : events) {
+                intern(event);
+                if (cached) {
+                    previous.add(getEventByID(event.getID()));
+                }
+                if (event.getRecurrence() != null) {
+                    series.put(event);
+                    store.remove(event.getID());
+                    timed.remove(event.getID());
+                    uncount(event.getID());
+                } else {
+                    single.add(event);
+                    series.remove(event.getID());
+                    span(timed, event);
+                }
+            }
+            store.putAll(single);
+            EventCounters counted = counters;
+            if (counted != null) {
+                counted.putAll(single);
+            }
+        } finally {
+            changes.readLock().unlock();
+        }
+        ReminderScheduler scheduler = reminders;
+        if (scheduler != null) {
+            for (Event event : events) {
+                scheduler.schedule(event);
+            }
+        }
+        if (!cached) {
+            queryCache.clear();
+            return;
+        }
+        Iterator<Event> replaced = previous.iterator();
+        for (Event event : events) {
+            invalidate(replaced.next(), event);
+        }
+    }
+
+    private Event discard(int id) {
+        Event removed;
+        Event removedSeries;
+        changes.readLock().lock();
+        try {
+            removed = store.remove(id);
+            removedSeries = seriesIndex.remove(id);
+            spans.remove(id);
+            uncount(id);
+        } finally {
+            changes.readLock().unlock();
+        }
+        queryCache.invalidate(removed != null ? removed : removedSeries);
+        ReminderScheduler scheduler = reminders;
+        if (scheduler != null) {
+            scheduler.cancel(id);
+        }
+        return removed != null ? removed : removedSeries;
     }
 
     /**
      * Updates the details of an event in the calendar.
      *
      * @param newEventDetails The updated event details.
+     * @return The events the updated event conflicts with.
+     */
+    public List<Event> updateEvent(Event newEventDetails) {
+        long start = System.nanoTime();
+        List<Event> conflicts = schedule(newEventDetails);
+        metrics.record(Operation.UPDATE, start, conflicts.size());
+        return conflicts;
+    }
+
+    /**
+     * Finds the events whose time span overlaps that of an event, other than the event itself.
+     * Events without a duration take up no time, so they neither have nor cause conflicts.
+     * A recurring event is checked occurrence by occurrence, in O(log n) each, over its whole span.
+     * A series that never ends is checked until every event that takes place once and every
+     * series that ends is over, so that no conflict with them is missed, and for at least a year;
+     * use {@link #conflictsWith(Event, LocalDateTime)} to choose how far to check it.
+     *
+     * @param event The event, which need not be scheduled.
+     * @return The conflicting events, sorted by date and time. Recurring events are
+     *         listed once per conflicting occurrence.
      */
-    public void updateEvent(Event newEventDetails) {
-        events.put(newEventDetails.getID(), newEventDetails);
+    public List<Event> conflictsWith(Event event) {
+        Recurrence recurrence = event.getRecurrence();
+        if (recurrence == null || recurrence.lastOccurrence(event.getDateTime()) != null) {
+            return conflictsWith(event, LocalDateTime.MAX);
+        }
+        LocalDateTime until = event.getDateTime().plusYears(1);
+        for (LocalDateTime end : Arrays.asList(spans.latestEnd(), seriesIndex.latestFiniteEnd())) {
+            if (end != null && end.isAfter(until)) {
+                until = end;
+            }
+        }
+        return conflictsWith(event, until);
+    }
+
+    /**
+     * Finds the events whose time span overlaps that of an event, other than the event itself,
+     * checking a recurring event's occurrences that start before a bound.
+     * Events without a duration take up no time, so they neither have nor cause conflicts.
+     *
+     * @param event The event, which need not be scheduled.
+     * @param until The exclusive bound on the occurrences checked, needed for series that never end.
+     * @return The conflicting events, sorted by date and time. Recurring events are
+     *         listed once per conflicting occurrence.
+     */
+    public List<Event> conflictsWith(Event event, LocalDateTime until) {
+        if (!event.hasDuration()) {
+            return new ArrayList<>();
+        }
+        Recurrence recurrence = event.getRecurrence();
+        if (recurrence == null) {
+            return overlapping(event.getDateTime(), event.getEnd(), event.getID());
+        }
+        LocalDateTime start = event.getDateTime();
+        NavigableSet<Event> conflicts = new TreeSet<>(Event.CHRONOLOGICAL);
+        for (LocalDateTime occurrence : recurrence.occurrencesBetween(start, start, until)) {
+            conflicts.addAll(overlapping(occurrence, occurrence.plus(event.getDuration()), event.getID()));
+        }
+        return new ArrayList<>(conflicts);
+    }
+
+    /**
+     * Retrieves the events that take up part of a time range, including those that started
+     * before it and are still running. Only events with a duration take up time.
+     * Runs in O(log n + k) for k overlapping events that take place once; recurring events
+     * are expanded only around the range.
+     *
+     * @param from The inclusive start of the range.
+     * @param to The exclusive end of the range.
+     * @return The overlapping events, sorted by date and time.
+     */
+    public List<Event> eventsOverlapping(LocalDateTime from, LocalDateTime to) {
+        long start = System.nanoTime();
+        List<Event> events = overlapping(from, to, Integer.MIN_VALUE);
+        metrics.record(Operation.EVENTS_OVERLAPPING, start, events.size());
+        return events;
+    }
+
+    /**
+     * Lists the events with a duration, other than the excluded one, that take up part of [from, to).
+     */
+    private List<Event> overlapping(LocalDateTime from, LocalDateTime to, int excludedID) {
+        List<Event> single = spans.overlapping(from, to);
+        single.removeIf(other -> other.getID() == excludedID || !other.getEnd().isAfter(from));
+        List<Event> series = seriesIndex.occurrencesOverlapping(from, to);
+        series.removeIf(other -> other.getID() == excludedID);
+        return withSeries(single, series, Event.CHRONOLOGICAL);
+    }
+
+    /**
+     * Finds every pair of events whose time spans overlap within [from, to).
+     * The events overlapping the range are swept in order of their start, keeping the events
+     * still running in a queue ordered by end, so k conflicts among n events are found in
+     * O(n log n + k) rather than by comparing every pair.
+     *
+     * @param from The inclusive start of the range.
+     * @param to The exclusive end of the range.
+     * @return The conflicts, sorted by the start of their overlap.
+     */
+    public List<Conflict> findConflicts(LocalDateTime from, LocalDateTime to) {
+        long start = System.nanoTime();
+        List<Conflict> conflicts = new ArrayList<>();
+        if (!from.isBefore(to)) {
+            metrics.record(Operation.FIND_CONFLICTS, start, 0);
+            return conflicts;
+        }
+        List<Event> timed = overlapping(from, to, Integer.MIN_VALUE);
+        PriorityQueue<Event> running = new PriorityQueue<>(Comparator.comparing(Event::getEnd));
+        for (Event event : timed) {
+            while (!running.isEmpty() && !running.peek().getEnd().isAfter(event.getDateTime())) {
+                running.poll();
+            }
+            for (Event other : running) {
+                conflicts.add(new Conflict(other, event));
+            }
+            running.add(event);
+        }
+        conflicts.sort(Comparator.comparing(Conflict::getStart)
+                .thenComparing(Conflict::getSecond, Event.CHRONOLOGICAL)
+                .thenComparing(Conflict::getFirst, Event.CHRONOLOGICAL));
+        metrics.record(Operation.FIND_CONFLICTS, start, conflicts.size());
+        return conflicts;
     }
 
     /**
@@ -82,21 +801,84 @@ public class Calendar {
      * @return The event corresponding to the ID, or null if not found.
      */
     public Event getEventByID(int id) {
-        return events.get(id);
+        Event event = store.get(id);
+        return event != null ? event : seriesIndex.get(id);
     }
 
     /**
      * Retrieves a list of all events in the calendar.
      * Returns a list of all events in the calendar, sorted by date and time.
+     * Each recurring event is listed once, at its start.
      *
      * @return A list of all events in the calendar, sorted by date and time.
      */
     public List<Event> viewAllEvents() {
-        return events.values().stream()
-                .sorted(Comparator.comparing(Event::getDateTime))
-                .collect(Collectors.toList());
+        long start = System.nanoTime();
+        List<Event> events = allEvents();
+        metrics.record(Operation.VIEW_ALL, start, events.size());
+        return events;
     }
 
+    private List<Event> allEvents() {
+        return withSeries(store.all(), seriesIndex.all(), Event.CHRONOLOGICAL);
+    }
+
+    /**
+     * Retrieves the events starting within a time range.
+     * Returns the events whose date and time fall in [from, to), sorted by date and time.
+     * Runs in O(log n + k) for k matching events with the default store.
+     * Recurring events are listed once per occurrence in the range.
+     *
+     * @param from The inclusive start of the range.
+     * @param to The exclusive end of the range.
+     * @return A list of events in the range, sorted by date and time.
+     */
+    public List<Event> eventsBetween(LocalDateTime from, LocalDateTime to) {
+        long start = System.nanoTime();
+        List<Event> events = withSeries(store.between(from, to), seriesIndex.occurrencesBetween(from, to),
+                Event.CHRONOLOGICAL);
+        metrics.record(Operation.EVENTS_BETWEEN, start, events.size());
+        return events;
+    }
+
+    /**
+     * Merges the events of the store with those of the series index, unless there are none of the latter.
+     */
+    private static List<Event> withSeries(List<Event> stored, List<Event> series, Comparator<Event> order) {
+        if (series.isEmpty()) {
+            return stored;
+        }
+        return EventMerge.mergeToList(List.of(stored, series), order);
+    }
+
+    private static Stream<Event> withSeries(Stream<Event> stored, List<Event> series, Comparator<Event> order) {
+        if (series.isEmpty()) {
+            return stored;
+        }
+        Iterator<Event> merged = EventMerge.merge(List.of(stored.iterator(), series.iterator()), order);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED), false)
+                .onClose(stored::close);
+    }
+
+    private List<Event> seriesByPriority() {
+        List<Event> series = seriesIndex.all();
+        series.sort(BY_PRIORITY);
+        return series;
+    }
+
+    private static List<Event> occurrencesOn(SeriesIndex series, LocalDate date) {
+        return series.occurrencesBetween(date.atStartOfDay(), date.plusDays(1).atStartOfDay());
+    }
+
+    private static List<Event> occurrencesIn(SeriesIndex series, int year) {
+        LocalDate start = LocalDate.of(year, 1, 1);
+        return series.occurrencesBetween(start.atStartOfDay(), start.plusYears(1).atStartOfDay());
+    }
+
+    private static Predicate<Event> describedBy(String keyword) {
+        String lowerKeyword = keyword.toLowerCase(Locale.ROOT);
+        return event -> event.getDescription() != null && event.getDescription().toLowerCase(Locale.ROOT).contains(lowerKeyword);
+    }
 
     /**
      * Saves the calendar as a file to be accessed later.
@@ -105,13 +887,26 @@ public class Calendar {
     public void saveCalendar() {
         System.out.println("Choose calendar name:");
         String filename = scanner.nextLine();
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream("src/main/java/com/jonathan/calendars/" + filename + ".cal"))) {
-            oos.writeObject(events);
+        try {
+            saveCalendar(CALENDARS_DIR.resolve(filename + ".cal"));
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Saves the calendar to the given file in the binary calendar format.
+     *
+     * @param path The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void saveCalendar(Path path) throws IOException {
+        long start = System.nanoTime();
+        CalendarFile.write(path, allEvents(), curIDNum.get());
+        metrics.addBytesWritten(Files.size(path));
+        metrics.record(Operation.SAVE, start);
+    }
+
     /**
      * Loads a calendar from a file.
      * Prompts the user to enter the filename of the calendar to load.
@@ -126,10 +921,10 @@ public class Calendar {
             if (filename.equalsIgnoreCase("")) {
                 stopLoading = true;
             } else {
-                try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream("src/main/java/com/jonathan/calendars/" + filename + ".cal"))) {
-                    events = (Map<Integer, Event>) ois.readObject();
+                try {
+                    loadCalendar(CALENDARS_DIR.resolve(filename + ".cal"));
                     loaded = true;
-                } catch (FileNotFoundException e) {
+                } catch (NoSuchFileException e) {
                     System.out.println("File not found. Please try again.");
                 } catch (Exception e) {
                     System.out.println("Error occurred while loading events. Please try again.");
@@ -138,79 +933,571 @@ public class Calendar {
         }
     }
 
+    /**
+     * Loads a calendar from the given file, replacing the current events.
+     * Accepts both the binary calendar format and calendars saved with Java serialization.
+     * The ID counter is moved past every loaded ID so that new events never reuse one.
+     *
+     * @param path The file to read.
+     * @throws IOException If the file cannot be read or is not a calendar file.
+     */
+    public void loadCalendar(Path path) throws IOException {
+        loadCalendar(path, LoadMode.EAGER);
+    }
+
+    /**
+     * Loads a calendar from the given file using the given load mode, replacing the current events.
+     * The ID counter is moved past every loaded ID so that new events never reuse one.
+     *
+     * @param path The file to read.
+     * @param mode Whether to decode all events now or map the file and decode them on demand.
+     * @throws IOException If the file cannot be read or is not a calendar file.
+     */
+    public void loadCalendar(Path path, LoadMode mode) throws IOException {
+        long start = System.nanoTime();
+        load(path, mode);
+        metrics.addBytesRead(Files.size(path));
+        metrics.record(Operation.LOAD, start, numEvents());
+    }
+
+    private void load(Path path, LoadMode mode) throws IOException {
+        checkWritable();
+        closeJournal();
+        if (mode == LoadMode.MAPPED && !CalendarFile.isSerialized(path)) {
+            MappedEventStore mapped = MappedEventStore.open(path);
+            SeriesIndex series = new SeriesIndex();
+            for (Event event : CalendarFile.readSeries(path)) {
+                intern(event);
+                series.put(event);
+            }
+            IntervalIndex timed = new IntervalIndex();
+            for (Event event : mapped.timed()) {
+                timed.put(event, event.getEnd());
+            }
+            replace(mapped, series, timed);
+            advanceIDPast(mapped.lastID());
+            return;
+        }
+        CalendarFile.Contents contents = CalendarFile.read(path);
+        EventStore loaded = storeFactory.get();
+        SeriesIndex series = new SeriesIndex();
+        IntervalIndex timed = new IntervalIndex();
+        List<Event> single = new ArrayList<>(contents.getEvents().size());
+        for (Event event : contents.getEvents()) {
+            intern(event);
+            if (event.getRecurrence() != null) {
+                series.put(event);
+            } else {
+                single.add(event);
+                if (event.hasDuration()) {
+                    timed.put(event, event.getEnd());
+                }
+            }
+        }
+        loaded.putAll(single);
+        replace(loaded, series, timed);
+        advanceIDPast(contents.getLastID());
+    }
+
+    /**
+     * Replaces every event at once, so that a snapshot sees either the old events or the new ones.
+     * The replaced store is closed if it holds resources of its own, such as segment files.
+     */
+    private void replace(EventStore loaded, SeriesIndex series, IntervalIndex timed) throws IOException {
+        EventStore replaced;
+        changes.readLock().lock();
+        try {
+            replaced = store;
+            store = loaded;
+            seriesIndex = series;
+            spans = timed;
+            counters = null;
+        } finally {
+            changes.readLock().unlock();
+        }
+        queryCache.clear();
+        remindAll();
+        if (replaced instanceof Closeable && replaced != loaded) {
+            ((Closeable) replaced).close();
+        }
+    }
+
+    /**
+     * Opens the calendar saved at the given snapshot file in journal mode, replacing the current events.
+     * The snapshot, if it exists, is loaded and the journal next to it is replayed on top of it.
+     * From then on every scheduled, updated and removed event is appended to the journal, so
+     * no change is lost between explicit saves and each change costs one small write.
+     * Once the journal grows past the compaction threshold it is folded into a fresh snapshot
+     * in the background.
+     *
+     * @param snapshot The snapshot file. It does not need to exist yet.
+     * @param policy When journal records are forced to disk.
+     * @throws IOException If the snapshot or journal cannot be read, or the journal cannot be opened.
+     */
+    public void openJournal(Path snapshot, Journal.FsyncPolicy policy) throws IOException {
+        checkWritable();
+        if (Files.exists(snapshot)) {
+            loadCalendar(snapshot);
+        } else {
+            closeJournal();
+            replace(storeFactory.get(), new SeriesIndex(), new IntervalIndex());
+        }
+        Path compacting = Journal.compactingJournalFor(snapshot);
+        Journal.replay(compacting, this::replayPut, this::discard);
+        Journal.replay(Journal.journalFor(snapshot), this::replayPut, this::discard);
+        journal = Journal.open(Journal.journalFor(snapshot), policy, JOURNAL_SYNC_INTERVAL_MILLIS);
+        journalSnapshot = snapshot;
+        compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (Files.exists(compacting)) {
+            compactJournal();
+        }
+    }
+
+    private void replayPut(Event event) {
+        apply(event);
+        advanceIDPast(event.getID());
+    }
+
+    /**
+     * Sets the journal size, in bytes, past which the journal is compacted automatically.
+     *
+     * @param bytes The compaction threshold.
+     */
+    public void setJournalCompactionThreshold(long bytes) {
+        compactionThreshold = bytes;
+    }
+
+    private void compactIfNeeded(Journal log) {
+        if (log.size() < compactionThreshold) {
+            return;
+        }
+        synchronized (this) {
+            if (journal == log && (compaction == null || compaction.isDone())) {
+                try {
+                    compactJournal();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Folds the journal into a fresh snapshot in the background.
+     * The journal is moved aside and a new, empty one takes its place, so changes made
+     * while the snapshot is written go to the new journal. The old journal is deleted
+     * once the snapshot has been replaced. If a compaction is already running, it is returned instead.
+     *
+     * @return The running compaction.
+     * @throws IOException If the journal cannot be moved aside.
+     * @throws IllegalStateException If the calendar is not in journal mode.
+     */
+    public synchronized Future<?> compactJournal() throws IOException {
+        if (journal == null) {
+            throw new IllegalStateException("Calendar is not in journal mode");
+        }
+        if (compaction != null && !compaction.isDone()) {
+            return compaction;
+        }
+        Path snapshot = journalSnapshot;
+        Path compacting = Journal.compactingJournalFor(snapshot);
+        // A journal left over from a failed compaction is already reflected in the events,
+        // so the current journal stays in place and is replayed on top of the new snapshot.
+        // Changes are held back while the journal is moved aside and the events are copied,
+        // so every change in the old journal is also in the copy.
+        List<Event> events;
+        int lastID;
+        journalRotation.writeLock().lock();
+        try {
+            if (!Files.exists(compacting)) {
+                journal.rotate(compacting);
+            }
+            events = new ArrayList<>(allEvents());
+            lastID = curIDNum.get();
+        } finally {
+            journalRotation.writeLock().unlock();
+        }
+        compaction = compactor.submit(() -> {
+            CalendarFile.write(snapshot, events, lastID);
+            Files.deleteIfExists(compacting);
+            return null;
+        });
+        return compaction;
+    }
+
+    /**
+     * Leaves journal mode, waiting for a running compaction and forcing the journal to disk.
+     * Does nothing if the calendar is not in journal mode.
+     *
+     * @throws IOException If the journal or the compacted snapshot cannot be written.
+     */
+    public synchronized void closeJournal() throws IOException {
+        if (journal == null) {
+            return;
+        }
+        try {
+            if (compaction != null) {
+                compaction.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IOException("Journal compaction failed", e.getCause());
+        } finally {
+            compactor.shutdown();
+            compaction = null;
+            Journal closing = journal;
+            journal = null;
+            closing.close();
+        }
+    }
+
     /**
      * Searches for events by a keyword in their descriptions.
-     * Returns a list of events matching the keyword, sorted by time.
+     * Returns a list of events whose description contains the keyword, ignoring case,
+     * sorted by date and time. With the default store this is answered from a description
+     * index, so events that share no words with the keyword are never examined.
      *
      * @param keyword The keyword to search for in event descriptions.
-     * @return A list of events matching the keyword, sorted by time.
+     * @return A list of events matching the keyword, sorted by date and time.
      */
     public List<Event> searchEventsByDescription(String keyword) {
-        return events.values().stream()
-                .filter(event -> event.getDescription().toLowerCase().contains(keyword.toLowerCase()))
-                .sorted(Comparator.comparing(event -> event.getDateTime().toLocalTime()))
-                .collect(Collectors.toList());
+        long start = System.nanoTime();
+        List<Event> events = withSeries(store.matching(keyword), seriesIndex.matching(describedBy(keyword)),
+                Event.CHRONOLOGICAL);
+        metrics.record(Operation.SEARCH_BY_DESCRIPTION, start, events.size());
+        return events;
     }
 
     
+    /**
+     * Searches for the events meeting every criterion of a query: a time range, event types,
+     * priorities and a keyword in the description. Returns them in the query's order, up to its limit.
+     * The persistent, concurrent and indexed stores plan the query by cost, reading only whichever
+     * of its range, its types and priorities or its keyword yields the fewest events, so combining
+     * criteria never costs more than searching by the most selective of them. Other stores read
+     * the query's range, else its types, else its keyword, and check the other criteria on each event.
+     * Recurring events are listed as their occurrences in the query's range, or once at their
+     * start if it has none.
+     *
+     * @param query The query.
+     * @return The matching events, in the query's order.
+     */
+    public List<Event> search(EventQuery query) {
+        long start = System.nanoTime();
+        List<Event> series = query.getFrom() == null
+                ? seriesIndex.matching(query::test)
+                : seriesIndex.occurrencesBetween(query.getFrom(), query.getTo());
+        series.removeIf(event -> !query.test(event));
+        series.sort(query.getOrder().comparator());
+        List<Event> events = withSeries(store.query(query), series, query.getOrder().comparator());
+        if (events.size() > query.getLimit()) {
+            events = new ArrayList<>(events.subList(0, query.getLimit()));
+        }
+        metrics.record(Operation.QUERY, start, events.size());
+        return events;
+    }
+
+    /**
+     * Counts the events on the dates in [from, to) of the given types and priorities.
+     * Events that take place once are counted from per-day counters kept up to date on every change,
+     * so the count takes O(log d) time however many events the calendar holds; the occurrences of
+     * recurring events in the range are counted one by one.
+     *
+     * @param from The inclusive first date.
+     * @param to The exclusive last date.
+     * @param types The event types to count, or null for any type.
+     * @param priorities The priorities to count, or null for any priority.
+     * @return The number of matching events.
+     */
+    public long countEvents(LocalDate from, LocalDate to, Set<EventType> types, Set<EventPrio> priorities) {
+        long start = System.nanoTime();
+        long count = counters().count(from, to, types, priorities)
+                + occurrencesCounted(from, to, types, priorities).size();
+        metrics.record(Operation.COUNT, start);
+        return count;
+    }
+
+    /**
+     * Counts the events of the given types and priorities in consecutive periods, such as each day,
+     * week or month, starting at a date. The last period is cut short at the end date.
+     * Each period costs O(log d) time, as for {@link #countEvents(LocalDate, LocalDate, Set, Set)}.
+     *
+     * @param period The length of each period, for example {@link Period#ofWeeks(int)}.
+     * @param from The inclusive first date.
+     * @param to The exclusive last date.
+     * @param types The event types to count, or null for any type.
+     * @param priorities The priorities to count, or null for any priority.
+     * @return The number of matching events in each period, by the period's first date.
+     * @throws IllegalArgumentException If the period does not move dates forward.
+     */
+    public SortedMap<LocalDate, Long> countEventsPer(Period period, LocalDate from, LocalDate to,
+                                                     Set<EventType> types, Set<EventPrio> priorities) {
+        long start = System.nanoTime();
+        List<LocalDate> bounds = new ArrayList<>();
+        bounds.add(from);
+        for (int i = 1; bounds.get(bounds.size() - 1).isBefore(to); i++) {
+            LocalDate bound = from.plus(period.multipliedBy(i));
+            if (!bound.isAfter(bounds.get(bounds.size() - 1))) {
+                throw new IllegalArgumentException("Counting periods must move dates forward: " + period);
+            }
+            bounds.add(bound.isAfter(to) ? to : bound);
+        }
+        long[] counts = counters().histogram(bounds, types, priorities);
+        for (Event occurrence : occurrencesCounted(from, to, types, priorities)) {
+            int bound = Collections.binarySearch(bounds, occurrence.getDateTime().toLocalDate());
+            counts[bound >= 0 ? bound : -bound - 2]++;
+        }
+        SortedMap<LocalDate, Long> perPeriod = new TreeMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            perPeriod.put(bounds.get(i), counts[i]);
+        }
+        metrics.record(Operation.COUNT, start, counts.length);
+        return perPeriod;
+    }
+
+    /**
+     * Counts the events on the dates in [from, to) of each type, in O(log d) time per type
+     * as for {@link #countEvents(LocalDate, LocalDate, Set, Set)}.
+     *
+     * @param from The inclusive first date.
+     * @param to The exclusive last date.
+     * @return The number of events of each type, including the types without events.
+     */
+    public Map<EventType, Long> countEventsByType(LocalDate from, LocalDate to) {
+        long start = System.nanoTime();
+        Map<EventType, Long> byType = counters().countByType(from, to);
+        for (Event occurrence : occurrencesCounted(from, to, null, null)) {
+            byType.computeIfPresent(occurrence.getType(), (type, count) -> count + 1);
+        }
+        metrics.record(Operation.COUNT, start);
+        return byType;
+    }
+
+    /**
+     * Counts the events on the dates in [from, to) of each priority, in O(log d) time per priority
+     * as for {@link #countEvents(LocalDate, LocalDate, Set, Set)}.
+     *
+     * @param from The inclusive first date.
+     * @param to The exclusive last date.
+     * @return The number of events of each priority, including the priorities without events.
+     */
+    public Map<EventPrio, Long> countEventsByPriority(LocalDate from, LocalDate to) {
+        long start = System.nanoTime();
+        Map<EventPrio, Long> byPriority = counters().countByPriority(from, to);
+        for (Event occurrence : occurrencesCounted(from, to, null, null)) {
+            byPriority.computeIfPresent(occurrence.getPriority(), (priority, count) -> count + 1);
+        }
+        metrics.record(Operation.COUNT, start);
+        return byPriority;
+    }
+
+    /**
+     * Retrieves the counters of the events that take place once, counting the stored events
+     * the first time they are needed. Changes are held back while they are counted, so that
+     * no change is counted twice or missed.
+     */
+    private EventCounters counters() {
+        EventCounters counted = counters;
+        if (counted != null) {
+            return counted;
+        }
+        changes.writeLock().lock();
+        try {
+            if (counters == null) {
+                EventCounters built = new EventCounters();
+                built.putAll(store.all());
+                counters = built;
+            }
+            return counters;
+        } finally {
+            changes.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Expands the occurrences of recurring events on the dates in [from, to) of the given types and priorities.
+     */
+    private List<Event> occurrencesCounted(LocalDate from, LocalDate to, Set<EventType> types,
+                                           Set<EventPrio> priorities) {
+        if (!from.isBefore(to)) {
+            return new ArrayList<>();
+        }
+        List<Event> occurrences = seriesIndex.occurrencesBetween(from.atStartOfDay(), to.atStartOfDay());
+        occurrences.removeIf(event -> (types != null && !types.contains(event.getType()))
+                || (priorities != null && !priorities.contains(event.getPriority())));
+        return occurrences;
+    }
+
     /**
      * Searches for events by a specific date.
      * Returns a list of events matching the specified date, sorted by time.
+     * With the default store this walks the time index over the day, in O(log n + k) for k events that day.
      *
      * @param date The date to search for in event timestamps.
      * @return A list of events matching the specified date, sorted by time.
      */
     public List<Event> searchEventsByDay(LocalDate date) {
-        return events.values().stream()
-                .filter(event -> event.getDateTime().toLocalDate().equals(date))
-                .sorted(Comparator.comparing(event -> event.getDateTime().toLocalTime()))
-                .collect(Collectors.toList());
+        long start = System.nanoTime();
+        List<Event> events = queryCache.onDay(date,
+                () -> withSeries(store.onDay(date), occurrencesOn(seriesIndex, date), Event.CHRONOLOGICAL));
+        metrics.record(Operation.SEARCH_BY_DAY, start, events.size());
+        return events;
     }
 
 
     /**
      * Searches for events by a specific year.
-     * Returns a list of events matching the specified year, sorted by year.
+     * Returns a list of events matching the specified year, sorted by date and time.
      *
      * @param year The year to search for in event timestamps.
-     * @return A list of events matching the specified year, sorted by year.
+     * @return A list of events matching the specified year, sorted by date and time.
      */
     public List<Event> searchEventsByYear(int year) {
-        return events.values().stream()
-                .filter(event -> event.getDateTime().getYear() == year)
-                .sorted(Comparator.comparing(event -> event.getDateTime().getYear()))
-                .collect(Collectors.toList());
+        long start = System.nanoTime();
+        List<Event> events = queryCache.inYear(year,
+                () -> withSeries(store.inYear(year), occurrencesIn(seriesIndex, year), Event.CHRONOLOGICAL));
+        metrics.record(Operation.SEARCH_BY_YEAR, start, events.size());
+        return events;
     }
      /**
      * Retrieves a list of events on a specific date.
      * Returns a list of events on the specified date, sorted by time.
+     * Shares the indexed lookup of {@link #searchEventsByDay(LocalDate)}.
      *
      * @param date The date to filter events.
      * @return A list of events on the specified date, sorted by time.
      */
     public List<Event> viewEventsOn(LocalDate date) {
-        return events.values().stream()
-                .filter(event -> event.getDateTime().toLocalDate().equals(date))
-                .sorted(Comparator.comparing(event -> event.getDateTime().toLocalTime()))
-                .collect(Collectors.toList());
+        return searchEventsByDay(date);
     }
     /**
      * Searches for events by their types.
-     * Returns a list of events matching the specified types, sorted by time.
+     * Returns a list of events matching the specified types, sorted by date and time.
      *
      * @param types The set of event types to search for.
-     * @return A list of events matching the specified types, sorted by time.
+     * @return A list of events matching the specified types, sorted by date and time.
      */
     public List<Event> searchEventsByType(Set<EventType> types) {
-        List<Event> matchingEvents = new ArrayList<>();
-        for(EventType type : types) {
-            matchingEvents.addAll(
-                events.values().stream()
-                    .filter(event -> event.getType() == type)
-                    .sorted(Comparator.comparing(event -> event.getDateTime().toLocalTime()))
-                    .collect(Collectors.toList())
-            );
-        }
-        return matchingEvents;
+        long start = System.nanoTime();
+        List<Event> events = queryCache.ofTypes(types, () -> withSeries(store.ofTypes(types),
+                seriesIndex.matching(event -> types.contains(event.getType())), Event.CHRONOLOGICAL));
+        metrics.record(Operation.SEARCH_BY_TYPE, start, events.size());
+        return events;
+    }
+
+    /**
+     * Retrieves all events grouped by priority.
+     * Returns the HIGH, MID and LOW events in that order, each group sorted by date and time.
+     *
+     * @return A list of all events ordered by priority, then by date and time.
+     */
+    public List<Event> viewEventsByPriority() {
+        long start = System.nanoTime();
+        List<Event> events = withSeries(store.byPriority(), seriesByPriority(), BY_PRIORITY);
+        metrics.record(Operation.VIEW_BY_PRIORITY, start, events.size());
+        return events;
+    }
+
+    /**
+     * Streams all events in the calendar, sorted by date and time.
+     * Unlike {@link #viewAllEvents()} nothing is copied up front with the default store,
+     * so reading one page of a large calendar costs only that page.
+     * The stream must be consumed before the calendar is next changed.
+     *
+     * @return A stream of all events, sorted by date and time.
+     */
+    public Stream<Event> streamAllEvents() {
+        long start = System.nanoTime();
+        Stream<Event> events = withSeries(store.stream(), seriesIndex.all(), Event.CHRONOLOGICAL);
+        return metrics.recordOnClose(Operation.VIEW_ALL, start, events);
+    }
+
+    /**
+     * Streams the events whose date and time fall in [from, to), sorted by date and time.
+     *
+     * @param from The inclusive start of the range.
+     * @param to The exclusive end of the range.
+     * @return A stream of the events in the range.
+     */
+    public Stream<Event> streamEventsBetween(LocalDateTime from, LocalDateTime to) {
+        long start = System.nanoTime();
+        Stream<Event> events = withSeries(store.streamBetween(from, to), seriesIndex.occurrencesBetween(from, to),
+                Event.CHRONOLOGICAL);
+        return metrics.recordOnClose(Operation.EVENTS_BETWEEN, start, events);
+    }
+
+    /**
+     * Streams the events on a specific date, sorted by time: from the query cache if the search
+     * is cached, and straight from the indexes otherwise.
+     *
+     * @param date The date.
+     * @return A stream of the events on that date.
+     */
+    public Stream<Event> streamEventsOn(LocalDate date) {
+        long start = System.nanoTime();
+        List<Event> cached = queryCache.cachedOnDay(date);
+        Stream<Event> events = cached != null ? cached.stream()
+                : withSeries(store.streamOnDay(date), occurrencesOn(seriesIndex, date), Event.CHRONOLOGICAL);
+        return metrics.recordOnClose(Operation.SEARCH_BY_DAY, start, events);
+    }
+
+    /**
+     * Streams the events in a specific year, sorted by date and time: from the query cache if the
+     * search is cached, and straight from the indexes otherwise.
+     *
+     * @param year The year.
+     * @return A stream of the events in that year.
+     */
+    public Stream<Event> streamEventsByYear(int year) {
+        long start = System.nanoTime();
+        List<Event> cached = queryCache.cachedInYear(year);
+        Stream<Event> events = cached != null ? cached.stream()
+                : withSeries(store.streamInYear(year), occurrencesIn(seriesIndex, year), Event.CHRONOLOGICAL);
+        return metrics.recordOnClose(Operation.SEARCH_BY_YEAR, start, events);
+    }
+
+    /**
+     * Streams the events of any of the given types, sorted by date and time: from the query cache
+     * if the search is cached, and straight from the indexes otherwise.
+     *
+     * @param types The event types.
+     * @return A stream of the events of those types.
+     */
+    public Stream<Event> streamEventsByType(Set<EventType> types) {
+        long start = System.nanoTime();
+        List<Event> cached = queryCache.cachedOfTypes(types);
+        Stream<Event> events = cached != null ? cached.stream()
+                : withSeries(store.streamOfTypes(types),
+                        seriesIndex.matching(event -> types.contains(event.getType())), Event.CHRONOLOGICAL);
+        return metrics.recordOnClose(Operation.SEARCH_BY_TYPE, start, events);
+    }
+
+    /**
+     * Streams all events grouped by priority: HIGH, MID and LOW, each sorted by date and time.
+     *
+     * @return A stream of all events ordered by priority.
+     */
+    public Stream<Event> streamEventsByPriority() {
+        long start = System.nanoTime();
+        Stream<Event> events = withSeries(store.streamByPriority(), seriesByPriority(), BY_PRIORITY);
+        return metrics.recordOnClose(Operation.VIEW_BY_PRIORITY, start, events);
+    }
+
+    /**
+     * Streams the events whose description contains a keyword, ignoring case, sorted by date and time.
+     *
+     * @param keyword The keyword.
+     * @return A stream of the matching events.
+     */
+    public Stream<Event> streamEventsByDescription(String keyword) {
+        long start = System.nanoTime();
+        Stream<Event> events = withSeries(store.streamMatching(keyword), seriesIndex.matching(describedBy(keyword)),
+                Event.CHRONOLOGICAL);
+        return metrics.recordOnClose(Operation.SEARCH_BY_DESCRIPTION, start, events);
     }
 }
@@ -1,24 +1,54 @@
 package com.jonathan.calendar;
 
+import com.jonathan.calendar.io.EventListingWriter;
+import com.jonathan.calendar.metrics.OperationSummary;
 import com.jonathan.events.*;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
 
 public class CalendarManager {
+    private static final String DEFAULT_CALENDAR = "default";
+
+    private final CalendarWorkspace workspace = new CalendarWorkspace();
     private Calendar calendar;
+    private String calendarName = DEFAULT_CALENDAR;
     private Scanner scanner;
+    private EventListingWriter listing;
 
     /**
      * Constructs a CalendarManager object.
      * Initializes the calendar and scanner for user input.
      */
     public CalendarManager() {
-        this.calendar = new Calendar();
+        this(new Calendar());
+    }
+
+    /**
+     * Constructs a CalendarManager object for an existing calendar.
+     * The calendar is the first calendar of the manager's workspace; others can be opened beside it.
+     *
+     * @param calendar The calendar to manage.
+     */
+    public CalendarManager(Calendar calendar) {
+        this.calendar = calendar;
+        workspace.add(DEFAULT_CALENDAR, calendar);
+        calendar.getMetrics().register(DEFAULT_CALENDAR);
         this.scanner = new Scanner(System.in);
+        this.listing = new EventListingWriter(System.out);
+    }
+
+    /**
+     * Limits every listing to one page of events.
+     *
+     * @param offset The number of events skipped at the start of each listing.
+     * @param limit The greatest number of events shown per listing.
+     */
+    public void setPage(long offset, long limit) {
+        this.listing = new EventListingWriter(System.out, offset, limit);
     }
 
     /**
@@ -52,7 +82,11 @@ public class CalendarManager {
             System.out.println("9. Search events by priority");
             System.out.println("10. Save events");
             System.out.println("11. Load events");
-            System.out.println("12. Exit");
+            System.out.println("12. Find conflicts");
+            System.out.println("13. Switch calendar (current: " + calendarName + ")");
+            System.out.println("14. Search all calendars");
+            System.out.println("15. Show statistics");
+            System.out.println("16. Exit");
 
             String option = scanner.nextLine();
 
@@ -91,7 +125,26 @@ public class CalendarManager {
                     calendar.loadCalendar();
                     break;
                 case "12":
+                    findConflicts();
+                    break;
+                case "13":
+                    switchCalendar();
+                    break;
+                case "14":
+                    searchAllCalendars();
+                    break;
+                case "15":
+                    showStatistics();
+                    break;
+                case "16":
                     System.out.println("Exiting...");
+                    for (String name : workspace.names()) {
+                        try {
+                            workspace.get(name).closeJournal();
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        }
+                    }
                     scanner.close();
                     return;
                 default:
@@ -110,9 +163,164 @@ public class CalendarManager {
             return;
         }
 
-        event.setID(calendar.getIDNum());
-        calendar.scheduleEvent(event);
+        event.setID(calendar.allocateID());
+        List<Event> conflicts = calendar.scheduleEvent(event);
         System.out.println("Event scheduled successfully.");
+        reportConflicts(conflicts);
+    }
+
+    /**
+     * Warns about the events a scheduled or updated event overlaps.
+     *
+     * @param conflicts The overlapping events.
+     */
+    private void reportConflicts(List<Event> conflicts) {
+        if (conflicts.isEmpty()) {
+            return;
+        }
+        System.out.println("Warning: the event overlaps " + conflicts.size()
+                + (conflicts.size() == 1 ? " other event:" : " other events:"));
+        for (Event conflict : conflicts) {
+            System.out.println(conflict);
+        }
+    }
+
+    /**
+     * Lists the overlapping events between two dates based on user input.
+     */
+    private void findConflicts() {
+        if (calendar.numEvents() == 0) {
+            System.out.println("No events found.");
+            return;
+        }
+
+        LocalDate from = parseOptionalDate("First date (in the format dd-MM-yyyy) (Leave blank to cancel):");
+        if (from == null) {
+            return;
+        }
+        LocalDate to = parseOptionalDate("Last date (in the format dd-MM-yyyy) (Leave blank to cancel):");
+        if (to == null) {
+            return;
+        }
+
+        List<Conflict> conflicts = calendar.findConflicts(from.atStartOfDay(), to.plusDays(1).atStartOfDay());
+        if (conflicts.isEmpty()) {
+            System.out.println("No conflicts found.");
+            return;
+        }
+        System.out.println("Conflicts found:");
+        for (Conflict conflict : conflicts) {
+            System.out.println(conflict);
+        }
+    }
+
+    /**
+     * Asks for a date until a valid one is entered or the input is left blank.
+     *
+     * @param prompt The question to ask.
+     * @return The entered date, or null if the input was left blank.
+     */
+    private LocalDate parseOptionalDate(String prompt) {
+        while (true) {
+            System.out.println(prompt);
+            String dateString = scanner.nextLine().trim();
+            if (dateString.isBlank()) {
+                return null;
+            }
+            try {
+                return LocalDate.parse(dateString, Event.DATE_FORMAT);
+            } catch (DateTimeParseException e) {
+                System.out.println("Invalid date. Please try again.");
+            }
+        }
+    }
+
+    /**
+     * Switches to another calendar of the workspace based on user input, creating it if it does not exist yet.
+     */
+    private void switchCalendar() {
+        System.out.println("Calendars: " + String.join(", ", workspace.names()));
+        System.out.println("Enter the calendar name (Leave blank to cancel):");
+        String name = scanner.nextLine().trim();
+        if (name.isBlank()) {
+            return;
+        }
+
+        boolean exists = workspace.get(name) != null;
+        calendar = workspace.open(name);
+        calendarName = name;
+        if (!exists) {
+            calendar.getMetrics().register(name);
+        }
+        System.out.println(exists ? "Switched to calendar '" + name + "'." : "Created calendar '" + name + "'.");
+    }
+
+    /**
+     * Shows how often each operation on the current calendar ran, how long it took and how many
+     * events it returned, along with the bytes saved and loaded and the query cache counters.
+     */
+    private void showStatistics() {
+        Map<String, OperationSummary> operations = calendar.getMetrics().getOperations();
+        System.out.println("Statistics of calendar '" + calendarName + "':");
+        if (operations.isEmpty()) {
+            System.out.println("No operations yet.");
+        }
+        for (Map.Entry<String, OperationSummary> entry : operations.entrySet()) {
+            System.out.println(entry.getKey() + ": " + entry.getValue());
+        }
+        System.out.println("Bytes written: " + calendar.getMetrics().getBytesWritten()
+                + ", bytes read: " + calendar.getMetrics().getBytesRead());
+        System.out.println(calendar.getQueryCache());
+    }
+
+    /**
+     * Search the events of every calendar in the workspace based on user input.
+     */
+    private void searchAllCalendars() {
+        System.out.println("Search all calendars by DATE, TYPE or DESCRIPTION (Leave blank to cancel):");
+        String by = scanner.nextLine().trim().toUpperCase();
+        switch (by) {
+            case "":
+                return;
+            case "DATE": {
+                LocalDate date = parseOptionalDate("Enter the date (in the format dd-MM-yyyy) (Leave blank to cancel):");
+                if (date != null) {
+                    listing.write("Events in all calendars on the date '" + date.format(Event.DATE_FORMAT) + "':",
+                            workspace.searchEventsByDay(date).stream(), "No events found on this date.");
+                }
+                return;
+            }
+            case "TYPE": {
+                System.out.println("Enter the event types separated by commas (MEETING,APPOINTMENT,TASK,WORK,SCHOOL,OTHER) (Leave blank to cancel):");
+                Set<EventType> types = EnumSet.noneOf(EventType.class);
+                for (String type : scanner.nextLine().toUpperCase().split(",")) {
+                    try {
+                        if (!type.isBlank()) {
+                            types.add(EventType.valueOf(type.trim()));
+                        }
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("Invalid event type: " + type);
+                    }
+                }
+                if (!types.isEmpty()) {
+                    listing.write("Events in all calendars of the given types:",
+                            workspace.searchEventsByType(types).stream(), "No events of the given types found.");
+                }
+                return;
+            }
+            case "DESCRIPTION": {
+                System.out.println("Enter the keyword to search by description (Leave blank to cancel):");
+                String keyword = scanner.nextLine().trim();
+                if (!keyword.isBlank()) {
+                    listing.write("Events in all calendars with the description keyword '" + keyword + "':",
+                            workspace.searchEventsByDescription(keyword).stream(),
+                            "No events found with the given description keyword.");
+                }
+                return;
+            }
+            default:
+                System.out.println("Invalid option. Please try again.");
+        }
     }
 
     /**
@@ -159,15 +367,8 @@ public class CalendarManager {
             return;
         }
 
-        List<Event> events = calendar.searchEventsByDescription(keyword);
-        if (events.isEmpty()) {
-            System.out.println("No events found with the given description keyword.");
-        } else {
-            System.out.println("Events found with the description keyword '" + keyword + "':");
-            for (Event event : events) {
-                System.out.println(event);
-            }
-        }
+        listing.write("Events found with the description keyword '" + keyword + "':",
+                calendar.streamEventsByDescription(keyword), "No events found with the given description keyword.");
     }
 
     /**
@@ -193,15 +394,8 @@ public class CalendarManager {
             return;
         }
 
-        List<Event> events = calendar.searchEventsByYear(year);
-        if (events.isEmpty()) {
-            System.out.println("No events found in the given year.");
-        } else {
-            System.out.println("Events found in the year " + year + ":");
-            for (Event event : events) {
-                System.out.println(event);
-            }
-        }
+        listing.write("Events found in the year " + year + ":",
+                calendar.streamEventsByYear(year), "No events found in the given year.");
     }
 
     /**
@@ -237,8 +431,9 @@ public class CalendarManager {
             }
 
             newEventDetails.setID(oldEvent.getID()); // Ensure ID remains the same
-            calendar.updateEvent(newEventDetails);
+            List<Event> conflicts = calendar.updateEvent(newEventDetails);
             System.out.println("Event updated successfully.");
+            reportConflicts(conflicts);
         }
     }
 
@@ -246,15 +441,7 @@ public class CalendarManager {
      * View all events in the calendar.
      */
     private void viewAllEvents() {
-        if (calendar.numEvents() == 0) {
-            System.out.println("No events found.");
-        } else {
-            List<Event> events = calendar.viewAllEvents();
-            System.out.println("All Events:");
-            for (Event event : events) {
-                System.out.println(event);
-            }
-        }
+        listing.write("All Events:", calendar.streamAllEvents(), "No events found.");
     }
 
     /**
@@ -269,21 +456,14 @@ public class CalendarManager {
 
         LocalDate date;
         try {
-            date = LocalDate.parse(dateString, DateTimeFormatter.ofPattern("dd-MM-yyyy"));
+            date = LocalDate.parse(dateString, Event.DATE_FORMAT);
         } catch (DateTimeParseException e) {
             System.out.println("Invalid date. Please try again.");
             return;
         }
 
-        List<Event> events = calendar.viewEventsOn(date);
-        if (events.isEmpty()) {
-            System.out.println("No events found on this date.");
-        } else {
-            System.out.println("Events on the date '" + dateString + "':");
-            for (Event event : events) {
-                System.out.println(event);
-            }
-        }
+        listing.write("Events on the date '" + dateString + "':",
+                calendar.streamEventsOn(date), "No events found on this date.");
     }
 
     /**
@@ -316,15 +496,8 @@ public class CalendarManager {
             return;
         }
 
-        List<Event> events = calendar.searchEventsByType(eventTypes);
-        if (events.isEmpty()) {
-            System.out.println("No events of the given types found.");
-        } else {
-            System.out.println("Events of the given types:");
-            for (Event event : events) {
-                System.out.println(event);
-            }
-        }
+        listing.write("Events of the given types:",
+                calendar.streamEventsByType(eventTypes), "No events of the given types found.");
     }
 
     /**
@@ -362,7 +535,7 @@ public class CalendarManager {
                 return null;
             }
             try {
-                date = LocalDate.parse(dateString, DateTimeFormatter.ofPattern("dd-MM-yyyy"));
+                date = LocalDate.parse(dateString, Event.DATE_FORMAT);
                 break;
             } catch (DateTimeParseException e) {
                 System.out.println("Invalid date. Please try again.");
@@ -377,7 +550,7 @@ public class CalendarManager {
                 return null;
             }
             try {
-                time = LocalTime.parse(timeString, DateTimeFormatter.ofPattern("HH:mm"));
+                time = LocalTime.parse(timeString, Event.TIME_FORMAT);
                 break;
             } catch (DateTimeParseException e) {
                 System.out.println("Invalid time. Please try again.");
@@ -400,8 +573,96 @@ public class CalendarManager {
         }
 
         LocalDateTime dateTime = LocalDateTime.of(date, time);
-        calendar.nextID();
-        return new Event(description, type, dateTime, prio);
+        Event event = new Event(description, type, dateTime, prio);
+        int minutes = parseOptionalCount("Duration in minutes (Leave blank for none):", 0);
+        if (minutes > 0) {
+            event.setDuration(Duration.ofMinutes(minutes));
+        }
+        event.setRecurrence(parseRecurrence());
+        return event;
+    }
+
+    /**
+     * Parses user input describing how an event repeats.
+     * Every question may be left blank: the event then takes place once, repeats every
+     * period, repeats without limit, never ends or has no exceptions, respectively.
+     *
+     * @return The parsed recurrence, or null if the event takes place once.
+     */
+    private Recurrence parseRecurrence() {
+        Recurrence.Frequency frequency;
+        while (true) {
+            System.out.println("Repeats (DAILY, WEEKLY, MONTHLY, YEARLY) (Leave blank for a one-time event):");
+            String frequencyString = scanner.nextLine().trim();
+            if (frequencyString.isBlank()) {
+                return null;
+            }
+            try {
+                frequency = Recurrence.Frequency.valueOf(frequencyString.toUpperCase());
+                break;
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid frequency. Please try again.");
+            }
+        }
+
+        int interval = parseOptionalCount("Repeat every how many periods? (Leave blank for every period):", 1);
+        int count = parseOptionalCount("Number of occurrences (Leave blank for no limit):", 0);
+
+        LocalDateTime until = null;
+        while (true) {
+            System.out.println("Last date (in the format dd-MM-yyyy) (Leave blank for no end):");
+            String dateString = scanner.nextLine().trim();
+            if (dateString.isBlank()) {
+                break;
+            }
+            try {
+                until = LocalDate.parse(dateString, Event.DATE_FORMAT).atTime(LocalTime.MAX);
+                break;
+            } catch (DateTimeParseException e) {
+                System.out.println("Invalid date. Please try again.");
+            }
+        }
+
+        List<LocalDate> exceptions = new ArrayList<>();
+        while (true) {
+            System.out.println("Dates to skip, separated by commas (in the format dd-MM-yyyy) (Leave blank for none):");
+            String datesString = scanner.nextLine().trim();
+            if (datesString.isBlank()) {
+                break;
+            }
+            try {
+                for (String dateString : datesString.split(",")) {
+                    exceptions.add(LocalDate.parse(dateString.trim(), Event.DATE_FORMAT));
+                }
+                break;
+            } catch (DateTimeParseException e) {
+                exceptions.clear();
+                System.out.println("Invalid date. Please try again.");
+            }
+        }
+        return new Recurrence(frequency, interval, count, until, exceptions);
+    }
+
+    /**
+     * Asks for a positive number until one is entered or the input is left blank.
+     *
+     * @param prompt The question to ask.
+     * @param blank The value of a blank answer.
+     * @return The entered number, or the blank value.
+     */
+    private int parseOptionalCount(String prompt, int blank) {
+        while (true) {
+            System.out.println(prompt);
+            String line = scanner.nextLine().trim();
+            if (line.isBlank()) {
+                return blank;
+            }
+            Integer number = safeParseInt(line);
+            if (number != null && number > 0) {
+                return number;
+            }
+            System.out.println("Invalid number. Please enter a positive number.");
+        }
     }
 
     /**
@@ -413,14 +674,7 @@ public class CalendarManager {
             return;
         }
 
-        List<Event> events = calendar.viewAllEvents();
-        // Sort events by priority
-        events.sort((e1, e2) -> e1.getPriority().compareTo(e2.getPriority()));
-
-        System.out.println("Events sorted by priority:");
-        for (Event event : events) {
-            System.out.println(event);
-        }
+        listing.write("Events sorted by priority:", calendar.streamEventsByPriority(), "No events found.");
     }
 
     public void setEvents(List<Event> demoEvents) {
@@ -0,0 +1,161 @@
+package com.jonathan.calendar;
+
+import com.jonathan.calendar.store.EventInterner;
+import com.jonathan.calendar.store.EventMerge;
+import com.jonathan.events.Event;
+import com.jonathan.events.EventType;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A set of named calendars open at the same time.
+ * Every calendar in the workspace shares one {@link EventInterner}, so descriptions and
+ * date-times that recur across calendars are held once however many calendars are loaded.
+ *
+ * <p>Queries across calendars run on each calendar in parallel, each using that calendar's
+ * own indexes, and the per-calendar results are merged in time order. Adding, replacing and
+ * removing calendars is thread-safe; a single calendar must not be changed while a query
+ * across the workspace is running, unless it was created with {@link Calendar#concurrent()}.</p>
+ */
+public class CalendarWorkspace {
+    private final Map<String, Calendar> calendars = new ConcurrentHashMap<>();
+    private final EventInterner interner = new EventInterner();
+
+    /**
+     * Retrieves the interner shared by the calendars of this workspace.
+     *
+     * @return The shared interner.
+     */
+    public EventInterner getInterner() {
+        return interner;
+    }
+
+    /**
+     * Adds a calendar under a name, replacing any calendar with that name.
+     * Events the calendar schedules or loads from then on are interned.
+     *
+     * @param name The name of the calendar.
+     * @param calendar The calendar.
+     * @return The replaced calendar, or null if the name was not in use.
+     */
+    public Calendar add(String name, Calendar calendar) {
+        calendar.setInterner(interner);
+        return calendars.put(name, calendar);
+    }
+
+    /**
+     * Retrieves a calendar by its name, creating an empty one if the name is not in use.
+     *
+     * @param name The name of the calendar.
+     * @return The calendar with that name.
+     */
+    public Calendar open(String name) {
+        return calendars.computeIfAbsent(name, key -> {
+            Calendar calendar = new Calendar();
+            calendar.setInterner(interner);
+            return calendar;
+        });
+    }
+
+    /**
+     * Loads a calendar file into a new calendar and adds it under a name,
+     * replacing any calendar with that name.
+     *
+     * @param name The name of the calendar.
+     * @param path The file to read.
+     * @param mode Whether to decode all events now or map the file and decode them on demand.
+     * @return The loaded calendar.
+     * @throws IOException If the file cannot be read or is not a calendar file.
+     */
+    public Calendar load(String name, Path path, Calendar.LoadMode mode) throws IOException {
+        Calendar calendar = new Calendar();
+        calendar.setInterner(interner);
+        calendar.loadCalendar(path, mode);
+        calendars.put(name, calendar);
+        return calendar;
+    }
+
+    /**
+     * Retrieves a calendar by its name.
+     *
+     * @param name The name of the calendar.
+     * @return The calendar, or null if no calendar has that name.
+     */
+    public Calendar get(String name) {
+        return calendars.get(name);
+    }
+
+    /**
+     * Removes a calendar from the workspace.
+     * Values it interned stay in the shared interner.
+     *
+     * @param name The name of the calendar.
+     * @return The removed calendar, or null if no calendar has that name.
+     */
+    public Calendar remove(String name) {
+        return calendars.remove(name);
+    }
+
+    /**
+     * Retrieves the names of the calendars in the workspace.
+     *
+     * @return The names, sorted.
+     */
+    public SortedSet<String> names() {
+        return new TreeSet<>(calendars.keySet());
+    }
+
+    /**
+     * Retrieves the number of calendars in the workspace.
+     *
+     * @return The number of calendars.
+     */
+    public int size() {
+        return calendars.size();
+    }
+
+    /**
+     * Searches every calendar for the events on a date.
+     *
+     * @param date The date.
+     * @return The events of all calendars on that date, sorted by date and time.
+     */
+    public List<Event> searchEventsByDay(LocalDate date) {
+        return acrossCalendars(calendar -> calendar.searchEventsByDay(date));
+    }
+
+    /**
+     * Searches every calendar for events of the given types.
+     *
+     * @param types The event types.
+     * @return The events of all calendars of those types, sorted by date and time.
+     */
+    public List<Event> searchEventsByType(Set<EventType> types) {
+        return acrossCalendars(calendar -> calendar.searchEventsByType(types));
+    }
+
+    /**
+     * Searches every calendar for events whose description contains a keyword, ignoring case.
+     *
+     * @param keyword The keyword.
+     * @return The matching events of all calendars, sorted by date and time.
+     */
+    public List<Event> searchEventsByDescription(String keyword) {
+        return acrossCalendars(calendar -> calendar.searchEventsByDescription(keyword));
+    }
+
+    /**
+     * Runs a query on every calendar in parallel and merges the sorted results.
+     */
+    private List<Event> acrossCalendars(Function<Calendar, List<Event>> query) {
+        List<List<Event>> results = new ArrayList<>(calendars.values()).parallelStream()
+                .map(query)
+                .collect(Collectors.toList());
+        return EventMerge.mergeToList(results, Event.CHRONOLOGICAL);
+    }
+}
@@ -0,0 +1,70 @@
+package com.jonathan.calendar;
+
+import com.jonathan.events.Event;
+import java.time.LocalDateTime;
+
+/**
+ * Two events whose time spans overlap.
+ * Occurrences of recurring events take part as the copies expanded for the conflicting date.
+ */
+public final class Conflict {
+    private final Event first;
+    private final Event second;
+
+    /**
+     * Constructs a conflict between two overlapping events.
+     *
+     * @param first The event that starts first, or the one with the lower ID if both start together.
+     * @param second The other event.
+     */
+    Conflict(Event first, Event second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    /**
+     * Retrieves the event that starts first.
+     *
+     * @return The earlier event.
+     */
+    public Event getFirst() {
+        return first;
+    }
+
+    /**
+     * Retrieves the event that starts second.
+     *
+     * @return The later event.
+     */
+    public Event getSecond() {
+        return second;
+    }
+
+    /**
+     * Retrieves the start of the overlap.
+     *
+     * @return The date and time at which both events are taking place.
+     */
+    public LocalDateTime getStart() {
+        return second.getDateTime();
+    }
+
+    /**
+     * Retrieves the exclusive end of the overlap.
+     *
+     * @return The date and time at which the first of the two events ends.
+     */
+    public LocalDateTime getEnd() {
+        return first.getEnd().isBefore(second.getEnd()) ? first.getEnd() : second.getEnd();
+    }
+
+    /**
+     * Returns a string representation of the conflict.
+     *
+     * @return Both events on one line each.
+     */
+    @Override
+    public String toString() {
+        return "Conflict:" + System.lineSeparator() + "  " + first + System.lineSeparator() + "  " + second;
+    }
+}
@@ -0,0 +1,159 @@
+package com.jonathan.calendar;
+
+import com.jonathan.calendar.store.EventMerge;
+import com.jonathan.events.Event;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Finds the times at which every one of several calendars is free.
+ * Only the events overlapping the searched window are read from each calendar, already in
+ * time order, and the calendars are k-way merged into a single sweep over the busy periods,
+ * so a search over c calendars with k events in the window costs O(k log c) after the lookups.
+ * No calendar's full event set is copied or sorted. Events without a duration take up no time,
+ * so they never make a calendar busy.
+ */
+public class FreeSlotFinder {
+    private final List<Calendar> calendars;
+
+    /**
+     * A free period, from its start to its exclusive end.
+     */
+    public static final class Slot {
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+
+        Slot(LocalDateTime start, LocalDateTime end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Retrieves the start of the free period.
+         *
+         * @return The first free date and time.
+         */
+        public LocalDateTime getStart() {
+            return start;
+        }
+
+        /**
+         * Retrieves the exclusive end of the free period.
+         *
+         * @return The date and time at which a calendar is busy again, or the end of the window.
+         */
+        public LocalDateTime getEnd() {
+            return end;
+        }
+
+        /**
+         * Computes the length of the free period.
+         *
+         * @return The time between the start and the end.
+         */
+        public Duration getDuration() {
+            return Duration.between(start, end);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Slot && start.equals(((Slot) other).start) && end.equals(((Slot) other).end);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return start.format(Event.DATE_FORMAT) + " " + start.format(Event.TIME_FORMAT) + " - "
+                    + end.format(Event.DATE_FORMAT) + " " + end.format(Event.TIME_FORMAT);
+        }
+    }
+
+    /**
+     * Constructs a finder over the given calendars.
+     *
+     * @param calendars The calendars that must all be free.
+     */
+    public FreeSlotFinder(Collection<Calendar> calendars) {
+        this.calendars = new ArrayList<>(calendars);
+    }
+
+    /**
+     * Finds every free period in a window that is at least as long as the given duration.
+     *
+     * @param from The inclusive start of the window.
+     * @param to The exclusive end of the window.
+     * @param duration The shortest period worth reporting.
+     * @return The free periods, in time order. Each is as long as possible within the window.
+     */
+    public List<Slot> freeSlots(LocalDateTime from, LocalDateTime to, Duration duration) {
+        List<Slot> slots = new ArrayList<>();
+        sweep(from, to, duration, slots, Integer.MAX_VALUE);
+        return slots;
+    }
+
+    /**
+     * Finds the first free period in a window that is at least as long as the given duration.
+     * The sweep stops at the first such period, so later events are never merged.
+     *
+     * @param from The inclusive start of the window.
+     * @param to The exclusive end of the window.
+     * @param duration The length of time needed.
+     * @return The first slot of exactly that duration at which every calendar is free, or null if there is none.
+     */
+    public Slot firstFreeSlot(LocalDateTime from, LocalDateTime to, Duration duration) {
+        List<Slot> slots = new ArrayList<>(1);
+        sweep(from, to, duration, slots, 1);
+        if (slots.isEmpty()) {
+            return null;
+        }
+        LocalDateTime start = slots.get(0).getStart();
+        return new Slot(start, start.plus(duration));
+    }
+
+    /**
+     * Walks the merged busy periods in start order, keeping the latest end seen so far.
+     * A gap between that end and the next start is a period in which every calendar is free.
+     */
+    private void sweep(LocalDateTime from, LocalDateTime to, Duration duration, List<Slot> slots, int limit) {
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("Slot duration must be positive: " + duration);
+        }
+        if (!from.isBefore(to)) {
+            return;
+        }
+        List<Iterator<Event>> busy = new ArrayList<>(calendars.size());
+        for (Calendar calendar : calendars) {
+            busy.add(calendar.eventsOverlapping(from, to).iterator());
+        }
+        Iterator<Event> merged = EventMerge.merge(busy, Event.CHRONOLOGICAL);
+        LocalDateTime free = from;
+        while (merged.hasNext() && free.isBefore(to)) {
+            Event event = merged.next();
+            if (event.getDateTime().isAfter(free)) {
+                LocalDateTime end = event.getDateTime().isBefore(to) ? event.getDateTime() : to;
+                if (add(free, end, duration, slots) && slots.size() >= limit) {
+                    return;
+                }
+            }
+            if (event.getEnd().isAfter(free)) {
+                free = event.getEnd();
+            }
+        }
+        if (free.isBefore(to)) {
+            add(free, to, duration, slots);
+        }
+    }
+
+    private static boolean add(LocalDateTime start, LocalDateTime end, Duration duration, List<Slot> slots) {
+        if (Duration.between(start, end).compareTo(duration) < 0) {
+            return false;
+        }
+        slots.add(new Slot(start, end));
+        return true;
+    }
+}
@@ -0,0 +1,649 @@
+package com.jonathan.calendar.io;
+
+import com.jonathan.events.*;
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Reads and writes the binary calendar file format.
+ *
+ * <p>A file starts with a fixed header, followed by a string table holding every
+ * distinct description once, the event records sorted by date and time, and an index
+ * of (ID, record) pairs sorted by ID. If any event has a duration, flag 2 is set and a
+ * durations section sorted by ID follows the ID index. Recurring events are not among the
+ * records; if there are any, flag 1 is set and they follow in a series section.
+ * All numbers are big-endian.</p>
+ *
+ * <pre>
+ * header   magic "JCAL", u16 version, u16 flags, i32 event count, i32 last ID,
+ *          i32 string count, i32 reserved, i64 string offsets, i64 strings,
+ *          i64 records, i64 ID index
+ * offsets  i32 per string, relative to the start of the strings section
+ * strings  i32 byte length + UTF-8 bytes per string
+ * records  i64 epoch minute (UTC), i32 ID, i32 string number, i8 type, i8 priority
+ * ID index i32 ID, i32 record number, per event
+ * durations i32 entry count, then per event with a duration: i32 ID, i32 minutes
+ * series   i32 series count, then per series: i32 ID, i64 epoch minute, i32 string number,
+ *          i8 type, i8 priority, and its recurrence: i8 frequency, i32 interval, i32 count,
+ *          i64 until epoch minute (or i64 min for none), i32 exception count, i64 epoch day per exception
+ * </pre>
+ *
+ * <p>Date-times are stored with minute precision, matching what the calendar accepts
+ * as input. Types and priorities are stored as their enum ordinals, so the order of the
+ * constants in {@link EventType} and {@link EventPrio} is part of the format. Missing
+ * descriptions, types and priorities are stored as -1.</p>
+ *
+ * <p>Sections are addressed with 32-bit positions once mapped, which limits a file to 2 GiB.
+ * Files written by earlier versions with Java serialization are recognized by their
+ * stream header and still load.</p>
+ */
+public final class CalendarFile {
+    static final int MAGIC = 0x4A43414C;
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 56;
+    static final int RECORD_SIZE = 18;
+    static final int ID_ENTRY_SIZE = 8;
+    static final short FLAG_SERIES = 1;
+    static final short FLAG_DURATIONS = 2;
+    static final int DURATION_ENTRY_SIZE = 8;
+
+    private static final short SERIALIZATION_MAGIC = (short) 0xACED;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private CalendarFile() {
+    }
+
+    /**
+     * The events and ID counter read from a calendar file.
+     */
+    public static final class Contents {
+        private final List<Event> events;
+        private final int lastID;
+
+        Contents(List<Event> events, int lastID) {
+            this.events = events;
+            this.lastID = lastID;
+        }
+
+        /**
+         * Retrieves the events of the calendar, sorted by date and time for binary files.
+         *
+         * @return The events read from the file.
+         */
+        public List<Event> getEvents() {
+            return events;
+        }
+
+        /**
+         * Retrieves the last ID handed out by the calendar that was saved.
+         * Legacy files do not record it, so the highest stored ID is used instead.
+         *
+         * @return The last assigned event ID.
+         */
+        public int getLastID() {
+            return lastID;
+        }
+    }
+
+    /**
+     * Writes events to a calendar file.
+     * The file is written next to its destination and moved into place once complete,
+     * so an interrupted save never leaves a truncated calendar behind.
+     *
+     * @param path The file to write.
+     * @param all The events to write, sorted by date and time. Recurring events go to the series section.
+     * @param lastID The last ID handed out by the calendar.
+     * @return The number of bytes written.
+     * @throws IOException If the file cannot be written.
+     */
+    public static long write(Path path, Collection<Event> all, int lastID) throws IOException {
+        return write(path, all, lastID, true);
+    }
+
+    /**
+     * Writes events to a calendar file, optionally without forcing it to disk.
+     * Files that only cache data held elsewhere, and are rebuilt if lost, can skip the force.
+     *
+     * @param path The file to write.
+     * @param all The events to write, sorted by date and time. Recurring events go to the series section.
+     * @param lastID The last ID handed out by the calendar.
+     * @param force Whether to force the file to disk before moving it into place.
+     * @return The number of bytes written.
+     * @throws IOException If the file cannot be written.
+     */
+    public static long write(Path path, Collection<Event> all, int lastID, boolean force) throws IOException {
+        List<Event> events = new ArrayList<>(all.size());
+        List<Event> series = new ArrayList<>();
+        for (Event event : all) {
+            (event.getRecurrence() == null ? events : series).add(event);
+        }
+        Map<String, Integer> stringNumbers = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        long stringsSize = 0;
+        for (Event event : all) {
+            String description = event.getDescription();
+            if (description != null && !stringNumbers.containsKey(description)) {
+                byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+                stringNumbers.put(description, strings.size());
+                strings.add(bytes);
+                stringsSize += Integer.BYTES + bytes.length;
+            }
+        }
+
+        int count = events.size();
+        long offsetsStart = HEADER_SIZE;
+        long stringsStart = offsetsStart + (long) strings.size() * Integer.BYTES;
+        long recordsStart = stringsStart + stringsSize;
+        long idIndexStart = recordsStart + (long) count * RECORD_SIZE;
+        long fileSize = idIndexStart + (long) count * ID_ENTRY_SIZE;
+        List<Event> timed = new ArrayList<>();
+        for (Event event : all) {
+            if (event.hasDuration()) {
+                timed.add(event);
+            }
+        }
+        timed.sort(Comparator.comparingInt(Event::getID));
+        if (!timed.isEmpty()) {
+            fileSize += Integer.BYTES + (long) timed.size() * DURATION_ENTRY_SIZE;
+        }
+        List<byte[]> seriesRecords = new ArrayList<>(series.size());
+        for (Event event : series) {
+            Recurrence recurrence = event.getRecurrence();
+            ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE + recurrenceSize(recurrence));
+            record.putInt(event.getID());
+            record.putLong(toEpochMinute(event.getDateTime()));
+            record.putInt(event.getDescription() == null ? -1 : stringNumbers.get(event.getDescription()));
+            record.put(event.getType() == null ? -1 : (byte) event.getType().ordinal());
+            record.put(event.getPriority() == null ? -1 : (byte) event.getPriority().ordinal());
+            putRecurrence(record, recurrence);
+            seriesRecords.add(record.array());
+            fileSize += record.capacity();
+        }
+        if (!series.isEmpty()) {
+            fileSize += Integer.BYTES;
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ChannelWriter out = new ChannelWriter(channel);
+            out.putInt(MAGIC);
+            out.putShort(VERSION);
+            out.putShort((short) ((series.isEmpty() ? 0 : FLAG_SERIES) | (timed.isEmpty() ? 0 : FLAG_DURATIONS)));
+            out.putInt(count);
+            out.putInt(lastID);
+            out.putInt(strings.size());
+            out.putInt(0);
+            out.putLong(offsetsStart);
+            out.putLong(stringsStart);
+            out.putLong(recordsStart);
+            out.putLong(idIndexStart);
+
+            int offset = 0;
+            for (byte[] bytes : strings) {
+                out.putInt(offset);
+                offset += Integer.BYTES + bytes.length;
+            }
+            for (byte[] bytes : strings) {
+                out.putInt(bytes.length);
+                out.put(bytes);
+            }
+
+            long[] idSlots = new long[count];
+            int slot = 0;
+            for (Event event : events) {
+                String description = event.getDescription();
+                out.putLong(toEpochMinute(event.getDateTime()));
+                out.putInt(event.getID());
+                out.putInt(description == null ? -1 : stringNumbers.get(description));
+                out.putByte(event.getType() == null ? -1 : (byte) event.getType().ordinal());
+                out.putByte(event.getPriority() == null ? -1 : (byte) event.getPriority().ordinal());
+                idSlots[slot] = ((long) event.getID() << 32) | slot;
+                slot++;
+            }
+            Arrays.sort(idSlots);
+            for (long idSlot : idSlots) {
+                out.putLong(idSlot);
+            }
+            if (!timed.isEmpty()) {
+                out.putInt(timed.size());
+                for (Event event : timed) {
+                    out.putInt(event.getID());
+                    out.putInt(durationMinutes(event));
+                }
+            }
+            if (!series.isEmpty()) {
+                out.putInt(series.size());
+                for (byte[] record : seriesRecords) {
+                    out.put(record);
+                }
+            }
+            out.flush();
+            if (force) {
+                channel.force(false);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return fileSize;
+    }
+
+    /**
+     * Reads a calendar file, in either the binary or the legacy serialized format.
+     *
+     * @param path The file to read.
+     * @return The events and ID counter stored in the file.
+     * @throws IOException If the file cannot be read or is not a calendar file.
+     */
+    public static Contents read(Path path) throws IOException {
+        if (isSerialized(path)) {
+            return readLegacy(path);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return readBinary(buffer);
+        }
+    }
+
+    /**
+     * Checks whether a file was saved with Java serialization by an earlier version.
+     *
+     * @param path The file to check.
+     * @return True if the file starts with a Java serialization stream header.
+     * @throws IOException If the file cannot be read.
+     */
+    public static boolean isSerialized(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(Short.BYTES);
+            return channel.read(head, 0) == Short.BYTES && head.getShort(0) == SERIALIZATION_MAGIC;
+        }
+    }
+
+    private static Contents readBinary(ByteBuffer buffer) throws IOException {
+        Header header = Header.read(buffer);
+        String[] strings = new String[header.stringCount];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = header.string(buffer, i);
+        }
+
+        List<Event> events = new ArrayList<>(header.eventCount);
+        int maxID = header.lastID;
+        for (int slot = 0; slot < header.eventCount; slot++) {
+            int position = header.recordPosition(slot);
+            int description = buffer.getInt(position + 12);
+            Event event = new Event(description < 0 ? null : strings[description],
+                    decodeType(buffer.get(position + 16)),
+                    fromEpochMinute(buffer.getLong(position)),
+                    decodePrio(buffer.get(position + 17)));
+            event.setID(buffer.getInt(position + 8));
+            event.setDuration(header.duration(buffer, event.getID()));
+            maxID = Math.max(maxID, event.getID());
+            events.add(event);
+        }
+        for (Event series : readSeries(buffer, header)) {
+            maxID = Math.max(maxID, series.getID());
+            events.add(series);
+        }
+        return new Contents(events, maxID);
+    }
+
+    /**
+     * Reads only the recurring events of a binary calendar file.
+     *
+     * @param path The file to read.
+     * @return The recurring events, in the order they were written.
+     * @throws IOException If the file cannot be read or is not a binary calendar file.
+     */
+    public static List<Event> readSeries(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return readSeries(buffer, Header.read(buffer));
+        }
+    }
+
+    private static List<Event> readSeries(ByteBuffer buffer, Header header) throws IOException {
+        List<Event> series = new ArrayList<>();
+        if ((header.flags & FLAG_SERIES) == 0) {
+            return series;
+        }
+        ByteBuffer section = buffer.duplicate().position(header.seriesStart());
+        try {
+            int count = section.getInt();
+            for (int i = 0; i < count; i++) {
+                int id = section.getInt();
+                long epochMinute = section.getLong();
+                int description = section.getInt();
+                Event event = new Event(description < 0 ? null : header.string(buffer, description),
+                        decodeType(section.get()), fromEpochMinute(epochMinute), decodePrio(section.get()));
+                event.setID(id);
+                event.setDuration(header.duration(buffer, id));
+                event.setRecurrence(getRecurrence(section));
+                series.add(event);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Truncated calendar file", e);
+        }
+        return series;
+    }
+
+    /**
+     * Converts the duration of an event to whole minutes for storage.
+     *
+     * @param event The event.
+     * @return The duration in minutes, or -1 if the event has none.
+     */
+    static int durationMinutes(Event event) {
+        return event.hasDuration() ? (int) Math.min(Integer.MAX_VALUE, event.getDuration().toMinutes()) : -1;
+    }
+
+    /**
+     * Converts a stored duration back.
+     *
+     * @param minutes The duration in minutes, or a negative number for none.
+     * @return The duration, or null if none was stored.
+     */
+    static Duration fromMinutes(int minutes) {
+        return minutes < 0 ? null : Duration.ofMinutes(minutes);
+    }
+
+    /**
+     * Computes the encoded size of a recurrence.
+     *
+     * @param recurrence The recurrence.
+     * @return The number of bytes {@link #putRecurrence(ByteBuffer, Recurrence)} writes.
+     */
+    static int recurrenceSize(Recurrence recurrence) {
+        return Byte.BYTES + 2 * Integer.BYTES + Long.BYTES + Integer.BYTES
+                + recurrence.getExceptions().size() * Long.BYTES;
+    }
+
+    /**
+     * Encodes a recurrence.
+     *
+     * @param buffer The buffer to write to.
+     * @param recurrence The recurrence.
+     */
+    static void putRecurrence(ByteBuffer buffer, Recurrence recurrence) {
+        buffer.put((byte) recurrence.getFrequency().ordinal());
+        buffer.putInt(recurrence.getInterval());
+        buffer.putInt(recurrence.getCount());
+        buffer.putLong(recurrence.getUntil() == null ? Long.MIN_VALUE : toEpochMinute(recurrence.getUntil()));
+        buffer.putInt(recurrence.getExceptions().size());
+        for (LocalDate date : recurrence.getExceptions()) {
+            buffer.putLong(date.toEpochDay());
+        }
+    }
+
+    /**
+     * Decodes a recurrence written by {@link #putRecurrence(ByteBuffer, Recurrence)}.
+     *
+     * @param buffer The buffer to read from.
+     * @return The recurrence.
+     */
+    static Recurrence getRecurrence(ByteBuffer buffer) {
+        Recurrence.Frequency frequency = Recurrence.Frequency.values()[buffer.get()];
+        int interval = buffer.getInt();
+        int count = buffer.getInt();
+        long until = buffer.getLong();
+        LocalDate[] exceptions = new LocalDate[buffer.getInt()];
+        for (int i = 0; i < exceptions.length; i++) {
+            exceptions[i] = LocalDate.ofEpochDay(buffer.getLong());
+        }
+        return new Recurrence(frequency, interval, count,
+                until == Long.MIN_VALUE ? null : fromEpochMinute(until), Arrays.asList(exceptions));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Contents readLegacy(Path path) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            Map<Integer, Event> events = (Map<Integer, Event>) ois.readObject();
+            int maxID = 0;
+            for (int id : events.keySet()) {
+                maxID = Math.max(maxID, id);
+            }
+            return new Contents(new ArrayList<>(events.values()), maxID);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Not a calendar file: " + path, e);
+        }
+    }
+
+    /**
+     * Converts a date-time to minutes since the epoch, truncating seconds.
+     *
+     * @param dateTime The date-time to convert.
+     * @return The number of minutes since 1970-01-01T00:00.
+     */
+    public static long toEpochMinute(LocalDateTime dateTime) {
+        return Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    /**
+     * Converts minutes since the epoch back to a date-time.
+     *
+     * @param epochMinute The number of minutes since 1970-01-01T00:00.
+     * @return The corresponding date-time.
+     */
+    public static LocalDateTime fromEpochMinute(long epochMinute) {
+        return LocalDateTime.ofEpochSecond(epochMinute * 60, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Decodes a stored event type.
+     *
+     * @param code The stored ordinal, or -1.
+     * @return The event type, or null if none was stored.
+     */
+    static EventType decodeType(byte code) {
+        return code < 0 ? null : EventType.values()[code];
+    }
+
+    /**
+     * Decodes a stored event priority.
+     *
+     * @param code The stored ordinal, or -1.
+     * @return The event priority, or null if none was stored.
+     */
+    static EventPrio decodePrio(byte code) {
+        return code < 0 ? null : EventPrio.values()[code];
+    }
+
+    /**
+     * The header fields of a binary calendar file, with the section positions it describes.
+     */
+    static final class Header {
+        final short flags;
+        final int eventCount;
+        final int lastID;
+        final int stringCount;
+        private final int offsetsStart;
+        private final int stringsStart;
+        private final int recordsStart;
+        private final int idIndexStart;
+        private final int durationsStart;
+        final int durationCount;
+
+        private Header(ByteBuffer buffer) {
+            this.flags = buffer.getShort(6);
+            this.eventCount = buffer.getInt(8);
+            this.lastID = buffer.getInt(12);
+            this.stringCount = buffer.getInt(16);
+            this.offsetsStart = (int) buffer.getLong(24);
+            this.stringsStart = (int) buffer.getLong(32);
+            this.recordsStart = (int) buffer.getLong(40);
+            this.idIndexStart = (int) buffer.getLong(48);
+            this.durationsStart = idIndexStart + eventCount * ID_ENTRY_SIZE;
+            this.durationCount = (flags & FLAG_DURATIONS) == 0 ? 0 : buffer.getInt(durationsStart);
+        }
+
+        /**
+         * Reads and validates the header at the start of a buffer.
+         *
+         * @param buffer The file contents.
+         * @return The header.
+         * @throws IOException If the buffer does not hold a supported calendar file.
+         */
+        static Header read(ByteBuffer buffer) throws IOException {
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a calendar file");
+            }
+            if (buffer.getShort(4) != VERSION) {
+                throw new IOException("Unsupported calendar file version " + buffer.getShort(4));
+            }
+            long idIndexEnd = buffer.getLong(48) + (long) buffer.getInt(8) * ID_ENTRY_SIZE;
+            if (buffer.getInt(8) < 0 || buffer.getLong(48) < HEADER_SIZE || idIndexEnd > buffer.limit()) {
+                throw new IOException("Truncated calendar file");
+            }
+            if ((buffer.getShort(6) & FLAG_DURATIONS) != 0 && (idIndexEnd + Integer.BYTES > buffer.limit()
+                    || idIndexEnd + Integer.BYTES + (long) buffer.getInt((int) idIndexEnd) * DURATION_ENTRY_SIZE > buffer.limit())) {
+                throw new IOException("Truncated calendar file");
+            }
+            return new Header(buffer);
+        }
+
+        /**
+         * Finds the position of a record.
+         *
+         * @param slot The record number, in date and time order.
+         * @return The buffer position of the record.
+         */
+        int recordPosition(int slot) {
+            return recordsStart + slot * RECORD_SIZE;
+        }
+
+        /**
+         * Finds the position of the series section, right after the ID index and the durations.
+         *
+         * @return The buffer position of the series section.
+         */
+        int seriesStart() {
+            if ((flags & FLAG_DURATIONS) == 0) {
+                return durationsStart;
+            }
+            return durationsStart + Integer.BYTES + durationCount * DURATION_ENTRY_SIZE;
+        }
+
+        /**
+         * Finds the position of a durations entry.
+         *
+         * @param entry The entry number, in ID order.
+         * @return The buffer position of the entry.
+         */
+        int durationEntryPosition(int entry) {
+            return durationsStart + Integer.BYTES + entry * DURATION_ENTRY_SIZE;
+        }
+
+        /**
+         * Looks up the duration of an event by binary search over the durations section.
+         *
+         * @param buffer The file contents.
+         * @param id The ID of the event.
+         * @return The duration, or null if the event has none.
+         */
+        Duration duration(ByteBuffer buffer, int id) {
+            int low = 0;
+            int high = durationCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int midID = buffer.getInt(durationEntryPosition(mid));
+                if (midID < id) {
+                    low = mid + 1;
+                } else if (midID > id) {
+                    high = mid - 1;
+                } else {
+                    return fromMinutes(buffer.getInt(durationEntryPosition(mid) + 4));
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Finds the position of an ID index entry.
+         *
+         * @param entry The entry number, in ID order.
+         * @return The buffer position of the entry.
+         */
+        int idEntryPosition(int entry) {
+            return idIndexStart + entry * ID_ENTRY_SIZE;
+        }
+
+        /**
+         * Decodes a string from the string table.
+         *
+         * @param buffer The file contents.
+         * @param number The string number.
+         * @return The decoded string.
+         */
+        String string(ByteBuffer buffer, int number) {
+            int position = stringsStart + buffer.getInt(offsetsStart + number * Integer.BYTES);
+            int length = buffer.getInt(position);
+            byte[] bytes = new byte[length];
+            buffer.get(position + Integer.BYTES, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Buffers writes to a file channel in a reusable direct buffer.
+     */
+    private static final class ChannelWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        ChannelWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putByte(byte value) throws IOException {
+            ensure(Byte.BYTES);
+            buffer.put(value);
+        }
+
+        void putShort(short value) throws IOException {
+            ensure(Short.BYTES);
+            buffer.putShort(value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            int written = 0;
+            while (written < bytes.length) {
+                ensure(1);
+                int chunk = Math.min(buffer.remaining(), bytes.length - written);
+                buffer.put(bytes, written, chunk);
+                written += chunk;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.jonathan.calendar.io;
+
+import com.jonathan.events.*;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The line format for events in batch and import files:
+ * {@code description,TYPE,dd-MM-yyyy,HH:mm,PRIO}.
+ * Fields are separated by commas and trimmed. A field may be quoted with double quotes
+ * to contain commas; a doubled quote inside a quoted field stands for one quote.
+ */
+public final class CsvEventFormat {
+    /**
+     * The number of fields describing one event.
+     */
+    public static final int FIELDS = 5;
+
+    private CsvEventFormat() {
+    }
+
+    /**
+     * Splits a line into trimmed comma-separated fields, honouring double quotes.
+     *
+     * @param line The line.
+     * @return The fields.
+     * @throws IllegalArgumentException If a quoted field is not closed.
+     */
+    public static List<String> split(String line) {
+        List<String> fields = new ArrayList<>(FIELDS);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"' && field.toString().trim().isEmpty()) {
+                field.setLength(0);
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    /**
+     * Parses the five event fields starting at the given position.
+     * The event is returned without an ID.
+     *
+     * @param fields The fields of a line.
+     * @param first The position of the description field.
+     * @return The event.
+     * @throws IllegalArgumentException If the type or priority is unknown.
+     * @throws DateTimeParseException If the date or time is invalid.
+     */
+    public static Event parse(List<String> fields, int first) {
+        String description = fields.get(first);
+        EventType type = parseEnum(EventType.class, fields.get(first + 1), "event type");
+        LocalDate date = LocalDate.parse(fields.get(first + 2), Event.DATE_FORMAT);
+        LocalTime time = LocalTime.parse(fields.get(first + 3), Event.TIME_FORMAT);
+        EventPrio prio = parseEnum(EventPrio.class, fields.get(first + 4), "event priority");
+        return new Event(description, type, date.atTime(time), prio);
+    }
+
+    /**
+     * Parses a line holding exactly the five event fields.
+     *
+     * @param line The line.
+     * @return The event, without an ID.
+     * @throws IllegalArgumentException If the line is not a valid event.
+     * @throws DateTimeParseException If the date or time is invalid.
+     */
+    public static Event parse(String line) {
+        List<String> fields = split(line);
+        if (fields.size() != FIELDS) {
+            throw new IllegalArgumentException("Expected " + FIELDS + " fields, found " + fields.size());
+        }
+        return parse(fields, 0);
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String field, String name) {
+        try {
+            return Enum.valueOf(type, field.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + field);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.jonathan.calendar.io;
+
+import com.jonathan.events.Event;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parses large CSV or iCalendar files into events in parallel.
+ * The file is cut into chunks of roughly equal size, which are parsed on a fork-join pool.
+ * A chunk owns the records that start within it: it skips the end of a record begun in the
+ * previous chunk and reads past its own end to finish its last record, so no record is lost
+ * or parsed twice. Each chunk reads its bytes with positional reads on one shared channel.
+ *
+ * <p>Events are returned in file order, without IDs. Records that cannot be parsed are
+ * reported with the line number they start on and skipped.</p>
+ */
+public final class EventFileParser {
+    /**
+     * The default chunk size, in bytes.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8 << 20;
+
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Supported input formats.
+     */
+    public enum Format {
+        /**
+         * One event per line, in the {@link CsvEventFormat} layout. Blank lines and lines
+         * starting with {@code #} are skipped.
+         */
+        CSV,
+        /**
+         * iCalendar VEVENT components, as read by {@link IcsEventFormat}.
+         */
+        ICS;
+
+        /**
+         * Picks the format from a file name: {@code .ics} files are iCalendar, anything else CSV.
+         *
+         * @param file The file.
+         * @return The format.
+         */
+        public static Format of(Path file) {
+            return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".ics") ? ICS : CSV;
+        }
+    }
+
+    /**
+     * The events and errors of a parsed file.
+     */
+    public static final class Result {
+        private final List<Event> events;
+        private final List<String> errors;
+        private final int lines;
+
+        private Result(List<Event> events, List<String> errors, int lines) {
+            this.events = events;
+            this.errors = errors;
+            this.lines = lines;
+        }
+
+        /**
+         * Retrieves the parsed events, in file order.
+         *
+         * @return The events, without IDs.
+         */
+        public List<Event> getEvents() {
+            return events;
+        }
+
+        /**
+         * Retrieves the errors, in file order, each prefixed with its line number.
+         *
+         * @return The error messages.
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        /**
+         * Retrieves the number of lines in the file.
+         *
+         * @return The number of lines.
+         */
+        public int getLines() {
+            return lines;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    /**
+     * Creates a parser.
+     *
+     * @param pool The pool chunks are parsed on.
+     * @param chunkSize The approximate number of bytes per chunk.
+     */
+    public EventFileParser(ForkJoinPool pool, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Parses a file.
+     *
+     * @param file The file, in UTF-8.
+     * @param format The file format.
+     * @return The parsed events and the errors.
+     * @throws IOException If the file cannot be read.
+     */
+    public Result parse(Path file, Format format) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int chunks = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+            Chunk[] parsed = new Chunk[chunks];
+            try {
+                pool.invoke(new ChunkTask(channel, size, format, parsed, 0, chunks));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            int total = 0;
+            for (Chunk chunk : parsed) {
+                total += chunk.events.size();
+            }
+            List<Event> events = new ArrayList<>(total);
+            List<String> errors = new ArrayList<>();
+            int linesBefore = 0;
+            for (Chunk chunk : parsed) {
+                events.addAll(chunk.events);
+                for (int i = 0; i < chunk.errorLines.size(); i++) {
+                    errors.add("Line " + (linesBefore + chunk.errorLines.get(i)) + ": " + chunk.errorMessages.get(i));
+                }
+                linesBefore += chunk.ownedLines;
+            }
+            return new Result(events, errors, linesBefore);
+        }
+    }
+
+    /**
+     * Parses a range of chunks, splitting it in halves until single chunks remain.
+     */
+    // Tasks only run within one parse and are never serialized, although RecursiveAction is Serializable.
+    @SuppressWarnings("serial")
+    private final class ChunkTask extends RecursiveAction {
+        private final FileChannel channel;
+        private final long size;
+        private final Format format;
+        private final Chunk[] parsed;
+        private final int from;
+        private final int to;
+
+        ChunkTask(FileChannel channel, long size, Format format, Chunk[] parsed, int from, int to) {
+            this.channel = channel;
+            this.size = size;
+            this.format = format;
+            this.parsed = parsed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ChunkTask(channel, size, format, parsed, from, mid),
+                        new ChunkTask(channel, size, format, parsed, mid, to));
+                return;
+            }
+            long start = (long) from * chunkSize;
+            long end = Math.min(size, start + chunkSize);
+            try {
+                LineReader reader = new LineReader(channel, start == 0 ? 0 : start - 1);
+                if (start > 0) {
+                    // The line running into this chunk belongs to the previous one.
+                    reader.next();
+                }
+                parsed[from] = format == Format.CSV ? parseCsv(reader, end) : parseIcs(reader, end);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * The events and errors of one chunk. Error lines are counted from the chunk's first line.
+     */
+    private static final class Chunk {
+        final List<Event> events = new ArrayList<>();
+        final List<Integer> errorLines = new ArrayList<>();
+        final List<String> errorMessages = new ArrayList<>();
+        int ownedLines;
+
+        void error(int line, String message) {
+            errorLines.add(line);
+            errorMessages.add(message);
+        }
+    }
+
+    private static Chunk parseCsv(LineReader reader, long end) throws IOException {
+        Chunk chunk = new Chunk();
+        String line;
+        while (reader.nextStart() < end && (line = reader.next()) != null) {
+            chunk.ownedLines++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            try {
+                chunk.events.add(CsvEventFormat.parse(trimmed));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                chunk.error(chunk.ownedLines, e.getMessage());
+            }
+        }
+        return chunk;
+    }
+
+    private static Chunk parseIcs(LineReader reader, long end) throws IOException {
+        Chunk chunk = new Chunk();
+        List<String> component = null;
+        int componentLine = 0;
+        int line = 0;
+        while (component != null || reader.nextStart() < end) {
+            boolean owned = reader.nextStart() < end;
+            String text = reader.next();
+            if (text == null) {
+                break;
+            }
+            line++;
+            if (owned) {
+                chunk.ownedLines = line;
+            }
+            if (component == null) {
+                if (text.equalsIgnoreCase("BEGIN:VEVENT")) {
+                    component = new ArrayList<>();
+                    componentLine = line;
+                }
+            } else if (text.startsWith(" ") || text.startsWith("\t")) {
+                if (!component.isEmpty()) {
+                    int last = component.size() - 1;
+                    component.set(last, component.get(last) + text.substring(1));
+                }
+            } else if (text.equalsIgnoreCase("END:VEVENT")) {
+                try {
+                    chunk.events.add(IcsEventFormat.parse(component));
+                } catch (IllegalArgumentException | DateTimeParseException e) {
+                    chunk.error(componentLine, e.getMessage());
+                }
+                component = null;
+            } else {
+                component.add(text);
+            }
+        }
+        if (component != null) {
+            chunk.error(componentLine, "VEVENT without END:VEVENT");
+        }
+        return chunk;
+    }
+
+    /**
+     * Reads UTF-8 lines from a position in a file with positional reads,
+     * so several readers can share one channel.
+     */
+    private static final class LineReader {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private long bufferStart;
+        private byte[] line = new byte[256];
+
+        LineReader(FileChannel channel, long position) {
+            this.channel = channel;
+            this.bufferStart = position;
+            buffer.limit(0);
+        }
+
+        /**
+         * Retrieves the file position of the next line.
+         */
+        long nextStart() {
+            return bufferStart + buffer.position();
+        }
+
+        /**
+         * Reads the next line, without its line terminator.
+         *
+         * @return The line, or null at the end of the file.
+         */
+        String next() throws IOException {
+            int length = 0;
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    bufferStart += buffer.limit();
+                    buffer.clear();
+                    int read = channel.read(buffer, bufferStart);
+                    buffer.flip();
+                    if (read <= 0) {
+                        return length == 0 ? null : decode(length);
+                    }
+                }
+                byte b = buffer.get();
+                if (b == '\n') {
+                    return decode(length);
+                }
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = b;
+            }
+        }
+
+        private String decode(int length) {
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            return new String(line, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
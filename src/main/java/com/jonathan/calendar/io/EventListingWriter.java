@@ -0,0 +1,103 @@
+package com.jonathan.calendar.io;
+
+import com.jonathan.events.Event;
+import com.jonathan.events.EventFormatter;
+import java.io.*;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Prints event listings one page at a time through a buffer.
+ * Events are pulled from a stream, formatted with {@link EventFormatter} into one reused
+ * buffer and written out in large blocks, so a listing is never materialized and the
+ * console is not flushed after every line. Only the events of the current page, given by
+ * an offset and a limit, are formatted; the rest of the stream is never read.
+ */
+public final class EventListingWriter {
+    private static final int BLOCK_SIZE = 1 << 14;
+
+    private final Writer out;
+    private final long offset;
+    private final long limit;
+    private final StringBuilder block = new StringBuilder(BLOCK_SIZE + 256);
+    private char[] chars = new char[BLOCK_SIZE + 256];
+
+    /**
+     * Creates a writer that prints every event of each listing.
+     *
+     * @param out Where listings are printed.
+     */
+    public EventListingWriter(PrintStream out) {
+        this(out, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a writer that prints one page of each listing.
+     *
+     * @param out Where listings are printed.
+     * @param offset The number of events skipped at the start of each listing.
+     * @param limit The greatest number of events printed per listing.
+     */
+    public EventListingWriter(PrintStream out, long offset, long limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit must not be negative");
+        }
+        this.out = new OutputStreamWriter(out, out.charset());
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * Prints a page of a listing, preceded by a header.
+     * If the page is followed by more events, a note saying where the next page starts is printed.
+     *
+     * @param header The line printed before the events.
+     * @param events The listing.
+     * @param emptyMessage The line printed instead if the page holds no events.
+     * @return The number of events printed.
+     */
+    public long write(String header, Stream<Event> events, String emptyMessage) {
+        try (Stream<Event> page = events.skip(offset).limit(limit == Long.MAX_VALUE ? limit : limit + 1)) {
+            Iterator<Event> iterator = page.iterator();
+            if (!iterator.hasNext()) {
+                block.append(emptyMessage).append(System.lineSeparator());
+                flush();
+                return 0;
+            }
+            block.append(header).append(System.lineSeparator());
+            long written = 0;
+            while (iterator.hasNext()) {
+                Event event = iterator.next();
+                if (written == limit) {
+                    block.append("More events follow; use --offset ").append(offset + limit)
+                            .append(" to see the next page.").append(System.lineSeparator());
+                    break;
+                }
+                EventFormatter.appendTo(block, event).append(System.lineSeparator());
+                written++;
+                if (block.length() >= BLOCK_SIZE) {
+                    writeBlock();
+                }
+            }
+            flush();
+            return written;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        int length = block.length();
+        if (chars.length < length) {
+            chars = new char[length];
+        }
+        block.getChars(0, length, chars, 0);
+        out.write(chars, 0, length);
+        block.setLength(0);
+    }
+
+    private void flush() throws IOException {
+        writeBlock();
+        out.flush();
+    }
+}
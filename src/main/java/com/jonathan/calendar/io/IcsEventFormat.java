@@ -0,0 +1,201 @@
+package com.jonathan.calendar.io;
+
+import com.jonathan.events.*;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads the VEVENT components of iCalendar (RFC 5545) files into events.
+ * SUMMARY becomes the description, empty if it is missing, and DTSTART the date and time; DTEND or DURATION, if
+ * given and after the start, gives the duration. Times given in UTC
+ * or with a TZID are converted to the system time zone; floating times are kept as they
+ * are, and all-day events start at midnight. The first CATEGORIES value naming an
+ * {@link EventType} gives the type, OTHER otherwise. PRIORITY 1-4 is HIGH, 6-9 is LOW,
+ * and anything else MID.
+ *
+ * <p>The calendar keeps whole minutes, so seconds are dropped from DTSTART and DTEND and
+ * durations are cut to whole minutes: an event at 09:00:30 is imported at 09:00, and so
+ * saves and loads back unchanged.</p>
+ */
+final class IcsEventFormat {
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("uuuuMMdd'T'HHmmss");
+    private static final DateTimeFormatter DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private IcsEventFormat() {
+    }
+
+    /**
+     * Parses the unfolded content lines between BEGIN:VEVENT and END:VEVENT.
+     * Nested components such as VALARM are skipped.
+     *
+     * @param lines The content lines of the component.
+     * @return The event, without an ID.
+     * @throws IllegalArgumentException If the component has no valid DTSTART.
+     * @throws java.time.format.DateTimeParseException If DTSTART, DTEND or DURATION is malformed.
+     */
+    static Event parse(List<String> lines) {
+        String summary = "";
+        LocalDateTime start = null;
+        LocalDateTime end = null;
+        Duration duration = null;
+        EventType type = EventType.OTHER;
+        EventPrio prio = EventPrio.MID;
+        int depth = 0;
+        for (String line : lines) {
+            int colon = valueSeparator(line);
+            if (colon < 0) {
+                continue;
+            }
+            int semicolon = line.indexOf(';');
+            String name = line.substring(0, semicolon >= 0 && semicolon < colon ? semicolon : colon).toUpperCase(Locale.ROOT);
+            String params = semicolon >= 0 && semicolon < colon ? line.substring(semicolon + 1, colon) : "";
+            String value = line.substring(colon + 1);
+            if (name.equals("BEGIN")) {
+                depth++;
+            } else if (name.equals("END")) {
+                depth--;
+            } else if (depth > 0) {
+                continue;
+            } else if (name.equals("SUMMARY")) {
+                summary = unescape(value);
+            } else if (name.equals("DTSTART")) {
+                start = parseDateTime(params, value.trim());
+            } else if (name.equals("DTEND")) {
+                end = parseDateTime(params, value.trim());
+            } else if (name.equals("DURATION")) {
+                duration = parseDuration(value.trim());
+            } else if (name.equals("CATEGORIES") && type == EventType.OTHER) {
+                type = parseCategories(value);
+            } else if (name.equals("PRIORITY")) {
+                prio = parsePriority(value.trim());
+            }
+        }
+        if (start == null) {
+            throw new IllegalArgumentException("VEVENT without DTSTART");
+        }
+        start = start.truncatedTo(ChronoUnit.MINUTES);
+        Event event = new Event(summary, type, start, prio);
+        if (duration == null && end != null) {
+            duration = Duration.between(start, end.truncatedTo(ChronoUnit.MINUTES));
+        }
+        if (duration != null && !duration.isNegative()) {
+            event.setDuration(duration.truncatedTo(ChronoUnit.MINUTES));
+        }
+        return event;
+    }
+
+    /**
+     * Finds the colon separating a content line's name and parameters from its value,
+     * skipping colons inside quoted parameter values.
+     */
+    private static int valueSeparator(String line) {
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ':' && !quoted) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a DURATION value. Week durations, which {@link Duration#parse(CharSequence)}
+     * does not accept, are converted to days.
+     */
+    private static Duration parseDuration(String value) {
+        String upper = value.toUpperCase(Locale.ROOT);
+        int weeks = upper.indexOf('W');
+        if (weeks > 0) {
+            int number = upper.lastIndexOf('P', weeks) + 1;
+            Duration duration = Duration.ofDays(7L * Long.parseLong(upper.substring(number, weeks)));
+            return upper.startsWith("-") ? duration.negated() : duration;
+        }
+        return Duration.parse(upper);
+    }
+
+    private static LocalDateTime parseDateTime(String params, String value) {
+        String upperParams = params.toUpperCase(Locale.ROOT);
+        if (upperParams.contains("VALUE=DATE") && !upperParams.contains("VALUE=DATE-TIME")) {
+            return LocalDate.parse(value, DATE).atStartOfDay();
+        }
+        if (value.endsWith("Z") || value.endsWith("z")) {
+            LocalDateTime utc = LocalDateTime.parse(value.substring(0, value.length() - 1), DATE_TIME);
+            return utc.atZone(ZoneOffset.UTC).withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+        }
+        if (value.length() == 8) {
+            return LocalDate.parse(value, DATE).atStartOfDay();
+        }
+        LocalDateTime local = LocalDateTime.parse(value, DATE_TIME);
+        String zone = parameter(params, "TZID");
+        if (zone == null) {
+            return local;
+        }
+        try {
+            return local.atZone(ZoneId.of(zone)).withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+        } catch (DateTimeException e) {
+            return local;
+        }
+    }
+
+    private static String parameter(String params, String name) {
+        for (String param : params.split(";")) {
+            int equals = param.indexOf('=');
+            if (equals > 0 && param.substring(0, equals).equalsIgnoreCase(name)) {
+                String value = param.substring(equals + 1);
+                return value.startsWith("\"") && value.endsWith("\"") && value.length() > 1
+                        ? value.substring(1, value.length() - 1) : value;
+            }
+        }
+        return null;
+    }
+
+    private static EventType parseCategories(String value) {
+        for (String category : value.split(",")) {
+            try {
+                return EventType.valueOf(unescape(category).trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                // Not one of our types; try the next category.
+            }
+        }
+        return EventType.OTHER;
+    }
+
+    private static EventPrio parsePriority(String value) {
+        int priority;
+        try {
+            priority = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return EventPrio.MID;
+        }
+        if (priority >= 1 && priority <= 4) {
+            return EventPrio.HIGH;
+        }
+        return priority >= 6 && priority <= 9 ? EventPrio.LOW : EventPrio.MID;
+    }
+
+    /**
+     * Resolves the backslash escapes of an iCalendar text value.
+     */
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder text = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                text.append(next == 'n' || next == 'N' ? '\n' : next);
+            } else {
+                text.append(c);
+            }
+        }
+        return text.toString();
+    }
+}
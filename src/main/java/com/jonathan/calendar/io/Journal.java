@@ -0,0 +1,434 @@
+package com.jonathan.calendar.io;
+
+import com.jonathan.events.Event;
+import com.jonathan.events.Recurrence;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of calendar changes, written next to a calendar snapshot.
+ *
+ * <p>Each change is one record: an i32 payload length, the i32 CRC-32 of the payload,
+ * and the payload itself, holding an operation code, the event ID and, for scheduled or
+ * updated events, the epoch minute, type and priority ordinals, the UTF-8 description, the
+ * duration in minutes for events that have one (which use their own operation code, so
+ * journals written before durations existed still replay) and, for recurring events, the
+ * recurrence in the encoding of the calendar file's series section.
+ * Replaying a record sets or removes the event with that ID, so replaying records that
+ * are already reflected in the snapshot leaves it unchanged.</p>
+ *
+ * <p>Appends are handed to a single writer thread, which writes everything appended since
+ * its last write in one batch (group commit). When the batch is forced to disk depends on
+ * the {@link FsyncPolicy}. A torn record at the end of the log, left by a crash mid-write,
+ * is detected by its checksum and discarded when the log is reopened.</p>
+ */
+public final class Journal implements Closeable {
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte TIMED_PUT = 3;
+    private static final int RECORD_HEADER = 2 * Integer.BYTES;
+
+    /**
+     * When appended records are forced to disk.
+     */
+    public enum FsyncPolicy {
+        /**
+         * Force every batch before its appends return. No acknowledged change is lost.
+         */
+        ALWAYS,
+        /**
+         * Force at most once per sync interval. Appends return once queued, so a crash
+         * can lose the changes of the last interval.
+         */
+        PERIODIC,
+        /**
+         * Leave flushing to the operating system.
+         */
+        NEVER
+    }
+
+    private final Path path;
+    private final FsyncPolicy policy;
+    private final long syncIntervalNanos;
+    private final Object lock = new Object();
+    private final Thread writer;
+    private FileChannel channel;
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appendedSeq;
+    private long writtenSeq;
+    private long syncedSeq;
+    private long size;
+    private long lastSync = System.nanoTime();
+    private boolean writing;
+    private boolean closed;
+    private IOException failure;
+
+    private Journal(Path path, FsyncPolicy policy, long syncIntervalMillis) throws IOException {
+        this.path = path;
+        this.policy = policy;
+        this.syncIntervalNanos = syncIntervalMillis * 1_000_000L;
+        this.channel = openForAppend(path);
+        this.size = channel.size();
+        this.writer = new Thread(this::writeLoop, "journal-writer-" + path.getFileName());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Opens a journal for appending, creating it if needed and discarding any torn record at its end.
+     *
+     * @param path The journal file.
+     * @param policy When appended records are forced to disk.
+     * @param syncIntervalMillis The interval between forces for {@link FsyncPolicy#PERIODIC}.
+     * @return The open journal.
+     * @throws IOException If the journal cannot be opened.
+     */
+    public static Journal open(Path path, FsyncPolicy policy, long syncIntervalMillis) throws IOException {
+        return new Journal(path, policy, syncIntervalMillis);
+    }
+
+    /**
+     * Finds the journal belonging to a calendar snapshot.
+     *
+     * @param snapshot The snapshot file.
+     * @return The journal file next to it.
+     */
+    public static Path journalFor(Path snapshot) {
+        return snapshot.resolveSibling(snapshot.getFileName() + ".journal");
+    }
+
+    /**
+     * Finds where a journal is moved while it is being folded into a new snapshot.
+     *
+     * @param snapshot The snapshot file.
+     * @return The file holding the journal being compacted.
+     */
+    public static Path compactingJournalFor(Path snapshot) {
+        return snapshot.resolveSibling(snapshot.getFileName() + ".journal.compacting");
+    }
+
+    /**
+     * Replays the valid records of a journal, stopping at the first torn or corrupt record.
+     *
+     * @param path The journal file. A missing file replays nothing.
+     * @param puts Receives each scheduled or updated event.
+     * @param removes Receives the ID of each removed event.
+     * @return The number of records replayed.
+     * @throws IOException If the journal cannot be read.
+     */
+    public static int replay(Path path, Consumer<Event> puts, IntConsumer removes) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int records = 0;
+            while (true) {
+                ByteBuffer payload = nextPayload(buffer);
+                if (payload == null) {
+                    return records;
+                }
+                byte op = payload.get();
+                int id = payload.getInt();
+                if (op == REMOVE) {
+                    removes.accept(id);
+                } else {
+                    long epochMinute = payload.getLong();
+                    byte type = payload.get();
+                    byte prio = payload.get();
+                    int length = payload.getInt();
+                    String description = null;
+                    if (length >= 0) {
+                        byte[] bytes = new byte[length];
+                        payload.get(bytes);
+                        description = new String(bytes, StandardCharsets.UTF_8);
+                    }
+                    Event event = new Event(description, CalendarFile.decodeType(type),
+                            CalendarFile.fromEpochMinute(epochMinute), CalendarFile.decodePrio(prio));
+                    event.setID(id);
+                    if (op == TIMED_PUT) {
+                        event.setDuration(CalendarFile.fromMinutes(payload.getInt()));
+                    }
+                    if (payload.hasRemaining()) {
+                        event.setRecurrence(CalendarFile.getRecurrence(payload));
+                    }
+                    puts.accept(event);
+                }
+                records++;
+            }
+        }
+    }
+
+    /**
+     * Reads the payload of the record at the buffer's position and advances past it.
+     *
+     * @param buffer The journal contents.
+     * @return The payload, or null at the end of the valid records.
+     */
+    private static ByteBuffer nextPayload(ByteBuffer buffer) {
+        if (buffer.remaining() < RECORD_HEADER) {
+            return null;
+        }
+        int start = buffer.position();
+        int length = buffer.getInt(start);
+        int crc = buffer.getInt(start + Integer.BYTES);
+        if (length <= 0 || length > buffer.remaining() - RECORD_HEADER) {
+            return null;
+        }
+        ByteBuffer payload = buffer.slice(start + RECORD_HEADER, length);
+        CRC32 checksum = new CRC32();
+        checksum.update(payload.duplicate());
+        if ((int) checksum.getValue() != crc) {
+            return null;
+        }
+        buffer.position(start + RECORD_HEADER + length);
+        return payload;
+    }
+
+    private static FileChannel openForAppend(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        while (nextPayload(buffer) != null) {
+            // Skip to the end of the valid records.
+        }
+        channel.truncate(buffer.position());
+        channel.position(buffer.position());
+        return channel;
+    }
+
+    /**
+     * Appends a record that schedules or updates an event.
+     *
+     * @param event The event as it now stands.
+     * @throws IOException If the journal has failed or is closed.
+     */
+    public void appendPut(Event event) throws IOException {
+        byte[] description = event.getDescription() == null ? null
+                : event.getDescription().getBytes(StandardCharsets.UTF_8);
+        Recurrence recurrence = event.getRecurrence();
+        ByteBuffer payload = ByteBuffer.allocate(1 + Integer.BYTES + Long.BYTES + 2 + Integer.BYTES
+                + (description == null ? 0 : description.length)
+                + (event.hasDuration() ? Integer.BYTES : 0)
+                + (recurrence == null ? 0 : CalendarFile.recurrenceSize(recurrence)));
+        payload.put(event.hasDuration() ? TIMED_PUT : PUT);
+        payload.putInt(event.getID());
+        payload.putLong(CalendarFile.toEpochMinute(event.getDateTime()));
+        payload.put(event.getType() == null ? -1 : (byte) event.getType().ordinal());
+        payload.put(event.getPriority() == null ? -1 : (byte) event.getPriority().ordinal());
+        payload.putInt(description == null ? -1 : description.length);
+        if (description != null) {
+            payload.put(description);
+        }
+        if (event.hasDuration()) {
+            payload.putInt(CalendarFile.durationMinutes(event));
+        }
+        if (recurrence != null) {
+            CalendarFile.putRecurrence(payload, recurrence);
+        }
+        append(payload.array());
+    }
+
+    /**
+     * Appends a record that removes an event.
+     *
+     * @param id The ID of the removed event.
+     * @throws IOException If the journal has failed or is closed.
+     */
+    public void appendRemove(int id) throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(1 + Integer.BYTES);
+        payload.put(REMOVE);
+        payload.putInt(id);
+        append(payload.array());
+    }
+
+    private void append(byte[] payload) throws IOException {
+        CRC32 checksum = new CRC32();
+        checksum.update(payload);
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        header.putInt(payload.length);
+        header.putInt((int) checksum.getValue());
+        synchronized (lock) {
+            checkOpen();
+            pending.write(header.array(), 0, RECORD_HEADER);
+            pending.write(payload, 0, payload.length);
+            size += RECORD_HEADER + payload.length;
+            long seq = ++appendedSeq;
+            lock.notifyAll();
+            if (policy == FsyncPolicy.ALWAYS) {
+                while (syncedSeq < seq && failure == null) {
+                    awaitChange();
+                }
+                checkOpen();
+            }
+        }
+    }
+
+    /**
+     * Retrieves the size of the journal, including records not yet written.
+     *
+     * @return The journal size in bytes.
+     */
+    public long size() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    /**
+     * Writes and forces every appended record, then moves the journal to the given file
+     * and continues in a new, empty journal at the original path.
+     *
+     * @param target Where to move the current journal.
+     * @throws IOException If the journal cannot be flushed or moved.
+     */
+    public void rotate(Path target) throws IOException {
+        synchronized (lock) {
+            checkOpen();
+            awaitIdle();
+            channel.force(false);
+            channel.close();
+            Files.move(path, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = openForAppend(path);
+            syncedSeq = appendedSeq;
+            size = 0;
+        }
+    }
+
+    /**
+     * Writes and forces every appended record, then stops the writer thread.
+     *
+     * @throws IOException If the remaining records cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            try {
+                awaitIdle();
+            } catch (IOException e) {
+                error = e;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (error == null) {
+                channel.force(false);
+            }
+        } finally {
+            channel.close();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (failure != null) {
+            throw new IOException("Journal write failed", failure);
+        }
+        if (closed) {
+            throw new IOException("Journal is closed");
+        }
+    }
+
+    /**
+     * Waits, holding the lock, until every appended record has been written and the
+     * writer thread is not using the channel.
+     */
+    private void awaitIdle() throws IOException {
+        while ((writing || writtenSeq < appendedSeq) && failure == null) {
+            awaitChange();
+        }
+        checkOpen();
+    }
+
+    private void awaitChange() {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the journal", e);
+        }
+    }
+
+    /**
+     * Body of the writer thread: takes every record appended since the last pass and
+     * writes them in one batch, forcing according to the policy.
+     */
+    private void writeLoop() {
+        while (true) {
+            byte[] batch;
+            long batchSeq;
+            boolean sync;
+            synchronized (lock) {
+                while (pending.size() == 0 && !periodicSyncDue()) {
+                    if (closed) {
+                        return;
+                    }
+                    try {
+                        lock.wait(policy == FsyncPolicy.PERIODIC ? Math.max(1, syncIntervalNanos / 1_000_000L) : 0);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                batch = pending.toByteArray();
+                pending.reset();
+                batchSeq = appendedSeq;
+                sync = policy == FsyncPolicy.ALWAYS || periodicSyncDue();
+                writing = true;
+            }
+            IOException error = null;
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (sync) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+            synchronized (lock) {
+                writing = false;
+                if (error != null) {
+                    failure = error;
+                } else {
+                    writtenSeq = batchSeq;
+                    if (sync) {
+                        syncedSeq = batchSeq;
+                        lastSync = System.nanoTime();
+                    }
+                }
+                lock.notifyAll();
+                if (error != null) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks, holding the lock, whether the periodic policy is due to force written records.
+     */
+    private boolean periodicSyncDue() {
+        return policy == FsyncPolicy.PERIODIC && syncedSeq < appendedSeq
+                && System.nanoTime() - lastSync >= syncIntervalNanos;
+    }
+}
@@ -0,0 +1,213 @@
+package com.jonathan.calendar.io;
+
+import com.jonathan.events.*;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+
+/**
+ * Read-only view of a binary calendar file mapped into memory.
+ * Opening the file only validates its header; records, strings and events are
+ * decoded from the mapping when they are asked for, so the cost of opening does
+ * not depend on the number of events in the file.
+ *
+ * <p>Records are numbered by slot in date and time order, as they are stored.</p>
+ */
+public final class MappedCalendarFile {
+    private final MappedByteBuffer buffer;
+    private final CalendarFile.Header header;
+
+    private MappedCalendarFile(MappedByteBuffer buffer, CalendarFile.Header header) {
+        this.buffer = buffer;
+        this.header = header;
+    }
+
+    /**
+     * Maps a binary calendar file.
+     * The mapping stays valid after the file is replaced or deleted.
+     *
+     * @param path The file to map.
+     * @return The mapped file.
+     * @throws IOException If the file cannot be read or is not a binary calendar file.
+     */
+    public static MappedCalendarFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedCalendarFile(buffer, CalendarFile.Header.read(buffer));
+        }
+    }
+
+    /**
+     * Retrieves the number of records in the file.
+     *
+     * @return The number of events.
+     */
+    public int size() {
+        return header.eventCount;
+    }
+
+    /**
+     * Retrieves the last ID handed out by the calendar that was saved.
+     *
+     * @return The last assigned event ID.
+     */
+    public int lastID() {
+        return header.lastID;
+    }
+
+    /**
+     * Retrieves the number of distinct descriptions in the string table.
+     *
+     * @return The number of strings.
+     */
+    public int stringCount() {
+        return header.stringCount;
+    }
+
+    /**
+     * Reads the date-time of a record as minutes since the epoch.
+     *
+     * @param slot The record slot.
+     * @return The epoch minute of the event.
+     */
+    public long epochMinute(int slot) {
+        return buffer.getLong(header.recordPosition(slot));
+    }
+
+    /**
+     * Reads the event ID of a record.
+     *
+     * @param slot The record slot.
+     * @return The event ID.
+     */
+    public int id(int slot) {
+        return buffer.getInt(header.recordPosition(slot) + 8);
+    }
+
+    /**
+     * Reads the description string number of a record.
+     *
+     * @param slot The record slot.
+     * @return The string number, or -1 if the event has no description.
+     */
+    public int stringNumber(int slot) {
+        return buffer.getInt(header.recordPosition(slot) + 12);
+    }
+
+    /**
+     * Reads the encoded event type of a record without decoding the event.
+     *
+     * @param slot The record slot.
+     * @return The type ordinal, or -1 if the event has no type.
+     */
+    public byte typeCode(int slot) {
+        return buffer.get(header.recordPosition(slot) + 16);
+    }
+
+    /**
+     * Reads the encoded priority of a record without decoding the event.
+     *
+     * @param slot The record slot.
+     * @return The priority ordinal, or -1 if the event has no priority.
+     */
+    public byte prioCode(int slot) {
+        return buffer.get(header.recordPosition(slot) + 17);
+    }
+
+    /**
+     * Decodes a description from the string table.
+     *
+     * @param number The string number, as stored in a record.
+     * @return The description, or null for -1.
+     */
+    public String string(int number) {
+        return number < 0 ? null : header.string(buffer, number);
+    }
+
+    /**
+     * Decodes the event stored in a slot.
+     * Every call creates a new event object.
+     *
+     * @param slot The record slot.
+     * @return The decoded event.
+     */
+    public Event event(int slot) {
+        int position = header.recordPosition(slot);
+        Event event = new Event(string(buffer.getInt(position + 12)),
+                CalendarFile.decodeType(buffer.get(position + 16)),
+                CalendarFile.fromEpochMinute(buffer.getLong(position)),
+                CalendarFile.decodePrio(buffer.get(position + 17)));
+        event.setID(buffer.getInt(position + 8));
+        event.setDuration(header.duration(buffer, event.getID()));
+        return event;
+    }
+
+    /**
+     * Retrieves the number of events in the file that have a duration, recurring ones included.
+     *
+     * @return The number of entries in the durations section.
+     */
+    public int durationCount() {
+        return header.durationCount;
+    }
+
+    /**
+     * Reads the event ID of a durations entry.
+     *
+     * @param entry The entry number, in ID order.
+     * @return The ID of an event with a duration.
+     */
+    public int durationID(int entry) {
+        return buffer.getInt(header.durationEntryPosition(entry));
+    }
+
+    /**
+     * Finds the slot of an event by binary search over the ID index.
+     *
+     * @param id The ID of the event.
+     * @return The slot of the event, or -1 if the file does not contain it.
+     */
+    public int slotOf(int id) {
+        int low = 0;
+        int high = header.eventCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midID = buffer.getInt(header.idEntryPosition(mid));
+            if (midID < id) {
+                low = mid + 1;
+            } else if (midID > id) {
+                high = mid - 1;
+            } else {
+                return buffer.getInt(header.idEntryPosition(mid) + 4);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the first slot whose event is at or after a date-time, by binary search over the records.
+     *
+     * @param dateTime The date-time.
+     * @return The first slot not before the date-time, or {@link #size()} if there is none.
+     */
+    public int lowerBound(LocalDateTime dateTime) {
+        long minute = CalendarFile.toEpochMinute(dateTime);
+        if (CalendarFile.fromEpochMinute(minute).isBefore(dateTime)) {
+            minute++;
+        }
+        int low = 0;
+        int high = header.eventCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (epochMinute(mid) < minute) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
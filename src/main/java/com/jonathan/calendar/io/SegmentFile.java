@@ -0,0 +1,171 @@
+package com.jonathan.calendar.io;
+
+import com.jonathan.events.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Reads and writes segment files, which hold events evicted from memory by a
+ * {@link com.jonathan.calendar.store.PartitionedEventStore}.
+ *
+ * <p>Unlike the calendar file, which keeps whole minutes as the calendar accepts them as input,
+ * a segment stores every field exactly: an event read back from its segment has the same
+ * date-time, duration and recurrence, down to the nanosecond, as the event that was written.
+ * Events are stored one after the other in the order given. All numbers are big-endian.</p>
+ *
+ * <pre>
+ * header   magic "JSEG", u16 version, i32 event count
+ * event    i32 ID, i64 epoch second (UTC), i32 nanos, i32 description byte length (-1 for none)
+ *          + UTF-8 bytes, i8 type, i8 priority, i64 duration seconds (-1 for none), i32 duration nanos,
+ *          i8 1 if a recurrence follows, else 0
+ * recurrence i8 frequency, i32 interval, i32 count, i64 until epoch second (i64 min for none),
+ *          i32 until nanos, i32 exception count, i64 epoch day per exception
+ * </pre>
+ *
+ * <p>Missing types and priorities are stored as -1, as in the calendar file.</p>
+ */
+public final class SegmentFile {
+    static final int MAGIC = 0x4A534547;
+    static final short VERSION = 1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private SegmentFile() {
+    }
+
+    /**
+     * Writes events to a segment file, replacing any file already there.
+     * The file is written next to its destination and moved into place once complete,
+     * but it is not forced to disk: segments only cache events held elsewhere.
+     *
+     * @param path The file to write.
+     * @param events The events to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path path, Collection<Event> events) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeInt(events.size());
+            for (Event event : events) {
+                writeEvent(out, event);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the events of a segment file.
+     *
+     * @param path The file to read.
+     * @return The events, in the order they were written.
+     * @throws IOException If the file cannot be read or is not a segment file.
+     */
+    public static List<Event> read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a segment file: " + path);
+            }
+            short version = in.readShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported segment file version " + version);
+            }
+            int count = in.readInt();
+            List<Event> events = new ArrayList<>(Math.max(0, count));
+            for (int i = 0; i < count; i++) {
+                events.add(readEvent(in));
+            }
+            return events;
+        } catch (EOFException e) {
+            throw new IOException("Truncated segment file: " + path, e);
+        }
+    }
+
+    private static void writeEvent(DataOutputStream out, Event event) throws IOException {
+        out.writeInt(event.getID());
+        writeDateTime(out, event.getDateTime());
+        if (event.getDescription() == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = event.getDescription().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        out.writeByte(event.getType() == null ? -1 : event.getType().ordinal());
+        out.writeByte(event.getPriority() == null ? -1 : event.getPriority().ordinal());
+        Duration duration = event.getDuration();
+        out.writeLong(duration == null ? -1 : duration.getSeconds());
+        out.writeInt(duration == null ? 0 : duration.getNano());
+        Recurrence recurrence = event.getRecurrence();
+        out.writeBoolean(recurrence != null);
+        if (recurrence != null) {
+            out.writeByte(recurrence.getFrequency().ordinal());
+            out.writeInt(recurrence.getInterval());
+            out.writeInt(recurrence.getCount());
+            if (recurrence.getUntil() == null) {
+                out.writeLong(Long.MIN_VALUE);
+                out.writeInt(0);
+            } else {
+                writeDateTime(out, recurrence.getUntil());
+            }
+            out.writeInt(recurrence.getExceptions().size());
+            for (LocalDate date : recurrence.getExceptions()) {
+                out.writeLong(date.toEpochDay());
+            }
+        }
+    }
+
+    private static Event readEvent(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        LocalDateTime dateTime = readDateTime(in);
+        int length = in.readInt();
+        String description = null;
+        if (length >= 0) {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            description = new String(bytes, StandardCharsets.UTF_8);
+        }
+        Event event = new Event(description, CalendarFile.decodeType(in.readByte()), dateTime,
+                CalendarFile.decodePrio(in.readByte()));
+        event.setID(id);
+        long seconds = in.readLong();
+        int nanos = in.readInt();
+        if (seconds >= 0) {
+            event.setDuration(Duration.ofSeconds(seconds, nanos));
+        }
+        if (in.readBoolean()) {
+            Recurrence.Frequency frequency = Recurrence.Frequency.values()[in.readByte()];
+            int interval = in.readInt();
+            int count = in.readInt();
+            long untilSecond = in.readLong();
+            int untilNanos = in.readInt();
+            LocalDate[] exceptions = new LocalDate[in.readInt()];
+            for (int i = 0; i < exceptions.length; i++) {
+                exceptions[i] = LocalDate.ofEpochDay(in.readLong());
+            }
+            LocalDateTime until = untilSecond == Long.MIN_VALUE ? null
+                    : LocalDateTime.ofEpochSecond(untilSecond, untilNanos, ZoneOffset.UTC);
+            event.setRecurrence(new Recurrence(frequency, interval, count, until, Arrays.asList(exceptions)));
+        }
+        return event;
+    }
+
+    private static void writeDateTime(DataOutputStream out, LocalDateTime dateTime) throws IOException {
+        out.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(dateTime.getNano());
+    }
+
+    private static LocalDateTime readDateTime(DataInputStream in) throws IOException {
+        long epochSecond = in.readLong();
+        return LocalDateTime.ofEpochSecond(epochSecond, in.readInt(), ZoneOffset.UTC);
+    }
+}
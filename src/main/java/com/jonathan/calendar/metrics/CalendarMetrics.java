@@ -0,0 +1,181 @@
+package com.jonathan.calendar.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and histograms for the operations of one calendar: how often each operation ran,
+ * how long it took, how many events it returned, and how many bytes saving and loading moved.
+ * Recording costs two reads of {@link System#nanoTime()} and a few lock-free atomic updates,
+ * so metrics are always on. The histograms of an operation are allocated when it first runs.
+ *
+ * <p>The metrics can be published over JMX with {@link #register(String)}.</p>
+ */
+public final class CalendarMetrics implements CalendarMetricsMXBean {
+    /**
+     * The calendar operations that are measured.
+     */
+    public enum Operation {
+        SCHEDULE,
+        SCHEDULE_ALL,
+        UPDATE,
+        REMOVE,
+        VIEW_ALL,
+        VIEW_BY_PRIORITY,
+        SEARCH_BY_DAY,
+        SEARCH_BY_YEAR,
+        SEARCH_BY_TYPE,
+        SEARCH_BY_DESCRIPTION,
+        QUERY,
+        COUNT,
+        EVENTS_BETWEEN,
+        EVENTS_OVERLAPPING,
+        FIND_CONFLICTS,
+        SAVE,
+        LOAD
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final AtomicReferenceArray<Histogram> latencies = new AtomicReferenceArray<>(OPERATIONS.length);
+    private final AtomicReferenceArray<Histogram> results = new AtomicReferenceArray<>(OPERATIONS.length);
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    private static Histogram histogram(AtomicReferenceArray<Histogram> histograms, Operation operation) {
+        Histogram histogram = histograms.get(operation.ordinal());
+        if (histogram == null) {
+            histograms.compareAndSet(operation.ordinal(), null, new Histogram());
+            histogram = histograms.get(operation.ordinal());
+        }
+        return histogram;
+    }
+
+    /**
+     * Records a finished operation that returns no events.
+     *
+     * @param operation The operation.
+     * @param startNanos The {@link System#nanoTime()} at which it started.
+     */
+    public void record(Operation operation, long startNanos) {
+        histogram(latencies, operation).record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records a finished operation and the number of events it returned.
+     *
+     * @param operation The operation.
+     * @param startNanos The {@link System#nanoTime()} at which it started.
+     * @param resultSize The number of events returned.
+     */
+    public void record(Operation operation, long startNanos, long resultSize) {
+        record(operation, startNanos);
+        histogram(results, operation).record(resultSize);
+    }
+
+    /**
+     * Measures an operation that returns a stream. The operation is recorded when the stream
+     * is closed, with the time from its start to then and the number of events read from it.
+     *
+     * @param operation The operation.
+     * @param startNanos The {@link System#nanoTime()} at which it started.
+     * @param events The stream returned by the operation.
+     * @param <T> The type of the streamed events.
+     * @return A stream of the same events that records the operation on close.
+     */
+    public <T> Stream<T> recordOnClose(Operation operation, long startNanos, Stream<T> events) {
+        long[] read = new long[1];
+        return events.peek(event -> read[0]++).onClose(() -> record(operation, startNanos, read[0]));
+    }
+
+    /**
+     * Counts bytes read from a calendar file.
+     *
+     * @param bytes The number of bytes.
+     */
+    public void addBytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    /**
+     * Counts bytes written to a calendar file.
+     *
+     * @param bytes The number of bytes.
+     */
+    public void addBytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    /**
+     * Retrieves the latencies of an operation.
+     *
+     * @param operation The operation.
+     * @return The histogram of its latencies in nanoseconds.
+     */
+    public Histogram latency(Operation operation) {
+        return histogram(latencies, operation);
+    }
+
+    /**
+     * Retrieves the result sizes of an operation.
+     *
+     * @param operation The operation.
+     * @return The histogram of the number of events it returned; empty for operations returning none.
+     */
+    public Histogram resultSizes(Operation operation) {
+        return histogram(results, operation);
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public Map<String, OperationSummary> getOperations() {
+        Map<String, OperationSummary> summaries = new LinkedHashMap<>();
+        for (Operation operation : OPERATIONS) {
+            Histogram latency = latencies.get(operation.ordinal());
+            if (latency != null && latency.count() > 0) {
+                Histogram sizes = results.get(operation.ordinal());
+                summaries.put(operation.name(), new OperationSummary(latency, sizes != null ? sizes : new Histogram()));
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * Publishes the metrics on the platform MBean server as
+     * {@code com.jonathan.calendar:type=CalendarMetrics,name=<name>},
+     * replacing metrics published under the same name.
+     *
+     * @param name The name of the calendar.
+     * @return The name the metrics are published under.
+     */
+    public ObjectName register(String name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(
+                    "com.jonathan.calendar:type=CalendarMetrics,name=" + ObjectName.quote(name));
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot publish the metrics of calendar '" + name + "'", e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.jonathan.calendar.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX view of a calendar's {@link CalendarMetrics}.
+ */
+public interface CalendarMetricsMXBean {
+    /**
+     * Retrieves the number of bytes read from calendar files.
+     *
+     * @return The bytes read by loads.
+     */
+    long getBytesRead();
+
+    /**
+     * Retrieves the number of bytes written to calendar files.
+     *
+     * @return The bytes written by saves.
+     */
+    long getBytesWritten();
+
+    /**
+     * Summarizes every operation that has run at least once.
+     *
+     * @return The summaries, keyed by operation name.
+     */
+    Map<String, OperationSummary> getOperations();
+}
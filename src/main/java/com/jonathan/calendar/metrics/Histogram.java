@@ -0,0 +1,128 @@
+package com.jonathan.calendar.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of non-negative values, such as latencies in nanoseconds or result sizes.
+ * Values are counted in log-linear buckets: every power of two is split into eight buckets,
+ * so a reported percentile is within 12.5% of the recorded value over the whole range of long.
+ *
+ * <p>Recording is lock-free and allocates nothing: one atomic increment of the value's bucket,
+ * one addition to a striped sum and, only for a new maximum, a compare-and-set. Reads may run
+ * concurrently with recording and then see some of the values being recorded.</p>
+ */
+public final class Histogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(value, 0);
+        }
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    static long highestValueIn(int bucket) {
+        int shift = bucket / SUB_BUCKETS - 1;
+        if (shift <= 0) {
+            return bucket;
+        }
+        long lowest = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value The value.
+     */
+    public void record(long value) {
+        long recorded = Math.max(value, 0);
+        counts.incrementAndGet(bucketOf(recorded));
+        sum.add(recorded);
+        long highest = max.get();
+        while (recorded > highest && !max.compareAndSet(highest, recorded)) {
+            highest = max.get();
+        }
+    }
+
+    /**
+     * Retrieves the number of recorded values.
+     *
+     * @return The number of values.
+     */
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Retrieves the sum of the recorded values.
+     *
+     * @return The sum.
+     */
+    public long sum() {
+        return sum.sum();
+    }
+
+    /**
+     * Retrieves the largest recorded value.
+     *
+     * @return The exact maximum, or 0 if nothing was recorded.
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Retrieves the mean of the recorded values.
+     *
+     * @return The mean, or 0 if nothing was recorded.
+     */
+    public double mean() {
+        long count = count();
+        return count == 0 ? 0 : (double) sum() / count;
+    }
+
+    /**
+     * Retrieves the value below which the given percentage of recorded values fall.
+     *
+     * @param percentile The percentage, from 0 to 100.
+     * @return The highest value of the bucket holding that percentile, at most the maximum,
+     *         or 0 if nothing was recorded.
+     */
+    public long valueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValueIn(i), max());
+            }
+        }
+        return max();
+    }
+}
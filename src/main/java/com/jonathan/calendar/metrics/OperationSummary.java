@@ -0,0 +1,93 @@
+package com.jonathan.calendar.metrics;
+
+/**
+ * A snapshot of the count, latencies and result sizes of one calendar operation.
+ */
+public final class OperationSummary {
+    private final long count;
+    private final double meanNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long maxNanos;
+    private final double meanResults;
+    private final long maxResults;
+
+    OperationSummary(Histogram latency, Histogram results) {
+        this.count = latency.count();
+        this.meanNanos = latency.mean();
+        this.p50Nanos = latency.valueAtPercentile(50);
+        this.p99Nanos = latency.valueAtPercentile(99);
+        this.maxNanos = latency.max();
+        this.meanResults = results.mean();
+        this.maxResults = results.max();
+    }
+
+    /**
+     * Retrieves how often the operation ran.
+     *
+     * @return The number of runs.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Retrieves the mean latency of the operation.
+     *
+     * @return The mean latency in nanoseconds.
+     */
+    public double getMeanNanos() {
+        return meanNanos;
+    }
+
+    /**
+     * Retrieves the median latency of the operation.
+     *
+     * @return The median latency in nanoseconds.
+     */
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    /**
+     * Retrieves the latency 99% of runs stayed within.
+     *
+     * @return The 99th percentile latency in nanoseconds.
+     */
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    /**
+     * Retrieves the longest latency of the operation.
+     *
+     * @return The longest latency in nanoseconds.
+     */
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * Retrieves the mean number of events the operation returned.
+     *
+     * @return The mean result size.
+     */
+    public double getMeanResults() {
+        return meanResults;
+    }
+
+    /**
+     * Retrieves the largest number of events the operation returned.
+     *
+     * @return The largest result size.
+     */
+    public long getMaxResults() {
+        return maxResults;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count = %d, mean = %.1f us, p50 = %.1f us, p99 = %.1f us, max = %.1f us, mean results = %.1f",
+                count, meanNanos / 1_000, p50Nanos / 1_000.0, p99Nanos / 1_000.0, maxNanos / 1_000.0, meanResults);
+    }
+}
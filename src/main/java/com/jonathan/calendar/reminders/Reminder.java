@@ -0,0 +1,49 @@
+package com.jonathan.calendar.reminders;
+
+import com.jonathan.events.Event;
+import java.time.LocalDateTime;
+
+/**
+ * A reminder of an upcoming event, handed to the handlers of a {@link ReminderScheduler}.
+ */
+public final class Reminder {
+    private final Event event;
+    private final Event scheduled;
+    private final LocalDateTime remindAt;
+
+    Reminder(Event event, Event scheduled, LocalDateTime remindAt) {
+        this.event = event;
+        this.scheduled = scheduled;
+        this.remindAt = remindAt;
+    }
+
+    /**
+     * Retrieves the upcoming event. For a recurring event this is a copy for the upcoming occurrence.
+     *
+     * @return The event.
+     */
+    public Event getEvent() {
+        return event;
+    }
+
+    /**
+     * Retrieves the event as it was scheduled, which is the series for a recurring event.
+     */
+    Event getScheduled() {
+        return scheduled;
+    }
+
+    /**
+     * Retrieves the date and time at which the reminder was due.
+     *
+     * @return The reminder time, at most the event's date and time.
+     */
+    public LocalDateTime getRemindAt() {
+        return remindAt;
+    }
+
+    @Override
+    public String toString() {
+        return "Reminder{ at = " + remindAt + ", event = " + event + " }";
+    }
+}
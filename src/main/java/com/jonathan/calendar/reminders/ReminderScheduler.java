@@ -0,0 +1,210 @@
+package com.jonathan.calendar.reminders;
+
+import com.jonathan.events.Event;
+import com.jonathan.events.EventPrio;
+import com.jonathan.events.Recurrence;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Fires a reminder for every upcoming event some time before it starts, depending on its
+ * priority. Reminders wait in a {@link TimerWheel}, so scheduling, rescheduling and cancelling
+ * one is O(1) however many are pending, and one ticking thread fires every reminder that came
+ * due in a tick as a batch. Handlers run on virtual threads, so a slow handler holds up neither
+ * the ticking thread nor the other reminders.
+ *
+ * <p>Each event has at most one pending reminder: scheduling an event again replaces its
+ * reminder. A recurring event is reminded of its next occurrence, and once that reminder
+ * fires, of the occurrence after it. An event that starts sooner than its lead time is
+ * reminded of at once; events that already started are not reminded of.</p>
+ *
+ * <p>Time is read from a {@link Clock}, and {@link #advance()} fires the due reminders, so a
+ * scheduler built on a fixed clock and never started can be driven step by step.
+ * All methods are thread-safe.</p>
+ */
+public class ReminderScheduler implements AutoCloseable {
+    /**
+     * How long before an event it is reminded of, by priority: an hour for HIGH, a quarter of an
+     * hour for MID and five minutes for LOW. Events without a priority are reminded of at their start.
+     */
+    public static final Map<EventPrio, Duration> DEFAULT_LEAD_TIMES = Collections.unmodifiableMap(new EnumMap<>(Map.of(
+            EventPrio.HIGH, Duration.ofHours(1),
+            EventPrio.MID, Duration.ofMinutes(15),
+            EventPrio.LOW, Duration.ofMinutes(5))));
+    private static final Duration DEFAULT_TICK = Duration.ofSeconds(1);
+
+    private final Clock clock;
+    private final long tickMillis;
+    private final Map<EventPrio, Duration> leadTimes;
+    private final Executor dispatcher;
+    private final ExecutorService ownDispatcher;
+    private final List<Consumer<Reminder>> handlers = new CopyOnWriteArrayList<>();
+    private final TimerWheel<Reminder> wheel;
+    private final Map<Integer, TimerWheel.Timeout<Reminder>> pending = new HashMap<>();
+    private ScheduledExecutorService ticker;
+
+    /**
+     * Creates a scheduler on the system clock that ticks every second, uses the default
+     * lead times and runs each handler call on a new virtual thread.
+     */
+    public ReminderScheduler() {
+        this(Clock.systemDefaultZone(), DEFAULT_TICK, DEFAULT_LEAD_TIMES, null);
+    }
+
+    /**
+     * Creates a scheduler.
+     *
+     * @param clock The clock reminders are timed by; event times are read in its zone.
+     * @param tick How often due reminders are fired, and so how late one may fire.
+     * @param leadTimes How long before an event it is reminded of, by priority. Missing priorities get 0.
+     * @param dispatcher Runs the handler calls, or null for a new virtual thread per call.
+     */
+    public ReminderScheduler(Clock clock, Duration tick, Map<EventPrio, Duration> leadTimes, Executor dispatcher) {
+        if (tick.toMillis() <= 0) {
+            throw new IllegalArgumentException("Tick must be at least a millisecond: " + tick);
+        }
+        this.clock = clock;
+        this.tickMillis = tick.toMillis();
+        this.leadTimes = new EnumMap<>(EventPrio.class);
+        this.leadTimes.putAll(leadTimes);
+        this.ownDispatcher = dispatcher == null ? Executors.newVirtualThreadPerTaskExecutor() : null;
+        this.dispatcher = dispatcher == null ? ownDispatcher : dispatcher;
+        this.wheel = new TimerWheel<>(clock.millis() / tickMillis);
+    }
+
+    /**
+     * Adds a handler called with every reminder that fires.
+     *
+     * @param handler The handler.
+     */
+    public void addHandler(Consumer<Reminder> handler) {
+        handlers.add(handler);
+    }
+
+    /**
+     * Schedules the reminder of an event, replacing any reminder pending for its ID.
+     *
+     * @param event The event.
+     */
+    public synchronized void schedule(Event event) {
+        cancel(event.getID());
+        LocalDateTime now = LocalDateTime.now(clock);
+        Event upcoming = event;
+        Recurrence recurrence = event.getRecurrence();
+        if (recurrence != null) {
+            LocalDateTime next = recurrence.nextOccurrence(event.getDateTime(), now);
+            if (next == null) {
+                return;
+            }
+            upcoming = event.occurrenceAt(next);
+        } else if (!event.getDateTime().isAfter(now)) {
+            return;
+        }
+        add(event, upcoming, now);
+    }
+
+    private void add(Event event, Event upcoming, LocalDateTime now) {
+        LocalDateTime remindAt = upcoming.getDateTime().minus(leadTimes.getOrDefault(upcoming.getPriority(), Duration.ZERO));
+        if (remindAt.isBefore(now)) {
+            remindAt = now;
+        }
+        long millis = remindAt.atZone(clock.getZone()).toInstant().toEpochMilli();
+        long tick = Math.floorDiv(millis + tickMillis - 1, tickMillis);
+        pending.put(event.getID(), wheel.schedule(tick, new Reminder(upcoming, event, remindAt)));
+    }
+
+    /**
+     * Cancels the pending reminder of an event.
+     *
+     * @param id The ID of the event.
+     * @return true if a reminder was pending.
+     */
+    public synchronized boolean cancel(int id) {
+        TimerWheel.Timeout<Reminder> timeout = pending.remove(id);
+        return timeout != null && wheel.cancel(timeout);
+    }
+
+    /**
+     * Cancels every pending reminder.
+     */
+    public synchronized void cancelAll() {
+        for (TimerWheel.Timeout<Reminder> timeout : pending.values()) {
+            wheel.cancel(timeout);
+        }
+        pending.clear();
+    }
+
+    /**
+     * Retrieves the number of pending reminders.
+     *
+     * @return The number of reminders.
+     */
+    public synchronized int pending() {
+        return pending.size();
+    }
+
+    /**
+     * Fires every reminder that is due by the clock's current time, and schedules the reminder
+     * of the next occurrence of each recurring event fired. Called on every tick once started.
+     *
+     * @return The number of reminders fired.
+     */
+    public int advance() {
+        List<Reminder> due;
+        synchronized (this) {
+            due = wheel.advance(Math.floorDiv(clock.millis(), tickMillis));
+            LocalDateTime now = LocalDateTime.now(clock);
+            for (Reminder reminder : due) {
+                Event scheduled = reminder.getScheduled();
+                pending.remove(scheduled.getID());
+                Recurrence recurrence = scheduled.getRecurrence();
+                if (recurrence != null) {
+                    LocalDateTime after = reminder.getEvent().getDateTime();
+                    LocalDateTime next = recurrence.nextOccurrence(scheduled.getDateTime(), after.isAfter(now) ? after : now);
+                    if (next != null) {
+                        add(scheduled, scheduled.occurrenceAt(next), now);
+                    }
+                }
+            }
+        }
+        for (Reminder reminder : due) {
+            for (Consumer<Reminder> handler : handlers) {
+                dispatcher.execute(() -> handler.accept(reminder));
+            }
+        }
+        return due.size();
+    }
+
+    /**
+     * Starts the thread that fires due reminders on every tick.
+     */
+    public synchronized void start() {
+        if (ticker != null) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reminder-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops firing reminders. Handler calls already started are left to finish.
+     */
+    @Override
+    public synchronized void close() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+        if (ownDispatcher != null) {
+            ownDispatcher.shutdown();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.jonathan.calendar.reminders;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timer wheel holding values that expire at a given tick.
+ * Each level has 64 slots; a slot of level l covers 64^l ticks. A timeout is put in the lowest
+ * level whose slot tells its tick apart from the current tick, so scheduling and cancelling are
+ * O(1). Once the current tick reaches the start of a higher level slot, its timeouts cascade
+ * down to lower levels; a timeout cascades at most once per level before it expires.
+ *
+ * <p>Timeouts are kept in doubly linked lists per slot, so cancelling one unlinks it without
+ * searching. The wheel is not thread-safe.</p>
+ *
+ * @param <T> The type of the scheduled values.
+ */
+public final class TimerWheel<T> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = (Long.SIZE + SLOT_BITS - 1) / SLOT_BITS;
+    /** Timeouts at or before the current tick, expired by the next advance. */
+    private static final int DUE = LEVELS;
+
+    private final List<Timeout<T>[]> levels = new ArrayList<>(LEVELS + 1);
+    private long currentTick;
+    private int size;
+
+    /**
+     * A value scheduled to expire at a tick.
+     *
+     * @param <T> The type of the value.
+     */
+    public static final class Timeout<T> {
+        private final T value;
+        private final long tick;
+        private int level = -1;
+        private int slot;
+        private Timeout<T> previous;
+        private Timeout<T> next;
+
+        private Timeout(T value, long tick) {
+            this.value = value;
+            this.tick = tick;
+        }
+
+        /**
+         * Retrieves the scheduled value.
+         *
+         * @return The value.
+         */
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * Retrieves the tick at which the value expires.
+         *
+         * @return The tick.
+         */
+        public long getTick() {
+            return tick;
+        }
+
+        /**
+         * Checks whether the timeout is still waiting to expire.
+         *
+         * @return false once it expired or was cancelled.
+         */
+        public boolean isPending() {
+            return level >= 0;
+        }
+    }
+
+    /**
+     * Creates an empty wheel.
+     *
+     * @param startTick The current tick.
+     */
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long startTick) {
+        for (int level = 0; level <= LEVELS; level++) {
+            levels.add((Timeout<T>[]) new Timeout<?>[level == DUE ? 1 : SLOTS]);
+        }
+        currentTick = startTick;
+    }
+
+    /**
+     * Retrieves the last tick the wheel was advanced to.
+     *
+     * @return The current tick.
+     */
+    public long currentTick() {
+        return currentTick;
+    }
+
+    /**
+     * Retrieves the number of pending timeouts.
+     *
+     * @return The number of timeouts.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Schedules a value to expire at a tick. A tick that has already passed expires on the next advance.
+     *
+     * @param tick The tick.
+     * @param value The value.
+     * @return The timeout, which can be cancelled.
+     */
+    public Timeout<T> schedule(long tick, T value) {
+        Timeout<T> timeout = new Timeout<>(value, tick);
+        link(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Cancels a timeout.
+     *
+     * @param timeout The timeout.
+     * @return true if it was pending; false if it already expired or was cancelled.
+     */
+    public boolean cancel(Timeout<T> timeout) {
+        if (!timeout.isPending()) {
+            return false;
+        }
+        unlink(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * Moves the wheel forward to a tick, expiring every timeout at or before it.
+     *
+     * @param tick The tick to advance to. Ticks before the current tick only expire due timeouts.
+     * @return The expired values: those already due first, then those of each passed tick in turn.
+     */
+    public List<T> advance(long tick) {
+        List<T> expired = new ArrayList<>();
+        expire(DUE, 0, expired);
+        while (currentTick < tick) {
+            if (size == 0) {
+                currentTick = tick;
+                break;
+            }
+            long next = ++currentTick;
+            int top = Math.min(Long.numberOfTrailingZeros(next) / SLOT_BITS, LEVELS - 1);
+            for (int level = top; level > 0; level--) {
+                cascade(level, (int) (next >>> (level * SLOT_BITS)) & (SLOTS - 1));
+            }
+            expire(0, (int) next & (SLOTS - 1), expired);
+            expire(DUE, 0, expired);
+        }
+        return expired;
+    }
+
+    private void cascade(int level, int slot) {
+        Timeout<T>[] slots = levels.get(level);
+        Timeout<T> timeout = slots[slot];
+        slots[slot] = null;
+        while (timeout != null) {
+            Timeout<T> next = timeout.next;
+            link(timeout);
+            timeout = next;
+        }
+    }
+
+    private void expire(int level, int slot, List<T> expired) {
+        Timeout<T>[] slots = levels.get(level);
+        Timeout<T> timeout = slots[slot];
+        slots[slot] = null;
+        while (timeout != null) {
+            Timeout<T> next = timeout.next;
+            timeout.level = -1;
+            timeout.previous = null;
+            timeout.next = null;
+            expired.add(timeout.value);
+            size--;
+            timeout = next;
+        }
+    }
+
+    private void link(Timeout<T> timeout) {
+        if (timeout.tick <= currentTick) {
+            timeout.level = DUE;
+            timeout.slot = 0;
+        } else {
+            int level = (Long.SIZE - 1 - Long.numberOfLeadingZeros(timeout.tick ^ currentTick)) / SLOT_BITS;
+            timeout.level = level;
+            timeout.slot = (int) (timeout.tick >>> (level * SLOT_BITS)) & (SLOTS - 1);
+        }
+        Timeout<T>[] slots = levels.get(timeout.level);
+        timeout.previous = null;
+        timeout.next = slots[timeout.slot];
+        if (timeout.next != null) {
+            timeout.next.previous = timeout;
+        }
+        slots[timeout.slot] = timeout;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            levels.get(timeout.level)[timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.level = -1;
+        timeout.previous = null;
+        timeout.next = null;
+    }
+}
@@ -0,0 +1,285 @@
+package com.jonathan.calendar.server;
+
+import com.jonathan.calendar.Calendar;
+import com.jonathan.events.Event;
+import com.jonathan.events.EventType;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Serves a calendar over HTTP with JSON bodies, in the format of {@link EventJson}:
+ * <ul>
+ *   <li>{@code GET /events} lists every event; {@code ?day=2024-05-06}, {@code ?year=2024},
+ *       {@code ?type=WORK,MEETING} or {@code ?description=standup} searches instead.</li>
+ *   <li>{@code POST /events} schedules an event under a new ID and returns it with its conflicts.</li>
+ *   <li>{@code GET /events/{id}} retrieves an event.</li>
+ *   <li>{@code PUT /events/{id}} updates an event and returns it with its conflicts.</li>
+ *   <li>{@code DELETE /events/{id}} removes an event and returns it.</li>
+ * </ul>
+ * Errors are answered with a status code and {@code {"error": "..."}}. A listing that fails once
+ * its first chunk is on the way can no longer be answered with an error, so its connection is
+ * dropped instead, and the client sees the response end before its last chunk.
+ *
+ * <p>Each request runs on its own virtual thread, so a slow client holds up no other request.
+ * Listings are written as they are read from the calendar, in chunks of 16 KB, so a large
+ * result is never held as one JSON document. Connections are kept alive between requests, and
+ * requests a client sends ahead on one connection are answered in order. The calendar must be
+ * safe to use from several threads, such as one created with {@link Calendar#concurrent()}.</p>
+ *
+ * <p>The JDK server writes a response's headers and body separately. Unless the JVM runs with
+ * {@code -Dsun.net.httpserver.nodelay=true}, Nagle's algorithm then holds each body back until the
+ * client acknowledges the headers, which clients delaying their ACKs do after about 40 ms.</p>
+ */
+public class CalendarServer implements AutoCloseable {
+    private static final String EVENTS = "/events";
+    private static final int BLOCK_SIZE = 1 << 14;
+    private static final int BACKLOG = 1024;
+
+    private final Calendar calendar;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Creates a server for a calendar. It does not accept requests until started.
+     *
+     * @param calendar The calendar to serve.
+     * @param address The address to listen on; port 0 picks a free port.
+     * @throws IOException If the address cannot be bound.
+     */
+    public CalendarServer(Calendar calendar, InetSocketAddress address) throws IOException {
+        this.calendar = calendar;
+        this.server = HttpServer.create(address, BACKLOG);
+        server.setExecutor(executor);
+        server.createContext(EVENTS, this::handle);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Retrieves the port the server listens on.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests and closes every connection.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    /**
+     * Signals that a response failed after its headers were sent. The server closes the
+     * connection when a handler throws an IOException, which is the only way to tell the
+     * client that the body it is reading is incomplete.
+     */
+    private static final class AbortedResponseException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        AbortedResponseException(Throwable cause) {
+            super("Response aborted after its headers were sent", cause);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        boolean aborted = false;
+        try {
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals(EVENTS) || path.equals(EVENTS + "/")) {
+                handleEvents(exchange);
+            } else if (path.startsWith(EVENTS + "/")) {
+                handleEvent(exchange, Integer.parseInt(path.substring(EVENTS.length() + 1)));
+            } else {
+                sendError(exchange, 404, "Not found");
+            }
+        } catch (AbortedResponseException e) {
+            aborted = true;
+            throw e;
+        } catch (NumberFormatException e) {
+            sendError(exchange, 400, "Invalid number: " + e.getMessage());
+        } catch (DateTimeParseException e) {
+            sendError(exchange, 400, "Invalid date: " + e.getParsedString());
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, String.valueOf(e));
+        } finally {
+            if (!aborted) {
+                exchange.close();
+            }
+        }
+    }
+
+    private void handleEvents(HttpExchange exchange) throws IOException {
+        switch (exchange.getRequestMethod()) {
+            case "GET":
+                list(exchange, parameters(exchange.getRequestURI().getRawQuery()));
+                break;
+            case "POST": {
+                Event event = EventJson.parse(readBody(exchange));
+                event.setID(calendar.allocateID());
+                sendScheduled(exchange, 201, event, calendar.scheduleEvent(event));
+                break;
+            }
+            default:
+                exchange.getResponseHeaders().set("Allow", "GET, POST");
+                sendError(exchange, 405, "Method not allowed");
+        }
+    }
+
+    private void handleEvent(HttpExchange exchange, int id) throws IOException {
+        switch (exchange.getRequestMethod()) {
+            case "GET": {
+                Event event = calendar.getEventByID(id);
+                if (event == null) {
+                    sendError(exchange, 404, "No event with ID " + id);
+                } else {
+                    send(exchange, 200, EventJson.appendTo(new StringBuilder(), event));
+                }
+                break;
+            }
+            case "PUT": {
+                Event event = EventJson.parse(readBody(exchange));
+                event.setID(id);
+                if (calendar.getEventByID(id) == null) {
+                    sendError(exchange, 404, "No event with ID " + id);
+                } else {
+                    sendScheduled(exchange, 200, event, calendar.updateEvent(event));
+                }
+                break;
+            }
+            case "DELETE": {
+                Event removed = calendar.removeEvent(id);
+                if (removed == null) {
+                    sendError(exchange, 404, "No event with ID " + id);
+                } else {
+                    send(exchange, 200, EventJson.appendTo(new StringBuilder(), removed));
+                }
+                break;
+            }
+            default:
+                exchange.getResponseHeaders().set("Allow", "GET, PUT, DELETE");
+                sendError(exchange, 405, "Method not allowed");
+        }
+    }
+
+    /**
+     * Answers a listing request with the search its parameters ask for, or with every event,
+     * streamed from the calendar's indexes or from its query cache.
+     */
+    private void list(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+        if (parameters.containsKey("day")) {
+            stream(exchange, calendar.streamEventsOn(LocalDate.parse(parameters.get("day"))));
+        } else if (parameters.containsKey("year")) {
+            stream(exchange, calendar.streamEventsByYear(Integer.parseInt(parameters.get("year"))));
+        } else if (parameters.containsKey("type")) {
+            Set<EventType> types = EnumSet.noneOf(EventType.class);
+            for (String type : parameters.get("type").split(",")) {
+                types.add(EventType.valueOf(type.trim().toUpperCase()));
+            }
+            stream(exchange, calendar.streamEventsByType(types));
+        } else if (parameters.containsKey("description")) {
+            stream(exchange, calendar.streamEventsByDescription(parameters.get("description")));
+        } else {
+            stream(exchange, calendar.streamAllEvents());
+        }
+    }
+
+    private static Map<String, String> parameters(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Writes events as a JSON array in chunks, so the response is never materialized whole.
+     * The body is left unfinished if reading the events or writing them fails, since closing
+     * it would end the response as if the listing were complete.
+     *
+     * @throws AbortedResponseException If the listing fails after the headers were sent.
+     */
+    private static void stream(HttpExchange exchange, Stream<Event> events) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        Writer out = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8);
+        try (Stream<Event> listed = events) {
+            StringBuilder block = new StringBuilder(BLOCK_SIZE + 512);
+            block.append('[');
+            Iterator<Event> iterator = listed.iterator();
+            while (iterator.hasNext()) {
+                EventJson.appendTo(block, iterator.next());
+                if (iterator.hasNext()) {
+                    block.append(',');
+                }
+                if (block.length() >= BLOCK_SIZE) {
+                    out.append(block);
+                    block.setLength(0);
+                }
+            }
+            out.append(block.append(']'));
+        } catch (RuntimeException | IOException e) {
+            throw new AbortedResponseException(e);
+        }
+        out.close();
+    }
+
+    private static void sendScheduled(HttpExchange exchange, int status, Event event, List<Event> conflicts)
+            throws IOException {
+        StringBuilder json = new StringBuilder("{\"event\":");
+        EventJson.appendTo(json, event).append(",\"conflicts\":[");
+        for (int i = 0; i < conflicts.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            EventJson.appendTo(json, conflicts.get(i));
+        }
+        send(exchange, status, json.append("]}"));
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, Json.appendString(new StringBuilder("{\"error\":"), message).append('}'));
+    }
+
+    private static void send(HttpExchange exchange, int status, CharSequence json) throws IOException {
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
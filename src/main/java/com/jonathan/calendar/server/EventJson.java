@@ -0,0 +1,135 @@
+package com.jonathan.calendar.server;
+
+import com.jonathan.events.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Converts events to and from the JSON objects of the HTTP API:
+ * <pre>
+ * {"id": 7, "description": "Standup", "type": "MEETING", "priority": "MID",
+ *  "dateTime": "2024-05-06T09:00", "duration": 15,
+ *  "recurrence": {"frequency": "WEEKLY", "interval": 1, "count": 0, "until": null, "exceptions": []}}
+ * </pre>
+ * The duration is in minutes. Duration and recurrence are null for events without them;
+ * the ID may be left out of new events.
+ */
+final class EventJson {
+
+    private EventJson() {
+    }
+
+    /**
+     * Appends an event as a JSON object.
+     *
+     * @param out The buffer to append to.
+     * @param event The event.
+     * @return The buffer.
+     */
+    static StringBuilder appendTo(StringBuilder out, Event event) {
+        out.append("{\"id\":").append(event.getID()).append(",\"description\":");
+        Json.appendString(out, event.getDescription()).append(",\"type\":");
+        Json.appendString(out, event.getType() == null ? null : event.getType().name()).append(",\"priority\":");
+        Json.appendString(out, event.getPriority() == null ? null : event.getPriority().name()).append(",\"dateTime\":");
+        Json.appendString(out, event.getDateTime().toString()).append(",\"duration\":");
+        if (event.hasDuration()) {
+            out.append(event.getDuration().toMinutes());
+        } else {
+            out.append("null");
+        }
+        out.append(",\"recurrence\":");
+        Recurrence recurrence = event.getRecurrence();
+        if (recurrence == null) {
+            return out.append("null}");
+        }
+        out.append("{\"frequency\":\"").append(recurrence.getFrequency().name())
+                .append("\",\"interval\":").append(recurrence.getInterval())
+                .append(",\"count\":").append(recurrence.getCount())
+                .append(",\"until\":");
+        Json.appendString(out, recurrence.getUntil() == null ? null : recurrence.getUntil().toString())
+                .append(",\"exceptions\":[");
+        boolean first = true;
+        for (LocalDate exception : new TreeSet<>(recurrence.getExceptions())) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            out.append('"').append(exception).append('"');
+        }
+        return out.append("]}}");
+    }
+
+    /**
+     * Reads an event from a JSON object.
+     *
+     * @param json The JSON text of the object.
+     * @return The event, with ID 0 if the object has none.
+     * @throws IllegalArgumentException If the text is not a valid event.
+     */
+    static Event parse(String json) {
+        Object parsed = Json.parse(json);
+        if (!(parsed instanceof Map)) {
+            throw new IllegalArgumentException("An event must be a JSON object");
+        }
+        Map<?, ?> object = (Map<?, ?>) parsed;
+        try {
+            Event event = new Event(
+                    requiredString(object, "description"),
+                    EventType.valueOf(requiredString(object, "type").toUpperCase()),
+                    LocalDateTime.parse(requiredString(object, "dateTime")),
+                    EventPrio.valueOf(requiredString(object, "priority").toUpperCase()));
+            event.setID((int) number(object, "id", 0));
+            long minutes = number(object, "duration", 0);
+            if (minutes > 0) {
+                event.setDuration(Duration.ofMinutes(minutes));
+            }
+            if (object.get("recurrence") instanceof Map) {
+                event.setRecurrence(recurrence((Map<?, ?>) object.get("recurrence")));
+            }
+            return event;
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date or time: " + e.getParsedString(), e);
+        }
+    }
+
+    private static Recurrence recurrence(Map<?, ?> object) {
+        List<LocalDate> exceptions = new ArrayList<>();
+        if (object.get("exceptions") instanceof List) {
+            for (Object date : (List<?>) object.get("exceptions")) {
+                exceptions.add(LocalDate.parse(String.valueOf(date)));
+            }
+        }
+        Object until = object.get("until");
+        return new Recurrence(
+                Recurrence.Frequency.valueOf(requiredString(object, "frequency").toUpperCase()),
+                (int) number(object, "interval", 1),
+                (int) number(object, "count", 0),
+                until == null ? null : LocalDateTime.parse(String.valueOf(until)),
+                exceptions);
+    }
+
+    private static String requiredString(Map<?, ?> object, String name) {
+        Object value = object.get(name);
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException("Missing or invalid \"" + name + "\"");
+        }
+        return (String) value;
+    }
+
+    private static long number(Map<?, ?> object, String name, long absent) {
+        Object value = object.get(name);
+        if (value == null) {
+            return absent;
+        }
+        if (!(value instanceof Long)) {
+            throw new IllegalArgumentException("\"" + name + "\" must be a whole number");
+        }
+        return (Long) value;
+    }
+}
@@ -0,0 +1,359 @@
+package com.jonathan.calendar.store;
+
+import com.jonathan.calendar.io.CalendarFile;
+import com.jonathan.events.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Event store holding its events in parallel primitive arrays instead of objects.
+ * Each event occupies one slot: an int ID, the long epoch minute of its date-time,
+ * byte type and priority ordinals (-1 for none), its int duration in minutes (-1 for none)
+ * and the int code of its description in a shared {@link DescriptionPool}. IDs are mapped to slots by an {@link IntSlotMap}.
+ * An {@link Event} is only created for the events a query returns, and every call
+ * creates new ones, so changing a returned event does not change the store.
+ *
+ * <p>Time order is kept as a sorted array of packed (epoch minute, ID) keys. Changes append
+ * their new keys unsorted and leave outdated keys in place; the next query sorts the appended
+ * keys and merges them in, dropping outdated ones. A query after a batch of changes therefore
+ * costs one pass over the keys, and queries between changes cost O(log n + k).</p>
+ *
+ * <p>Date-times are stored to the minute, like in the binary calendar file format,
+ * and must lie within about 4000 years of 1970.</p>
+ */
+public class ColumnarEventStore implements EventStore {
+    private static final EventType[] TYPES = EventType.values();
+    private static final EventPrio[] PRIOS = EventPrio.values();
+    private static final long FREE = Long.MIN_VALUE;
+
+    private int[] ids = new int[16];
+    private long[] minutes = new long[16];
+    private byte[] types = new byte[16];
+    private byte[] prios = new byte[16];
+    private int[] descriptions = new int[16];
+    private int[] durations = new int[16];
+    private int slotCount;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int size;
+    private final IntSlotMap slotsByID = new IntSlotMap();
+    private final DescriptionPool pool = new DescriptionPool();
+
+    private long[] sortKeys = new long[16];
+    private int[] sortSlots = new int[16];
+    private int keyCount;
+    private int sortedCount;
+    private int outdatedKeys;
+
+    @Override
+    public Event get(int id) {
+        int slot = slotsByID.get(id);
+        return slot < 0 ? null : materialize(slot);
+    }
+
+    @Override
+    public Event put(Event event) {
+        long minute = CalendarFile.toEpochMinute(event.getDateTime());
+        if (minute < Integer.MIN_VALUE || minute > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Date out of range: " + event.getDateTime());
+        }
+        int id = event.getID();
+        int slot = slotsByID.get(id);
+        Event previous = null;
+        if (slot >= 0) {
+            previous = materialize(slot);
+            pool.release(descriptions[slot]);
+            if (minutes[slot] != minute) {
+                outdatedKeys++;
+                appendKey(minute, id, slot);
+            }
+        } else {
+            slot = allocateSlot();
+            slotsByID.put(id, slot);
+            ids[slot] = id;
+            size++;
+            appendKey(minute, id, slot);
+        }
+        minutes[slot] = minute;
+        types[slot] = event.getType() == null ? -1 : (byte) event.getType().ordinal();
+        prios[slot] = event.getPriority() == null ? -1 : (byte) event.getPriority().ordinal();
+        durations[slot] = event.hasDuration() ? (int) Math.min(Integer.MAX_VALUE, event.getDuration().toMinutes()) : -1;
+        descriptions[slot] = pool.intern(event.getDescription());
+        if (pool.needsCompaction()) {
+            compactPool();
+        }
+        return previous;
+    }
+
+    @Override
+    public Event remove(int id) {
+        int slot = slotsByID.remove(id);
+        if (slot < 0) {
+            return null;
+        }
+        Event removed = materialize(slot);
+        pool.release(descriptions[slot]);
+        minutes[slot] = FREE;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        size--;
+        outdatedKeys++;
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Estimates the heap taken by the store from the sizes of its arrays, which hold all of its data.
+     *
+     * @return The size of the arrays, in bytes.
+     */
+    long footprint() {
+        long columns = 4L * ids.length + 8L * minutes.length + types.length + prios.length
+                + 4L * descriptions.length + 4L * durations.length;
+        long order = 8L * sortKeys.length + 4L * sortSlots.length;
+        return columns + order + 4L * freeSlots.length + slotsByID.footprint() + pool.footprint();
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotCount == ids.length) {
+            int capacity = slotCount * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            minutes = Arrays.copyOf(minutes, capacity);
+            types = Arrays.copyOf(types, capacity);
+            prios = Arrays.copyOf(prios, capacity);
+            descriptions = Arrays.copyOf(descriptions, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+        }
+        return slotCount++;
+    }
+
+    /**
+     * Creates a new event from the columns of a slot.
+     *
+     * @param slot The slot.
+     * @return The event stored in the slot.
+     */
+    private Event materialize(int slot) {
+        Event event = new Event(pool.string(descriptions[slot]),
+                types[slot] < 0 ? null : TYPES[types[slot]],
+                CalendarFile.fromEpochMinute(minutes[slot]),
+                prios[slot] < 0 ? null : PRIOS[prios[slot]]);
+        event.setID(ids[slot]);
+        if (durations[slot] >= 0) {
+            event.setDuration(Duration.ofMinutes(durations[slot]));
+        }
+        return event;
+    }
+
+    /**
+     * Packs a date-time and ID into a key whose signed order is the order of {@link Event#CHRONOLOGICAL}.
+     */
+    private static long sortKey(long minute, int id) {
+        return minute << 32 | ((id ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    private static int keyID(long key) {
+        return (int) key ^ Integer.MIN_VALUE;
+    }
+
+    private void appendKey(long minute, int id, int slot) {
+        if (keyCount == sortKeys.length) {
+            sortKeys = Arrays.copyOf(sortKeys, keyCount * 2);
+            sortSlots = Arrays.copyOf(sortSlots, keyCount * 2);
+        }
+        sortKeys[keyCount] = sortKey(minute, id);
+        sortSlots[keyCount] = slot;
+        keyCount++;
+    }
+
+    /**
+     * Checks whether a key still describes the event in its slot, rather than an earlier
+     * date-time of that event or an event removed since.
+     */
+    private boolean isCurrent(long key, int slot) {
+        return minutes[slot] != FREE && ids[slot] == keyID(key) && sortKey(minutes[slot], ids[slot]) == key;
+    }
+
+    /**
+     * Sorts the keys appended since the last query into the sorted keys, dropping outdated
+     * and duplicate keys. Also runs when outdated keys outnumber current events.
+     */
+    private void ensureSorted() {
+        if (sortedCount == keyCount && outdatedKeys <= size) {
+            return;
+        }
+        int tailCount = keyCount - sortedCount;
+        long[] tail = Arrays.copyOfRange(sortKeys, sortedCount, keyCount);
+        Arrays.sort(tail);
+        long[] mergedKeys = new long[Math.max(16, size + size / 2)];
+        int[] mergedSlots = new int[mergedKeys.length];
+        int merged = 0;
+        int i = 0;
+        int j = 0;
+        while (i < sortedCount || j < tailCount) {
+            long key;
+            int slot;
+            if (j == tailCount || (i < sortedCount && sortKeys[i] <= tail[j])) {
+                key = sortKeys[i];
+                slot = sortSlots[i++];
+            } else {
+                key = tail[j++];
+                slot = slotsByID.get(keyID(key));
+                if (slot < 0) {
+                    continue;
+                }
+            }
+            if (isCurrent(key, slot) && (merged == 0 || mergedKeys[merged - 1] != key)) {
+                mergedKeys[merged] = key;
+                mergedSlots[merged] = slot;
+                merged++;
+            }
+        }
+        sortKeys = mergedKeys;
+        sortSlots = mergedSlots;
+        keyCount = merged;
+        sortedCount = merged;
+        outdatedKeys = 0;
+    }
+
+    /**
+     * Finds the first sorted key at or after a date-time.
+     */
+    private int lowerBound(LocalDateTime dateTime) {
+        long minute = CalendarFile.toEpochMinute(dateTime);
+        if (CalendarFile.fromEpochMinute(minute).isBefore(dateTime)) {
+            minute++;
+        }
+        long key = minute << 32;
+        int low = 0;
+        int high = sortedCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortKeys[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void compactPool() {
+        int[] renumbered = pool.compact();
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (minutes[slot] != FREE && descriptions[slot] >= 0) {
+                descriptions[slot] = renumbered[descriptions[slot]];
+            }
+        }
+    }
+
+    /**
+     * Materializes the current events of a range of sorted keys.
+     */
+    private List<Event> materializeRange(int from, int to) {
+        List<Event> events = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            if (isCurrent(sortKeys[i], sortSlots[i])) {
+                events.add(materialize(sortSlots[i]));
+            }
+        }
+        return events;
+    }
+
+    @Override
+    public List<Event> all() {
+        ensureSorted();
+        return materializeRange(0, sortedCount);
+    }
+
+    /**
+     * Binary-searches the sorted keys, in O(log n + k) for k matching events once the keys are sorted.
+     */
+    @Override
+    public List<Event> between(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return new ArrayList<>();
+        }
+        ensureSorted();
+        return materializeRange(lowerBound(from), lowerBound(to));
+    }
+
+    /**
+     * Scans the type column in time order and materializes only the matching events.
+     */
+    @Override
+    public List<Event> ofTypes(Set<EventType> types) {
+        boolean[] wanted = new boolean[TYPES.length];
+        for (EventType type : types) {
+            wanted[type.ordinal()] = true;
+        }
+        ensureSorted();
+        List<Event> matching = new ArrayList<>();
+        for (int i = 0; i < sortedCount; i++) {
+            int slot = sortSlots[i];
+            byte code = this.types[slot];
+            if (code >= 0 && wanted[code] && isCurrent(sortKeys[i], slot)) {
+                matching.add(materialize(slot));
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * Splits the events by priority in one pass over the priority column in time order.
+     */
+    @Override
+    public List<Event> byPriority() {
+        ensureSorted();
+        List<List<Event>> groups = new ArrayList<>(PRIOS.length);
+        for (int i = 0; i < PRIOS.length; i++) {
+            groups.add(new ArrayList<>());
+        }
+        for (int i = 0; i < sortedCount; i++) {
+            int slot = sortSlots[i];
+            if (prios[slot] >= 0 && isCurrent(sortKeys[i], slot)) {
+                groups.get(prios[slot]).add(materialize(slot));
+            }
+        }
+        List<Event> prioritized = new ArrayList<>(size);
+        for (List<Event> group : groups) {
+            prioritized.addAll(group);
+        }
+        return prioritized;
+    }
+
+    /**
+     * Checks each distinct description in the pool once, then scans the description
+     * column in time order and materializes only the matching events.
+     */
+    @Override
+    public List<Event> matching(String keyword) {
+        String needle = keyword.toLowerCase(Locale.ROOT);
+        BitSet matchingCodes = new BitSet(pool.codeCount());
+        for (int code = 0; code < pool.codeCount(); code++) {
+            if (pool.isReferenced(code) && pool.string(code).toLowerCase(Locale.ROOT).contains(needle)) {
+                matchingCodes.set(code);
+            }
+        }
+        ensureSorted();
+        List<Event> matching = new ArrayList<>();
+        for (int i = 0; i < sortedCount; i++) {
+            int slot = sortSlots[i];
+            int code = descriptions[slot];
+            if (code >= 0 && matchingCodes.get(code) && isCurrent(sortKeys[i], slot)) {
+                matching.add(materialize(slot));
+            }
+        }
+        return matching;
+    }
+}
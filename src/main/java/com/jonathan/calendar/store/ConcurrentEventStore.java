@@ -0,0 +1,166 @@
+package com.jonathan.calendar.store;
+
+import com.jonathan.calendar.store.PersistentEventStore.Entry;
+import com.jonathan.calendar.store.PersistentEventStore.Version;
+import com.jonathan.events.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Thread-safe in-memory event store in which neither readers nor writers ever block.
+ * The store holds an immutable version of the map and indexes of a {@link PersistentEventStore},
+ * which writers replace with a compare-and-set.
+ *
+ * <p>A query reads the current version once and is answered from it alone, so every result
+ * reflects the store between two writes, and a reader neither waits for writers nor holds them
+ * back. A writer derives the next version from the current one, copying only the O(log n) nodes
+ * its change touches, and publishes it unless another write was published in the meantime, in
+ * which case it derives the next version again from the newer one. One writer always succeeds,
+ * so writes keep making progress however many readers run, and changes to the same event take
+ * effect in the order they are published. Streams and snapshots read the version they were
+ * taken on, and a snapshot costs O(1).</p>
+ */
+public class ConcurrentEventStore implements EventStore {
+    private final AtomicReference<Version> version = new AtomicReference<>(Version.EMPTY);
+
+    /**
+     * Creates an empty store.
+     */
+    public ConcurrentEventStore() {
+    }
+
+    /**
+     * Retrieves a read-only store over the current version, to answer one query from.
+     */
+    private PersistentEventStore current() {
+        return PersistentEventStore.readOnly(version.get());
+    }
+
+    @Override
+    public PersistentEventStore snapshot() {
+        return current();
+    }
+
+    @Override
+    public Event get(int id) {
+        Entry entry = version.get().events.get(id);
+        return entry == null ? null : entry.node.event;
+    }
+
+    @Override
+    public Event put(Event event) {
+        Entry entry = new Entry(event);
+        while (true) {
+            Version current = version.get();
+            Entry previous = current.events.get(event.getID());
+            if (version.compareAndSet(current, current.put(entry))) {
+                return previous == null ? null : previous.node.event;
+            }
+        }
+    }
+
+    /**
+     * Publishes the whole batch in one version, so readers see either none of it or all of it.
+     */
+    @Override
+    public void putAll(Collection<Event> events) {
+        while (true) {
+            Version current = version.get();
+            if (version.compareAndSet(current, current.putAll(events))) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public Event remove(int id) {
+        while (true) {
+            Version current = version.get();
+            Entry removed = current.events.get(id);
+            if (removed == null) {
+                return null;
+            }
+            if (version.compareAndSet(current, current.without(removed))) {
+                return removed.node.event;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return version.get().events.size();
+    }
+
+    @Override
+    public List<Event> all() {
+        return current().all();
+    }
+
+    /**
+     * Walks the time index, in O(log n + k) for k matching events.
+     */
+    @Override
+    public List<Event> between(LocalDateTime from, LocalDateTime to) {
+        return current().between(from, to);
+    }
+
+    @Override
+    public List<Event> ofTypes(Set<EventType> types) {
+        return current().ofTypes(types);
+    }
+
+    @Override
+    public List<Event> byPriority() {
+        return current().byPriority();
+    }
+
+    /**
+     * Answered from the description postings, so events that share no words with the
+     * keyword are never examined.
+     */
+    @Override
+    public List<Event> matching(String keyword) {
+        return current().matching(keyword);
+    }
+
+    /**
+     * Planned by cost over the indexes of the current version, as in {@link PersistentEventStore#query(EventQuery)}.
+     */
+    @Override
+    public List<Event> query(EventQuery query) {
+        return current().query(query);
+    }
+
+    @Override
+    public Stream<Event> stream() {
+        return current().stream();
+    }
+
+    @Override
+    public Stream<Event> streamBetween(LocalDateTime from, LocalDateTime to) {
+        return current().streamBetween(from, to);
+    }
+
+    @Override
+    public Stream<Event> streamOnDay(LocalDate date) {
+        return current().streamOnDay(date);
+    }
+
+    @Override
+    public Stream<Event> streamInYear(int year) {
+        return current().streamInYear(year);
+    }
+
+    @Override
+    public Stream<Event> streamOfTypes(Set<EventType> types) {
+        return current().streamOfTypes(types);
+    }
+
+    @Override
+    public Stream<Event> streamByPriority() {
+        return current().streamByPriority();
+    }
+}
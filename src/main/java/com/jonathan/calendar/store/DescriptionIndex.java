@@ -0,0 +1,261 @@
+package com.jonathan.calendar.store;
+
+import com.jonathan.events.Event;
+import java.util.*;
+
+/**
+ * Inverted index over the words of event descriptions.
+ * Descriptions are lowercased and split into tokens of letters and digits. Each token
+ * maps to its events in time order, and every trigram maps to the tokens containing it,
+ * so that a keyword matching part of a word is resolved against the vocabulary rather
+ * than against every event. Searches keep the case-insensitive substring semantics of
+ * {@code description.toLowerCase().contains(keyword.toLowerCase())}.
+ */
+final class DescriptionIndex {
+    private static final int GRAM = 3;
+
+    private final Map<String, NavigableSet<Event>> postings = new HashMap<>();
+    private final Map<String, Set<String>> grams = new HashMap<>();
+
+    /**
+     * Adds an event under every token of its description.
+     *
+     * @param event The event to index.
+     */
+    void add(Event event) {
+        for (String token : tokens(normalize(event.getDescription()))) {
+            NavigableSet<Event> posting = postings.get(token);
+            if (posting == null) {
+                posting = new TreeSet<>(Event.CHRONOLOGICAL);
+                postings.put(token, posting);
+                for (int i = 0; i + GRAM <= token.length(); i++) {
+                    grams.computeIfAbsent(token.substring(i, i + GRAM), gram -> new HashSet<>()).add(token);
+                }
+            }
+            posting.add(event);
+        }
+    }
+
+    /**
+     * Replaces the whole index with one built from the given events.
+     * Each posting is collected in time order and built in linear time.
+     *
+     * @param sorted The events, sorted by date and time.
+     */
+    void rebuild(List<Event> sorted) {
+        postings.clear();
+        grams.clear();
+        Map<String, List<Event>> collected = new HashMap<>();
+        for (Event event : sorted) {
+            for (String token : tokens(normalize(event.getDescription()))) {
+                collected.computeIfAbsent(token, key -> new ArrayList<>()).add(event);
+            }
+        }
+        for (Map.Entry<String, List<Event>> entry : collected.entrySet()) {
+            String token = entry.getKey();
+            SortedListView<Event> posting = new SortedListView<>(entry.getValue(), Event.CHRONOLOGICAL);
+            postings.put(token, new TreeSet<>(posting));
+            for (int i = 0; i + GRAM <= token.length(); i++) {
+                grams.computeIfAbsent(token.substring(i, i + GRAM), gram -> new HashSet<>()).add(token);
+            }
+        }
+    }
+
+    /**
+     * Removes an event from the postings of its description's tokens.
+     * Falls back to an identity scan of every posting if the description was
+     * modified in place after the event was indexed.
+     *
+     * @param event The event to remove.
+     */
+    void remove(Event event) {
+        boolean found = true;
+        for (String token : tokens(normalize(event.getDescription()))) {
+            NavigableSet<Event> posting = postings.get(token);
+            if (posting == null || !posting.remove(event)) {
+                found = false;
+            } else if (posting.isEmpty()) {
+                dropToken(token);
+            }
+        }
+        if (!found) {
+            for (String token : new ArrayList<>(postings.keySet())) {
+                NavigableSet<Event> posting = postings.get(token);
+                if (posting.removeIf(indexed -> indexed == event) && posting.isEmpty()) {
+                    dropToken(token);
+                }
+            }
+        }
+    }
+
+    /**
+     * Searches for events whose description contains the keyword, ignoring case.
+     * A keyword within a single word is answered from the postings of the matching
+     * vocabulary words alone. A keyword spanning several words narrows the candidates
+     * to its most selective word and checks only those candidates against the full description.
+     *
+     * @param keyword The keyword to search for.
+     * @param all All events in time order, used when the keyword contains no letters or digits.
+     * @return The matching events, sorted by date and time.
+     */
+    List<Event> search(String keyword, NavigableSet<Event> all) {
+        String needle = normalize(keyword);
+        List<String> fragments = tokens(needle);
+        if (fragments.isEmpty()) {
+            return verify(all, needle);
+        }
+        if (fragments.size() == 1 && fragments.get(0).length() == needle.length()) {
+            return union(postingsContaining(needle));
+        }
+
+        List<NavigableSet<Event>> narrowest = null;
+        int narrowestSize = Integer.MAX_VALUE;
+        for (String fragment : fragments) {
+            List<NavigableSet<Event>> candidates = postingsContaining(fragment);
+            int size = sizeOf(candidates);
+            if (size < narrowestSize) {
+                narrowest = candidates;
+                narrowestSize = size;
+            }
+        }
+        return verify(union(narrowest), needle);
+    }
+
+    /**
+     * Estimates how many events {@link #search(String, NavigableSet)} examines for a keyword,
+     * from the sizes of the postings it would read, without reading them.
+     *
+     * @param keyword The keyword.
+     * @param all The number of events, all examined when the keyword contains no letters or digits.
+     * @return The number of candidate events, counting an event once per matching word.
+     */
+    int estimate(String keyword, int all) {
+        List<String> fragments = tokens(normalize(keyword));
+        if (fragments.isEmpty()) {
+            return all;
+        }
+        int narrowestSize = Integer.MAX_VALUE;
+        for (String fragment : fragments) {
+            narrowestSize = Math.min(narrowestSize, sizeOf(postingsContaining(fragment)));
+        }
+        return narrowestSize;
+    }
+
+    private static int sizeOf(List<NavigableSet<Event>> postingsToCount) {
+        int size = 0;
+        for (NavigableSet<Event> posting : postingsToCount) {
+            size += posting.size();
+        }
+        return size;
+    }
+
+    /**
+     * Finds the postings of the vocabulary words containing a fragment.
+     * Fragments of at least three characters are narrowed to the smallest of their
+     * trigram sets; shorter fragments are checked against the vocabulary directly.
+     *
+     * @param fragment A lowercased fragment without separators.
+     * @return The postings of the tokens containing the fragment.
+     */
+    private List<NavigableSet<Event>> postingsContaining(String fragment) {
+        Collection<String> candidates = postings.keySet();
+        if (fragment.length() >= GRAM) {
+            for (int i = 0; i + GRAM <= fragment.length(); i++) {
+                Set<String> tokens = grams.get(fragment.substring(i, i + GRAM));
+                if (tokens == null) {
+                    return Collections.emptyList();
+                }
+                if (tokens.size() < candidates.size()) {
+                    candidates = tokens;
+                }
+            }
+        }
+        List<NavigableSet<Event>> matching = new ArrayList<>();
+        for (String token : candidates) {
+            if (token.contains(fragment)) {
+                matching.add(postings.get(token));
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * Merges postings into one time-ordered list, dropping events listed under several tokens.
+     *
+     * @param postingsToMerge The postings to merge.
+     * @return The distinct events of all postings, sorted by date and time.
+     */
+    private List<Event> union(Collection<NavigableSet<Event>> postingsToMerge) {
+        List<Event> merged = new ArrayList<>();
+        Event last = null;
+        List<Iterator<Event>> iterators = new ArrayList<>(postingsToMerge.size());
+        for (NavigableSet<Event> posting : postingsToMerge) {
+            iterators.add(posting.iterator());
+        }
+        for (Iterator<Event> it = EventMerge.merge(iterators, Event.CHRONOLOGICAL); it.hasNext(); ) {
+            Event event = it.next();
+            if (event != last) {
+                merged.add(event);
+                last = event;
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Keeps the candidates whose normalized description contains the needle.
+     *
+     * @param candidates The candidate events, in time order.
+     * @param needle The normalized keyword.
+     * @return The matching candidates, in time order.
+     */
+    private static List<Event> verify(Collection<Event> candidates, String needle) {
+        List<Event> matching = new ArrayList<>();
+        for (Event event : candidates) {
+            if (normalize(event.getDescription()).contains(needle)) {
+                matching.add(event);
+            }
+        }
+        return matching;
+    }
+
+    private void dropToken(String token) {
+        postings.remove(token);
+        for (int i = 0; i + GRAM <= token.length(); i++) {
+            String gram = token.substring(i, i + GRAM);
+            Set<String> tokens = grams.get(gram);
+            tokens.remove(token);
+            if (tokens.isEmpty()) {
+                grams.remove(gram);
+            }
+        }
+    }
+
+    static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Splits normalized text into its distinct runs of letters and digits.
+     *
+     * @param text The normalized text.
+     * @return The distinct tokens, in order of first appearance.
+     */
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String token = text.substring(start, i);
+                if (!tokens.contains(token)) {
+                    tokens.add(token);
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,198 @@
+package com.jonathan.calendar.store;
+
+import java.util.Arrays;
+
+/**
+ * Shared, deduplicated storage for event descriptions.
+ * Every distinct description is stored once in a single char array and referred to by
+ * an int code; an open-addressing table finds the code of an existing description.
+ * Codes are reference counted. Space of descriptions no longer referred to is
+ * reclaimed by {@link #compact()}, which renumbers the remaining codes.
+ */
+final class DescriptionPool {
+    private static final int MIN_COMPACTION_CHARS = 1 << 12;
+
+    private char[] chars = new char[256];
+    private int charCount;
+    private int[] starts = new int[16];
+    private int[] lengths = new int[16];
+    private int[] hashes = new int[16];
+    private int[] references = new int[16];
+    private int entryCount;
+    private int garbageChars;
+    private int[] table = new int[32];
+
+    /**
+     * Finds or adds a description and takes a reference to it.
+     *
+     * @param description The description, possibly null.
+     * @return The description's code, or -1 for null.
+     */
+    int intern(String description) {
+        if (description == null) {
+            return -1;
+        }
+        int hash = description.hashCode();
+        int mask = table.length - 1;
+        int i = spread(hash) & mask;
+        for (int entry; (entry = table[i] - 1) >= 0; i = (i + 1) & mask) {
+            if (hashes[entry] == hash && matches(entry, description)) {
+                if (references[entry]++ == 0) {
+                    garbageChars -= lengths[entry];
+                }
+                return entry;
+            }
+        }
+        int entry = append(description, hash);
+        references[entry] = 1;
+        table[i] = entry + 1;
+        if (entryCount * 2 > table.length) {
+            rehash();
+        }
+        return entry;
+    }
+
+    /**
+     * Drops a reference to a description.
+     *
+     * @param code The description's code, or -1 for null.
+     */
+    void release(int code) {
+        if (code >= 0 && --references[code] == 0) {
+            garbageChars += lengths[code];
+        }
+    }
+
+    /**
+     * Decodes a description.
+     *
+     * @param code The description's code.
+     * @return The description, or null for -1.
+     */
+    String string(int code) {
+        return code < 0 ? null : new String(chars, starts[code], lengths[code]);
+    }
+
+    /**
+     * Retrieves the number of codes handed out, including unreferenced ones not yet compacted.
+     *
+     * @return One more than the highest code.
+     */
+    int codeCount() {
+        return entryCount;
+    }
+
+    /**
+     * Checks whether a description is still referred to.
+     *
+     * @param code The description's code.
+     * @return True if at least one reference to it is held.
+     */
+    boolean isReferenced(int code) {
+        return references[code] > 0;
+    }
+
+    /**
+     * Checks whether unreferenced descriptions take up at least half of the pool.
+     *
+     * @return True if the pool should be compacted.
+     */
+    boolean needsCompaction() {
+        return garbageChars >= MIN_COMPACTION_CHARS && garbageChars * 2 >= charCount;
+    }
+
+    /**
+     * Estimates the heap taken by the pool's arrays.
+     *
+     * @return The size of the arrays, in bytes.
+     */
+    long footprint() {
+        return 2L * chars.length + 4L * (starts.length + lengths.length + hashes.length + references.length + table.length);
+    }
+
+    /**
+     * Drops the unreferenced descriptions and renumbers the others in their original order.
+     *
+     * @return The new code of every old code, or -1 for dropped codes.
+     */
+    int[] compact() {
+        int[] renumbered = new int[entryCount];
+        char[] oldChars = chars;
+        int[] oldStarts = starts;
+        int oldCount = entryCount;
+        chars = new char[Math.max(256, charCount - garbageChars)];
+        charCount = 0;
+        entryCount = 0;
+        garbageChars = 0;
+        for (int old = 0; old < oldCount; old++) {
+            if (references[old] == 0) {
+                renumbered[old] = -1;
+                continue;
+            }
+            int entry = entryCount++;
+            System.arraycopy(oldChars, oldStarts[old], chars, charCount, lengths[old]);
+            starts[entry] = charCount;
+            lengths[entry] = lengths[old];
+            hashes[entry] = hashes[old];
+            references[entry] = references[old];
+            charCount += lengths[entry];
+            renumbered[old] = entry;
+        }
+        rehash();
+        return renumbered;
+    }
+
+    private int append(String description, int hash) {
+        if (entryCount == starts.length) {
+            int capacity = entryCount * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            references = Arrays.copyOf(references, capacity);
+        }
+        int length = description.length();
+        if (charCount + length > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + length));
+        }
+        description.getChars(0, length, chars, charCount);
+        int entry = entryCount++;
+        starts[entry] = charCount;
+        lengths[entry] = length;
+        hashes[entry] = hash;
+        charCount += length;
+        return entry;
+    }
+
+    private boolean matches(int entry, String description) {
+        if (lengths[entry] != description.length()) {
+            return false;
+        }
+        int start = starts[entry];
+        for (int i = 0; i < lengths[entry]; i++) {
+            if (chars[start + i] != description.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+        int capacity = 32;
+        while (capacity < entryCount * 4) {
+            capacity <<= 1;
+        }
+        table = new int[capacity];
+        int mask = capacity - 1;
+        for (int entry = 0; entry < entryCount; entry++) {
+            int i = spread(hashes[entry]) & mask;
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = entry + 1;
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,278 @@
+package com.jonathan.calendar.store;
+
+import com.jonathan.events.Event;
+import java.util.*;
+
+/**
+ * Immutable inverted index over the words of event descriptions, for {@link PersistentEventStore}.
+ * Descriptions are split into tokens as in {@link DescriptionIndex}, and each token maps to an
+ * {@link EventTreap} of its events in time order. Tokens are kept in a {@link PersistentIntMap}
+ * by hash, the rare tokens sharing a hash in one bucket, so adding or removing an event copies
+ * O(log n) nodes per word of its description and every earlier version stays valid.
+ *
+ * <p>Searches keep the case-insensitive substring semantics of the other stores. A keyword
+ * within a single word is answered from the postings of the vocabulary words containing it.
+ * A keyword spanning several words narrows the candidates to its most selective word and
+ * checks only those candidates against the full description, unless they are so many that
+ * scanning every event is cheaper than merging their postings. The vocabulary is walked to find
+ * the words containing a keyword, so a search costs O(w) for w distinct words plus the events
+ * it reads, rather than a pass over every description.</p>
+ */
+final class DescriptionPostings {
+    static final DescriptionPostings EMPTY = new DescriptionPostings(PersistentIntMap.empty());
+
+    private static final String[] NO_TOKENS = new String[0];
+
+    private final PersistentIntMap<Posting[]> buckets;
+
+    /**
+     * A token and its events.
+     */
+    private static final class Posting {
+        final String token;
+        final EventTreap events;
+
+        Posting(String token, EventTreap events) {
+            this.token = token;
+            this.events = events;
+        }
+    }
+
+    private DescriptionPostings(PersistentIntMap<Posting[]> buckets) {
+        this.buckets = buckets;
+    }
+
+    /**
+     * Splits an event's description into the tokens it is indexed under.
+     *
+     * @param event The event.
+     * @return The distinct tokens, none if the event has no description.
+     */
+    static String[] tokens(Event event) {
+        String description = event.getDescription();
+        return description == null
+                ? NO_TOKENS
+                : DescriptionIndex.tokens(DescriptionIndex.normalize(description)).toArray(NO_TOKENS);
+    }
+
+    /**
+     * Builds an index from many events at once, building each posting without copying paths.
+     *
+     * @param sorted The nodes of the events, sorted by date and time.
+     * @param tokens The tokens of each event, at the same position.
+     * @return The index.
+     */
+    static DescriptionPostings of(List<EventTreap.Node> sorted, List<String[]> tokens) {
+        Map<String, List<EventTreap.Node>> collected = new HashMap<>();
+        for (int i = 0; i < sorted.size(); i++) {
+            for (String token : tokens.get(i)) {
+                collected.computeIfAbsent(token, key -> new ArrayList<>()).add(sorted.get(i));
+            }
+        }
+        Map<Integer, List<Posting>> byHash = new HashMap<>();
+        for (Map.Entry<String, List<EventTreap.Node>> entry : collected.entrySet()) {
+            byHash.computeIfAbsent(entry.getKey().hashCode(), hash -> new ArrayList<>(1))
+                    .add(new Posting(entry.getKey(), EventTreap.of(entry.getValue())));
+        }
+        int[] keys = new int[byHash.size()];
+        List<Posting[]> values = new ArrayList<>(byHash.size());
+        for (Map.Entry<Integer, List<Posting>> bucket : byHash.entrySet()) {
+            keys[values.size()] = bucket.getKey();
+            values.add(bucket.getValue().toArray(new Posting[0]));
+        }
+        return new DescriptionPostings(PersistentIntMap.of(keys, values));
+    }
+
+    /**
+     * Derives the index with an event added under its tokens.
+     *
+     * @param tokens The tokens of the event, as given by {@link #tokens(Event)}.
+     * @param node The event's node, shared with the store's other indexes.
+     * @return The new index; this index is unchanged.
+     */
+    DescriptionPostings with(String[] tokens, EventTreap.Node node) {
+        PersistentIntMap<Posting[]> changed = buckets;
+        for (String token : tokens) {
+            Posting[] bucket = changed.get(token.hashCode());
+            int at = find(bucket, token);
+            EventTreap events = at < 0 ? EventTreap.EMPTY : bucket[at].events;
+            changed = changed.put(token.hashCode(), replace(bucket, at, new Posting(token, events.insert(node))));
+        }
+        return new DescriptionPostings(changed);
+    }
+
+    /**
+     * Derives the index without an event, dropping the tokens left without events.
+     *
+     * @param tokens The tokens the event was added under.
+     * @param node The event's node.
+     * @return The new index; this index is unchanged.
+     */
+    DescriptionPostings without(String[] tokens, EventTreap.Node node) {
+        PersistentIntMap<Posting[]> changed = buckets;
+        for (String token : tokens) {
+            Posting[] bucket = changed.get(token.hashCode());
+            int at = find(bucket, token);
+            EventTreap events = bucket[at].events.delete(node);
+            Posting[] replaced = replace(bucket, at, events.size() == 0 ? null : new Posting(token, events));
+            changed = replaced == null ? changed.remove(token.hashCode()) : changed.put(token.hashCode(), replaced);
+        }
+        return new DescriptionPostings(changed);
+    }
+
+    private static int find(Posting[] bucket, String token) {
+        if (bucket != null) {
+            for (int i = 0; i < bucket.length; i++) {
+                if (bucket[i].token.equals(token)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copies a bucket with the posting at a position replaced, appended if the position is -1,
+     * or removed if the posting is null.
+     *
+     * @return The new bucket, or null if it is left empty.
+     */
+    private static Posting[] replace(Posting[] bucket, int at, Posting posting) {
+        if (bucket == null) {
+            return new Posting[] {posting};
+        }
+        if (at < 0) {
+            Posting[] grown = Arrays.copyOf(bucket, bucket.length + 1);
+            grown[bucket.length] = posting;
+            return grown;
+        }
+        if (posting != null) {
+            Posting[] copy = bucket.clone();
+            copy[at] = posting;
+            return copy;
+        }
+        if (bucket.length == 1) {
+            return null;
+        }
+        Posting[] shrunk = new Posting[bucket.length - 1];
+        System.arraycopy(bucket, 0, shrunk, 0, at);
+        System.arraycopy(bucket, at + 1, shrunk, at, shrunk.length - at);
+        return shrunk;
+    }
+
+    /**
+     * Searches for events whose description contains the keyword, ignoring case.
+     *
+     * @param keyword The keyword to search for.
+     * @param all Every event in time order, scanned when the keyword contains no letters or digits
+     *            or its words are too common to narrow the search.
+     * @return The matching events, sorted by date and time.
+     */
+    List<Event> search(String keyword, EventTreap all) {
+        String needle = DescriptionIndex.normalize(keyword);
+        List<String> fragments = DescriptionIndex.tokens(needle);
+        List<Event> matching = new ArrayList<>();
+        if (fragments.isEmpty()) {
+            all.collect(event -> contains(event, needle), matching);
+            return matching;
+        }
+        List<Posting> vocabulary = vocabulary();
+        if (fragments.size() == 1 && fragments.get(0).length() == needle.length()) {
+            return union(containing(vocabulary, needle));
+        }
+
+        List<Posting> narrowest = null;
+        int narrowestSize = Integer.MAX_VALUE;
+        for (String fragment : fragments) {
+            List<Posting> candidates = containing(vocabulary, fragment);
+            int size = sizeOf(candidates);
+            if (size < narrowestSize) {
+                narrowest = candidates;
+                narrowestSize = size;
+            }
+        }
+        if (narrowestSize >= all.size() / 2) {
+            all.collect(event -> contains(event, needle), matching);
+            return matching;
+        }
+        for (Event event : union(narrowest)) {
+            if (contains(event, needle)) {
+                matching.add(event);
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * Estimates how many events {@link #search(String, EventTreap)} examines for a keyword,
+     * from the sizes of the postings it would read, without reading them.
+     *
+     * @param keyword The keyword.
+     * @param all The number of events, all examined when the keyword contains no letters or digits.
+     * @return The number of candidate events, counting an event once per matching word.
+     */
+    int estimate(String keyword, int all) {
+        List<String> fragments = DescriptionIndex.tokens(DescriptionIndex.normalize(keyword));
+        if (fragments.isEmpty()) {
+            return all;
+        }
+        List<Posting> vocabulary = vocabulary();
+        int narrowestSize = Integer.MAX_VALUE;
+        for (String fragment : fragments) {
+            narrowestSize = Math.min(narrowestSize, sizeOf(containing(vocabulary, fragment)));
+        }
+        return narrowestSize;
+    }
+
+    private static int sizeOf(List<Posting> postings) {
+        int size = 0;
+        for (Posting posting : postings) {
+            size += posting.events.size();
+        }
+        return size;
+    }
+
+    private List<Posting> vocabulary() {
+        List<Posting[]> all = new ArrayList<>();
+        buckets.values(all);
+        List<Posting> vocabulary = new ArrayList<>(all.size());
+        for (Posting[] bucket : all) {
+            Collections.addAll(vocabulary, bucket);
+        }
+        return vocabulary;
+    }
+
+    private static List<Posting> containing(List<Posting> vocabulary, String fragment) {
+        List<Posting> matching = new ArrayList<>();
+        for (Posting posting : vocabulary) {
+            if (posting.token.contains(fragment)) {
+                matching.add(posting);
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * Merges postings into one time-ordered list, dropping events listed under several tokens.
+     */
+    private static List<Event> union(List<Posting> postings) {
+        List<Iterator<Event>> iterators = new ArrayList<>(postings.size());
+        for (Posting posting : postings) {
+            iterators.add(posting.events.iterator(null, null));
+        }
+        List<Event> merged = new ArrayList<>();
+        Event last = null;
+        for (Iterator<Event> it = EventMerge.merge(iterators, Event.CHRONOLOGICAL); it.hasNext(); ) {
+            Event event = it.next();
+            if (event != last) {
+                merged.add(event);
+                last = event;
+            }
+        }
+        return merged;
+    }
+
+    private static boolean contains(Event event, String needle) {
+        return event.getDescription() != null && DescriptionIndex.normalize(event.getDescription()).contains(needle);
+    }
+}
@@ -0,0 +1,264 @@
+package com.jonathan.calendar.store;
+
+import com.jonathan.events.*;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Counts of events per day, broken down by type and priority, kept up to date as events change
+ * so that counting the events between two dates takes O(log d) time, d being the number of days
+ * a date can fall on, however many events there are.
+ *
+ * <p>The counts form a Fenwick tree over days: node i holds the counts of the days
+ * (i - lowbit(i), i], one count for each combination of a type (or none) and a priority (or none),
+ * so the counts of the events before a day are the sum of at most 26 nodes. Nodes are only
+ * allocated once an event falls under them, so the counters take memory for the days in use
+ * rather than for the whole span of dates. Days more than about 90,000 years from 1970 are
+ * counted on the first or last day the tree holds.</p>
+ *
+ * <p>The day, type and priority each event was counted under are mapped by ID, so an event can be
+ * recounted or removed by its ID even if it was modified in place after being added.</p>
+ *
+ * <p>All methods are synchronized, so one set of counters can be shared by several threads.</p>
+ */
+public final class EventCounters {
+    private static final EventType[] TYPES = EventType.values();
+    private static final EventPrio[] PRIOS = EventPrio.values();
+    private static final int KIND_BITS = 5;
+    private static final int KINDS = (TYPES.length + 1) * (PRIOS.length + 1);
+    private static final int DAY_BITS = 26;
+    private static final int SIZE = (1 << DAY_BITS) - 1;
+    private static final long FIRST_DAY = -(1L << (DAY_BITS - 1));
+    private static final long LAST_DAY = FIRST_DAY + SIZE - 1;
+
+    private final IntSlotMap nodes = new IntSlotMap();
+    private int[] counts = new int[16 * KINDS];
+    private int nodeCount;
+    private final IntSlotMap counted = new IntSlotMap();
+
+    /**
+     * Creates counters holding no events.
+     */
+    public EventCounters() {
+    }
+
+    /**
+     * Counts an event on its date, replacing the count of any event with the same ID.
+     *
+     * @param event The event.
+     */
+    public synchronized void put(Event event) {
+        int record = record(event);
+        int previous = counted.get(event.getID());
+        if (previous == record) {
+            return;
+        }
+        if (previous >= 0) {
+            add(previous, -1);
+        }
+        counted.put(event.getID(), record);
+        add(record, 1);
+    }
+
+    /**
+     * Counts many events at once, replacing the counts of any events with the same IDs.
+     * The changes are summed per day, type and priority first, so a large batch updates
+     * each node of the tree once per day and kind rather than once per event.
+     *
+     * @param events The events. Later events replace earlier ones with the same ID.
+     */
+    public synchronized void putAll(Collection<Event> events) {
+        Map<Integer, Integer> changes = new HashMap<>();
+        for (Event event : events) {
+            int record = record(event);
+            int previous = counted.get(event.getID());
+            if (previous >= 0) {
+                changes.merge(previous, -1, Integer::sum);
+            }
+            counted.put(event.getID(), record);
+            changes.merge(record, 1, Integer::sum);
+        }
+        for (Map.Entry<Integer, Integer> change : changes.entrySet()) {
+            if (change.getValue() != 0) {
+                add(change.getKey(), change.getValue());
+            }
+        }
+    }
+
+    /**
+     * Stops counting an event.
+     *
+     * @param id The ID of the event.
+     * @return True if an event with that ID was counted.
+     */
+    public synchronized boolean remove(int id) {
+        int previous = counted.remove(id);
+        if (previous < 0) {
+            return false;
+        }
+        add(previous, -1);
+        return true;
+    }
+
+    /**
+     * Retrieves the number of events counted.
+     *
+     * @return The number of events.
+     */
+    public synchronized int size() {
+        return counted.size();
+    }
+
+    /**
+     * Counts the events on the dates in [from, to) of the given types and priorities.
+     *
+     * @param from The inclusive first date.
+     * @param to The exclusive last date.
+     * @param types The event types, or null for any type.
+     * @param priorities The priorities, or null for any priority.
+     * @return The number of matching events, 0 if to is not after from.
+     */
+    public long count(LocalDate from, LocalDate to, Set<EventType> types, Set<EventPrio> priorities) {
+        return histogram(List.of(from, to), types, priorities)[0];
+    }
+
+    /**
+     * Counts the events between each pair of consecutive dates, of the given types and priorities.
+     * Each bound costs one O(log d) walk of the tree.
+     *
+     * @param bounds The dates bounding the buckets, in ascending order; bucket i is [bounds[i], bounds[i + 1]).
+     * @param types The event types, or null for any type.
+     * @param priorities The priorities, or null for any priority.
+     * @return The number of matching events in each bucket, one fewer than there are bounds.
+     */
+    public synchronized long[] histogram(List<LocalDate> bounds, Set<EventType> types, Set<EventPrio> priorities) {
+        boolean[] selected = select(types, priorities);
+        long[] buckets = new long[Math.max(0, bounds.size() - 1)];
+        long before = 0;
+        for (int i = 0; i < bounds.size(); i++) {
+            long upTo = countBefore(index(bounds.get(i)), selected);
+            if (i > 0) {
+                buckets[i - 1] = Math.max(0, upTo - before);
+            }
+            before = upTo;
+        }
+        return buckets;
+    }
+
+    /**
+     * Counts the events on the dates in [from, to) of each type. Events without a type are left out.
+     *
+     * @param from The inclusive first date.
+     * @param to The exclusive last date.
+     * @return The number of events of each type, including the types without events.
+     */
+    public synchronized Map<EventType, Long> countByType(LocalDate from, LocalDate to) {
+        Map<EventType, Long> byType = new EnumMap<>(EventType.class);
+        for (EventType type : TYPES) {
+            byType.put(type, count(from, to, EnumSet.of(type), null));
+        }
+        return byType;
+    }
+
+    /**
+     * Counts the events on the dates in [from, to) of each priority. Events without a priority are left out.
+     *
+     * @param from The inclusive first date.
+     * @param to The exclusive last date.
+     * @return The number of events of each priority, including the priorities without events.
+     */
+    public synchronized Map<EventPrio, Long> countByPriority(LocalDate from, LocalDate to) {
+        Map<EventPrio, Long> byPriority = new EnumMap<>(EventPrio.class);
+        for (EventPrio priority : PRIOS) {
+            byPriority.put(priority, count(from, to, null, EnumSet.of(priority)));
+        }
+        return byPriority;
+    }
+
+    /**
+     * Packs the tree index of an event's date and the kind of the event into one non-negative int.
+     */
+    private static int record(Event event) {
+        return index(event.getDateTime().toLocalDate()) << KIND_BITS | kind(event.getType(), event.getPriority());
+    }
+
+    /**
+     * Maps a date to its index in the tree, from 1 for the first day held to SIZE for the last.
+     */
+    private static int index(LocalDate date) {
+        long day = Math.max(FIRST_DAY, Math.min(LAST_DAY, date.toEpochDay()));
+        return (int) (day - FIRST_DAY) + 1;
+    }
+
+    private static int kind(EventType type, EventPrio priority) {
+        int typeIndex = type == null ? TYPES.length : type.ordinal();
+        int prioIndex = priority == null ? PRIOS.length : priority.ordinal();
+        return typeIndex * (PRIOS.length + 1) + prioIndex;
+    }
+
+    /**
+     * Marks the kinds of events a count includes.
+     */
+    private static boolean[] select(Set<EventType> types, Set<EventPrio> priorities) {
+        boolean[] selected = new boolean[KINDS];
+        for (int typeIndex = 0; typeIndex <= TYPES.length; typeIndex++) {
+            EventType type = typeIndex < TYPES.length ? TYPES[typeIndex] : null;
+            if (types != null && (type == null || !types.contains(type))) {
+                continue;
+            }
+            for (int prioIndex = 0; prioIndex <= PRIOS.length; prioIndex++) {
+                EventPrio priority = prioIndex < PRIOS.length ? PRIOS[prioIndex] : null;
+                if (priorities == null || (priority != null && priorities.contains(priority))) {
+                    selected[kind(type, priority)] = true;
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Adds to the count of a day and kind in every node covering that day.
+     */
+    private void add(int record, int delta) {
+        int kind = record & ((1 << KIND_BITS) - 1);
+        for (int i = record >>> KIND_BITS; i <= SIZE; i += i & -i) {
+            int node = node(i);
+            counts[node * KINDS + kind] += delta;
+        }
+    }
+
+    /**
+     * Sums the selected counts of the days before the day at an index.
+     */
+    private long countBefore(int index, boolean[] selected) {
+        long sum = 0;
+        for (int i = index - 1; i > 0; i -= i & -i) {
+            int node = nodes.get(i);
+            if (node < 0) {
+                continue;
+            }
+            int offset = node * KINDS;
+            for (int kind = 0; kind < KINDS; kind++) {
+                if (selected[kind]) {
+                    sum += counts[offset + kind];
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Retrieves the node at a tree index, allocating it with zero counts if it is new.
+     */
+    private int node(int index) {
+        int node = nodes.get(index);
+        if (node < 0) {
+            node = nodeCount++;
+            if (nodeCount * KINDS > counts.length) {
+                counts = Arrays.copyOf(counts, counts.length * 2);
+            }
+            nodes.put(index, node);
+        }
+        return node;
+    }
+}
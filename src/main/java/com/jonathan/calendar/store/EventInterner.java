@@ -0,0 +1,77 @@
+package com.jonathan.calendar.store;
+
+import com.jonathan.events.Event;
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical copies of event descriptions and date-times, shared by many calendars.
+ * Interning an event replaces its description and date-time with the canonical instances
+ * of equal values, so calendars holding the same descriptions or times keep one copy of each.
+ * The values are equal, so interning an event that is already stored does not change its
+ * position in any index.
+ *
+ * <p>Canonical values are kept for the lifetime of the interner. Interning is thread-safe.</p>
+ */
+public final class EventInterner {
+    private final ConcurrentHashMap<String, String> descriptions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<LocalDateTime, LocalDateTime> dateTimes = new ConcurrentHashMap<>();
+
+    /**
+     * Retrieves the canonical instance of a description.
+     *
+     * @param description The description, possibly null.
+     * @return An equal description shared by every caller, or null.
+     */
+    public String intern(String description) {
+        if (description == null) {
+            return null;
+        }
+        String canonical = descriptions.putIfAbsent(description, description);
+        return canonical == null ? description : canonical;
+    }
+
+    /**
+     * Retrieves the canonical instance of a date-time.
+     *
+     * @param dateTime The date-time, possibly null.
+     * @return An equal date-time shared by every caller, or null.
+     */
+    public LocalDateTime intern(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return null;
+        }
+        LocalDateTime canonical = dateTimes.putIfAbsent(dateTime, dateTime);
+        return canonical == null ? dateTime : canonical;
+    }
+
+    /**
+     * Replaces an event's description and date-time with their canonical instances.
+     *
+     * @param event The event to change in place.
+     * @return The same event.
+     */
+    public Event intern(Event event) {
+        event.setDescription(intern(event.getDescription()));
+        event.setDateTime(intern(event.getDateTime()));
+        return event;
+    }
+
+    /**
+     * Retrieves the number of distinct descriptions interned.
+     *
+     * @return The number of canonical descriptions.
+     */
+    public int descriptionCount() {
+        return descriptions.size();
+    }
+
+    /**
+     * Retrieves the number of distinct date-times interned.
+     *
+     * @return The number of canonical date-times.
+     */
+    public int dateTimeCount() {
+        return dateTimes.size();
+    }
+}
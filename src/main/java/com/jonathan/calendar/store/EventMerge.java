@@ -0,0 +1,93 @@
+package com.jonathan.calendar.store;
+
+import java.util.*;
+
+/**
+ * Merges several individually sorted event sequences into one sorted sequence.
+ * Runs in O(n log k) for n events spread across k sources, pulling each
+ * element lazily so that callers may stop early without draining the sources.
+ */
+public final class EventMerge {
+
+    private EventMerge() {
+    }
+
+    /**
+     * Lazily merges sorted iterators into a single sorted iterator.
+     * Each source must already be sorted according to the given comparator.
+     *
+     * @param sources The sorted iterators to merge.
+     * @param order The order shared by all sources.
+     * @param <T> The element type.
+     * @return An iterator over all elements of the sources, in order.
+     */
+    public static <T> Iterator<T> merge(Collection<? extends Iterator<? extends T>> sources, Comparator<? super T> order) {
+        PriorityQueue<Cursor<T>> heads = new PriorityQueue<>(Math.max(1, sources.size()),
+                (a, b) -> order.compare(a.head, b.head));
+        for (Iterator<? extends T> source : sources) {
+            if (source.hasNext()) {
+                heads.add(new Cursor<>(source));
+            }
+        }
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                Cursor<T> cursor = heads.poll();
+                if (cursor == null) {
+                    throw new NoSuchElementException();
+                }
+                T next = cursor.head;
+                if (cursor.advance()) {
+                    heads.add(cursor);
+                }
+                return next;
+            }
+        };
+    }
+
+    /**
+     * Merges sorted collections into a single sorted list.
+     *
+     * @param sources The sorted collections to merge.
+     * @param order The order shared by all sources.
+     * @param <T> The element type.
+     * @return A list of all elements of the sources, in order.
+     */
+    public static <T> List<T> mergeToList(Collection<? extends Collection<? extends T>> sources, Comparator<? super T> order) {
+        int size = 0;
+        List<Iterator<? extends T>> iterators = new ArrayList<>(sources.size());
+        for (Collection<? extends T> source : sources) {
+            size += source.size();
+            iterators.add(source.iterator());
+        }
+        List<T> merged = new ArrayList<>(size);
+        merge(iterators, order).forEachRemaining(merged::add);
+        return merged;
+    }
+
+    /**
+     * The current element of one source and the iterator that produced it.
+     */
+    private static final class Cursor<T> {
+        private final Iterator<? extends T> source;
+        private T head;
+
+        Cursor(Iterator<? extends T> source) {
+            this.source = source;
+            this.head = source.next();
+        }
+
+        boolean advance() {
+            if (!source.hasNext()) {
+                return false;
+            }
+            head = source.next();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.jonathan.calendar.store;
+
+import com.jonathan.events.*;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * A search combining several criteria: a time range, event types, priorities and a keyword,
+ * together with the order of the results and how many of them to return. An event matches
+ * when it meets every criterion set; a criterion left unset matches every event.
+ *
+ * <p>Queries are immutable. Each criterion is set by a method returning a new query, so
+ * a search is written as a chain starting from {@link #EventQuery()}, for example
+ * {@code new EventQuery().between(from, to).ofTypes(EnumSet.of(EventType.MEETING)).limit(10)}.</p>
+ */
+public final class EventQuery {
+
+    /**
+     * Orders of the results.
+     */
+    public enum Order {
+        /**
+         * By date and time, then by ID.
+         */
+        CHRONOLOGICAL(Event.CHRONOLOGICAL),
+        /**
+         * The most recent first.
+         */
+        LATEST_FIRST(Event.CHRONOLOGICAL.reversed()),
+        /**
+         * HIGH, MID and LOW events in that order, each group by date and time.
+         */
+        PRIORITY(Comparator.comparing(Event::getPriority, Comparator.nullsLast(Comparator.<EventPrio>naturalOrder()))
+                .thenComparing(Event.CHRONOLOGICAL));
+
+        private final Comparator<Event> comparator;
+
+        Order(Comparator<Event> comparator) {
+            this.comparator = comparator;
+        }
+
+        /**
+         * Retrieves the comparator sorting events in this order.
+         *
+         * @return The comparator.
+         */
+        public Comparator<Event> comparator() {
+            return comparator;
+        }
+    }
+
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final Set<EventType> types;
+    private final Set<EventPrio> priorities;
+    private final String keyword;
+    private final String lowerKeyword;
+    private final int limit;
+    private final Order order;
+
+    /**
+     * Constructs a query matching every event, in chronological order, without a limit.
+     */
+    public EventQuery() {
+        this(null, null, null, null, null, Integer.MAX_VALUE, Order.CHRONOLOGICAL);
+    }
+
+    private EventQuery(LocalDateTime from, LocalDateTime to, Set<EventType> types, Set<EventPrio> priorities,
+                       String keyword, int limit, Order order) {
+        this.from = from;
+        this.to = to;
+        this.types = types;
+        this.priorities = priorities;
+        this.keyword = keyword;
+        this.lowerKeyword = keyword == null ? null : keyword.toLowerCase(Locale.ROOT);
+        this.limit = limit;
+        this.order = order;
+    }
+
+    /**
+     * Restricts the query to the events whose date and time fall in [from, to).
+     *
+     * @param from The inclusive start of the range.
+     * @param to The exclusive end of the range.
+     * @return The restricted query.
+     */
+    public EventQuery between(LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("A query range needs a start and an end");
+        }
+        return new EventQuery(from, to, types, priorities, keyword, limit, order);
+    }
+
+    /**
+     * Restricts the query to the events of any of the given types.
+     *
+     * @param types The event types.
+     * @return The restricted query.
+     */
+    public EventQuery ofTypes(Set<EventType> types) {
+        Set<EventType> copy = EnumSet.noneOf(EventType.class);
+        copy.addAll(types);
+        return new EventQuery(from, to, Collections.unmodifiableSet(copy), priorities, keyword, limit, order);
+    }
+
+    /**
+     * Restricts the query to the events of any of the given priorities.
+     *
+     * @param priorities The priorities.
+     * @return The restricted query.
+     */
+    public EventQuery ofPriorities(Set<EventPrio> priorities) {
+        Set<EventPrio> copy = EnumSet.noneOf(EventPrio.class);
+        copy.addAll(priorities);
+        return new EventQuery(from, to, types, Collections.unmodifiableSet(copy), keyword, limit, order);
+    }
+
+    /**
+     * Restricts the query to the events whose description contains a keyword, ignoring case.
+     *
+     * @param keyword The keyword.
+     * @return The restricted query.
+     */
+    public EventQuery matching(String keyword) {
+        if (keyword == null) {
+            throw new IllegalArgumentException("A query keyword must not be null");
+        }
+        return new EventQuery(from, to, types, priorities, keyword, limit, order);
+    }
+
+    /**
+     * Limits the number of events the query returns.
+     *
+     * @param limit The largest number of events to return.
+     * @return The limited query.
+     */
+    public EventQuery limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Query limit must not be negative: " + limit);
+        }
+        return new EventQuery(from, to, types, priorities, keyword, limit, order);
+    }
+
+    /**
+     * Sorts the results of the query in the given order instead.
+     *
+     * @param order The order.
+     * @return The reordered query.
+     */
+    public EventQuery orderBy(Order order) {
+        return new EventQuery(from, to, types, priorities, keyword, limit, order);
+    }
+
+    /**
+     * Retrieves the inclusive start of the query's range.
+     *
+     * @return The start, or null if the query has no range.
+     */
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    /**
+     * Retrieves the exclusive end of the query's range.
+     *
+     * @return The end, or null if the query has no range.
+     */
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    /**
+     * Retrieves the event types the query accepts.
+     *
+     * @return The types, or null if the query accepts any type.
+     */
+    public Set<EventType> getTypes() {
+        return types;
+    }
+
+    /**
+     * Retrieves the priorities the query accepts.
+     *
+     * @return The priorities, or null if the query accepts any priority.
+     */
+    public Set<EventPrio> getPriorities() {
+        return priorities;
+    }
+
+    /**
+     * Retrieves the keyword matching descriptions must contain.
+     *
+     * @return The keyword, or null if the query accepts any description.
+     */
+    public String getKeyword() {
+        return keyword;
+    }
+
+    /**
+     * Retrieves the largest number of events the query returns.
+     *
+     * @return The limit, {@link Integer#MAX_VALUE} if the query has none.
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Retrieves the order of the query's results.
+     *
+     * @return The order.
+     */
+    public Order getOrder() {
+        return order;
+    }
+
+    /**
+     * Checks whether an event meets every criterion of the query.
+     *
+     * @param event The event.
+     * @return True if the event matches.
+     */
+    public boolean test(Event event) {
+        if (from != null && (event.getDateTime().isBefore(from) || !event.getDateTime().isBefore(to))) {
+            return false;
+        }
+        if (types != null && !types.contains(event.getType())) {
+            return false;
+        }
+        if (priorities != null && !priorities.contains(event.getPriority())) {
+            return false;
+        }
+        return lowerKeyword == null || (event.getDescription() != null
+                && event.getDescription().toLowerCase(Locale.ROOT).contains(lowerKeyword));
+    }
+
+    /**
+     * Keeps the matching candidates, in the query's order and up to its limit.
+     * Candidates read in chronological order are only read until the limit is reached.
+     *
+     * @param chronological The candidates, sorted by date and time.
+     * @return The results of the query.
+     */
+    List<Event> select(Iterator<Event> chronological) {
+        List<Event> selected = new ArrayList<>();
+        boolean sorted = order == Order.CHRONOLOGICAL;
+        while (chronological.hasNext() && (!sorted || selected.size() < limit)) {
+            Event event = chronological.next();
+            if (test(event)) {
+                selected.add(event);
+            }
+        }
+        if (!sorted) {
+            selected.sort(order.comparator());
+            if (selected.size() > limit) {
+                selected.subList(limit, selected.size()).clear();
+            }
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,231 @@
+package com.jonathan.calendar.store;
+
+import com.jonathan.events.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Storage and query engine behind a {@link com.jonathan.calendar.Calendar}.
+ * A store holds events by ID and answers the calendar's queries. Every listing
+ * is sorted by date and time, then by ID, unless stated otherwise.
+ * Stores are not thread-safe unless an implementation says so.
+ *
+ * <p>Each listing also has a streaming form, which stores may back directly by their
+ * indexes so that a caller reading only part of a large listing never copies all of it.
+ * The default streams copy the listing first. A stream is only valid until the store
+ * is next changed.</p>
+ */
+public interface EventStore {
+
+    /**
+     * Retrieves an event by its ID.
+     *
+     * @param id The ID of the event.
+     * @return The event, or null if no event has that ID.
+     */
+    Event get(int id);
+
+    /**
+     * Stores an event under its ID, replacing any event with the same ID.
+     *
+     * @param event The event to store.
+     * @return The replaced event, or null if the ID was not in use.
+     */
+    Event put(Event event);
+
+    /**
+     * Stores many events at once, replacing any events with the same IDs.
+     * Stores may apply a large batch faster than one {@link #put(Event)} per event,
+     * for example by rebuilding their indexes once.
+     *
+     * @param events The events to store. Later events replace earlier ones with the same ID.
+     */
+    default void putAll(Collection<Event> events) {
+        for (Event event : events) {
+            put(event);
+        }
+    }
+
+    /**
+     * Removes an event by its ID.
+     *
+     * @param id The ID of the event.
+     * @return The removed event, or null if no event has that ID.
+     */
+    Event remove(int id);
+
+    /**
+     * Copies the store as it is now into a read-only store that later changes do not affect.
+     * The default copies every event into a {@link PersistentEventStore} in O(n);
+     * a {@link PersistentEventStore} shares its indexes with the copy instead, in O(1).
+     *
+     * @return The read-only copy.
+     */
+    default EventStore snapshot() {
+        PersistentEventStore copy = new PersistentEventStore();
+        copy.putAll(all());
+        return copy.snapshot();
+    }
+
+    /**
+     * Retrieves the number of stored events.
+     *
+     * @return The number of events.
+     */
+    int size();
+
+    /**
+     * Retrieves every stored event.
+     *
+     * @return All events, sorted by date and time.
+     */
+    List<Event> all();
+
+    /**
+     * Retrieves the events whose date and time fall in [from, to).
+     *
+     * @param from The inclusive start of the range.
+     * @param to The exclusive end of the range.
+     * @return The events in the range, sorted by date and time.
+     */
+    List<Event> between(LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Retrieves the events on a date.
+     *
+     * @param date The date.
+     * @return The events on that date, sorted by time.
+     */
+    default List<Event> onDay(LocalDate date) {
+        return between(date.atStartOfDay(), date.plusDays(1).atStartOfDay());
+    }
+
+    /**
+     * Retrieves the events in a year.
+     *
+     * @param year The year.
+     * @return The events in that year, sorted by date and time.
+     */
+    default List<Event> inYear(int year) {
+        LocalDate start = LocalDate.of(year, 1, 1);
+        return between(start.atStartOfDay(), start.plusYears(1).atStartOfDay());
+    }
+
+    /**
+     * Retrieves the events of any of the given types.
+     *
+     * @param types The event types.
+     * @return The events of those types, sorted by date and time.
+     */
+    List<Event> ofTypes(Set<EventType> types);
+
+    /**
+     * Retrieves every event grouped by priority.
+     *
+     * @return The HIGH, MID and LOW events in that order, each group sorted by date and time.
+     */
+    List<Event> byPriority();
+
+    /**
+     * Retrieves the events whose description contains a keyword, ignoring case.
+     *
+     * @param keyword The keyword.
+     * @return The matching events, sorted by date and time.
+     */
+    List<Event> matching(String keyword);
+
+    /**
+     * Retrieves the events meeting every criterion of a query.
+     * The default reads the query's range if it has one, else its types, else its keyword,
+     * and checks the other criteria on each event read.
+     *
+     * @param query The query.
+     * @return The matching events, in the query's order and up to its limit.
+     */
+    default List<Event> query(EventQuery query) {
+        List<Event> candidates;
+        if (query.getFrom() != null) {
+            candidates = between(query.getFrom(), query.getTo());
+        } else if (query.getTypes() != null) {
+            candidates = ofTypes(query.getTypes());
+        } else if (query.getKeyword() != null) {
+            candidates = matching(query.getKeyword());
+        } else {
+            candidates = all();
+        }
+        return query.select(candidates.iterator());
+    }
+
+    /**
+     * Streams every stored event.
+     *
+     * @return All events, sorted by date and time.
+     */
+    default Stream<Event> stream() {
+        return all().stream();
+    }
+
+    /**
+     * Streams the events whose date and time fall in [from, to).
+     *
+     * @param from The inclusive start of the range.
+     * @param to The exclusive end of the range.
+     * @return The events in the range, sorted by date and time.
+     */
+    default Stream<Event> streamBetween(LocalDateTime from, LocalDateTime to) {
+        return between(from, to).stream();
+    }
+
+    /**
+     * Streams the events on a date.
+     *
+     * @param date The date.
+     * @return The events on that date, sorted by time.
+     */
+    default Stream<Event> streamOnDay(LocalDate date) {
+        return onDay(date).stream();
+    }
+
+    /**
+     * Streams the events in a year.
+     *
+     * @param year The year.
+     * @return The events in that year, sorted by date and time.
+     */
+    default Stream<Event> streamInYear(int year) {
+        return inYear(year).stream();
+    }
+
+    /**
+     * Streams the events of any of the given types.
+     *
+     * @param types The event types.
+     * @return The events of those types, sorted by date and time.
+     */
+    default Stream<Event> streamOfTypes(Set<EventType> types) {
+        return ofTypes(types).stream();
+    }
+
+    /**
+     * Streams every event grouped by priority.
+     *
+     * @return The HIGH, MID and LOW events in that order, each group sorted by date and time.
+     */
+    default Stream<Event> streamByPriority() {
+        return byPriority().stream();
+    }
+
+    /**
+     * Streams the events whose description contains a keyword, ignoring case.
+     *
+     * @param keyword The keyword.
+     * @return The matching events, sorted by date and time.
+     */
+    default Stream<Event> streamMatching(String keyword) {
+        return matching(keyword).stream();
+    }
+}
@@ -0,0 +1,349 @@
+package com.jonathan.calendar.store;
+
+import com.jonathan.events.Event;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Immutable treap of events ordered like {@link Event#CHRONOLOGICAL}, each spanning from its
+ * date and time to an end given when it is added. Every node also records the latest end in its
+ * subtree, so the events overlapping a window are found in O(log n + k) expected time.
+ *
+ * <p>Insertions and deletions copy only the nodes on the O(log n) path they change and share
+ * the rest with the treap they were derived from, so every earlier version stays valid.
+ * A node's heap priority is a hash of its event's ID, which keeps the shape of the treap
+ * independent of the order of changes.</p>
+ */
+final class EventTreap {
+    static final EventTreap EMPTY = new EventTreap(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    /**
+     * An event as it was added: its start and ID are fixed when the node is created, so it can
+     * be found again even if the event is modified in place afterwards.
+     */
+    static final class Node {
+        final Event event;
+        final LocalDateTime start;
+        final int id;
+        final LocalDateTime end;
+        final int priority;
+        final LocalDateTime maxEnd;
+        final Node left;
+        final Node right;
+
+        private Node(Event event, LocalDateTime start, int id, LocalDateTime end, int priority, Node left, Node right) {
+            this.event = event;
+            this.start = start;
+            this.id = id;
+            this.end = end;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            LocalDateTime latest = end;
+            if (left != null && left.maxEnd.isAfter(latest)) {
+                latest = left.maxEnd;
+            }
+            if (right != null && right.maxEnd.isAfter(latest)) {
+                latest = right.maxEnd;
+            }
+            this.maxEnd = latest;
+        }
+
+        /**
+         * Copies this node with other children.
+         */
+        Node with(Node left, Node right) {
+            return left == this.left && right == this.right
+                    ? this
+                    : new Node(event, start, id, end, priority, left, right);
+        }
+
+        int compareTo(LocalDateTime start, int id) {
+            int byStart = this.start.compareTo(start);
+            return byStart != 0 ? byStart : Integer.compare(this.id, id);
+        }
+    }
+
+    private EventTreap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Creates a node for an event.
+     *
+     * @param event The event, spanning from its date and time.
+     * @param end The end of its span.
+     * @return A node to add with {@link #insert(Node)}.
+     */
+    static Node node(Event event, LocalDateTime end) {
+        int hash = event.getID() * 0x9E3779B9;
+        return new Node(event, event.getDateTime(), event.getID(), end, hash ^ (hash >>> 16), null, null);
+    }
+
+    /**
+     * Builds a treap from nodes already sorted like {@link Event#CHRONOLOGICAL}, in linear time.
+     * The right spine of the treap built so far is kept on a stack, and each node is hung below
+     * the last spine node with a higher priority.
+     *
+     * @param sorted The nodes, sorted and with distinct keys.
+     * @return The treap.
+     */
+    static EventTreap of(List<Node> sorted) {
+        Deque<Node> spine = new ArrayDeque<>();
+        for (Node node : sorted) {
+            Node below = null;
+            while (!spine.isEmpty() && spine.peek().priority < node.priority) {
+                Node popped = spine.pop();
+                below = popped.with(popped.left, below);
+            }
+            spine.push(node.with(below, null));
+        }
+        Node root = null;
+        while (!spine.isEmpty()) {
+            Node top = spine.pop();
+            root = top.with(top.left, root);
+        }
+        return new EventTreap(root, sorted.size());
+    }
+
+    /**
+     * Retrieves the latest end of any event, recorded at the root.
+     *
+     * @return The latest end, or null if the treap is empty.
+     */
+    LocalDateTime latestEnd() {
+        return root == null ? null : root.maxEnd;
+    }
+
+    /**
+     * Retrieves the start of the first event.
+     *
+     * @return The earliest start, or null if the treap is empty.
+     */
+    LocalDateTime firstStart() {
+        Node node = root;
+        while (node != null && node.left != null) {
+            node = node.left;
+        }
+        return node == null ? null : node.start;
+    }
+
+    /**
+     * Retrieves the start of the last event.
+     *
+     * @return The latest start, or null if the treap is empty.
+     */
+    LocalDateTime lastStart() {
+        Node node = root;
+        while (node != null && node.right != null) {
+            node = node.right;
+        }
+        return node == null ? null : node.start;
+    }
+
+    /**
+     * Retrieves the number of events.
+     *
+     * @return The number of events.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Derives the treap with a node added. The treap must not hold a node with the same start and ID.
+     *
+     * @param added The node.
+     * @return The new treap; this treap is unchanged.
+     */
+    EventTreap insert(Node added) {
+        return new EventTreap(insert(root, added), size + 1);
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (added.priority > node.priority) {
+            Node[] parts = split(node, added.start, added.id);
+            return added.with(parts[0], parts[1]);
+        }
+        return node.compareTo(added.start, added.id) > 0
+                ? node.with(insert(node.left, added), node.right)
+                : node.with(node.left, insert(node.right, added));
+    }
+
+    /**
+     * Splits a subtree into the nodes ordered before a key and those ordered after it.
+     */
+    private static Node[] split(Node node, LocalDateTime start, int id) {
+        if (node == null) {
+            return new Node[2];
+        }
+        if (node.compareTo(start, id) < 0) {
+            Node[] parts = split(node.right, start, id);
+            parts[0] = node.with(node.left, parts[0]);
+            return parts;
+        }
+        Node[] parts = split(node.left, start, id);
+        parts[1] = node.with(parts[1], node.right);
+        return parts;
+    }
+
+    /**
+     * Derives the treap without a node.
+     *
+     * @param removed A node of this treap, as created by {@link #node(Event, LocalDateTime)}.
+     * @return The new treap; this treap is unchanged.
+     */
+    EventTreap delete(Node removed) {
+        return new EventTreap(delete(root, removed), size - 1);
+    }
+
+    private static Node delete(Node node, Node removed) {
+        int order = node.compareTo(removed.start, removed.id);
+        if (order == 0) {
+            return merge(node.left, node.right);
+        }
+        return order > 0
+                ? node.with(delete(node.left, removed), node.right)
+                : node.with(node.left, delete(node.right, removed));
+    }
+
+    /**
+     * Joins two subtrees whose nodes are all ordered before those of the second.
+     */
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        return left.priority > right.priority
+                ? left.with(left.left, merge(left.right, right))
+                : right.with(merge(left, right.left), right.right);
+    }
+
+    /**
+     * Iterates over the events starting in [from, to), in order.
+     *
+     * @param from The inclusive start, or null to start with the first event.
+     * @param to The exclusive end, or null to run to the last event.
+     * @return The iterator, which walks only the nodes it returns and O(log n) others.
+     */
+    Iterator<Event> iterator(LocalDateTime from, LocalDateTime to) {
+        Deque<Node> path = new ArrayDeque<>();
+        for (Node node = root; node != null; ) {
+            if (from == null || !node.start.isBefore(from)) {
+                path.push(node);
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return new Iterator<Event>() {
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty() && (to == null || path.peek().start.isBefore(to));
+            }
+
+            @Override
+            public Event next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Node next = path.pop();
+                for (Node node = next.right; node != null; node = node.left) {
+                    path.push(node);
+                }
+                return next.event;
+            }
+        };
+    }
+
+    /**
+     * Adds the events starting in [from, to) to a list, in order.
+     *
+     * @param from The inclusive start, or null to start with the first event.
+     * @param to The exclusive end, or null to run to the last event.
+     * @param into The list to add to.
+     */
+    void collect(LocalDateTime from, LocalDateTime to, List<Event> into) {
+        collect(root, from, to, into);
+    }
+
+    /**
+     * Compares only along the paths to the two bounds: once a subtree is known to lie inside
+     * the range on one side, that bound is dropped for it.
+     */
+    private static void collect(Node node, LocalDateTime from, LocalDateTime to, List<Event> into) {
+        while (node != null) {
+            if (from != null && node.start.isBefore(from)) {
+                node = node.right;
+            } else if (to != null && !node.start.isBefore(to)) {
+                node = node.left;
+            } else {
+                collect(node.left, from, null, into);
+                into.add(node.event);
+                collect(node.right, null, to, into);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds the events accepted by a filter to a list, in order.
+     *
+     * @param filter The filter.
+     * @param into The list to add to.
+     */
+    void collect(Predicate<Event> filter, List<Event> into) {
+        collect(root, filter, into);
+    }
+
+    private static void collect(Node node, Predicate<Event> filter, List<Event> into) {
+        if (node == null) {
+            return;
+        }
+        collect(node.left, filter, into);
+        if (filter.test(node.event)) {
+            into.add(node.event);
+        }
+        collect(node.right, filter, into);
+    }
+
+    /**
+     * Adds the events starting before {@code to} whose end is at or after {@code from} to a list, in order.
+     *
+     * @param from The start of the window.
+     * @param to The exclusive end of the window.
+     * @param into The list to add to.
+     */
+    void overlapping(LocalDateTime from, LocalDateTime to, List<Event> into) {
+        overlapping(root, from, to, into);
+    }
+
+    /**
+     * Subtrees whose latest end is before {@code from} are skipped whole, and so are the
+     * right subtrees of events starting at or after {@code to}.
+     */
+    private static void overlapping(Node node, LocalDateTime from, LocalDateTime to, List<Event> into) {
+        if (node == null || node.maxEnd.isBefore(from)) {
+            return;
+        }
+        overlapping(node.left, from, to, into);
+        if (!node.start.isBefore(to)) {
+            return;
+        }
+        if (!node.end.isBefore(from)) {
+            into.add(node.event);
+        }
+        overlapping(node.right, from, to, into);
+    }
+}
@@ -0,0 +1,589 @@
+package com.jonathan.calendar.store;
+
+import com.jonathan.calendar.io.CalendarFile;
+import com.jonathan.events.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The default in-memory event store.
+ * Keeps events in a map by ID together with secondary indexes maintained on every change:
+ * a time index ordered by (date-time, ID), a time-sorted bucket per day grouped by year,
+ * a bucket per event type and priority, and an inverted index over descriptions.
+ *
+ * <p>Each event also holds a slot, a small int reused once the event is removed, and every
+ * type and priority has a {@link SlotBitmap} of the slots of its events. A composite
+ * {@link #query(EventQuery)} is planned by cost: the planner estimates how many events the
+ * range, the type and priority bitmaps and the description index would each yield, reads
+ * the smallest of them, and checks the remaining criteria on those events alone. Type and
+ * priority criteria are combined on the bitmaps, a word at a time, before any event is read.</p>
+ *
+ * <p>Stored events are indexed by their current fields, so they should be replaced
+ * through {@link #put(Event)} rather than modified in place.</p>
+ *
+ * <p>Streams read the indexes in place, so they cost nothing for the events left unread.</p>
+ */
+public class IndexedEventStore implements EventStore {
+    private static final int MIN_REBUILD_BATCH = 1_024;
+    private static final int MAX_COUNTED_DAYS = 62;
+
+    private final Map<Integer, Event> events = new HashMap<>();
+    private final NavigableSet<Event> timeIndex = new TreeSet<>(Event.CHRONOLOGICAL);
+    private final Map<LocalDate, NavigableSet<Event>> dayIndex = new HashMap<>();
+    private final Map<Integer, NavigableMap<LocalDate, NavigableSet<Event>>> yearIndex = new HashMap<>();
+    private final Map<EventType, NavigableSet<Event>> typeIndex = newEnumIndex(EventType.class);
+    private final Map<EventPrio, NavigableSet<Event>> prioIndex = newEnumIndex(EventPrio.class);
+    private final DescriptionIndex descriptionIndex = new DescriptionIndex();
+    private IntSlotMap slotsByID = new IntSlotMap();
+    private Event[] slots = new Event[16];
+    private int slotCount;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private final Map<EventType, SlotBitmap> typeSlots = newBitmapIndex(EventType.class);
+    private final Map<EventPrio, SlotBitmap> prioSlots = newBitmapIndex(EventPrio.class);
+
+    /**
+     * Ways of reading the candidates of a query, chosen by {@link #plan(EventQuery)}.
+     */
+    enum Access {
+        /**
+         * Walk the whole time index.
+         */
+        SCAN,
+        /**
+         * Walk the time index over the query's range.
+         */
+        RANGE,
+        /**
+         * Read the events in the slots of the type and priority bitmaps combined.
+         */
+        BITMAP,
+        /**
+         * Read the postings of the words containing the keyword.
+         */
+        DESCRIPTION
+    }
+
+    /**
+     * Creates an index with one time-ordered bucket per constant of an enum.
+     *
+     * @param keyType The enum class.
+     * @param <K> The enum type.
+     * @return An EnumMap holding an empty bucket for every constant.
+     */
+    private static <K extends Enum<K>> Map<K, NavigableSet<Event>> newEnumIndex(Class<K> keyType) {
+        Map<K, NavigableSet<Event>> index = new EnumMap<>(keyType);
+        for (K key : keyType.getEnumConstants()) {
+            index.put(key, new TreeSet<>(Event.CHRONOLOGICAL));
+        }
+        return index;
+    }
+
+    private static <K extends Enum<K>> Map<K, SlotBitmap> newBitmapIndex(Class<K> keyType) {
+        Map<K, SlotBitmap> index = new EnumMap<>(keyType);
+        for (K key : keyType.getEnumConstants()) {
+            index.put(key, new SlotBitmap());
+        }
+        return index;
+    }
+
+    @Override
+    public Event get(int id) {
+        return events.get(id);
+    }
+
+    @Override
+    public Event put(Event event) {
+        Event previous = events.put(event.getID(), event);
+        if (previous != null) {
+            unindex(previous);
+        }
+        index(event);
+        return previous;
+    }
+
+    /**
+     * Rebuilds every index once for a batch that is large compared to the store,
+     * instead of inserting each event into each index.
+     * The events are sorted once, and each sorted index is built from its share of
+     * them in linear time. Slots are handed out again in time order, so the bitmaps
+     * list events nearly sorted.
+     */
+    @Override
+    public void putAll(Collection<Event> batch) {
+        if (batch.size() < MIN_REBUILD_BATCH || batch.size() < events.size() / 4) {
+            EventStore.super.putAll(batch);
+            return;
+        }
+        for (Event event : batch) {
+            events.put(event.getID(), event);
+        }
+        List<Event> sorted = new ArrayList<>(events.values());
+        sorted.sort(Event.CHRONOLOGICAL);
+        refill(timeIndex, sorted);
+        dayIndex.clear();
+        yearIndex.clear();
+        int dayStart = 0;
+        for (int i = 1; i <= sorted.size(); i++) {
+            LocalDate date = sorted.get(dayStart).getDateTime().toLocalDate();
+            if (i == sorted.size() || !sorted.get(i).getDateTime().toLocalDate().equals(date)) {
+                NavigableSet<Event> bucket = SortedListView.toTreeSet(sorted.subList(dayStart, i), Event.CHRONOLOGICAL);
+                dayIndex.put(date, bucket);
+                yearIndex.computeIfAbsent(date.getYear(), year -> new TreeMap<>()).put(date, bucket);
+                dayStart = i;
+            }
+        }
+        refill(typeIndex, sorted, Event::getType);
+        refill(prioIndex, sorted, Event::getPriority);
+        descriptionIndex.rebuild(sorted);
+        slotsByID = new IntSlotMap();
+        slots = new Event[Math.max(16, sorted.size())];
+        slotCount = 0;
+        freeCount = 0;
+        typeSlots.replaceAll((type, bitmap) -> new SlotBitmap());
+        prioSlots.replaceAll((priority, bitmap) -> new SlotBitmap());
+        for (Event event : sorted) {
+            addSlot(event);
+        }
+    }
+
+    private static void refill(NavigableSet<Event> index, List<Event> sorted) {
+        index.clear();
+        index.addAll(new SortedListView<>(sorted, Event.CHRONOLOGICAL));
+    }
+
+    /**
+     * Refills the buckets of an enum index from time-ordered events, keeping their order.
+     */
+    private static <K extends Enum<K>> void refill(Map<K, NavigableSet<Event>> index, List<Event> sorted,
+                                                   Function<Event, K> key) {
+        Map<K, List<Event>> groups = new HashMap<>();
+        for (Event event : sorted) {
+            groups.computeIfAbsent(key.apply(event), k -> new ArrayList<>()).add(event);
+        }
+        for (Map.Entry<K, NavigableSet<Event>> bucket : index.entrySet()) {
+            refill(bucket.getValue(), groups.getOrDefault(bucket.getKey(), Collections.emptyList()));
+        }
+    }
+
+    @Override
+    public Event remove(int id) {
+        Event removed = events.remove(id);
+        if (removed != null) {
+            unindex(removed);
+        }
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return events.size();
+    }
+
+    /**
+     * Adds an event to the time index, to the bucket of its day, to its type and priority buckets
+     * and to the description index. A new day bucket is also registered under its year.
+     *
+     * @param event The event to index.
+     */
+    private void index(Event event) {
+        timeIndex.add(event);
+        LocalDate date = event.getDateTime().toLocalDate();
+        NavigableSet<Event> bucket = dayIndex.get(date);
+        if (bucket == null) {
+            bucket = new TreeSet<>(Event.CHRONOLOGICAL);
+            dayIndex.put(date, bucket);
+            yearIndex.computeIfAbsent(date.getYear(), year -> new TreeMap<>()).put(date, bucket);
+        }
+        bucket.add(event);
+        typeIndex.get(event.getType()).add(event);
+        prioIndex.get(event.getPriority()).add(event);
+        descriptionIndex.add(event);
+        addSlot(event);
+    }
+
+    /**
+     * Gives an event a slot, reusing a free one if any, and adds the slot to the bitmaps of its type and priority.
+     *
+     * @param event The event.
+     */
+    private void addSlot(Event event) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (slotCount == slots.length) {
+                slots = Arrays.copyOf(slots, slotCount * 2);
+            }
+            slot = slotCount++;
+        }
+        slots[slot] = event;
+        slotsByID.put(event.getID(), slot);
+        typeSlots.get(event.getType()).add(slot);
+        prioSlots.get(event.getPriority()).add(slot);
+    }
+
+    /**
+     * Frees the slot of an event. The slot is cleared from every bitmap, since the event
+     * may have been modified in place since it was filed.
+     *
+     * @param id The ID of the event.
+     */
+    private void removeSlot(int id) {
+        int slot = slotsByID.remove(id);
+        if (slot < 0) {
+            return;
+        }
+        slots[slot] = null;
+        for (SlotBitmap bitmap : typeSlots.values()) {
+            bitmap.remove(slot);
+        }
+        for (SlotBitmap bitmap : prioSlots.values()) {
+            bitmap.remove(slot);
+        }
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * Removes an event from every index.
+     *
+     * @param event The event to remove from the indexes.
+     */
+    private void unindex(Event event) {
+        if (!timeIndex.remove(event)) {
+            timeIndex.removeIf(indexed -> indexed == event);
+        }
+        LocalDate date = removeIndexed(dayIndex, event.getDateTime().toLocalDate(), event);
+        if (date != null) {
+            dropIfEmpty(date);
+        }
+        removeIndexed(typeIndex, event.getType(), event);
+        removeIndexed(prioIndex, event.getPriority(), event);
+        descriptionIndex.remove(event);
+        removeSlot(event.getID());
+    }
+
+    /**
+     * Removes an event from the bucket stored under the given key.
+     * Falls back to an identity scan of every bucket if the event was modified in place
+     * after being stored, since its key no longer matches the bucket it was filed under.
+     *
+     * @param index The bucketed index.
+     * @param key The key the event is expected under.
+     * @param event The event to remove.
+     * @param <K> The key type.
+     * @return The key of the bucket the event was removed from, or null if it was not indexed.
+     */
+    private static <K> K removeIndexed(Map<K, NavigableSet<Event>> index, K key, Event event) {
+        NavigableSet<Event> bucket = index.get(key);
+        if (bucket != null && bucket.remove(event)) {
+            return key;
+        }
+        for (Map.Entry<K, NavigableSet<Event>> entry : index.entrySet()) {
+            if (entry.getValue().removeIf(indexed -> indexed == event)) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Unregisters a day bucket, and its year if that was its last day, once the bucket is empty.
+     *
+     * @param date The day of the bucket.
+     */
+    private void dropIfEmpty(LocalDate date) {
+        if (!dayIndex.get(date).isEmpty()) {
+            return;
+        }
+        dayIndex.remove(date);
+        NavigableMap<LocalDate, NavigableSet<Event>> days = yearIndex.get(date.getYear());
+        days.remove(date);
+        if (days.isEmpty()) {
+            yearIndex.remove(date.getYear());
+        }
+    }
+
+    @Override
+    public List<Event> all() {
+        return new ArrayList<>(timeIndex);
+    }
+
+    /**
+     * Walks the time index, in O(log n + k) for k matching events.
+     */
+    @Override
+    public List<Event> between(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(timeIndex.subSet(probe(from), true, probe(to), false));
+    }
+
+    /**
+     * Creates a placeholder event that sorts before every real event at the given time.
+     * Used as a bound for range lookups in the time index.
+     *
+     * @param dateTime The date and time of the placeholder.
+     * @return A placeholder event positioned at the start of the given time.
+     */
+    static Event probe(LocalDateTime dateTime) {
+        Event probe = new Event(null, null, dateTime, null);
+        probe.setID(Integer.MIN_VALUE);
+        return probe;
+    }
+
+    /**
+     * Reads the day's bucket directly, so the cost depends only on the events of that day.
+     */
+    @Override
+    public List<Event> onDay(LocalDate date) {
+        NavigableSet<Event> bucket = dayIndex.get(date);
+        return bucket == null ? new ArrayList<>() : new ArrayList<>(bucket);
+    }
+
+    /**
+     * Concatenates the year's day buckets in date order, so no sorting is needed.
+     */
+    @Override
+    public List<Event> inYear(int year) {
+        List<Event> matchingEvents = new ArrayList<>();
+        NavigableMap<LocalDate, NavigableSet<Event>> days = yearIndex.get(year);
+        if (days != null) {
+            for (NavigableSet<Event> bucket : days.values()) {
+                matchingEvents.addAll(bucket);
+            }
+        }
+        return matchingEvents;
+    }
+
+    /**
+     * The per-type buckets are already sorted, so several types are combined with a k-way merge.
+     */
+    @Override
+    public List<Event> ofTypes(Set<EventType> types) {
+        List<NavigableSet<Event>> buckets = new ArrayList<>(types.size());
+        for (EventType type : types) {
+            buckets.add(typeIndex.get(type));
+        }
+        return EventMerge.mergeToList(buckets, Event.CHRONOLOGICAL);
+    }
+
+    /**
+     * The priority buckets are concatenated as they are, so no sorting is needed.
+     */
+    @Override
+    public List<Event> byPriority() {
+        List<Event> prioritized = new ArrayList<>(events.size());
+        for (NavigableSet<Event> bucket : prioIndex.values()) {
+            prioritized.addAll(bucket);
+        }
+        return prioritized;
+    }
+
+    /**
+     * Answered from the description index, so events that share no words with the
+     * keyword are never examined.
+     */
+    @Override
+    public List<Event> matching(String keyword) {
+        return descriptionIndex.search(keyword, timeIndex);
+    }
+
+    /**
+     * Reads the candidates chosen by {@link #plan(EventQuery)} and keeps those meeting the other criteria.
+     * Candidates read from the time or description index are in time order, so a chronological
+     * query stops reading them at its limit.
+     */
+    @Override
+    public List<Event> query(EventQuery query) {
+        SlotBitmap filter = filter(query);
+        switch (plan(query, filter)) {
+            case RANGE:
+                return query.select(streamBetween(query.getFrom(), query.getTo()).iterator());
+            case BITMAP:
+                return query.select(eventsIn(filter).iterator());
+            case DESCRIPTION:
+                return query.select(matching(query.getKeyword()).iterator());
+            default:
+                return query.select(timeIndex.iterator());
+        }
+    }
+
+    /**
+     * Chooses how to read the candidates of a query.
+     *
+     * @param query The query.
+     * @return The way of reading that yields the fewest candidates.
+     */
+    Access plan(EventQuery query) {
+        return plan(query, filter(query));
+    }
+
+    /**
+     * Estimates the candidates each way of reading would yield and picks the cheapest.
+     * The bitmap count is exact, the range is estimated from its days or from its share of
+     * the time spanned by the store, and the keyword from the postings of its words. Events
+     * read from the bitmaps must be sorted, so each counts twice.
+     */
+    private Access plan(EventQuery query, SlotBitmap filter) {
+        Access best = Access.SCAN;
+        long bestCost = events.size();
+        if (query.getFrom() != null) {
+            long cost = estimateBetween(query.getFrom(), query.getTo());
+            if (cost <= bestCost) {
+                best = Access.RANGE;
+                bestCost = cost;
+            }
+        }
+        if (filter != null && 2L * filter.cardinality() < bestCost) {
+            best = Access.BITMAP;
+            bestCost = 2L * filter.cardinality();
+        }
+        if (query.getKeyword() != null && descriptionIndex.estimate(query.getKeyword(), events.size()) < bestCost) {
+            best = Access.DESCRIPTION;
+        }
+        return best;
+    }
+
+    /**
+     * Combines the type bitmaps of a query with OR, its priority bitmaps likewise, and both with AND.
+     *
+     * @return The slots of the events meeting the query's type and priority criteria,
+     *         or null if it has neither.
+     */
+    private SlotBitmap filter(EventQuery query) {
+        SlotBitmap types = query.getTypes() == null ? null : union(typeSlots, query.getTypes());
+        SlotBitmap priorities = query.getPriorities() == null ? null : union(prioSlots, query.getPriorities());
+        if (types == null || priorities == null) {
+            return types == null ? priorities : types;
+        }
+        return SlotBitmap.and(types, priorities);
+    }
+
+    private static <K extends Enum<K>> SlotBitmap union(Map<K, SlotBitmap> index, Set<K> keys) {
+        SlotBitmap union = new SlotBitmap();
+        for (K key : keys) {
+            union = SlotBitmap.or(union, index.get(key));
+        }
+        return union;
+    }
+
+    /**
+     * Estimates the events in [from, to): exactly, up to the events of the last day, for a
+     * range of a few weeks, and otherwise as the store's share of events in the range
+     * assuming they are spread evenly between the first and the last.
+     */
+    private long estimateBetween(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to) || timeIndex.isEmpty()) {
+            return 0;
+        }
+        if (ChronoUnit.DAYS.between(from, to) <= MAX_COUNTED_DAYS) {
+            long count = 0;
+            for (LocalDate day = from.toLocalDate(); day.atStartOfDay().isBefore(to); day = day.plusDays(1)) {
+                NavigableSet<Event> bucket = dayIndex.get(day);
+                if (bucket != null) {
+                    count += bucket.size();
+                }
+            }
+            return count;
+        }
+        LocalDateTime first = timeIndex.first().getDateTime();
+        LocalDateTime last = timeIndex.last().getDateTime();
+        LocalDateTime start = from.isAfter(first) ? from : first;
+        LocalDateTime end = to.isBefore(last) ? to : last;
+        if (end.isBefore(start)) {
+            return 0;
+        }
+        double spanned = ChronoUnit.SECONDS.between(first, last) + 1;
+        return (long) Math.ceil(events.size() * ((ChronoUnit.SECONDS.between(start, end) + 1) / spanned));
+    }
+
+    /**
+     * Reads the events in a set of slots and sorts them by packed (epoch minute, ID) keys,
+     * the order of {@link Event#CHRONOLOGICAL} for events on whole minutes, so that sorting
+     * compares primitives rather than date-times. Events with seconds are sorted by the comparator.
+     *
+     * @return The events, sorted by date and time.
+     */
+    private List<Event> eventsIn(SlotBitmap filter) {
+        int[] selected = filter.toArray();
+        List<Event> events = new ArrayList<>(selected.length);
+        long[] keys = new long[selected.length];
+        for (int i = 0; i < selected.length; i++) {
+            Event event = slots[selected[i]];
+            events.add(event);
+            if (keys != null) {
+                LocalDateTime dateTime = event.getDateTime();
+                long minute = CalendarFile.toEpochMinute(dateTime);
+                if (dateTime.getSecond() != 0 || dateTime.getNano() != 0 || minute != (int) minute) {
+                    keys = null;
+                } else {
+                    keys[i] = minute << 32 | ((event.getID() ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+                }
+            }
+        }
+        if (keys == null) {
+            events.sort(Event.CHRONOLOGICAL);
+            return events;
+        }
+        Arrays.sort(keys);
+        events.clear();
+        for (long key : keys) {
+            events.add(slots[slotsByID.get((int) key ^ Integer.MIN_VALUE)]);
+        }
+        return events;
+    }
+
+    @Override
+    public Stream<Event> stream() {
+        return timeIndex.stream();
+    }
+
+    @Override
+    public Stream<Event> streamBetween(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return Stream.empty();
+        }
+        return timeIndex.subSet(probe(from), true, probe(to), false).stream();
+    }
+
+    @Override
+    public Stream<Event> streamOnDay(LocalDate date) {
+        NavigableSet<Event> bucket = dayIndex.get(date);
+        return bucket == null ? Stream.empty() : bucket.stream();
+    }
+
+    @Override
+    public Stream<Event> streamInYear(int year) {
+        NavigableMap<LocalDate, NavigableSet<Event>> days = yearIndex.get(year);
+        return days == null ? Stream.empty() : days.values().stream().flatMap(Collection::stream);
+    }
+
+    /**
+     * Merges the type buckets lazily, so only the events read are ever compared.
+     */
+    @Override
+    public Stream<Event> streamOfTypes(Set<EventType> types) {
+        List<Iterator<Event>> buckets = new ArrayList<>(types.size());
+        for (EventType type : types) {
+            buckets.add(typeIndex.get(type).iterator());
+        }
+        Iterator<Event> merged = EventMerge.merge(buckets, Event.CHRONOLOGICAL);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public Stream<Event> streamByPriority() {
+        return prioIndex.values().stream().flatMap(Collection::stream);
+    }
+}
@@ -0,0 +1,134 @@
+package com.jonathan.calendar.store;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from int keys to non-negative int values.
+ * Keys and values live in two parallel arrays probed linearly, so neither keys
+ * nor entries are boxed. Removal shifts later entries of the probe run back
+ * instead of leaving tombstones, so lookups never slow down after many removals.
+ */
+final class IntSlotMap {
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * Creates an empty map.
+     */
+    IntSlotMap() {
+        allocate(16);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, EMPTY);
+        mask = capacity - 1;
+    }
+
+    private int home(int key) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Retrieves the value of a key.
+     *
+     * @param key The key.
+     * @return The value, or -1 if the key is absent.
+     */
+    int get(int key) {
+        for (int i = home(key); values[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Sets the value of a key.
+     *
+     * @param key The key.
+     * @param value The value, which must not be negative.
+     */
+    void put(int key, int value) {
+        int i = home(key);
+        while (values[i] != EMPTY) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key The key.
+     * @return The value the key had, or -1 if it was absent.
+     */
+    int remove(int key) {
+        int i = home(key);
+        while (values[i] != EMPTY && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        int removed = values[i];
+        if (removed == EMPTY) {
+            return EMPTY;
+        }
+        size--;
+        // Move back every later entry of the run that may no longer be reachable from its home.
+        int gap = i;
+        for (int j = (gap + 1) & mask; values[j] != EMPTY; j = (j + 1) & mask) {
+            int home = home(keys[j]);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        values[gap] = EMPTY;
+        return removed;
+    }
+
+    /**
+     * Retrieves the number of keys.
+     *
+     * @return The number of keys.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Estimates the heap taken by the map's arrays.
+     *
+     * @return The size of the arrays, in bytes.
+     */
+    long footprint() {
+        return 4L * (keys.length + values.length);
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.jonathan.calendar.store;
+
+import com.jonathan.events.Event;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Interval tree over events, each spanning from its date and time to an end given when it is added.
+ * The tree is an {@link EventTreap} ordered like {@link Event#CHRONOLOGICAL} whose nodes also record
+ * the latest end in their subtree, so finding the k events that overlap a window takes
+ * O(log n + k) expected time. Events are also mapped by ID, so an event can be replaced
+ * or removed by its ID even if it was modified in place after being added.
+ *
+ * <p>The tree and the map are persistent: a change copies only the paths it touches, so
+ * {@link #snapshot()} hands out an independent index in O(1).</p>
+ *
+ * <p>All methods are synchronized, so one index can be shared by several threads.</p>
+ */
+public final class IntervalIndex {
+    private PersistentIntMap<EventTreap.Node> nodes;
+    private EventTreap tree;
+
+    /**
+     * Creates an empty index.
+     */
+    public IntervalIndex() {
+        this(PersistentIntMap.empty(), EventTreap.EMPTY);
+    }
+
+    private IntervalIndex(PersistentIntMap<EventTreap.Node> nodes, EventTreap tree) {
+        this.nodes = nodes;
+        this.tree = tree;
+    }
+
+    /**
+     * Retrieves an event by its ID.
+     *
+     * @param id The ID of the event.
+     * @return The event, or null if no event has that ID.
+     */
+    public synchronized Event get(int id) {
+        EventTreap.Node node = nodes.get(id);
+        return node == null ? null : node.event;
+    }
+
+    /**
+     * Adds an event, replacing any event with the same ID.
+     *
+     * @param event The event, spanning from its date and time.
+     * @param end The end of its span.
+     * @return The replaced event, or null if the ID was not in use.
+     */
+    public synchronized Event put(Event event, LocalDateTime end) {
+        Event previous = remove(event.getID());
+        EventTreap.Node node = EventTreap.node(event, end);
+        nodes = nodes.put(node.id, node);
+        tree = tree.insert(node);
+        return previous;
+    }
+
+    /**
+     * Removes an event by its ID.
+     *
+     * @param id The ID of the event.
+     * @return The removed event, or null if no event has that ID.
+     */
+    public synchronized Event remove(int id) {
+        EventTreap.Node node = nodes.get(id);
+        if (node == null) {
+            return null;
+        }
+        nodes = nodes.remove(id);
+        tree = tree.delete(node);
+        return node.event;
+    }
+
+    /**
+     * Retrieves the number of events.
+     *
+     * @return The number of events.
+     */
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Retrieves the latest end of any event, in O(1).
+     *
+     * @return The latest end, or null if the index is empty.
+     */
+    public synchronized LocalDateTime latestEnd() {
+        return tree.latestEnd();
+    }
+
+    /**
+     * Copies the index as it is now. The copy shares every node with this index, so it is made
+     * in O(1), and later changes to either one do not show in the other.
+     *
+     * @return The copy.
+     */
+    public synchronized IntervalIndex snapshot() {
+        return new IntervalIndex(nodes, tree);
+    }
+
+    /**
+     * Retrieves the events accepted by a filter.
+     *
+     * @param filter The filter.
+     * @return The accepted events, sorted by date and time.
+     */
+    public synchronized List<Event> matching(Predicate<Event> filter) {
+        List<Event> matching = new ArrayList<>();
+        tree.collect(filter, matching);
+        return matching;
+    }
+
+    /**
+     * Finds the events starting before {@code to} whose end is at or after {@code from}.
+     * Callers treating ends as exclusive drop the events ending exactly at {@code from}.
+     *
+     * @param from The start of the window.
+     * @param to The exclusive end of the window.
+     * @return The overlapping events, sorted by date and time.
+     */
+    public synchronized List<Event> overlapping(LocalDateTime from, LocalDateTime to) {
+        List<Event> overlapping = new ArrayList<>();
+        tree.overlapping(from, to, overlapping);
+        return overlapping;
+    }
+}
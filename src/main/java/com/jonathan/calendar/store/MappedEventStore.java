@@ -0,0 +1,249 @@
+package com.jonathan.calendar.store;
+
+import com.jonathan.calendar.io.MappedCalendarFile;
+import com.jonathan.events.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Event store backed by a memory-mapped calendar file.
+ * Opening the store maps the file and reads its header only. Queries binary-search or
+ * scan the mapped records and decode an {@link Event} only for the records they return,
+ * so memory use is limited to the mapping plus the events actually viewed.
+ *
+ * <p>The file itself is never modified. Events scheduled or updated after opening are
+ * kept in an in-memory {@link IndexedEventStore} overlay, and records they replace or that
+ * are removed are hidden by slot. Query results merge both sources in time order.
+ * Events read from the file are decoded afresh on every access.</p>
+ */
+public class MappedEventStore implements EventStore {
+    private final MappedCalendarFile file;
+    private final IndexedEventStore overlay = new IndexedEventStore();
+    private final BitSet hidden = new BitSet();
+    private int hiddenCount;
+
+    /**
+     * Creates a store over an already mapped calendar file.
+     *
+     * @param file The mapped file.
+     */
+    public MappedEventStore(MappedCalendarFile file) {
+        this.file = file;
+    }
+
+    /**
+     * Maps a binary calendar file and creates a store over it.
+     *
+     * @param path The file to map.
+     * @return The store.
+     * @throws IOException If the file cannot be read or is not a binary calendar file.
+     */
+    public static MappedEventStore open(Path path) throws IOException {
+        return new MappedEventStore(MappedCalendarFile.open(path));
+    }
+
+    /**
+     * Retrieves the last ID handed out by the calendar the file was saved from.
+     *
+     * @return The last assigned event ID.
+     */
+    public int lastID() {
+        return file.lastID();
+    }
+
+    /**
+     * Decodes the stored events that have a duration, found through the file's durations section
+     * without scanning the records. Recurring events, which are not stored as records, are skipped.
+     *
+     * @return The events with a duration, in ID order.
+     */
+    public List<Event> timed() {
+        List<Event> timed = new ArrayList<>();
+        for (int entry = 0; entry < file.durationCount(); entry++) {
+            Event event = get(file.durationID(entry));
+            if (event != null && event.hasDuration()) {
+                timed.add(event);
+            }
+        }
+        return timed;
+    }
+
+    @Override
+    public Event get(int id) {
+        Event event = overlay.get(id);
+        if (event != null) {
+            return event;
+        }
+        int slot = liveSlotOf(id);
+        return slot < 0 ? null : file.event(slot);
+    }
+
+    @Override
+    public Event put(Event event) {
+        Event previous = overlay.put(event);
+        if (previous == null) {
+            int slot = liveSlotOf(event.getID());
+            if (slot >= 0) {
+                previous = file.event(slot);
+                hide(slot);
+            }
+        }
+        return previous;
+    }
+
+    @Override
+    public Event remove(int id) {
+        Event removed = overlay.remove(id);
+        if (removed == null) {
+            int slot = liveSlotOf(id);
+            if (slot >= 0) {
+                removed = file.event(slot);
+                hide(slot);
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return file.size() - hiddenCount + overlay.size();
+    }
+
+    private int liveSlotOf(int id) {
+        int slot = file.slotOf(id);
+        return slot >= 0 && !hidden.get(slot) ? slot : -1;
+    }
+
+    private void hide(int slot) {
+        hidden.set(slot);
+        hiddenCount++;
+    }
+
+    /**
+     * Returns a lazily decoded view of the file while it has not been modified.
+     */
+    @Override
+    public List<Event> all() {
+        if (hiddenCount == 0 && overlay.size() == 0) {
+            return new AbstractList<Event>() {
+                @Override
+                public Event get(int index) {
+                    return file.event(index);
+                }
+
+                @Override
+                public int size() {
+                    return file.size();
+                }
+            };
+        }
+        return withOverlay(decode(0, file.size()), overlay.all());
+    }
+
+    /**
+     * Binary-searches the records, which are stored in date and time order.
+     */
+    @Override
+    public List<Event> between(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return new ArrayList<>();
+        }
+        return withOverlay(decode(file.lowerBound(from), file.lowerBound(to)), overlay.between(from, to));
+    }
+
+    /**
+     * Scans the type byte of each record and decodes only the matching ones.
+     */
+    @Override
+    public List<Event> ofTypes(Set<EventType> types) {
+        boolean[] wanted = new boolean[EventType.values().length];
+        for (EventType type : types) {
+            wanted[type.ordinal()] = true;
+        }
+        List<Event> matching = new ArrayList<>();
+        for (int slot = 0; slot < file.size(); slot++) {
+            byte code = file.typeCode(slot);
+            if (code >= 0 && wanted[code] && !hidden.get(slot)) {
+                matching.add(file.event(slot));
+            }
+        }
+        return withOverlay(matching, overlay.ofTypes(types));
+    }
+
+    /**
+     * Splits the records by priority in one pass over the priority bytes.
+     */
+    @Override
+    public List<Event> byPriority() {
+        EventPrio[] prios = EventPrio.values();
+        List<List<Event>> fromFile = new ArrayList<>(prios.length);
+        List<List<Event>> fromOverlay = new ArrayList<>(prios.length);
+        for (int i = 0; i < prios.length; i++) {
+            fromFile.add(new ArrayList<>());
+            fromOverlay.add(new ArrayList<>());
+        }
+        for (int slot = 0; slot < file.size(); slot++) {
+            byte code = file.prioCode(slot);
+            if (code >= 0 && !hidden.get(slot)) {
+                fromFile.get(code).add(file.event(slot));
+            }
+        }
+        for (Event event : overlay.byPriority()) {
+            fromOverlay.get(event.getPriority().ordinal()).add(event);
+        }
+        List<Event> prioritized = new ArrayList<>(size());
+        for (int i = 0; i < prios.length; i++) {
+            prioritized.addAll(withOverlay(fromFile.get(i), fromOverlay.get(i)));
+        }
+        return prioritized;
+    }
+
+    /**
+     * Checks each distinct description in the string table once, then scans the
+     * string numbers of the records and decodes only the matching ones.
+     */
+    @Override
+    public List<Event> matching(String keyword) {
+        String needle = keyword.toLowerCase(Locale.ROOT);
+        BitSet matchingStrings = new BitSet(file.stringCount());
+        for (int number = 0; number < file.stringCount(); number++) {
+            if (file.string(number).toLowerCase(Locale.ROOT).contains(needle)) {
+                matchingStrings.set(number);
+            }
+        }
+        List<Event> matching = new ArrayList<>();
+        for (int slot = 0; slot < file.size(); slot++) {
+            int number = file.stringNumber(slot);
+            if (number >= 0 && matchingStrings.get(number) && !hidden.get(slot)) {
+                matching.add(file.event(slot));
+            }
+        }
+        return withOverlay(matching, overlay.matching(keyword));
+    }
+
+    /**
+     * Decodes the visible records in a range of slots.
+     *
+     * @param fromSlot The first slot, inclusive.
+     * @param toSlot The last slot, exclusive.
+     * @return The decoded events, in time order.
+     */
+    private List<Event> decode(int fromSlot, int toSlot) {
+        List<Event> decoded = new ArrayList<>(Math.max(0, toSlot - fromSlot));
+        for (int slot = fromSlot; slot < toSlot; slot++) {
+            if (!hidden.get(slot)) {
+                decoded.add(file.event(slot));
+            }
+        }
+        return decoded;
+    }
+
+    private static List<Event> withOverlay(List<Event> fromFile, List<Event> fromOverlay) {
+        if (fromOverlay.isEmpty()) {
+            return fromFile;
+        }
+        return EventMerge.mergeToList(Arrays.asList(fromFile, fromOverlay), Event.CHRONOLOGICAL);
+    }
+}
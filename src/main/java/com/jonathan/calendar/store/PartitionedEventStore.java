@@ -0,0 +1,398 @@
+package com.jonathan.calendar.store;
+
+import com.jonathan.calendar.io.SegmentFile;
+import com.jonathan.events.*;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Event store that shards events by month, with one {@link IndexedEventStore} per month.
+ * Date, year and range queries visit only the partitions of the months they cover, so a query
+ * about the current month never touches the decades around it. Other listings visit every
+ * partition in month order and join their results, which are already sorted.
+ *
+ * <p>Only a budget of events is kept in memory. Once the resident partitions hold more, the
+ * least recently used ones are written to segment files, one {@link SegmentFile} per month
+ * in the store's directory, and dropped from memory; a partition whose segment is up to date
+ * is dropped without writing. A query touching an evicted partition reads it back
+ * transparently, with every field as it was, down to the nanosecond. The partition a change or query is working on is never evicted, so one
+ * month larger than the budget stays in memory while it is used.</p>
+ *
+ * <p>The month of each ID is kept in memory, so lookups by ID read at most one segment.
+ * Segment files are a cache of the store, not a saved calendar: they are overwritten as
+ * partitions are evicted without being forced to disk, and each store needs a directory
+ * of its own. {@link #close()} deletes them once the store is no longer needed.</p>
+ */
+public class PartitionedEventStore implements EventStore, Closeable {
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int maxResidentEvents;
+    private final NavigableMap<YearMonth, Partition> partitions = new TreeMap<>();
+    private final Map<Integer, YearMonth> months = new HashMap<>();
+    private final LinkedHashMap<YearMonth, Partition> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private int residentEvents;
+    private long faults;
+    private long evictions;
+
+    /**
+     * The events of one month, in memory or in its segment file.
+     */
+    private final class Partition {
+        final YearMonth month;
+        final Path segment;
+        IndexedEventStore events;
+        int size;
+        boolean dirty;
+
+        Partition(YearMonth month) {
+            this.month = month;
+            this.segment = directory.resolve(month + SEGMENT_SUFFIX);
+            this.events = new IndexedEventStore();
+        }
+    }
+
+    /**
+     * Creates an empty store.
+     *
+     * @param directory The directory for the segment files of evicted partitions, created if needed.
+     *                  No other store may use it.
+     * @param maxResidentEvents The number of events to keep in memory before evicting partitions.
+     * @throws IOException If the directory cannot be created.
+     */
+    public PartitionedEventStore(Path directory, int maxResidentEvents) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxResidentEvents = maxResidentEvents;
+    }
+
+    /**
+     * Retrieves the number of months that hold events.
+     *
+     * @return The number of partitions, in memory or not.
+     */
+    public int partitionCount() {
+        return partitions.size();
+    }
+
+    /**
+     * Retrieves the number of months held in memory.
+     *
+     * @return The number of resident partitions.
+     */
+    public int residentPartitionCount() {
+        return resident.size();
+    }
+
+    /**
+     * Retrieves the number of times an evicted partition was read back from its segment.
+     *
+     * @return The number of faults.
+     */
+    public long faults() {
+        return faults;
+    }
+
+    /**
+     * Retrieves the number of times a partition was dropped from memory.
+     *
+     * @return The number of evictions.
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Retrieves the events of a partition, reading them back from its segment if it was evicted,
+     * and marks the partition as the most recently used.
+     */
+    private IndexedEventStore load(Partition partition) {
+        if (partition.events == null) {
+            try {
+                IndexedEventStore events = new IndexedEventStore();
+                events.putAll(SegmentFile.read(partition.segment));
+                partition.events = events;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            faults++;
+            residentEvents += partition.size;
+        }
+        resident.put(partition.month, partition);
+        return partition.events;
+    }
+
+    /**
+     * Evicts the least recently used partitions, other than the one in use, until the resident
+     * events fit the budget.
+     */
+    private void evictOver(Partition inUse) {
+        Iterator<Partition> candidates = resident.values().iterator();
+        while (residentEvents > maxResidentEvents && candidates.hasNext()) {
+            Partition partition = candidates.next();
+            if (partition == inUse) {
+                continue;
+            }
+            if (partition.dirty) {
+                try {
+                    SegmentFile.write(partition.segment, partition.events.all());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                partition.dirty = false;
+            }
+            partition.events = null;
+            residentEvents -= partition.size;
+            candidates.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Deletes the segment files and forgets every event. The store's directory is deleted
+     * as well if nothing else is left in it. The store must not be used afterwards.
+     *
+     * @throws IOException If a segment file cannot be deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        for (Partition partition : partitions.values()) {
+            Files.deleteIfExists(partition.segment);
+        }
+        partitions.clear();
+        resident.clear();
+        months.clear();
+        residentEvents = 0;
+        try {
+            Files.deleteIfExists(directory);
+        } catch (DirectoryNotEmptyException e) {
+            // The directory was shared after all, or was given with files already in it.
+        }
+    }
+
+    private Partition partitionFor(YearMonth month) {
+        Partition partition = partitions.get(month);
+        if (partition == null) {
+            partition = new Partition(month);
+            partitions.put(month, partition);
+            resident.put(month, partition);
+        }
+        return partition;
+    }
+
+    /**
+     * Forgets a partition once its last event is gone, deleting its segment.
+     */
+    private void dropIfEmpty(Partition partition) {
+        if (partition.size > 0) {
+            return;
+        }
+        partitions.remove(partition.month);
+        resident.remove(partition.month);
+        try {
+            Files.deleteIfExists(partition.segment);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void changed(Partition partition, int delta) {
+        partition.size += delta;
+        residentEvents += delta;
+        partition.dirty = true;
+    }
+
+    @Override
+    public Event get(int id) {
+        YearMonth month = months.get(id);
+        if (month == null) {
+            return null;
+        }
+        Partition partition = partitions.get(month);
+        Event event = load(partition).get(id);
+        evictOver(partition);
+        return event;
+    }
+
+    @Override
+    public Event put(Event event) {
+        Event previous = remove(event.getID());
+        YearMonth month = YearMonth.from(event.getDateTime());
+        Partition partition = partitionFor(month);
+        load(partition).put(event);
+        changed(partition, 1);
+        months.put(event.getID(), month);
+        evictOver(partition);
+        return previous;
+    }
+
+    /**
+     * Groups the batch by month and hands each month's events to its partition in one bulk insert.
+     */
+    @Override
+    public void putAll(Collection<Event> events) {
+        Map<YearMonth, Map<Integer, Event>> byMonth = new TreeMap<>();
+        Map<Integer, YearMonth> batched = new HashMap<>();
+        for (Event event : events) {
+            YearMonth month = YearMonth.from(event.getDateTime());
+            YearMonth stored = months.get(event.getID());
+            if (stored != null && !stored.equals(month)) {
+                remove(event.getID());
+            }
+            YearMonth earlier = batched.put(event.getID(), month);
+            if (earlier != null) {
+                byMonth.get(earlier).remove(event.getID());
+            }
+            byMonth.computeIfAbsent(month, m -> new LinkedHashMap<>()).put(event.getID(), event);
+        }
+        for (Map.Entry<YearMonth, Map<Integer, Event>> group : byMonth.entrySet()) {
+            Partition partition = partitionFor(group.getKey());
+            IndexedEventStore stored = load(partition);
+            int before = stored.size();
+            stored.putAll(group.getValue().values());
+            changed(partition, stored.size() - before);
+            for (Integer id : group.getValue().keySet()) {
+                months.put(id, group.getKey());
+            }
+            evictOver(partition);
+        }
+    }
+
+    @Override
+    public Event remove(int id) {
+        YearMonth month = months.remove(id);
+        if (month == null) {
+            return null;
+        }
+        Partition partition = partitions.get(month);
+        Event removed = load(partition).remove(id);
+        changed(partition, -1);
+        dropIfEmpty(partition);
+        evictOver(partition);
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return months.size();
+    }
+
+    /**
+     * Collects a query's results from the given partitions, in month order.
+     */
+    private List<Event> collect(Collection<Partition> visited, Function<EventStore, List<Event>> query) {
+        List<Event> events = new ArrayList<>();
+        for (Partition partition : new ArrayList<>(visited)) {
+            events.addAll(query.apply(load(partition)));
+            evictOver(partition);
+        }
+        return events;
+    }
+
+    /**
+     * Retrieves the partitions of the months from the one holding {@code from} to the one holding {@code to}.
+     */
+    private Collection<Partition> covering(LocalDateTime from, LocalDateTime to) {
+        return partitions.subMap(YearMonth.from(from), true, YearMonth.from(to), true).values();
+    }
+
+    @Override
+    public List<Event> all() {
+        return collect(partitions.values(), EventStore::all);
+    }
+
+    /**
+     * Visits only the partitions of the months the range covers.
+     */
+    @Override
+    public List<Event> between(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return new ArrayList<>();
+        }
+        return collect(covering(from, to), store -> store.between(from, to));
+    }
+
+    /**
+     * Reads the one partition holding the date.
+     */
+    @Override
+    public List<Event> onDay(LocalDate date) {
+        Partition partition = partitions.get(YearMonth.from(date));
+        if (partition == null) {
+            return new ArrayList<>();
+        }
+        return collect(List.of(partition), store -> store.onDay(date));
+    }
+
+    /**
+     * Reads the year's twelve partitions, at most.
+     */
+    @Override
+    public List<Event> inYear(int year) {
+        return collect(partitions.subMap(YearMonth.of(year, 1), true, YearMonth.of(year, 12), true).values(),
+                EventStore::all);
+    }
+
+    @Override
+    public List<Event> ofTypes(Set<EventType> types) {
+        return collect(partitions.values(), store -> store.ofTypes(types));
+    }
+
+    /**
+     * Splits each partition's events by priority and joins each priority's share in month order.
+     */
+    @Override
+    public List<Event> byPriority() {
+        Map<EventPrio, List<Event>> groups = new EnumMap<>(EventPrio.class);
+        for (EventPrio priority : EventPrio.values()) {
+            groups.put(priority, new ArrayList<>());
+        }
+        for (Event event : collect(partitions.values(), EventStore::byPriority)) {
+            groups.get(event.getPriority()).add(event);
+        }
+        List<Event> prioritized = new ArrayList<>(size());
+        for (List<Event> group : groups.values()) {
+            prioritized.addAll(group);
+        }
+        return prioritized;
+    }
+
+    @Override
+    public List<Event> matching(String keyword) {
+        return collect(partitions.values(), store -> store.matching(keyword));
+    }
+
+    /**
+     * Reads one partition at a time as the stream reaches it, so a reader that stops early
+     * never loads the later months.
+     */
+    @Override
+    public Stream<Event> stream() {
+        return new ArrayList<>(partitions.values()).stream().flatMap(partition -> {
+            Stream<Event> events = load(partition).stream();
+            evictOver(partition);
+            return events;
+        });
+    }
+
+    @Override
+    public Stream<Event> streamBetween(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return Stream.empty();
+        }
+        return new ArrayList<>(covering(from, to)).stream().flatMap(partition -> {
+            Stream<Event> events = load(partition).streamBetween(from, to);
+            evictOver(partition);
+            return events;
+        });
+    }
+}
@@ -0,0 +1,487 @@
+package com.jonathan.calendar.store;
+
+import com.jonathan.events.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * In-memory event store built from persistent data structures, so that {@link #snapshot()} is O(1).
+ * Events are mapped by ID in a {@link PersistentIntMap} and indexed by {@link EventTreap}s: one
+ * over every event in time order, one per event type and priority, and one per word of the
+ * descriptions in {@link DescriptionPostings}. Day, year and range queries walk the time index
+ * in O(log n + k).
+ *
+ * <p>A composite {@link #query(EventQuery)} is planned by cost: the planner estimates how many
+ * events the range, the type or priority buckets and the description postings would each yield,
+ * reads the smallest of them, and checks the remaining criteria on those events alone. Buckets
+ * are walked over the query's range only and merged in time order, so a chronological query
+ * stops reading them at its limit.</p>
+ *
+ * <p>The map and indexes are immutable. A change copies only the O(log n) nodes on the paths it
+ * touches and publishes the new version at once, so a snapshot is simply the current version,
+ * sharing every node with the store. Readers never lock and always see the store between two
+ * changes; writers are serialized. Streams read the version they were opened on, so unlike
+ * other stores they stay valid after later changes.</p>
+ */
+public class PersistentEventStore implements EventStore {
+    private static final int MIN_REBUILD_BATCH = 1_024;
+    private static final EventType[] TYPES = EventType.values();
+    private static final EventPrio[] PRIORITIES = EventPrio.values();
+
+    private volatile Version version;
+    private final boolean readOnly;
+
+    /**
+     * Ways of reading the candidates of a query, chosen by {@link #plan(EventQuery)}.
+     */
+    enum Access {
+        /**
+         * Walk the whole time index.
+         */
+        SCAN,
+        /**
+         * Walk the time index over the query's range.
+         */
+        RANGE,
+        /**
+         * Merge the buckets of the query's types or priorities, over its range if it has one.
+         */
+        BUCKETS,
+        /**
+         * Read the postings of the words containing the keyword.
+         */
+        DESCRIPTION
+    }
+
+    /**
+     * An event with the type and priority buckets and the description words it was filed under.
+     * Every index holds the same node, so the event is found in each by the node's start and ID.
+     */
+    static final class Entry {
+        final EventTreap.Node node;
+        final int type;
+        final int priority;
+        final String[] tokens;
+
+        Entry(Event event) {
+            this.node = EventTreap.node(event, event.getDateTime());
+            this.type = bucket(event.getType(), TYPES.length);
+            this.priority = bucket(event.getPriority(), PRIORITIES.length);
+            this.tokens = DescriptionPostings.tokens(event);
+        }
+
+        /**
+         * Files events without a type or priority in a last bucket of their own.
+         */
+        private static int bucket(Enum<?> key, int count) {
+            return key == null ? count : key.ordinal();
+        }
+    }
+
+    /**
+     * One immutable state of the store.
+     */
+    static final class Version {
+        static final Version EMPTY = new Version(PersistentIntMap.empty(), EventTreap.EMPTY,
+                emptyBuckets(TYPES.length + 1), emptyBuckets(PRIORITIES.length + 1), DescriptionPostings.EMPTY);
+
+        final PersistentIntMap<Entry> events;
+        final EventTreap timeIndex;
+        final EventTreap[] typeIndex;
+        final EventTreap[] prioIndex;
+        final DescriptionPostings descriptions;
+
+        Version(PersistentIntMap<Entry> events, EventTreap timeIndex, EventTreap[] typeIndex, EventTreap[] prioIndex,
+                DescriptionPostings descriptions) {
+            this.events = events;
+            this.timeIndex = timeIndex;
+            this.typeIndex = typeIndex;
+            this.prioIndex = prioIndex;
+            this.descriptions = descriptions;
+        }
+
+        private static EventTreap[] emptyBuckets(int count) {
+            EventTreap[] buckets = new EventTreap[count];
+            Arrays.fill(buckets, EventTreap.EMPTY);
+            return buckets;
+        }
+
+        /**
+         * Derives the version with an entry put, replacing the entry of any event with the same ID.
+         */
+        Version put(Entry entry) {
+            Entry previous = events.get(entry.node.id);
+            return (previous == null ? this : without(previous)).with(entry);
+        }
+
+        /**
+         * Derives the version with a batch of events put. A batch that is large compared to the
+         * version rebuilds every index once, instead of inserting each event into each index.
+         */
+        Version putAll(Collection<Event> batch) {
+            if (batch.size() < MIN_REBUILD_BATCH || batch.size() < events.size() / 4) {
+                Version next = this;
+                for (Event event : batch) {
+                    next = next.put(new Entry(event));
+                }
+                return next;
+            }
+            Map<Integer, Event> merged = new HashMap<>();
+            List<Event> all = new ArrayList<>(events.size());
+            timeIndex.collect(null, null, all);
+            for (Event event : all) {
+                merged.put(event.getID(), event);
+            }
+            for (Event event : batch) {
+                merged.put(event.getID(), event);
+            }
+            List<Event> sorted = new ArrayList<>(merged.values());
+            sorted.sort(Event.CHRONOLOGICAL);
+            return of(sorted);
+        }
+
+        Version with(Entry entry) {
+            EventTreap[] types = typeIndex.clone();
+            types[entry.type] = types[entry.type].insert(entry.node);
+            EventTreap[] prios = prioIndex.clone();
+            prios[entry.priority] = prios[entry.priority].insert(entry.node);
+            return new Version(events.put(entry.node.id, entry), timeIndex.insert(entry.node), types, prios,
+                    descriptions.with(entry.tokens, entry.node));
+        }
+
+        Version without(Entry entry) {
+            EventTreap[] types = typeIndex.clone();
+            types[entry.type] = types[entry.type].delete(entry.node);
+            EventTreap[] prios = prioIndex.clone();
+            prios[entry.priority] = prios[entry.priority].delete(entry.node);
+            return new Version(events.remove(entry.node.id), timeIndex.delete(entry.node), types, prios,
+                    descriptions.without(entry.tokens, entry.node));
+        }
+
+        /**
+         * Builds a version from events sorted by date and time, building each index at once without copying paths.
+         */
+        static Version of(List<Event> sorted) {
+            int[] ids = new int[sorted.size()];
+            List<Entry> entries = new ArrayList<>(sorted.size());
+            List<EventTreap.Node> nodes = new ArrayList<>(sorted.size());
+            List<String[]> tokens = new ArrayList<>(sorted.size());
+            List<List<EventTreap.Node>> types = groups(TYPES.length + 1);
+            List<List<EventTreap.Node>> prios = groups(PRIORITIES.length + 1);
+            for (Event event : sorted) {
+                Entry entry = new Entry(event);
+                ids[entries.size()] = entry.node.id;
+                entries.add(entry);
+                nodes.add(entry.node);
+                tokens.add(entry.tokens);
+                types.get(entry.type).add(entry.node);
+                prios.get(entry.priority).add(entry.node);
+            }
+            return new Version(PersistentIntMap.of(ids, entries), EventTreap.of(nodes), treaps(types), treaps(prios),
+                    DescriptionPostings.of(nodes, tokens));
+        }
+
+        private static List<List<EventTreap.Node>> groups(int count) {
+            List<List<EventTreap.Node>> groups = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                groups.add(new ArrayList<>());
+            }
+            return groups;
+        }
+
+        private static EventTreap[] treaps(List<List<EventTreap.Node>> groups) {
+            EventTreap[] treaps = new EventTreap[groups.size()];
+            for (int i = 0; i < treaps.length; i++) {
+                treaps[i] = EventTreap.of(groups.get(i));
+            }
+            return treaps;
+        }
+    }
+
+    /**
+     * Creates an empty store.
+     */
+    public PersistentEventStore() {
+        this(Version.EMPTY, false);
+    }
+
+    private PersistentEventStore(Version version, boolean readOnly) {
+        this.version = version;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Creates a read-only store answering queries from a version.
+     *
+     * @param version The version.
+     * @return The store, in O(1).
+     */
+    static PersistentEventStore readOnly(Version version) {
+        return new PersistentEventStore(version, true);
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Store snapshots are read-only");
+        }
+    }
+
+    /**
+     * Shares the current version with the snapshot, so it costs O(1) whatever the store's size.
+     *
+     * @return A read-only store holding the events as they are now.
+     */
+    @Override
+    public PersistentEventStore snapshot() {
+        return readOnly ? this : new PersistentEventStore(version, true);
+    }
+
+    @Override
+    public Event get(int id) {
+        Entry entry = version.events.get(id);
+        return entry == null ? null : entry.node.event;
+    }
+
+    @Override
+    public synchronized Event put(Event event) {
+        checkWritable();
+        Version current = version;
+        Entry previous = current.events.get(event.getID());
+        if (previous != null) {
+            current = current.without(previous);
+        }
+        version = current.with(new Entry(event));
+        return previous == null ? null : previous.node.event;
+    }
+
+    /**
+     * Rebuilds every index once for a batch that is large compared to the store,
+     * instead of inserting each event into each index.
+     */
+    @Override
+    public synchronized void putAll(Collection<Event> batch) {
+        checkWritable();
+        version = version.putAll(batch);
+    }
+
+    @Override
+    public synchronized Event remove(int id) {
+        checkWritable();
+        Version current = version;
+        Entry removed = current.events.get(id);
+        if (removed == null) {
+            return null;
+        }
+        version = current.without(removed);
+        return removed.node.event;
+    }
+
+    @Override
+    public int size() {
+        return version.events.size();
+    }
+
+    @Override
+    public List<Event> all() {
+        List<Event> all = new ArrayList<>(size());
+        version.timeIndex.collect(null, null, all);
+        return all;
+    }
+
+    @Override
+    public List<Event> between(LocalDateTime from, LocalDateTime to) {
+        List<Event> events = new ArrayList<>();
+        if (from.isBefore(to)) {
+            version.timeIndex.collect(from, to, events);
+        }
+        return events;
+    }
+
+    @Override
+    public List<Event> ofTypes(Set<EventType> types) {
+        List<Event> events = new ArrayList<>();
+        streamOfTypes(types).forEach(events::add);
+        return events;
+    }
+
+    @Override
+    public List<Event> byPriority() {
+        Version current = version;
+        List<Event> prioritized = new ArrayList<>(current.events.size());
+        for (EventTreap bucket : current.prioIndex) {
+            bucket.collect(null, null, prioritized);
+        }
+        return prioritized;
+    }
+
+    /**
+     * Answered from the description postings, so events that share no words with the
+     * keyword are never examined.
+     */
+    @Override
+    public List<Event> matching(String keyword) {
+        Version current = version;
+        return current.descriptions.search(keyword, current.timeIndex);
+    }
+
+    /**
+     * Reads the candidates chosen by {@link #plan(EventQuery)} from one version and keeps those
+     * meeting the other criteria.
+     */
+    @Override
+    public List<Event> query(EventQuery query) {
+        Version current = version;
+        switch (plan(current, query)) {
+            case RANGE:
+                return query.select(current.timeIndex.iterator(query.getFrom(), query.getTo()));
+            case BUCKETS:
+                return query.select(EventMerge.merge(buckets(current, query), Event.CHRONOLOGICAL));
+            case DESCRIPTION:
+                return query.select(current.descriptions.search(query.getKeyword(), current.timeIndex).iterator());
+            default:
+                return query.select(current.timeIndex.iterator(null, null));
+        }
+    }
+
+    /**
+     * Chooses how to read the candidates of a query.
+     *
+     * @param query The query.
+     * @return The way of reading that yields the fewest candidates.
+     */
+    Access plan(EventQuery query) {
+        return plan(version, query);
+    }
+
+    /**
+     * Estimates the candidates each way of reading would yield and picks the cheapest.
+     * Bucket sizes are exact, and the range is estimated from its share of the time spanned
+     * by the store, which also scales the buckets when they are walked over the range.
+     */
+    private static Access plan(Version current, EventQuery query) {
+        Access best = Access.SCAN;
+        long bestCost = current.events.size();
+        double share = 1;
+        if (query.getFrom() != null) {
+            share = share(current.timeIndex, query.getFrom(), query.getTo());
+            long cost = (long) Math.ceil(bestCost * share);
+            if (cost <= bestCost) {
+                best = Access.RANGE;
+                bestCost = cost;
+            }
+        }
+        if (query.getTypes() != null || query.getPriorities() != null) {
+            long cost = (long) Math.ceil(bucketSize(current, query) * share);
+            if (cost < bestCost) {
+                best = Access.BUCKETS;
+                bestCost = cost;
+            }
+        }
+        if (query.getKeyword() != null
+                && current.descriptions.estimate(query.getKeyword(), current.events.size()) < bestCost) {
+            best = Access.DESCRIPTION;
+        }
+        return best;
+    }
+
+    /**
+     * Estimates the share of events in [from, to), assuming they are spread evenly between the first and the last.
+     */
+    private static double share(EventTreap timeIndex, LocalDateTime from, LocalDateTime to) {
+        LocalDateTime first = timeIndex.firstStart();
+        if (!from.isBefore(to) || first == null) {
+            return 0;
+        }
+        LocalDateTime last = timeIndex.lastStart();
+        LocalDateTime start = from.isAfter(first) ? from : first;
+        LocalDateTime end = to.isBefore(last) ? to : last;
+        if (end.isBefore(start)) {
+            return 0;
+        }
+        return (ChronoUnit.SECONDS.between(start, end) + 1) / (double) (ChronoUnit.SECONDS.between(first, last) + 1);
+    }
+
+    /**
+     * Counts the events in the buckets of the query's types, or of its priorities if those are fewer.
+     */
+    private static long bucketSize(Version current, EventQuery query) {
+        long types = query.getTypes() == null ? Long.MAX_VALUE : sizeOf(current.typeIndex, query.getTypes());
+        long priorities = query.getPriorities() == null ? Long.MAX_VALUE : sizeOf(current.prioIndex, query.getPriorities());
+        return Math.min(types, priorities);
+    }
+
+    private static long sizeOf(EventTreap[] index, Set<? extends Enum<?>> keys) {
+        long size = 0;
+        for (Enum<?> key : keys) {
+            size += index[key.ordinal()].size();
+        }
+        return size;
+    }
+
+    /**
+     * Iterates over the buckets counted by {@link #bucketSize(Version, EventQuery)}, over the query's range.
+     */
+    private static List<Iterator<Event>> buckets(Version current, EventQuery query) {
+        boolean byType = query.getTypes() != null && (query.getPriorities() == null
+                || sizeOf(current.typeIndex, query.getTypes()) <= sizeOf(current.prioIndex, query.getPriorities()));
+        EventTreap[] index = byType ? current.typeIndex : current.prioIndex;
+        Set<? extends Enum<?>> keys = byType ? query.getTypes() : query.getPriorities();
+        List<Iterator<Event>> buckets = new ArrayList<>(keys.size());
+        for (Enum<?> key : keys) {
+            buckets.add(index[key.ordinal()].iterator(query.getFrom(), query.getTo()));
+        }
+        return buckets;
+    }
+
+    private static Stream<Event> stream(Iterator<Event> events) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(events,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public Stream<Event> stream() {
+        return stream(version.timeIndex.iterator(null, null));
+    }
+
+    @Override
+    public Stream<Event> streamBetween(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return Stream.empty();
+        }
+        return stream(version.timeIndex.iterator(from, to));
+    }
+
+    @Override
+    public Stream<Event> streamOnDay(LocalDate date) {
+        return streamBetween(date.atStartOfDay(), date.plusDays(1).atStartOfDay());
+    }
+
+    @Override
+    public Stream<Event> streamInYear(int year) {
+        LocalDate start = LocalDate.of(year, 1, 1);
+        return streamBetween(start.atStartOfDay(), start.plusYears(1).atStartOfDay());
+    }
+
+    /**
+     * Merges the type buckets lazily, so only the events read are ever compared.
+     */
+    @Override
+    public Stream<Event> streamOfTypes(Set<EventType> types) {
+        Version current = version;
+        List<Iterator<Event>> buckets = new ArrayList<>(types.size());
+        for (EventType type : types) {
+            buckets.add(current.typeIndex[type.ordinal()].iterator(null, null));
+        }
+        return stream(EventMerge.merge(buckets, Event.CHRONOLOGICAL));
+    }
+
+    @Override
+    public Stream<Event> streamByPriority() {
+        Version current = version;
+        return Arrays.stream(current.prioIndex).flatMap(bucket -> stream(bucket.iterator(null, null)));
+    }
+}
@@ -0,0 +1,301 @@
+package com.jonathan.calendar.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable map from int keys to values, as a hash array mapped trie.
+ * Each level of the trie consumes five bits of the key and holds only the slots in use,
+ * located through a 32-bit bitmap. Changing a key copies the O(log32 n) nodes on its
+ * path and shares every other node with the map it was derived from, so old versions
+ * stay valid and cost nothing to keep.
+ *
+ * <p>Keys are used as their own hashes. Distinct keys always part before the last level,
+ * so no collision handling is needed, and consecutive IDs fill nodes densely.</p>
+ *
+ * @param <V> The value type. Values are never null.
+ */
+final class PersistentIntMap<V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final PersistentIntMap<?> EMPTY = new PersistentIntMap<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    /**
+     * A key and its value, stored in the slot of the first level where the key has no neighbour.
+     */
+    private static final class Entry {
+        final int key;
+        final Object value;
+
+        Entry(int key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * A level of the trie. Each slot holds an {@link Entry} or the node of the next level.
+     */
+    private static final class Node {
+        final int bitmap;
+        final Object[] slots;
+
+        Node(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+    }
+
+    private PersistentIntMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Retrieves the empty map.
+     *
+     * @param <V> The value type.
+     * @return The empty map.
+     */
+    @SuppressWarnings("unchecked")
+    static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    /**
+     * Builds a map from many keys at once, without copying any path.
+     * The keys are sorted in the order the trie lays them out, lowest five bits first,
+     * so that every node is built once from a contiguous run of them.
+     *
+     * @param keys The keys, all distinct.
+     * @param values The value of each key, at the same position.
+     * @param <V> The value type.
+     * @return The map.
+     */
+    static <V> PersistentIntMap<V> of(int[] keys, List<V> values) {
+        if (keys.length == 0) {
+            return empty();
+        }
+        long[] order = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = trieOrder(keys[i]) << 31 | i;
+        }
+        Arrays.sort(order);
+        Entry[] entries = new Entry[keys.length];
+        for (int i = 0; i < entries.length; i++) {
+            int index = (int) (order[i] & Integer.MAX_VALUE);
+            entries[i] = new Entry(keys[index], values.get(index));
+        }
+        Object root = build(entries, 0, entries.length, 0);
+        Node node = root instanceof Entry
+                ? new Node(bit(keys[0], 0), new Object[] {root})
+                : (Node) root;
+        return new PersistentIntMap<>(node, keys.length);
+    }
+
+    /**
+     * Reverses the five-bit groups of a key, giving a 32-bit number that orders keys like a walk of the trie.
+     */
+    private static long trieOrder(int key) {
+        long order = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += BITS) {
+            int width = Math.min(BITS, Integer.SIZE - shift);
+            order = order << width | ((key >>> shift) & ((1 << width) - 1));
+        }
+        return order;
+    }
+
+    /**
+     * Builds the level at the given shift from a run of entries that agree on all lower groups.
+     *
+     * @return The only entry of a run of one, or the node.
+     */
+    private static Object build(Entry[] entries, int from, int to, int shift) {
+        if (to - from == 1) {
+            return entries[from];
+        }
+        int bitmap = 0;
+        List<Object> slots = new ArrayList<>();
+        for (int start = from; start < to; ) {
+            int bit = bit(entries[start].key, shift);
+            int end = start + 1;
+            while (end < to && bit(entries[end].key, shift) == bit) {
+                end++;
+            }
+            bitmap |= bit;
+            slots.add(build(entries, start, end, shift + BITS));
+            start = end;
+        }
+        return new Node(bitmap, slots.toArray());
+    }
+
+    private static int bit(int key, int shift) {
+        return 1 << ((key >>> shift) & MASK);
+    }
+
+    /**
+     * Retrieves the value of a key.
+     *
+     * @param key The key.
+     * @return The value, or null if the key is absent.
+     */
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        Node node = root;
+        for (int shift = 0; node != null; shift += BITS) {
+            int bit = bit(key, shift);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = node.slots[node.index(bit)];
+            if (slot instanceof Entry) {
+                Entry entry = (Entry) slot;
+                return entry.key == key ? (V) entry.value : null;
+            }
+            node = (Node) slot;
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the number of keys.
+     *
+     * @return The number of keys.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Adds every value to a list, in the order the trie lays out their keys.
+     *
+     * @param into The list to add to.
+     */
+    void values(List<V> into) {
+        values(root, into);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void values(Node node, List<V> into) {
+        if (node == null) {
+            return;
+        }
+        for (Object slot : node.slots) {
+            if (slot instanceof Entry) {
+                into.add((V) ((Entry) slot).value);
+            } else {
+                values((Node) slot, into);
+            }
+        }
+    }
+
+    /**
+     * Derives the map with a key set to a value.
+     *
+     * @param key The key.
+     * @param value The value.
+     * @return The new map; this map is unchanged.
+     */
+    PersistentIntMap<V> put(int key, V value) {
+        boolean added = get(key) == null;
+        return new PersistentIntMap<>(put(root, 0, new Entry(key, value)), added ? size + 1 : size);
+    }
+
+    private static Node put(Node node, int shift, Entry added) {
+        int bit = bit(added.key, shift);
+        if (node == null) {
+            return new Node(bit, new Object[] {added});
+        }
+        int index = node.index(bit);
+        if ((node.bitmap & bit) == 0) {
+            Object[] slots = new Object[node.slots.length + 1];
+            System.arraycopy(node.slots, 0, slots, 0, index);
+            slots[index] = added;
+            System.arraycopy(node.slots, index, slots, index + 1, node.slots.length - index);
+            return new Node(node.bitmap | bit, slots);
+        }
+        Object slot = node.slots[index];
+        Object replacement;
+        if (slot instanceof Node) {
+            replacement = put((Node) slot, shift + BITS, added);
+        } else if (((Entry) slot).key == added.key) {
+            replacement = added;
+        } else {
+            replacement = pair(shift + BITS, (Entry) slot, added);
+        }
+        Object[] slots = node.slots.clone();
+        slots[index] = replacement;
+        return new Node(node.bitmap, slots);
+    }
+
+    /**
+     * Builds the levels that hold two entries whose keys agree up to the given shift.
+     */
+    private static Node pair(int shift, Entry first, Entry second) {
+        int firstBit = bit(first.key, shift);
+        int secondBit = bit(second.key, shift);
+        if (firstBit == secondBit) {
+            return new Node(firstBit, new Object[] {pair(shift + BITS, first, second)});
+        }
+        Object[] slots = Integer.compareUnsigned(firstBit, secondBit) < 0
+                ? new Object[] {first, second}
+                : new Object[] {second, first};
+        return new Node(firstBit | secondBit, slots);
+    }
+
+    /**
+     * Derives the map without a key.
+     *
+     * @param key The key.
+     * @return The new map, or this map if the key is absent.
+     */
+    PersistentIntMap<V> remove(int key) {
+        if (get(key) == null) {
+            return this;
+        }
+        Object remaining = remove(root, 0, key);
+        Node node = remaining instanceof Entry
+                ? new Node(bit(((Entry) remaining).key, 0), new Object[] {remaining})
+                : (Node) remaining;
+        return new PersistentIntMap<>(node, size - 1);
+    }
+
+    /**
+     * Removes a key known to be present below a node.
+     *
+     * @return The remaining node, its only entry when it has no other slot, so that the
+     *         parent can hold the entry directly, or null if nothing remains.
+     */
+    private static Object remove(Node node, int shift, int key) {
+        int bit = bit(key, shift);
+        int index = node.index(bit);
+        Object slot = node.slots[index];
+        Object replacement = slot instanceof Node ? remove((Node) slot, shift + BITS, key) : null;
+        if (replacement == null) {
+            if (node.slots.length == 1) {
+                return null;
+            }
+            Object[] slots = new Object[node.slots.length - 1];
+            System.arraycopy(node.slots, 0, slots, 0, index);
+            System.arraycopy(node.slots, index + 1, slots, index, slots.length - index);
+            if (slots.length == 1 && slots[0] instanceof Entry) {
+                return slots[0];
+            }
+            return new Node(node.bitmap & ~bit, slots);
+        }
+        if (node.slots.length == 1 && replacement instanceof Entry) {
+            return replacement;
+        }
+        Object[] slots = node.slots.clone();
+        slots[index] = replacement;
+        return new Node(node.bitmap, slots);
+    }
+}
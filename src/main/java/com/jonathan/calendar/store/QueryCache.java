@@ -0,0 +1,302 @@
+package com.jonathan.calendar.store;
+
+import com.jonathan.events.Event;
+import com.jonathan.events.EventType;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of day, year and type query results, evicting the least recently used result.
+ * Cached results are keyed by what they cover, and each covered day, year and type is indexed,
+ * so a changed event evicts only the results for its day, its year and the type sets holding
+ * its type. A changed recurring event evicts the days and years its series spans.
+ *
+ * <p>Results are computed outside the cache's lock. A result is only stored if no event
+ * changed while it was being computed, so a concurrent change never leaves a stale result
+ * behind. Callers receive their own copy of a cached result. All methods are thread-safe.</p>
+ */
+public final class QueryCache {
+    private final LinkedHashMap<Object, List<Event>> results = new LinkedHashMap<>(16, 0.75f, true);
+    private final NavigableSet<LocalDate> days = new TreeSet<>();
+    private final NavigableSet<Integer> years = new TreeSet<>();
+    private final Set<Set<EventType>> typeSets = new HashSet<>();
+    private int capacity;
+    private long changes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacity The greatest number of results kept, or 0 to cache nothing.
+     */
+    public QueryCache(int capacity) {
+        setCapacity(capacity);
+    }
+
+    /**
+     * Changes the greatest number of results kept, evicting the least recently used results if needed.
+     *
+     * @param capacity The new capacity, or 0 to cache nothing.
+     */
+    public synchronized void setCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Cache capacity must not be negative: " + capacity);
+        }
+        this.capacity = capacity;
+        evictOverflow();
+    }
+
+    /**
+     * Retrieves the events on a day, from the cache or by running the query.
+     *
+     * @param date The day.
+     * @param query Computes the result on a miss.
+     * @return A copy of the result.
+     */
+    public List<Event> onDay(LocalDate date, Supplier<List<Event>> query) {
+        return lookup(date, query);
+    }
+
+    /**
+     * Retrieves the events in a year, from the cache or by running the query.
+     *
+     * @param year The year.
+     * @param query Computes the result on a miss.
+     * @return A copy of the result.
+     */
+    public List<Event> inYear(int year, Supplier<List<Event>> query) {
+        return lookup(year, query);
+    }
+
+    /**
+     * Retrieves the events of any of the given types, from the cache or by running the query.
+     *
+     * @param types The event types.
+     * @param query Computes the result on a miss.
+     * @return A copy of the result.
+     */
+    public List<Event> ofTypes(Set<EventType> types, Supplier<List<Event>> query) {
+        EnumSet<EventType> key = EnumSet.noneOf(EventType.class);
+        key.addAll(types);
+        return lookup(key, query);
+    }
+
+    /**
+     * Retrieves the events on a day if they are cached, without running a query otherwise.
+     *
+     * @param date The day.
+     * @return The cached result, which must not be changed, or null if it is not cached.
+     */
+    public List<Event> cachedOnDay(LocalDate date) {
+        return cached(date);
+    }
+
+    /**
+     * Retrieves the events in a year if they are cached, without running a query otherwise.
+     *
+     * @param year The year.
+     * @return The cached result, which must not be changed, or null if it is not cached.
+     */
+    public List<Event> cachedInYear(int year) {
+        return cached(year);
+    }
+
+    /**
+     * Retrieves the events of any of the given types if they are cached, without running a query otherwise.
+     *
+     * @param types The event types.
+     * @return The cached result, which must not be changed, or null if it is not cached.
+     */
+    public List<Event> cachedOfTypes(Set<EventType> types) {
+        EnumSet<EventType> key = EnumSet.noneOf(EventType.class);
+        key.addAll(types);
+        return cached(key);
+    }
+
+    /**
+     * Retrieves a cached result without copying it. Cached lists are never changed, only dropped,
+     * so the result stays valid after later changes evict it.
+     */
+    private synchronized List<Event> cached(Object key) {
+        List<Event> cached = results.get(key);
+        if (cached != null) {
+            hits++;
+            return Collections.unmodifiableList(cached);
+        }
+        return null;
+    }
+
+    /**
+     * Looks up a result by its key: a {@link LocalDate} for a day, an {@link Integer} for a year
+     * or an {@link EnumSet} of types.
+     */
+    private List<Event> lookup(Object key, Supplier<List<Event>> query) {
+        long stamp;
+        synchronized (this) {
+            List<Event> cached = results.get(key);
+            if (cached != null) {
+                hits++;
+                return new ArrayList<>(cached);
+            }
+            misses++;
+            if (capacity == 0) {
+                return query.get();
+            }
+            stamp = changes;
+        }
+        List<Event> computed = query.get();
+        synchronized (this) {
+            if (changes == stamp && !results.containsKey(key)) {
+                results.put(key, new ArrayList<>(computed));
+                index(key);
+                evictOverflow();
+            }
+        }
+        return computed;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void index(Object key) {
+        if (key instanceof LocalDate) {
+            days.add((LocalDate) key);
+        } else if (key instanceof Integer) {
+            years.add((Integer) key);
+        } else {
+            typeSets.add((Set<EventType>) key);
+        }
+    }
+
+    private void drop(Object key) {
+        results.remove(key);
+        unindex(key);
+    }
+
+    private void unindex(Object key) {
+        if (key instanceof LocalDate) {
+            days.remove(key);
+        } else if (key instanceof Integer) {
+            years.remove(key);
+        } else {
+            typeSets.remove(key);
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<Object> eldest = results.keySet().iterator();
+        while (results.size() > capacity) {
+            Object key = eldest.next();
+            eldest.remove();
+            unindex(key);
+            evictions++;
+        }
+    }
+
+    /**
+     * Evicts the results an event is part of, before or after a change.
+     * Nothing is evicted for null, but results being computed are still discarded.
+     *
+     * @param event The event as it was or now is, or null.
+     */
+    public synchronized void invalidate(Event event) {
+        changes++;
+        if (event == null || results.isEmpty()) {
+            return;
+        }
+        int before = results.size();
+        if (event.getType() != null) {
+            for (Set<EventType> types : new ArrayList<>(typeSets)) {
+                if (types.contains(event.getType())) {
+                    drop(types);
+                }
+            }
+        }
+        LocalDate first = event.getDateTime().toLocalDate();
+        LocalDate last = first;
+        if (event.getRecurrence() != null) {
+            LocalDateTime end = event.getRecurrence().lastOccurrence(event.getDateTime());
+            last = end == null ? LocalDate.MAX : end.toLocalDate();
+        }
+        if (!last.isBefore(first)) {
+            for (LocalDate day : new ArrayList<>(days.subSet(first, true, last, true))) {
+                drop(day);
+            }
+            for (Integer year : new ArrayList<>(years.subSet(first.getYear(), true, last.getYear(), true))) {
+                drop(year);
+            }
+        }
+        invalidations += before - results.size();
+    }
+
+    /**
+     * Evicts every result, for example after the events were replaced wholesale.
+     */
+    public synchronized void clear() {
+        changes++;
+        invalidations += results.size();
+        results.clear();
+        days.clear();
+        years.clear();
+        typeSets.clear();
+    }
+
+    /**
+     * Retrieves the number of cached results.
+     *
+     * @return The number of results.
+     */
+    public synchronized int size() {
+        return results.size();
+    }
+
+    /**
+     * Retrieves the number of lookups answered from the cache.
+     *
+     * @return The number of hits.
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Retrieves the number of lookups that ran their query.
+     *
+     * @return The number of misses.
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Retrieves the number of results evicted to make room for newer ones.
+     *
+     * @return The number of LRU evictions.
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Retrieves the number of results evicted because an event they covered changed.
+     *
+     * @return The number of invalidated results.
+     */
+    public synchronized long invalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Describes the cache's size and counters.
+     *
+     * @return A one-line summary.
+     */
+    @Override
+    public synchronized String toString() {
+        return "QueryCache{ size = " + results.size() + "/" + capacity + ", hits = " + hits + ", misses = " + misses
+                + ", evictions = " + evictions + ", invalidations = " + invalidations + " }";
+    }
+}
@@ -0,0 +1,169 @@
+package com.jonathan.calendar.store;
+
+import com.jonathan.events.Event;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Holds recurring events and expands their occurrences on demand.
+ * Each series spans from its start to its last occurrence, or forever. The series are kept in
+ * an {@link IntervalIndex}, so a window query visits only the series that overlap the window,
+ * plus O(log n) others, and computes only the occurrences inside the window.
+ *
+ * <p>{@link #snapshot()} copies the index in O(1), sharing the interval tree's nodes.
+ * Series should be replaced through {@link #put(Event)} rather than modified in place.
+ * All methods are synchronized, so one index can be shared by several threads.</p>
+ */
+public final class SeriesIndex {
+    private final IntervalIndex series;
+    private Duration longestDuration;
+
+    /**
+     * Creates an empty index.
+     */
+    public SeriesIndex() {
+        this(new IntervalIndex(), Duration.ZERO);
+    }
+
+    private SeriesIndex(IntervalIndex series, Duration longestDuration) {
+        this.series = series;
+        this.longestDuration = longestDuration;
+    }
+
+    /**
+     * Retrieves a series by its ID.
+     *
+     * @param id The ID of the series.
+     * @return The series, or null if no series has that ID.
+     */
+    public synchronized Event get(int id) {
+        return series.get(id);
+    }
+
+    /**
+     * Stores a series under its ID, replacing any series with the same ID.
+     *
+     * @param event The event to store. It must have a recurrence.
+     * @return The replaced series, or null if the ID was not in use.
+     */
+    public synchronized Event put(Event event) {
+        if (event.getRecurrence() == null) {
+            throw new IllegalArgumentException("Not a recurring event: " + event.getID());
+        }
+        LocalDateTime last = event.getRecurrence().lastOccurrence(event.getDateTime());
+        if (event.getDuration() != null && event.getDuration().compareTo(longestDuration) > 0) {
+            longestDuration = event.getDuration();
+        }
+        return series.put(event, last == null ? LocalDateTime.MAX : last);
+    }
+
+    /**
+     * Removes a series by its ID.
+     *
+     * @param id The ID of the series.
+     * @return The removed series, or null if no series has that ID.
+     */
+    public synchronized Event remove(int id) {
+        return series.remove(id);
+    }
+
+    /**
+     * Retrieves the number of series.
+     *
+     * @return The number of series.
+     */
+    public synchronized int size() {
+        return series.size();
+    }
+
+    /**
+     * Copies the index as it is now, in O(1). Later changes to either one do not show in the other.
+     *
+     * @return The copy.
+     */
+    public synchronized SeriesIndex snapshot() {
+        return new SeriesIndex(series.snapshot(), longestDuration);
+    }
+
+    /**
+     * Finds when the last occurrence of any series that ends is over. Visits every series.
+     *
+     * @return The end of the latest such occurrence, or null if no series ends.
+     */
+    public synchronized LocalDateTime latestFiniteEnd() {
+        LocalDateTime latest = null;
+        for (Event event : series.matching(event -> true)) {
+            LocalDateTime last = event.getRecurrence().lastOccurrence(event.getDateTime());
+            if (last != null && event.hasDuration()) {
+                last = last.plus(event.getDuration());
+            }
+            if (last != null && (latest == null || last.isAfter(latest))) {
+                latest = last;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Retrieves every series.
+     *
+     * @return The series, sorted by start.
+     */
+    public synchronized List<Event> all() {
+        return series.matching(event -> true);
+    }
+
+    /**
+     * Retrieves the series accepted by a filter.
+     *
+     * @param filter The filter.
+     * @return The accepted series, sorted by start.
+     */
+    public synchronized List<Event> matching(Predicate<Event> filter) {
+        return series.matching(filter);
+    }
+
+    /**
+     * Expands the occurrences that start in [from, to).
+     * Each occurrence is a copy of its series made by {@link Event#occurrenceAt(LocalDateTime)}.
+     *
+     * @param from The inclusive start of the window.
+     * @param to The exclusive end of the window.
+     * @return The occurrences in the window, sorted by date and time.
+     */
+    public synchronized List<Event> occurrencesBetween(LocalDateTime from, LocalDateTime to) {
+        List<Event> occurrences = new ArrayList<>();
+        if (series.size() == 0 || !from.isBefore(to)) {
+            return occurrences;
+        }
+        List<Event> overlapping = series.overlapping(from, to);
+        for (Event event : overlapping) {
+            for (LocalDateTime dateTime : event.getRecurrence().occurrencesBetween(event.getDateTime(), from, to)) {
+                occurrences.add(event.occurrenceAt(dateTime));
+            }
+        }
+        if (overlapping.size() > 1) {
+            occurrences.sort(Event.CHRONOLOGICAL);
+        }
+        return occurrences;
+    }
+
+    /**
+     * Expands the occurrences with a duration that take up part of [from, to),
+     * including those that start before the window and are still running at its start.
+     *
+     * @param from The inclusive start of the window.
+     * @param to The exclusive end of the window.
+     * @return The overlapping occurrences, sorted by date and time.
+     */
+    public synchronized List<Event> occurrencesOverlapping(LocalDateTime from, LocalDateTime to) {
+        if (longestDuration.isZero()) {
+            return new ArrayList<>();
+        }
+        List<Event> occurrences = occurrencesBetween(from.minus(longestDuration), to);
+        occurrences.removeIf(occurrence -> !occurrence.hasDuration() || !occurrence.getEnd().isAfter(from));
+        return occurrences;
+    }
+}
@@ -0,0 +1,381 @@
+package com.jonathan.calendar.store;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of non-negative ints, laid out like a roaring bitmap.
+ * Values are split into chunks of 65536 by their high 16 bits, and each chunk present is
+ * held in the smaller of two containers: a sorted array of its low 16 bits while it holds
+ * at most 4096 values, or a bitset of 1024 words once it holds more. A sparse set therefore
+ * costs two bytes per value and a dense one an eighth of a byte.
+ *
+ * <p>{@link #and(SlotBitmap, SlotBitmap)} and {@link #or(SlotBitmap, SlotBitmap)} pair the
+ * chunks of both sets and combine each pair at once: two bitsets word by word, two arrays by
+ * merging them, and an array with a bitset by probing the bitset for each array value.</p>
+ */
+final class SlotBitmap {
+    private static final int ARRAY_LIMIT = 4_096;
+    private static final int WORDS = 1_024;
+
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int count;
+    private int cardinality;
+
+    /**
+     * The values of one chunk, as their low 16 bits.
+     */
+    private abstract static class Container {
+        int cardinality;
+    }
+
+    /**
+     * A chunk of at most {@link #ARRAY_LIMIT} values, sorted.
+     */
+    private static final class ArrayContainer extends Container {
+        char[] values;
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+    }
+
+    /**
+     * A chunk of more than {@link #ARRAY_LIMIT} values, one bit each.
+     */
+    private static final class BitsContainer extends Container {
+        final long[] words;
+
+        BitsContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+    }
+
+    /**
+     * Retrieves the number of values in the set.
+     *
+     * @return The number of values.
+     */
+    int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Checks whether the set holds a value.
+     *
+     * @param value The value.
+     * @return True if the value is in the set.
+     */
+    boolean contains(int value) {
+        int index = find((char) (value >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        Container container = containers[index];
+        char low = (char) value;
+        if (container instanceof BitsContainer) {
+            return (((BitsContainer) container).words[low >>> 6] & 1L << low) != 0;
+        }
+        return Arrays.binarySearch(((ArrayContainer) container).values, 0, container.cardinality, low) >= 0;
+    }
+
+    /**
+     * Adds a value to the set.
+     *
+     * @param value The value, which must not be negative.
+     */
+    void add(int value) {
+        char high = (char) (value >>> 16);
+        int index = find(high);
+        if (index < 0) {
+            index = -index - 1;
+            insert(index, high, new ArrayContainer(new char[4], 0));
+        }
+        Container container = containers[index];
+        char low = (char) value;
+        if (container instanceof ArrayContainer) {
+            ArrayContainer array = (ArrayContainer) container;
+            int position = Arrays.binarySearch(array.values, 0, array.cardinality, low);
+            if (position >= 0) {
+                return;
+            }
+            if (array.cardinality == ARRAY_LIMIT) {
+                container = toBits(array);
+                containers[index] = container;
+            } else {
+                position = -position - 1;
+                if (array.cardinality == array.values.length) {
+                    array.values = Arrays.copyOf(array.values, Math.min(ARRAY_LIMIT, array.cardinality * 2));
+                }
+                System.arraycopy(array.values, position, array.values, position + 1, array.cardinality - position);
+                array.values[position] = low;
+                array.cardinality++;
+                cardinality++;
+                return;
+            }
+        }
+        long[] words = ((BitsContainer) container).words;
+        if ((words[low >>> 6] & 1L << low) == 0) {
+            words[low >>> 6] |= 1L << low;
+            container.cardinality++;
+            cardinality++;
+        }
+    }
+
+    /**
+     * Removes a value from the set.
+     *
+     * @param value The value.
+     */
+    void remove(int value) {
+        int index = find((char) (value >>> 16));
+        if (index < 0) {
+            return;
+        }
+        Container container = containers[index];
+        char low = (char) value;
+        if (container instanceof ArrayContainer) {
+            ArrayContainer array = (ArrayContainer) container;
+            int position = Arrays.binarySearch(array.values, 0, array.cardinality, low);
+            if (position < 0) {
+                return;
+            }
+            System.arraycopy(array.values, position + 1, array.values, position, array.cardinality - position - 1);
+            array.cardinality--;
+        } else {
+            long[] words = ((BitsContainer) container).words;
+            if ((words[low >>> 6] & 1L << low) == 0) {
+                return;
+            }
+            words[low >>> 6] &= ~(1L << low);
+            if (--container.cardinality == ARRAY_LIMIT) {
+                containers[index] = toArray(words, ARRAY_LIMIT);
+            }
+        }
+        cardinality--;
+        if (container.cardinality == 0) {
+            System.arraycopy(keys, index + 1, keys, index, count - index - 1);
+            System.arraycopy(containers, index + 1, containers, index, count - index - 1);
+            containers[--count] = null;
+        }
+    }
+
+    /**
+     * Lists the values of the set.
+     *
+     * @return The values, in ascending order.
+     */
+    int[] toArray() {
+        int[] values = new int[cardinality];
+        int at = 0;
+        for (int i = 0; i < count; i++) {
+            int high = keys[i] << 16;
+            Container container = containers[i];
+            if (container instanceof ArrayContainer) {
+                char[] lows = ((ArrayContainer) container).values;
+                for (int j = 0; j < container.cardinality; j++) {
+                    values[at++] = high | lows[j];
+                }
+            } else {
+                long[] words = ((BitsContainer) container).words;
+                for (int w = 0; w < WORDS; w++) {
+                    for (long word = words[w]; word != 0; word &= word - 1) {
+                        values[at++] = high | w << 6 | Long.numberOfTrailingZeros(word);
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Intersects two sets, chunk by chunk.
+     *
+     * @param first The first set.
+     * @param second The second set.
+     * @return A new set holding the values of both; the arguments are unchanged.
+     */
+    static SlotBitmap and(SlotBitmap first, SlotBitmap second) {
+        SlotBitmap result = new SlotBitmap();
+        for (int i = 0, j = 0; i < first.count && j < second.count; ) {
+            if (first.keys[i] < second.keys[j]) {
+                i++;
+            } else if (first.keys[i] > second.keys[j]) {
+                j++;
+            } else {
+                result.append(first.keys[i], and(first.containers[i++], second.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Unites two sets, chunk by chunk.
+     *
+     * @param first The first set.
+     * @param second The second set.
+     * @return A new set holding the values of either; the arguments are unchanged.
+     */
+    static SlotBitmap or(SlotBitmap first, SlotBitmap second) {
+        SlotBitmap result = new SlotBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < first.count || j < second.count) {
+            if (j == second.count || (i < first.count && first.keys[i] < second.keys[j])) {
+                result.append(first.keys[i], copy(first.containers[i++]));
+            } else if (i == first.count || first.keys[i] > second.keys[j]) {
+                result.append(second.keys[j], copy(second.containers[j++]));
+            } else {
+                result.append(first.keys[i], or(first.containers[i++], second.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    private static Container and(Container first, Container second) {
+        if (first instanceof BitsContainer && second instanceof BitsContainer) {
+            long[] firstWords = ((BitsContainer) first).words;
+            long[] secondWords = ((BitsContainer) second).words;
+            long[] words = new long[WORDS];
+            int cardinality = 0;
+            for (int w = 0; w < WORDS; w++) {
+                words[w] = firstWords[w] & secondWords[w];
+                cardinality += Long.bitCount(words[w]);
+            }
+            return cardinality > ARRAY_LIMIT ? new BitsContainer(words, cardinality) : toArray(words, cardinality);
+        }
+        if (first instanceof BitsContainer || second instanceof BitsContainer) {
+            ArrayContainer array = (ArrayContainer) (first instanceof ArrayContainer ? first : second);
+            long[] words = ((BitsContainer) (first instanceof BitsContainer ? first : second)).words;
+            char[] values = new char[array.cardinality];
+            int cardinality = 0;
+            for (int k = 0; k < array.cardinality; k++) {
+                char low = array.values[k];
+                if ((words[low >>> 6] & 1L << low) != 0) {
+                    values[cardinality++] = low;
+                }
+            }
+            return new ArrayContainer(values, cardinality);
+        }
+        ArrayContainer firstArray = (ArrayContainer) first;
+        ArrayContainer secondArray = (ArrayContainer) second;
+        char[] values = new char[Math.min(firstArray.cardinality, secondArray.cardinality)];
+        int cardinality = 0;
+        for (int i = 0, j = 0; i < firstArray.cardinality && j < secondArray.cardinality; ) {
+            char a = firstArray.values[i];
+            char b = secondArray.values[j];
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                values[cardinality++] = a;
+                i++;
+                j++;
+            }
+        }
+        return new ArrayContainer(values, cardinality);
+    }
+
+    private static Container or(Container first, Container second) {
+        if (first instanceof ArrayContainer && second instanceof ArrayContainer
+                && first.cardinality + second.cardinality <= ARRAY_LIMIT) {
+            ArrayContainer firstArray = (ArrayContainer) first;
+            ArrayContainer secondArray = (ArrayContainer) second;
+            char[] values = new char[first.cardinality + second.cardinality];
+            int cardinality = 0;
+            int i = 0;
+            int j = 0;
+            while (i < firstArray.cardinality || j < secondArray.cardinality) {
+                if (j == secondArray.cardinality
+                        || (i < firstArray.cardinality && firstArray.values[i] < secondArray.values[j])) {
+                    values[cardinality++] = firstArray.values[i++];
+                } else if (i == firstArray.cardinality || firstArray.values[i] > secondArray.values[j]) {
+                    values[cardinality++] = secondArray.values[j++];
+                } else {
+                    values[cardinality++] = firstArray.values[i++];
+                    j++;
+                }
+            }
+            return new ArrayContainer(values, cardinality);
+        }
+        long[] words = new long[WORDS];
+        setAll(words, first);
+        setAll(words, second);
+        int cardinality = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+        }
+        return cardinality > ARRAY_LIMIT ? new BitsContainer(words, cardinality) : toArray(words, cardinality);
+    }
+
+    /**
+     * Sets the bits of a container's values, word by word for a bitset.
+     */
+    private static void setAll(long[] words, Container container) {
+        if (container instanceof BitsContainer) {
+            long[] source = ((BitsContainer) container).words;
+            for (int w = 0; w < WORDS; w++) {
+                words[w] |= source[w];
+            }
+        } else {
+            ArrayContainer array = (ArrayContainer) container;
+            for (int k = 0; k < array.cardinality; k++) {
+                words[array.values[k] >>> 6] |= 1L << array.values[k];
+            }
+        }
+    }
+
+    private static Container copy(Container container) {
+        if (container instanceof BitsContainer) {
+            return new BitsContainer(((BitsContainer) container).words.clone(), container.cardinality);
+        }
+        return new ArrayContainer(Arrays.copyOf(((ArrayContainer) container).values, container.cardinality),
+                container.cardinality);
+    }
+
+    private static BitsContainer toBits(ArrayContainer array) {
+        long[] words = new long[WORDS];
+        setAll(words, array);
+        return new BitsContainer(words, array.cardinality);
+    }
+
+    private static ArrayContainer toArray(long[] words, int cardinality) {
+        char[] values = new char[cardinality];
+        int at = 0;
+        for (int w = 0; w < WORDS; w++) {
+            for (long word = words[w]; word != 0; word &= word - 1) {
+                values[at++] = (char) (w << 6 | Long.numberOfTrailingZeros(word));
+            }
+        }
+        return new ArrayContainer(values, cardinality);
+    }
+
+    private int find(char high) {
+        return Arrays.binarySearch(keys, 0, count, high);
+    }
+
+    private void insert(int index, char high, Container container) {
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, count * 2);
+            containers = Arrays.copyOf(containers, count * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, count - index);
+        System.arraycopy(containers, index, containers, index + 1, count - index);
+        keys[index] = high;
+        containers[index] = container;
+        count++;
+    }
+
+    /**
+     * Adds a chunk after every chunk held so far, unless it is empty.
+     */
+    private void append(char high, Container container) {
+        if (container.cardinality > 0) {
+            insert(count, high, container);
+            cardinality += container.cardinality;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.jonathan.calendar.store;
+
+import java.util.*;
+
+/**
+ * Read-only {@link SortedSet} view of a list that is already sorted and free of duplicates.
+ * Handing it to {@link TreeSet#addAll(Collection)} on an empty set with the same
+ * comparator builds the tree in linear time instead of inserting element by element.
+ * Only iteration, size, comparator and the first and last elements are supported.
+ *
+ * @param <E> The element type.
+ */
+final class SortedListView<E> extends AbstractSet<E> implements SortedSet<E> {
+    private final List<E> sorted;
+    private final Comparator<? super E> comparator;
+
+    /**
+     * Creates a view of a sorted list.
+     *
+     * @param sorted The list, sorted by the comparator without duplicates.
+     * @param comparator The comparator the list is sorted by.
+     */
+    SortedListView(List<E> sorted, Comparator<? super E> comparator) {
+        this.sorted = sorted;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Creates a tree set holding the elements of a sorted list, in linear time.
+     *
+     * @param sorted The list, sorted by the comparator without duplicates.
+     * @param comparator The comparator the list is sorted by.
+     * @param <E> The element type.
+     * @return A new tree set with the list's elements.
+     */
+    static <E> TreeSet<E> toTreeSet(List<E> sorted, Comparator<? super E> comparator) {
+        TreeSet<E> set = new TreeSet<>(comparator);
+        set.addAll(new SortedListView<>(sorted, comparator));
+        return set;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return Collections.unmodifiableList(sorted).iterator();
+    }
+
+    @Override
+    public int size() {
+        return sorted.size();
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public E first() {
+        if (sorted.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return sorted.get(0);
+    }
+
+    @Override
+    public E last() {
+        if (sorted.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return sorted.get(sorted.size() - 1);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -1,20 +1,50 @@
 package com.jonathan.events;
 import java.io.Serializable;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
 
 /**
  * Event class representing a specific event.
  * It stores a description, the type of the event, 
  * the date and time of the event, an ID for easier data manipulation, 
  * and the priority of the event.
+ * An event with a {@link Recurrence} is a series, repeating from its date and time.
+ * An event with a duration takes up [date and time, end); one without a duration takes up no time
+ * and never conflicts with other events.
  */
 public class Event implements Serializable{
+    /**
+     * The UID computed for this class before it was declared, so that
+     * calendars saved with Java serialization by earlier versions still load.
+     */
+    private static final long serialVersionUID = 4756392708867601355L;
+
+    /**
+     * Orders events by date and time, breaking ties by ID so that
+     * distinct events sharing a time slot never compare as equal.
+     */
+    public static final Comparator<Event> CHRONOLOGICAL =
+            Comparator.comparing(Event::getDateTime).thenComparingInt(Event::getID);
+
+    /**
+     * The date format used to enter and display event dates, created once since formatters are immutable.
+     */
+    public static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+
+    /**
+     * The time format used to enter and display event times.
+     */
+    public static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+
     private String description;
     private EventType type;
     private LocalDateTime dateTime;
     private int ID;
     private EventPrio prio;
+    private Recurrence recurrence;
+    private Duration duration;
 
     /**
      * Constructs an Event object with the given parameters.
@@ -121,6 +151,79 @@ public class Event implements Serializable{
         this.ID = id;
     }
 
+    /**
+     * Retrieves the recurrence of the event.
+     *
+     * @return The rule the event repeats by, or null if it takes place once.
+     */
+    public Recurrence getRecurrence() {
+        return recurrence;
+    }
+
+    /**
+     * Sets the recurrence of the event.
+     *
+     * @param recurrence The rule the event repeats by, or null if it takes place once.
+     */
+    public void setRecurrence(Recurrence recurrence) {
+        this.recurrence = recurrence;
+    }
+
+    /**
+     * Retrieves the duration of the event.
+     *
+     * @return How long the event lasts, or null if it takes up no time.
+     */
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * Sets the duration of the event.
+     *
+     * @param duration How long the event lasts, or null (or zero) if it takes up no time.
+     * @throws IllegalArgumentException if the duration is negative.
+     */
+    public void setDuration(Duration duration) {
+        if (duration != null && duration.isNegative()) {
+            throw new IllegalArgumentException("Event duration must not be negative: " + duration);
+        }
+        this.duration = duration == null || duration.isZero() ? null : duration;
+    }
+
+    /**
+     * Checks whether the event takes up time.
+     *
+     * @return True if the event has a positive duration.
+     */
+    public boolean hasDuration() {
+        return duration != null;
+    }
+
+    /**
+     * Retrieves the exclusive end of the event.
+     *
+     * @return The date and time plus the duration, or the date and time if the event has no duration.
+     */
+    public LocalDateTime getEnd() {
+        return duration == null ? dateTime : dateTime.plus(duration);
+    }
+
+    /**
+     * Creates a copy of this series for one of its occurrences.
+     * The copy has the series' ID, fields, duration and recurrence, and the occurrence's date and time.
+     *
+     * @param dateTime The date and time of the occurrence.
+     * @return The occurrence.
+     */
+    public Event occurrenceAt(LocalDateTime dateTime) {
+        Event occurrence = new Event(description, type, dateTime, prio);
+        occurrence.ID = ID;
+        occurrence.recurrence = recurrence;
+        occurrence.duration = duration;
+        return occurrence;
+    }
+
     /**
      * Returns a string representation of the Event object.
      *
@@ -128,15 +231,6 @@ public class Event implements Serializable{
      */
     @Override
     public String toString() {
-        String date = dateTime.toLocalDate().format(DateTimeFormatter.ofPattern("dd-MM-yyyy"));
-        String time = dateTime.toLocalTime().format(DateTimeFormatter.ofPattern("HH:mm"));
-        return "Event{ " +
-                "id = " + ID +
-                ", description = '" + description + '\'' +
-                ", type = " + type +
-                ", prio = " + prio +
-                ", date = " + date +
-                ", time = " + time +
-                " }";
+        return EventFormatter.appendTo(new StringBuilder(96), this).toString();
     }
 }
@@ -0,0 +1,53 @@
+package com.jonathan.events;
+
+import java.time.LocalDateTime;
+
+/**
+ * Writes events in the text form of {@link Event#toString()} into a caller's buffer.
+ * Dates and times are written digit by digit instead of through a {@link java.time.format.DateTimeFormatter},
+ * so formatting an event allocates nothing when the buffer is reused.
+ */
+public final class EventFormatter {
+
+    private EventFormatter() {
+    }
+
+    /**
+     * Appends the text form of an event.
+     *
+     * @param out The buffer to append to.
+     * @param event The event to format.
+     * @return The buffer.
+     */
+    public static StringBuilder appendTo(StringBuilder out, Event event) {
+        out.append("Event{ id = ").append(event.getID())
+                .append(", description = '").append(event.getDescription()).append('\'')
+                .append(", type = ").append(event.getType())
+                .append(", prio = ").append(event.getPriority())
+                .append(", date = ");
+        LocalDateTime dateTime = event.getDateTime();
+        int year = dateTime.getYear();
+        if (year >= 1 && year <= 9999) {
+            appendTwoDigits(out, dateTime.getDayOfMonth()).append('-');
+            appendTwoDigits(out, dateTime.getMonthValue()).append('-');
+            appendTwoDigits(out, year / 100);
+            appendTwoDigits(out, year % 100);
+        } else {
+            out.append(dateTime.toLocalDate().format(Event.DATE_FORMAT));
+        }
+        out.append(", time = ");
+        appendTwoDigits(out, dateTime.getHour()).append(':');
+        appendTwoDigits(out, dateTime.getMinute());
+        if (event.getDuration() != null) {
+            out.append(", duration = ").append(event.getDuration().toMinutes()).append(" min");
+        }
+        if (event.getRecurrence() != null) {
+            out.append(", repeats = ").append(event.getRecurrence());
+        }
+        return out.append(" }");
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder out, int value) {
+        return out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
@@ -0,0 +1,272 @@
+package com.jonathan.events;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * A rule repeating an event at a fixed interval.
+ * The n-th occurrence (from 0) is the event's start plus n times the interval in days,
+ * weeks, months or years. Monthly and yearly occurrences falling on a day the month does
+ * not have are moved to its last day; they are always computed from the start, so later
+ * occurrences return to the start's day of the month. A series ends after a number of
+ * occurrences, after an inclusive end date-time, at whichever comes first, or never.
+ * Occurrences on an excepted date are skipped, but still count towards the number of occurrences.
+ *
+ * <p>Recurrences are immutable.</p>
+ */
+public final class Recurrence implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * How often an event repeats.
+     */
+    public enum Frequency {
+        DAILY(ChronoUnit.DAYS),
+        WEEKLY(ChronoUnit.WEEKS),
+        MONTHLY(ChronoUnit.MONTHS),
+        YEARLY(ChronoUnit.YEARS);
+
+        private final ChronoUnit unit;
+
+        Frequency(ChronoUnit unit) {
+            this.unit = unit;
+        }
+    }
+
+    private final Frequency frequency;
+    private final int interval;
+    private final int count;
+    private final LocalDateTime until;
+    private final TreeSet<LocalDate> exceptions;
+
+    /**
+     * Constructs a recurrence without an end or exceptions.
+     *
+     * @param frequency How often the event repeats.
+     * @param interval The number of frequency units between occurrences.
+     */
+    public Recurrence(Frequency frequency, int interval) {
+        this(frequency, interval, 0, null, Collections.emptySet());
+    }
+
+    /**
+     * Constructs a recurrence.
+     *
+     * @param frequency How often the event repeats.
+     * @param interval The number of frequency units between occurrences, at least 1.
+     * @param count The number of occurrences, or 0 for no limit.
+     * @param until The date and time of the last possible occurrence, or null for none.
+     * @param exceptions The dates on which the event does not take place.
+     */
+    public Recurrence(Frequency frequency, int interval, int count, LocalDateTime until, Collection<LocalDate> exceptions) {
+        if (frequency == null) {
+            throw new IllegalArgumentException("Recurrence needs a frequency");
+        }
+        if (interval < 1) {
+            throw new IllegalArgumentException("Recurrence interval must be positive: " + interval);
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("Recurrence count must not be negative: " + count);
+        }
+        this.frequency = frequency;
+        this.interval = interval;
+        this.count = count;
+        this.until = until;
+        this.exceptions = new TreeSet<>(exceptions);
+    }
+
+    /**
+     * Retrieves how often the event repeats.
+     *
+     * @return The frequency.
+     */
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * Retrieves the number of frequency units between occurrences.
+     *
+     * @return The interval.
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Retrieves the number of occurrences.
+     *
+     * @return The number of occurrences, or 0 for no limit.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Retrieves the date and time of the last possible occurrence.
+     *
+     * @return The inclusive end of the series, or null for none.
+     */
+    public LocalDateTime getUntil() {
+        return until;
+    }
+
+    /**
+     * Retrieves the dates on which the event does not take place.
+     *
+     * @return The excepted dates, in order.
+     */
+    public Set<LocalDate> getExceptions() {
+        return Collections.unmodifiableSet(exceptions);
+    }
+
+    /**
+     * Creates a copy of this recurrence with one more excepted date.
+     *
+     * @param date The date on which the event no longer takes place.
+     * @return The new recurrence.
+     */
+    public Recurrence except(LocalDate date) {
+        List<LocalDate> dates = new ArrayList<>(exceptions);
+        dates.add(date);
+        return new Recurrence(frequency, interval, count, until, dates);
+    }
+
+    /**
+     * Computes an occurrence of a series, ignoring its end and exceptions.
+     *
+     * @param start The start of the series.
+     * @param n The number of the occurrence, from 0.
+     * @return The date and time of the occurrence.
+     */
+    public LocalDateTime occurrence(LocalDateTime start, long n) {
+        return start.plus(n * interval, frequency.unit);
+    }
+
+    /**
+     * Computes the last occurrence of a series, ignoring exceptions.
+     *
+     * @param start The start of the series.
+     * @return The date and time of the last occurrence, or null if the series never ends.
+     *         It is before the start if the series has no occurrences.
+     */
+    public LocalDateTime lastOccurrence(LocalDateTime start) {
+        LocalDateTime last = null;
+        if (count > 0) {
+            last = occurrence(start, count - 1);
+        }
+        if (until != null) {
+            long n = firstAtOrAfter(start, until);
+            LocalDateTime bounded = occurrence(start, n);
+            if (bounded.isAfter(until)) {
+                bounded = n == 0 ? until : occurrence(start, n - 1);
+            }
+            if (last == null || bounded.isBefore(last)) {
+                last = bounded;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Lists the occurrences of a series that fall in [from, to).
+     * Only the occurrences inside the window are computed.
+     *
+     * @param start The start of the series.
+     * @param from The inclusive start of the window.
+     * @param to The exclusive end of the window.
+     * @return The dates and times of the occurrences in the window, in order.
+     */
+    public List<LocalDateTime> occurrencesBetween(LocalDateTime start, LocalDateTime from, LocalDateTime to) {
+        List<LocalDateTime> occurrences = new ArrayList<>();
+        if (!from.isBefore(to)) {
+            return occurrences;
+        }
+        for (long n = firstAtOrAfter(start, from); count == 0 || n < count; n++) {
+            LocalDateTime occurrence = occurrence(start, n);
+            if (!occurrence.isBefore(to) || (until != null && occurrence.isAfter(until))) {
+                break;
+            }
+            if (!exceptions.contains(occurrence.toLocalDate())) {
+                occurrences.add(occurrence);
+            }
+        }
+        return occurrences;
+    }
+
+    /**
+     * Finds the first occurrence of a series after a date and time, skipping exceptions.
+     *
+     * @param start The start of the series.
+     * @param after The exclusive lower bound.
+     * @return The date and time of the occurrence, or null if the series ends before then.
+     */
+    public LocalDateTime nextOccurrence(LocalDateTime start, LocalDateTime after) {
+        for (long n = firstAtOrAfter(start, after); count == 0 || n < count; n++) {
+            LocalDateTime occurrence = occurrence(start, n);
+            if (until != null && occurrence.isAfter(until)) {
+                return null;
+            }
+            if (occurrence.isAfter(after) && !exceptions.contains(occurrence.toLocalDate())) {
+                return occurrence;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the number of the first occurrence at or after a date and time, without stepping
+     * through the occurrences before it.
+     */
+    private long firstAtOrAfter(LocalDateTime start, LocalDateTime dateTime) {
+        if (!dateTime.isAfter(start)) {
+            return 0;
+        }
+        long n = Math.max(0, frequency.unit.between(start, dateTime) / interval - 1);
+        while (occurrence(start, n).isBefore(dateTime)) {
+            n++;
+        }
+        return n;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Recurrence)) {
+            return false;
+        }
+        Recurrence recurrence = (Recurrence) other;
+        return frequency == recurrence.frequency && interval == recurrence.interval && count == recurrence.count
+                && Objects.equals(until, recurrence.until) && exceptions.equals(recurrence.exceptions);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(frequency, interval, count, until, exceptions);
+    }
+
+    /**
+     * Describes the recurrence, for example {@code WEEKLY every 2, 10 times, until 31-12-2025 23:59, 1 exception}.
+     *
+     * @return A description of the recurrence.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(frequency.name());
+        if (interval > 1) {
+            text.append(" every ").append(interval);
+        }
+        if (count > 0) {
+            text.append(", ").append(count).append(count == 1 ? " time" : " times");
+        }
+        if (until != null) {
+            text.append(", until ").append(until.format(Event.DATE_FORMAT)).append(' ').append(until.format(Event.TIME_FORMAT));
+        }
+        if (!exceptions.isEmpty()) {
+            text.append(", ").append(exceptions.size()).append(exceptions.size() == 1 ? " exception" : " exceptions");
+        }
+        return text.toString();
+    }
+}
@@ -2,6 +2,8 @@ package com.jonathan;
 
 import static org.junit.Assert.assertTrue;
 
+import com.jonathan.calendar.App;
+import java.io.IOException;
 import org.junit.Test;
 
 /**
@@ -17,4 +19,10 @@ public class AppTest
     {
         assertTrue( true );
     }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void trailingOptionWithoutAValueIsRejected() throws IOException
+    {
+        App.main( new String[] { "--serve" } );
+    }
 }
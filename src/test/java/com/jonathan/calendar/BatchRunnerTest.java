@@ -0,0 +1,110 @@
+package com.jonathan.calendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.jonathan.events.*;
+import java.io.*;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for applying batch files to a calendar.
+ */
+public class BatchRunnerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+
+    private int run(BatchRunner runner, String... lines) throws IOException {
+        return runner.run(new BufferedReader(new StringReader(String.join("\n", lines))));
+    }
+
+    @Test
+    public void schedulesRowsAndAppliesCommandsInOrder() throws IOException {
+        Path saved = folder.getRoot().toPath().resolve("batch.cal");
+        Calendar calendar = new Calendar();
+        BatchRunner runner = new BatchRunner(calendar, new PrintStream(errors));
+
+        int failures = run(runner,
+                "# imported from the old planner",
+                "Standup,MEETING,01-03-2024,09:00,MID",
+                "\"Dentist, Dr. \"\"Smile\"\"\",appointment,04-03-2024,14:30,high",
+                "",
+                "Gym,OTHER,02-03-2024,18:00,LOW",
+                "remove,1",
+                "update,3,Gym with Dana,OTHER,02-03-2024,19:00,LOW",
+                "save," + saved);
+
+        assertEquals(0, failures);
+        assertEquals("", errors.toString());
+        assertEquals(4, runner.getScheduled());
+        assertEquals(3, runner.getCommands());
+        assertNull(calendar.getEventByID(1));
+        List<Event> events = calendar.viewAllEvents();
+        assertEquals(2, events.size());
+        assertEquals("Gym with Dana", events.get(0).getDescription());
+        assertEquals(LocalDateTime.of(2024, 3, 2, 19, 0), events.get(0).getDateTime());
+        assertEquals("Dentist, Dr. \"Smile\"", events.get(1).getDescription());
+        assertEquals(EventPrio.HIGH, events.get(1).getPriority());
+
+        Calendar reloaded = new Calendar();
+        reloaded.loadCalendar(saved);
+        assertEquals(3, reloaded.getIDNum());
+        assertEquals(2, reloaded.numEvents());
+    }
+
+    @Test
+    public void reportsBadLinesByNumberAndKeepsGoing() throws IOException {
+        Calendar calendar = new Calendar();
+        BatchRunner runner = new BatchRunner(calendar, new PrintStream(errors));
+
+        int failures = run(runner,
+                "Standup,MEETING,01-03-2024,09:00,MID",
+                "Party,FUN,01-03-2024,20:00,LOW",
+                "Review,WORK,32-02-2024,10:00,LOW",
+                "remove,42",
+                "Retro,MEETING,01-03-2024,16:00,LOW",
+                "\"Unclosed,MEETING,01-03-2024,16:00,LOW");
+
+        assertEquals(4, failures);
+        String report = errors.toString();
+        assertTrue(report.contains("Line 2: Invalid event type: FUN"));
+        assertTrue(report.contains("Line 3: "));
+        assertTrue(report.contains("Line 4: Event not found: 42"));
+        assertTrue(report.contains("Line 6: Unterminated quoted field"));
+        assertEquals(2, calendar.numEvents());
+    }
+
+    @Test
+    public void bulkImportMatchesEventByEventScheduling() throws IOException {
+        StringBuilder file = new StringBuilder();
+        Calendar expected = new Calendar();
+        for (Event event : TestEvents.generate(5_000, 17)) {
+            file.append(event.getDescription()).append(',').append(event.getType()).append(',')
+                    .append(String.format("%02d-%02d-%d", event.getDateTime().getDayOfMonth(),
+                            event.getDateTime().getMonthValue(), event.getDateTime().getYear()))
+                    .append(',').append(String.format("%02d:%02d", event.getDateTime().getHour(),
+                            event.getDateTime().getMinute()))
+                    .append(',').append(event.getPriority()).append('\n');
+            event.setID(expected.allocateID());
+            expected.scheduleEvent(event);
+        }
+        Calendar calendar = new Calendar();
+        BatchRunner runner = new BatchRunner(calendar, new PrintStream(errors));
+
+        assertEquals(0, runner.run(new BufferedReader(new StringReader(file.toString()))));
+        assertEquals(5_000, runner.getScheduled());
+        assertTrue(TestEvents.sameEvents(expected.viewAllEvents(), calendar.viewAllEvents()));
+        assertTrue(TestEvents.sameEvents(expected.searchEventsByDescription("review #4"),
+                calendar.searchEventsByDescription("review #4")));
+        assertTrue(TestEvents.sameEvents(expected.searchEventsByYear(2022), calendar.searchEventsByYear(2022)));
+        assertTrue(TestEvents.sameEvents(expected.viewEventsByPriority(), calendar.viewEventsByPriority()));
+    }
+}
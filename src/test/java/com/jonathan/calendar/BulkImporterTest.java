@@ -0,0 +1,199 @@
+package com.jonathan.calendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.jonathan.events.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for importing CSV and iCalendar files in parallel chunks.
+ */
+public class BulkImporterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path write(String name, String content) throws IOException {
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void csvImportMatchesSequentialSchedulingAcrossManyChunks() throws IOException {
+        StringBuilder file = new StringBuilder("# exported from the old planner\r\n");
+        Calendar expected = new Calendar();
+        List<Event> events = TestEvents.generate(3_000, 23);
+        for (int i = 0; i < events.size(); i++) {
+            Event event = events.get(i);
+            if (i == 1_000) {
+                file.append("Party,FUN,01-03-2024,20:00,LOW\r\n");
+            }
+            file.append('"').append(event.getDescription()).append(", Tel Aviv\",")
+                    .append(event.getType()).append(',')
+                    .append(event.getDateTime().format(Event.DATE_FORMAT)).append(',')
+                    .append(event.getDateTime().format(Event.TIME_FORMAT)).append(',')
+                    .append(event.getPriority()).append(i % 2 == 0 ? "\r\n" : "\n");
+            event.setDescription(event.getDescription() + ", Tel Aviv");
+            event.setID(expected.allocateID());
+            expected.scheduleEvent(event);
+        }
+        file.append("\nReview,WORK,32-02-2024,10:00,LOW");
+        Calendar calendar = new Calendar();
+        calendar.allocateID();
+
+        BulkImporter.Report report = new BulkImporter(calendar, new ForkJoinPool(4), 97)
+                .importFile(write("events.csv", file.toString()));
+
+        assertEquals(3_000, report.getImported());
+        assertEquals(List.of("Line 1002: Invalid event type: FUN"), report.getErrors().subList(0, 1));
+        assertEquals(2, report.getErrors().size());
+        assertTrue(report.getErrors().get(1).startsWith("Line 3004: "));
+        assertTrue(report.eventsPerSecond() > 0);
+        List<Event> imported = calendar.viewAllEvents();
+        for (Event event : imported) {
+            event.setID(event.getID() - 1);
+        }
+        assertTrue(TestEvents.sameEvents(expected.viewAllEvents(), imported));
+        assertEquals(3_001, calendar.getIDNum());
+    }
+
+    @Test
+    public void icsImportHandlesFoldingTimeZonesAndRecordsCrossingChunks() throws IOException {
+        String ics = String.join("\r\n",
+                "BEGIN:VCALENDAR",
+                "VERSION:2.0",
+                "BEGIN:VEVENT",
+                "UID:1",
+                "SUMMARY:Budget review\\, Q3 with the whole finance team and the",
+                "  auditors",
+                "DTSTART;TZID=Asia/Jerusalem:20240305T093000",
+                "DTEND;TZID=Asia/Jerusalem:20240305T110000",
+                "CATEGORIES:Quarterly,meeting",
+                "PRIORITY:1",
+                "BEGIN:VALARM",
+                "DTSTART:20000101T000000",
+                "SUMMARY:Reminder",
+                "END:VALARM",
+                "END:VEVENT",
+                "BEGIN:VEVENT",
+                "SUMMARY:Flight",
+                "DTSTART:20240306T120000Z",
+                "DURATION:PT2H30M",
+                "PRIORITY:9",
+                "END:VEVENT",
+                "BEGIN:VEVENT",
+                "SUMMARY:No start",
+                "END:VEVENT",
+                "BEGIN:VEVENT",
+                "SUMMARY:Holiday",
+                "DTSTART;VALUE=DATE:20240307",
+                "DURATION:P1W",
+                "CATEGORIES:OTHER",
+                "END:VEVENT",
+                "END:VCALENDAR",
+                "");
+        for (int chunkSize : new int[] {7, 64, 1 << 20}) {
+            Calendar calendar = new Calendar();
+
+            BulkImporter.Report report = new BulkImporter(calendar, ForkJoinPool.commonPool(), chunkSize)
+                    .importFile(write("events" + chunkSize + ".ics", ics));
+
+            assertEquals(3, report.getImported());
+            assertEquals(List.of("Line 22: VEVENT without DTSTART"), report.getErrors());
+            List<Event> events = calendar.viewAllEvents();
+            Event review = events.get(0);
+            assertEquals(1, review.getID());
+            assertEquals("Budget review, Q3 with the whole finance team and the auditors", review.getDescription());
+            assertEquals(EventType.MEETING, review.getType());
+            assertEquals(EventPrio.HIGH, review.getPriority());
+            assertEquals(Duration.ofMinutes(90), review.getDuration());
+            assertEquals(LocalDateTime.of(2024, 3, 5, 9, 30).atZone(ZoneId.of("Asia/Jerusalem"))
+                    .withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime(), review.getDateTime());
+            Event flight = calendar.getEventByID(2);
+            assertEquals(LocalDateTime.of(2024, 3, 6, 12, 0).atZone(ZoneOffset.UTC)
+                    .withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime(), flight.getDateTime());
+            assertEquals(EventPrio.LOW, flight.getPriority());
+            assertEquals(Duration.ofMinutes(150), flight.getDuration());
+            assertEquals(EventType.OTHER, flight.getType());
+            Event holiday = calendar.getEventByID(3);
+            assertEquals(LocalDateTime.of(2024, 3, 7, 0, 0), holiday.getDateTime());
+            assertEquals(EventPrio.MID, holiday.getPriority());
+            assertEquals(Duration.ofDays(7), holiday.getDuration());
+        }
+    }
+
+    @Test
+    public void icsEventsWithoutSummaryAreImportedWithAnEmptyDescription() throws IOException {
+        String ics = String.join("\r\n",
+                "BEGIN:VCALENDAR",
+                "BEGIN:VEVENT",
+                "DTSTART:20240305T093000",
+                "END:VEVENT",
+                "BEGIN:VEVENT",
+                "SUMMARY:Standup",
+                "DTSTART:20240305T100000",
+                "END:VEVENT",
+                "END:VCALENDAR",
+                "");
+        Calendar calendar = new Calendar();
+
+        BulkImporter.Report report = new BulkImporter(calendar, ForkJoinPool.commonPool(), 1 << 20)
+                .importFile(write("untitled.ics", ics));
+
+        assertEquals(2, report.getImported());
+        assertTrue(report.getErrors().isEmpty());
+        assertEquals(2, calendar.numEvents());
+        Event untitled = calendar.getEventByID(1);
+        assertEquals("", untitled.getDescription());
+        assertEquals(List.of(untitled, calendar.getEventByID(2)),
+                calendar.searchEventsByDay(LocalDateTime.of(2024, 3, 5, 0, 0).toLocalDate()));
+        assertEquals(List.of(calendar.getEventByID(2)), calendar.searchEventsByDescription("standup"));
+    }
+
+    @Test
+    public void icsSecondsAreDroppedSoImportedEventsSaveAndLoadUnchanged() throws IOException {
+        String ics = String.join("\r\n",
+                "BEGIN:VCALENDAR",
+                "BEGIN:VEVENT",
+                "SUMMARY:Standup",
+                "DTSTART:20240305T090030",
+                "DTEND:20240305T091545",
+                "END:VEVENT",
+                "BEGIN:VEVENT",
+                "SUMMARY:Call",
+                "DTSTART:20240305T100059",
+                "DURATION:PT20M30S",
+                "END:VEVENT",
+                "END:VCALENDAR",
+                "");
+        Calendar calendar = new Calendar();
+        new BulkImporter(calendar, ForkJoinPool.commonPool(), 1 << 20).importFile(write("seconds.ics", ics));
+
+        Event standup = calendar.getEventByID(1);
+        assertEquals(LocalDateTime.of(2024, 3, 5, 9, 0), standup.getDateTime());
+        assertEquals(Duration.ofMinutes(15), standup.getDuration());
+        Event call = calendar.getEventByID(2);
+        assertEquals(LocalDateTime.of(2024, 3, 5, 10, 0), call.getDateTime());
+        assertEquals(Duration.ofMinutes(20), call.getDuration());
+
+        Path saved = folder.getRoot().toPath().resolve("seconds.cal");
+        calendar.saveCalendar(saved);
+        Calendar loaded = new Calendar();
+        loaded.loadCalendar(saved);
+        assertTrue(TestEvents.sameEvents(calendar.viewAllEvents(), loaded.viewAllEvents()));
+        assertEquals(Duration.ofMinutes(20), loaded.getEventByID(2).getDuration());
+    }
+}
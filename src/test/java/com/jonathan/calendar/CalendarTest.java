@@ -0,0 +1,515 @@
+package com.jonathan.calendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.jonathan.calendar.metrics.CalendarMetrics.Operation;
+import com.jonathan.calendar.store.EventQuery;
+import com.jonathan.calendar.store.IndexedEventStore;
+import com.jonathan.calendar.store.QueryCache;
+import com.jonathan.events.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.util.*;
+import java.util.stream.Collectors;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the Calendar queries and the indexes behind them.
+ */
+public class CalendarTest {
+    private Calendar calendar;
+
+    @Before
+    public void setUp() {
+        calendar = new Calendar();
+    }
+
+    private Event schedule(String description, EventType type, LocalDateTime dateTime, EventPrio prio) {
+        calendar.nextID();
+        Event event = new Event(description, type, dateTime, prio);
+        event.setID(calendar.getIDNum());
+        calendar.scheduleEvent(event);
+        return event;
+    }
+
+    @Test
+    public void viewAllEventsIsSortedByDateTimeThenID() {
+        Event late = schedule("Late", EventType.TASK, LocalDateTime.of(2024, 5, 2, 9, 0), EventPrio.LOW);
+        Event early = schedule("Early", EventType.TASK, LocalDateTime.of(2024, 5, 1, 9, 0), EventPrio.LOW);
+        Event tie = schedule("Tie", EventType.TASK, LocalDateTime.of(2024, 5, 1, 9, 0), EventPrio.LOW);
+
+        assertEquals(List.of(early, tie, late), calendar.viewAllEvents());
+    }
+
+    @Test
+    public void eventsBetweenIsHalfOpen() {
+        Event first = schedule("First", EventType.WORK, LocalDateTime.of(2024, 1, 1, 8, 0), EventPrio.MID);
+        Event second = schedule("Second", EventType.WORK, LocalDateTime.of(2024, 1, 1, 10, 0), EventPrio.MID);
+        schedule("Third", EventType.WORK, LocalDateTime.of(2024, 1, 1, 12, 0), EventPrio.MID);
+
+        List<Event> range = calendar.eventsBetween(LocalDateTime.of(2024, 1, 1, 8, 0), LocalDateTime.of(2024, 1, 1, 12, 0));
+        assertEquals(List.of(first, second), range);
+        assertTrue(calendar.eventsBetween(LocalDateTime.of(2024, 1, 2, 0, 0), LocalDateTime.of(2024, 1, 1, 0, 0)).isEmpty());
+    }
+
+    @Test
+    public void updateAndRemoveKeepTimeIndexInSync() {
+        Event event = schedule("Standup", EventType.MEETING, LocalDateTime.of(2024, 3, 1, 9, 0), EventPrio.HIGH);
+        Event other = schedule("Review", EventType.MEETING, LocalDateTime.of(2024, 3, 1, 11, 0), EventPrio.HIGH);
+
+        Event moved = new Event("Standup", EventType.MEETING, LocalDateTime.of(2024, 3, 1, 13, 0), EventPrio.HIGH);
+        moved.setID(event.getID());
+        calendar.updateEvent(moved);
+        assertEquals(List.of(other, moved), calendar.viewAllEvents());
+
+        calendar.removeEvent(other.getID());
+        assertEquals(List.of(moved), calendar.viewAllEvents());
+        assertEquals(1, calendar.numEvents());
+    }
+
+    @Test
+    public void eventModifiedInPlaceIsStillRemovedFromIndex() {
+        Event event = schedule("Gym", EventType.OTHER, LocalDateTime.of(2024, 6, 1, 7, 0), EventPrio.LOW);
+        event.setDateTime(LocalDateTime.of(2024, 6, 2, 7, 0));
+
+        calendar.removeEvent(event.getID());
+        assertTrue(calendar.viewAllEvents().isEmpty());
+    }
+
+    @Test
+    public void dayAndYearQueriesUseTimeOrderedBuckets() {
+        Event evening = schedule("Dinner", EventType.OTHER, LocalDateTime.of(2023, 12, 31, 20, 0), EventPrio.LOW);
+        Event morning = schedule("Run", EventType.OTHER, LocalDateTime.of(2023, 12, 31, 7, 0), EventPrio.LOW);
+        Event january = schedule("Plan", EventType.WORK, LocalDateTime.of(2023, 1, 2, 9, 0), EventPrio.MID);
+        schedule("Party", EventType.OTHER, LocalDateTime.of(2024, 1, 1, 0, 0), EventPrio.LOW);
+
+        LocalDate newYearsEve = LocalDate.of(2023, 12, 31);
+        assertEquals(List.of(morning, evening), calendar.searchEventsByDay(newYearsEve));
+        assertEquals(calendar.searchEventsByDay(newYearsEve), calendar.viewEventsOn(newYearsEve));
+        assertEquals(List.of(january, morning, evening), calendar.searchEventsByYear(2023));
+
+        calendar.removeEvent(morning.getID());
+        calendar.removeEvent(evening.getID());
+        assertTrue(calendar.searchEventsByDay(newYearsEve).isEmpty());
+        assertEquals(List.of(january), calendar.searchEventsByYear(2023));
+        assertTrue(calendar.searchEventsByYear(1999).isEmpty());
+    }
+
+    @Test
+    public void typeSearchMergesBucketsInTimeOrder() {
+        Event meeting = schedule("Sync", EventType.MEETING, LocalDateTime.of(2024, 2, 1, 15, 0), EventPrio.MID);
+        Event task = schedule("Report", EventType.TASK, LocalDateTime.of(2024, 2, 1, 9, 0), EventPrio.MID);
+        Event laterMeeting = schedule("Retro", EventType.MEETING, LocalDateTime.of(2024, 2, 3, 9, 0), EventPrio.MID);
+        schedule("Lecture", EventType.SCHOOL, LocalDateTime.of(2024, 2, 2, 9, 0), EventPrio.MID);
+
+        assertEquals(List.of(task, meeting, laterMeeting),
+                calendar.searchEventsByType(EnumSet.of(EventType.MEETING, EventType.TASK)));
+
+        Event changed = new Event("Report", EventType.WORK, task.getDateTime(), EventPrio.MID);
+        changed.setID(task.getID());
+        calendar.updateEvent(changed);
+        assertEquals(List.of(meeting, laterMeeting),
+                calendar.searchEventsByType(EnumSet.of(EventType.MEETING, EventType.TASK)));
+    }
+
+    @Test
+    public void priorityListingConcatenatesBuckets() {
+        Event low = schedule("Laundry", EventType.TASK, LocalDateTime.of(2024, 4, 1, 9, 0), EventPrio.LOW);
+        Event lateHigh = schedule("Exam", EventType.SCHOOL, LocalDateTime.of(2024, 4, 3, 9, 0), EventPrio.HIGH);
+        Event earlyHigh = schedule("Interview", EventType.MEETING, LocalDateTime.of(2024, 4, 2, 9, 0), EventPrio.HIGH);
+        Event mid = schedule("Dentist", EventType.APPOINTMENT, LocalDateTime.of(2024, 4, 4, 9, 0), EventPrio.MID);
+
+        assertEquals(List.of(earlyHigh, lateHigh, mid, low), calendar.viewEventsByPriority());
+    }
+
+    @Test
+    public void descriptionSearchKeepsSubstringSemantics() {
+        Event review = schedule("Budget review", EventType.MEETING, LocalDateTime.of(2024, 3, 2, 9, 0), EventPrio.HIGH);
+        Event planning = schedule("Team budgeting, Q3", EventType.WORK, LocalDateTime.of(2024, 3, 1, 9, 0), EventPrio.MID);
+        Event lunch = schedule("Lunch with team", EventType.OTHER, LocalDateTime.of(2024, 3, 3, 12, 0), EventPrio.LOW);
+
+        assertEquals(List.of(planning, review), calendar.searchEventsByDescription("BUDGET"));
+        assertEquals(List.of(planning, review), calendar.searchEventsByDescription("udg"));
+        assertEquals(List.of(planning, lunch), calendar.searchEventsByDescription("te"));
+        assertEquals(List.of(review), calendar.searchEventsByDescription("get rev"));
+        assertEquals(List.of(planning), calendar.searchEventsByDescription("ing, q"));
+        assertEquals(List.of(planning), calendar.searchEventsByDescription(", "));
+        assertTrue(calendar.searchEventsByDescription("dinner").isEmpty());
+
+        Event renamed = new Event("Forecast review", EventType.MEETING, review.getDateTime(), EventPrio.HIGH);
+        renamed.setID(review.getID());
+        calendar.updateEvent(renamed);
+        assertEquals(List.of(planning), calendar.searchEventsByDescription("budget"));
+        assertEquals(List.of(renamed), calendar.searchEventsByDescription("forecast"));
+    }
+
+    @Test
+    public void scheduleAllRebuildsIndexesLikeSingleScheduling() {
+        Event kept = schedule("Planning", EventType.WORK, LocalDateTime.of(2021, 1, 4, 9, 0), EventPrio.HIGH);
+        schedule("Replaced", EventType.TASK, LocalDateTime.of(2021, 1, 5, 9, 0), EventPrio.LOW);
+        List<Event> batch = TestEvents.generate(3_000, 5);
+        Event replacement = new Event("Replacement", EventType.SCHOOL, LocalDateTime.of(2019, 12, 31, 23, 0), EventPrio.MID);
+        replacement.setID(2);
+        batch.removeIf(event -> event.getID() <= 2);
+        batch.add(replacement);
+
+        Calendar oneByOne = new Calendar();
+        oneByOne.scheduleEvent(kept);
+        for (Event event : batch) {
+            oneByOne.scheduleEvent(event);
+        }
+        calendar.scheduleAll(batch);
+
+        assertEquals(3_000, calendar.getIDNum());
+        assertTrue(TestEvents.sameEvents(oneByOne.viewAllEvents(), calendar.viewAllEvents()));
+        assertEquals(List.of(replacement), calendar.searchEventsByYear(2019));
+        assertTrue(TestEvents.sameEvents(oneByOne.searchEventsByDay(LocalDate.of(2021, 1, 4)),
+                calendar.searchEventsByDay(LocalDate.of(2021, 1, 4))));
+        assertTrue(TestEvents.sameEvents(oneByOne.searchEventsByType(EnumSet.of(EventType.SCHOOL)),
+                calendar.searchEventsByType(EnumSet.of(EventType.SCHOOL))));
+        assertTrue(TestEvents.sameEvents(oneByOne.viewEventsByPriority(), calendar.viewEventsByPriority()));
+        assertTrue(calendar.searchEventsByDescription("replaced").isEmpty());
+        assertTrue(TestEvents.sameEvents(oneByOne.searchEventsByDescription("gym #1"),
+                calendar.searchEventsByDescription("gym #1")));
+    }
+
+    @Test
+    public void recurringEventsExpandOnlyInsideQueriedWindows() {
+        Event single = schedule("Dentist", EventType.APPOINTMENT, LocalDateTime.of(2024, 3, 4, 8, 0), EventPrio.HIGH);
+        Event standup = new Event("Standup", EventType.MEETING, LocalDateTime.of(2022, 1, 3, 9, 0), EventPrio.MID);
+        standup.setID(calendar.allocateID());
+        standup.setRecurrence(new Recurrence(Recurrence.Frequency.WEEKLY, 1, 0, null, List.of(LocalDate.of(2024, 3, 11))));
+        calendar.scheduleEvent(standup);
+        Event birthday = new Event("Birthday", EventType.OTHER, LocalDateTime.of(2000, 2, 29, 0, 0), EventPrio.LOW);
+        birthday.setID(calendar.allocateID());
+        birthday.setRecurrence(new Recurrence(Recurrence.Frequency.YEARLY, 1));
+        calendar.scheduleEvent(birthday);
+
+        assertEquals(3, calendar.numEvents());
+        assertEquals(List.of(birthday, standup, single), calendar.viewAllEvents());
+        assertEquals(standup, calendar.getEventByID(standup.getID()));
+        List<Event> march = calendar.eventsBetween(LocalDateTime.of(2024, 3, 1, 0, 0), LocalDateTime.of(2024, 3, 20, 0, 0));
+        assertEquals(List.of(single.getDateTime(), LocalDateTime.of(2024, 3, 4, 9, 0), LocalDateTime.of(2024, 3, 18, 9, 0)),
+                march.stream().map(Event::getDateTime).collect(Collectors.toList()));
+        assertEquals(standup.getID(), march.get(1).getID());
+        assertEquals(standup.getRecurrence(), march.get(1).getRecurrence());
+        assertEquals(LocalDateTime.of(2023, 2, 28, 0, 0), calendar.searchEventsByDay(LocalDate.of(2023, 2, 28)).get(0).getDateTime());
+        assertEquals(52 + 2, calendar.searchEventsByYear(2024).size());
+        assertEquals(52 + 1, calendar.streamEventsByYear(2023).count());
+        assertTrue(calendar.searchEventsByYear(1999).isEmpty());
+        assertEquals(List.of(birthday, standup, single), calendar.streamAllEvents().collect(Collectors.toList()));
+        assertEquals(List.of(standup), calendar.searchEventsByType(EnumSet.of(EventType.MEETING)));
+        assertEquals(List.of(standup), calendar.searchEventsByDescription("STAND"));
+        assertEquals(List.of(single, standup, birthday), calendar.viewEventsByPriority());
+
+        Event once = new Event("Standup", EventType.MEETING, LocalDateTime.of(2024, 3, 5, 9, 0), EventPrio.MID);
+        once.setID(standup.getID());
+        calendar.updateEvent(once);
+        assertEquals(List.of(once), calendar.searchEventsByType(EnumSet.of(EventType.MEETING)));
+        assertEquals(3, calendar.searchEventsByYear(2024).size());
+        assertEquals(birthday, calendar.removeEvent(birthday.getID()));
+        assertEquals(List.of(single, once), calendar.viewAllEvents());
+    }
+
+    @Test
+    public void searchCombinesCriteriaOverStoredAndRecurringEvents() {
+        calendar.scheduleAll(TestEvents.generate(5_000, 24));
+        Event standup = new Event("Budget standup", EventType.MEETING, LocalDateTime.of(2022, 1, 3, 9, 0), EventPrio.HIGH);
+        standup.setID(calendar.allocateID());
+        standup.setRecurrence(new Recurrence(Recurrence.Frequency.WEEKLY, 1));
+        calendar.scheduleEvent(standup);
+        LocalDateTime march = LocalDateTime.of(2022, 3, 1, 0, 0);
+        EventQuery query = new EventQuery()
+                .between(march, march.plusMonths(1))
+                .ofTypes(EnumSet.of(EventType.MEETING))
+                .ofPriorities(EnumSet.of(EventPrio.HIGH))
+                .matching("budget");
+
+        List<Event> expected = calendar.eventsBetween(march, march.plusMonths(1)).stream()
+                .filter(query::test)
+                .collect(Collectors.toList());
+        assertEquals(4, expected.stream().filter(event -> event.getID() == standup.getID()).count());
+        assertTrue(TestEvents.sameEvents(expected, calendar.search(query)));
+        assertTrue(TestEvents.sameEvents(expected.subList(0, 3), calendar.search(query.limit(3))));
+        List<Event> byPriority = calendar.search(new EventQuery().matching("BUDGET STAND")
+                .orderBy(EventQuery.Order.PRIORITY));
+        assertEquals(List.of(standup), byPriority);
+        assertEquals(3, calendar.getMetrics().latency(Operation.QUERY).count());
+    }
+
+    @Test
+    public void countsEventsPerPeriodThroughChanges() {
+        List<Event> events = TestEvents.generate(3_000, 26);
+        calendar.scheduleAll(events);
+        Event standup = new Event("Standup", EventType.MEETING, LocalDateTime.of(2022, 1, 3, 9, 0), EventPrio.HIGH);
+        standup.setID(calendar.allocateID());
+        standup.setRecurrence(new Recurrence(Recurrence.Frequency.WEEKLY, 1));
+        calendar.scheduleEvent(standup);
+        Calendar before = calendar.snapshot();
+        Event moved = new Event("Moved", EventType.MEETING, LocalDateTime.of(2022, 3, 9, 12, 0), EventPrio.HIGH);
+        moved.setID(events.get(0).getID());
+        calendar.updateEvent(moved);
+        calendar.removeEvent(events.get(1).getID());
+
+        LocalDate march = LocalDate.of(2022, 3, 1);
+        Set<EventType> meetings = EnumSet.of(EventType.MEETING);
+        Set<EventPrio> high = EnumSet.of(EventPrio.HIGH);
+        SortedMap<LocalDate, Long> perWeek = calendar.countEventsPer(Period.ofWeeks(1), march,
+                march.plusMonths(1), meetings, high);
+        assertEquals(5, perWeek.size());
+        for (Map.Entry<LocalDate, Long> week : perWeek.entrySet()) {
+            LocalDate weekEnd = Collections.min(List.of(week.getKey().plusWeeks(1), march.plusMonths(1)));
+            long expected = calendar.eventsBetween(week.getKey().atStartOfDay(), weekEnd.atStartOfDay()).stream()
+                    .filter(event -> event.getType() == EventType.MEETING && event.getPriority() == EventPrio.HIGH)
+                    .count();
+            assertEquals(expected, (long) week.getValue());
+        }
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        LocalDate end = LocalDate.of(2025, 1, 1);
+        assertEquals(calendar.eventsBetween(start.atStartOfDay(), march.atStartOfDay()).size(),
+                calendar.countEvents(start, march, null, null));
+        Map<EventPrio, Long> byPriority = calendar.countEventsByPriority(start, end);
+        assertEquals(calendar.eventsBetween(start.atStartOfDay(), end.atStartOfDay()).size(),
+                byPriority.values().stream().mapToLong(Long::longValue).sum());
+        assertEquals(calendar.eventsBetween(start.atStartOfDay(), end.atStartOfDay()).stream()
+                        .filter(event -> event.getType() == EventType.MEETING)
+                        .count(),
+                (long) calendar.countEventsByType(start, end).get(EventType.MEETING));
+        assertEquals(before.eventsBetween(start.atStartOfDay(), end.atStartOfDay()).size(),
+                before.countEvents(start, end, null, null));
+        assertEquals(before.countEvents(start, end, null, null) - 1, calendar.countEvents(start, end, null, null));
+        assertEquals(5, calendar.getMetrics().latency(Operation.COUNT).count());
+    }
+
+    @Test
+    public void schedulingReportsTheEventsItOverlaps() {
+        Event review = schedule("Review", EventType.WORK, LocalDateTime.of(2024, 5, 6, 10, 0), EventPrio.HIGH);
+        review.setDuration(Duration.ofMinutes(60));
+        calendar.updateEvent(review);
+        Event lunch = new Event("Lunch", EventType.OTHER, LocalDateTime.of(2024, 5, 6, 11, 0), EventPrio.LOW);
+        lunch.setID(calendar.allocateID());
+        lunch.setDuration(Duration.ofMinutes(45));
+        assertTrue(calendar.scheduleEvent(lunch).isEmpty());
+        Event reminder = schedule("Reminder", EventType.TASK, LocalDateTime.of(2024, 5, 6, 10, 30), EventPrio.MID);
+
+        Event standup = new Event("Standup", EventType.MEETING, LocalDateTime.of(2024, 4, 29, 10, 45), EventPrio.MID);
+        standup.setID(calendar.allocateID());
+        standup.setDuration(Duration.ofMinutes(30));
+        standup.setRecurrence(new Recurrence(Recurrence.Frequency.WEEKLY, 1));
+        List<Event> conflicts = calendar.scheduleEvent(standup);
+
+        assertEquals(List.of(review, lunch), conflicts);
+        assertTrue(calendar.conflictsWith(reminder).isEmpty());
+        List<Event> withReview = calendar.conflictsWith(review);
+        assertEquals(1, withReview.size());
+        assertEquals(standup.getID(), withReview.get(0).getID());
+        assertEquals(LocalDateTime.of(2024, 5, 6, 10, 45), withReview.get(0).getDateTime());
+
+        List<Conflict> week = calendar.findConflicts(LocalDateTime.of(2024, 5, 6, 0, 0), LocalDateTime.of(2024, 5, 13, 0, 0));
+        assertEquals(2, week.size());
+        assertEquals(review, week.get(0).getFirst());
+        assertEquals(LocalDateTime.of(2024, 5, 6, 10, 45), week.get(0).getStart());
+        assertEquals(LocalDateTime.of(2024, 5, 6, 11, 0), week.get(0).getEnd());
+        assertEquals(lunch, week.get(1).getSecond());
+
+        calendar.removeEvent(review.getID());
+        assertEquals(List.of(lunch), calendar.scheduleEvent(standup));
+    }
+
+    @Test
+    public void recurringEventsAreCheckedForConflictsOverTheirWholeSpan() {
+        Event offsite = schedule("Offsite", EventType.WORK, LocalDateTime.of(2026, 9, 7, 9, 0), EventPrio.HIGH);
+        offsite.setDuration(Duration.ofHours(8));
+        calendar.updateEvent(offsite);
+        Event yoga = new Event("Yoga", EventType.OTHER, LocalDateTime.of(2027, 1, 5, 18, 0), EventPrio.LOW);
+        yoga.setID(calendar.allocateID());
+        yoga.setDuration(Duration.ofMinutes(60));
+        yoga.setRecurrence(new Recurrence(Recurrence.Frequency.WEEKLY, 1, 0, LocalDateTime.of(2028, 12, 31, 0, 0), List.of()));
+        calendar.scheduleEvent(yoga);
+
+        Event standup = new Event("Standup", EventType.MEETING, LocalDateTime.of(2024, 5, 6, 10, 0), EventPrio.MID);
+        standup.setID(calendar.allocateID());
+        standup.setDuration(Duration.ofMinutes(30));
+        standup.setRecurrence(new Recurrence(Recurrence.Frequency.WEEKLY, 1));
+        assertEquals(List.of(offsite), calendar.scheduleEvent(standup));
+        assertTrue(calendar.conflictsWith(standup, LocalDateTime.of(2026, 1, 1, 0, 0)).isEmpty());
+
+        Event evening = new Event("Evening class", EventType.SCHOOL, LocalDateTime.of(2024, 1, 2, 18, 30), EventPrio.MID);
+        evening.setID(calendar.allocateID());
+        evening.setDuration(Duration.ofMinutes(90));
+        evening.setRecurrence(new Recurrence(Recurrence.Frequency.WEEKLY, 2, 100, null, List.of()));
+        List<Event> conflicts = calendar.conflictsWith(evening);
+        assertEquals(evening.getRecurrence().occurrencesBetween(evening.getDateTime(),
+                yoga.getDateTime(), LocalDateTime.MAX).size(), conflicts.size());
+        assertTrue(conflicts.stream().allMatch(conflict -> conflict.getID() == yoga.getID()));
+    }
+
+    @Test
+    public void findConflictsMatchesComparingEveryPair() {
+        Random random = new Random(15);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<Event> events = new ArrayList<>();
+        for (int id = 1; id <= 1_500; id++) {
+            Event event = new Event("Block " + id, EventType.WORK, start.plusMinutes(5L * random.nextInt(60 * 24 * 12)), EventPrio.MID);
+            event.setID(id);
+            if (random.nextInt(10) > 0) {
+                event.setDuration(Duration.ofMinutes(5 + random.nextInt(random.nextInt(20) == 0 ? 3_000 : 90)));
+            }
+            if (id % 300 == 0) {
+                event.setRecurrence(new Recurrence(Recurrence.Frequency.DAILY, 1 + random.nextInt(3)));
+            }
+            events.add(event);
+        }
+        calendar.scheduleAll(events);
+        LocalDateTime from = LocalDateTime.of(2024, 1, 20, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2024, 2, 10, 0, 0);
+
+        List<Event> timed = new ArrayList<>();
+        for (Event event : events) {
+            if (!event.hasDuration()) {
+                continue;
+            }
+            List<LocalDateTime> starts = event.getRecurrence() == null ? List.of(event.getDateTime())
+                    : event.getRecurrence().occurrencesBetween(event.getDateTime(), from.minusDays(3), to);
+            for (LocalDateTime occurrence : starts) {
+                Event copy = event.occurrenceAt(occurrence);
+                if (copy.getDateTime().isBefore(to) && copy.getEnd().isAfter(from)) {
+                    timed.add(copy);
+                }
+            }
+        }
+        Set<String> expected = new HashSet<>();
+        for (Event a : timed) {
+            for (Event b : timed) {
+                if (Event.CHRONOLOGICAL.compare(a, b) < 0 && a.getDateTime().isBefore(b.getEnd())
+                        && b.getDateTime().isBefore(a.getEnd())) {
+                    expected.add(a.getID() + "@" + a.getDateTime() + "/" + b.getID() + "@" + b.getDateTime());
+                }
+            }
+        }
+
+        Set<String> found = new HashSet<>();
+        for (Conflict conflict : calendar.findConflicts(from, to)) {
+            Event a = conflict.getFirst();
+            Event b = conflict.getSecond();
+            assertTrue(found.add(a.getID() + "@" + a.getDateTime() + "/" + b.getID() + "@" + b.getDateTime()));
+        }
+        assertEquals(expected, found);
+        assertTrue(expected.size() > 1_000);
+    }
+
+    @Test
+    public void cachedSearchesMatchFreshOnesAndChangesEvictOnlyWhatTheyCover() {
+        calendar.scheduleAll(TestEvents.generate(3_000, 18));
+        Calendar uncached = new Calendar();
+        uncached.getQueryCache().setCapacity(0);
+        uncached.scheduleAll(TestEvents.generate(3_000, 18));
+        QueryCache cache = calendar.getQueryCache();
+        LocalDate monday = LocalDate.of(2021, 6, 7);
+        LocalDate tuesday = monday.plusDays(1);
+        Set<EventType> school = EnumSet.of(EventType.SCHOOL);
+        Set<EventType> work = EnumSet.of(EventType.WORK, EventType.MEETING);
+
+        for (int pass = 0; pass < 2; pass++) {
+            assertTrue(TestEvents.sameEvents(uncached.searchEventsByDay(monday), calendar.searchEventsByDay(monday)));
+            assertTrue(TestEvents.sameEvents(uncached.searchEventsByDay(tuesday), calendar.searchEventsByDay(tuesday)));
+            assertTrue(TestEvents.sameEvents(uncached.searchEventsByYear(2022), calendar.searchEventsByYear(2022)));
+            assertTrue(TestEvents.sameEvents(uncached.searchEventsByType(school), calendar.searchEventsByType(school)));
+            assertTrue(TestEvents.sameEvents(uncached.searchEventsByType(work), calendar.searchEventsByType(work)));
+        }
+        assertEquals(5, cache.misses());
+        assertEquals(5, cache.hits());
+        assertEquals(5, cache.size());
+
+        Event lecture = new Event("Lecture", EventType.SCHOOL, monday.atTime(10, 0), EventPrio.HIGH);
+        lecture.setID(calendar.allocateID());
+        calendar.scheduleEvent(lecture);
+        uncached.scheduleEvent(lecture);
+        assertEquals(3, cache.size());
+        assertEquals(2, cache.invalidations());
+        assertTrue(TestEvents.sameEvents(uncached.searchEventsByDay(monday), calendar.searchEventsByDay(monday)));
+        assertTrue(TestEvents.sameEvents(uncached.searchEventsByType(school), calendar.searchEventsByType(school)));
+        assertTrue(TestEvents.sameEvents(uncached.searchEventsByDay(tuesday), calendar.searchEventsByDay(tuesday)));
+        assertEquals(7, cache.misses());
+        assertEquals(6, cache.hits());
+
+        Event evening = new Event("Evening class", EventType.SCHOOL, tuesday.atTime(18, 0), EventPrio.LOW);
+        evening.setID(calendar.allocateID());
+        evening.setRecurrence(new Recurrence(Recurrence.Frequency.WEEKLY, 1));
+        calendar.scheduleEvent(evening);
+        uncached.scheduleEvent(evening);
+        assertTrue(TestEvents.sameEvents(uncached.searchEventsByDay(tuesday), calendar.searchEventsByDay(tuesday)));
+        assertTrue(TestEvents.sameEvents(uncached.searchEventsByYear(2022), calendar.searchEventsByYear(2022)));
+        assertTrue(TestEvents.sameEvents(uncached.searchEventsByDay(monday), calendar.searchEventsByDay(monday)));
+        assertEquals(9, cache.misses());
+        assertEquals(7, cache.hits());
+
+        calendar.removeEvent(lecture.getID());
+        uncached.removeEvent(lecture.getID());
+        assertTrue(TestEvents.sameEvents(uncached.searchEventsByDay(monday), calendar.searchEventsByDay(monday)));
+        assertTrue(TestEvents.sameEvents(uncached.searchEventsByType(work), calendar.searchEventsByType(work)));
+        assertEquals(10, cache.misses());
+        assertEquals(8, cache.hits());
+
+        cache.setCapacity(2);
+        assertEquals(2, cache.size());
+        assertTrue(TestEvents.sameEvents(uncached.searchEventsByDay(monday), calendar.searchEventsByDay(monday)));
+        calendar.searchEventsByYear(2023);
+        assertEquals(2, cache.size());
+        assertTrue(cache.evictions() > 0);
+        assertTrue(TestEvents.sameEvents(uncached.searchEventsByDay(monday), calendar.searchEventsByDay(monday)));
+    }
+
+    @Test
+    public void snapshotsAreReadOnlyAndUnaffectedByLaterChanges() {
+        calendar = Calendar.persistent();
+        calendar.scheduleAll(TestEvents.generate(5_000, 22));
+        LocalDateTime nine = LocalDateTime.of(2023, 3, 6, 9, 0);
+        Event standup = schedule("Standup", EventType.MEETING, nine, EventPrio.MID);
+        standup.setDuration(Duration.ofMinutes(15));
+        standup.setRecurrence(new Recurrence(Recurrence.Frequency.DAILY, 1, 10, null, List.of()));
+        calendar.updateEvent(standup);
+        Event review = schedule("Review", EventType.WORK, nine.plusMinutes(10), EventPrio.HIGH);
+        review.setDuration(Duration.ofHours(1));
+        calendar.updateEvent(review);
+
+        Calendar snapshot = calendar.snapshot();
+        List<Event> all = calendar.viewAllEvents();
+        List<Event> week = calendar.eventsBetween(nine, nine.plusWeeks(1));
+        List<Conflict> conflicts = calendar.findConflicts(nine, nine.plusDays(1));
+        assertEquals(1, conflicts.size());
+
+        calendar.removeEvent(review.getID());
+        calendar.removeEvent(all.get(0).getID());
+        Event moved = new Event("Moved standup", EventType.MEETING, nine.plusHours(1), EventPrio.LOW);
+        moved.setID(standup.getID());
+        calendar.updateEvent(moved);
+        calendar.scheduleAll(TestEvents.generate(2_000, 23));
+
+        assertEquals(all.size(), snapshot.numEvents());
+        assertTrue(TestEvents.sameEvents(all, snapshot.viewAllEvents()));
+        assertTrue(TestEvents.sameEvents(week, snapshot.eventsBetween(nine, nine.plusWeeks(1))));
+        assertEquals(1, snapshot.findConflicts(nine, nine.plusDays(1)).size());
+        assertTrue(TestEvents.sameEvent(standup, snapshot.getEventByID(standup.getID())));
+        assertEquals(calendar.getIDNum(), snapshot.getIDNum());
+        assertEquals(0, calendar.findConflicts(nine, nine.plusDays(1)).size());
+
+        try {
+            snapshot.removeEvent(standup.getID());
+            fail("A snapshot must be read-only");
+        } catch (UnsupportedOperationException expected) {
+            assertTrue(TestEvents.sameEvent(standup, snapshot.getEventByID(standup.getID())));
+        }
+
+        Calendar indexed = new Calendar(IndexedEventStore::new);
+        indexed.scheduleAll(all);
+        Calendar copied = indexed.snapshot();
+        indexed.removeEvent(all.get(1).getID());
+        assertTrue(TestEvents.sameEvents(all, copied.viewAllEvents()));
+    }
+}
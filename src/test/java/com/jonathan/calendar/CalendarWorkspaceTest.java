@@ -0,0 +1,76 @@
+package com.jonathan.calendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.jonathan.events.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for querying many calendars at once and sharing their descriptions and times.
+ */
+public class CalendarWorkspaceTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<Event> merged(Collection<Calendar> calendars, Function<Calendar, List<Event>> query) {
+        List<Event> events = new ArrayList<>();
+        for (Calendar calendar : calendars) {
+            events.addAll(query.apply(calendar));
+        }
+        events.sort(Event.CHRONOLOGICAL);
+        return events;
+    }
+
+    @Test
+    public void queriesAcrossCalendarsMergeInTimeOrderAndShareValues() throws IOException {
+        CalendarWorkspace workspace = new CalendarWorkspace();
+        for (int person = 0; person < 6; person++) {
+            Calendar saved = new Calendar();
+            saved.scheduleAll(TestEvents.generate(2_000, person));
+            Path path = folder.getRoot().toPath().resolve("person" + person + ".cal");
+            saved.saveCalendar(path);
+            workspace.load("person" + person, path, Calendar.LoadMode.EAGER);
+        }
+        Calendar extra = workspace.open("extra");
+        Event standup = new Event("Standup #7", EventType.MEETING, LocalDate.of(2022, 3, 1).atTime(9, 0), EventPrio.MID);
+        standup.setID(extra.allocateID());
+        extra.scheduleEvent(standup);
+        assertSame(extra, workspace.open("extra"));
+        assertEquals(7, workspace.size());
+
+        List<Calendar> calendars = new ArrayList<>();
+        for (String name : workspace.names()) {
+            calendars.add(workspace.get(name));
+        }
+        LocalDate day = LocalDate.of(2022, 3, 1);
+        assertEquals(merged(calendars, calendar -> calendar.searchEventsByDay(day)), workspace.searchEventsByDay(day));
+        Set<EventType> types = EnumSet.of(EventType.SCHOOL, EventType.TASK);
+        assertEquals(merged(calendars, calendar -> calendar.searchEventsByType(types)), workspace.searchEventsByType(types));
+        List<Event> standups = workspace.searchEventsByDescription("standup #7");
+        assertEquals(merged(calendars, calendar -> calendar.searchEventsByDescription("standup #7")), standups);
+        assertTrue(standups.size() > 6);
+
+        Map<String, String> firstSeen = new HashMap<>();
+        for (Calendar calendar : calendars) {
+            for (Event event : calendar.viewAllEvents()) {
+                assertSame(firstSeen.computeIfAbsent(event.getDescription(), description -> description), event.getDescription());
+                assertSame(workspace.getInterner().intern(event.getDateTime()), event.getDateTime());
+            }
+        }
+        assertEquals(firstSeen.size(), workspace.getInterner().descriptionCount());
+
+        assertSame(extra, workspace.remove("extra"));
+        assertNull(workspace.get("extra"));
+        assertEquals(standups.size() - 1, workspace.searchEventsByDescription("standup #7").size());
+    }
+}
@@ -0,0 +1,93 @@
+package com.jonathan.calendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.jonathan.events.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import org.junit.Test;
+
+/**
+ * Tests for finding the times at which several calendars are all free.
+ */
+public class FreeSlotFinderTest {
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2024, 6, 3, 0, 0);
+
+    private static Event block(int id, LocalDateTime start, int minutes) {
+        Event event = new Event("Busy " + id, EventType.MEETING, start, EventPrio.MID);
+        event.setID(id);
+        event.setDuration(Duration.ofMinutes(minutes));
+        return event;
+    }
+
+    @Test
+    public void findsTheGapsBetweenEveryCalendarsEvents() {
+        Calendar alice = new Calendar();
+        alice.scheduleEvent(block(1, MONDAY.minusHours(1), 9 * 60));
+        alice.scheduleEvent(block(2, MONDAY.plusHours(10), 60));
+        Calendar bob = new Calendar();
+        bob.scheduleEvent(block(1, MONDAY.plusHours(9), 30));
+        bob.scheduleEvent(block(2, MONDAY.plusHours(11).plusMinutes(20), 100));
+        bob.scheduleEvent(new Event("Reminder", EventType.TASK, MONDAY.plusHours(12), EventPrio.LOW));
+        Event standup = block(3, MONDAY.plusHours(14), 15);
+        standup.setRecurrence(new Recurrence(Recurrence.Frequency.DAILY, 1));
+        bob.scheduleEvent(standup);
+        FreeSlotFinder finder = new FreeSlotFinder(List.of(alice, bob));
+
+        List<FreeSlotFinder.Slot> slots = finder.freeSlots(MONDAY, MONDAY.plusHours(16), Duration.ofMinutes(30));
+
+        assertEquals(List.of(MONDAY.plusHours(8), MONDAY.plusHours(9).plusMinutes(30), MONDAY.plusHours(13),
+                MONDAY.plusHours(14).plusMinutes(15)), slots.stream().map(FreeSlotFinder.Slot::getStart).toList());
+        assertEquals(List.of(MONDAY.plusHours(9), MONDAY.plusHours(10), MONDAY.plusHours(14), MONDAY.plusHours(16)),
+                slots.stream().map(FreeSlotFinder.Slot::getEnd).toList());
+        FreeSlotFinder.Slot first = finder.firstFreeSlot(MONDAY.plusHours(9), MONDAY.plusDays(1), Duration.ofMinutes(45));
+        assertEquals(MONDAY.plusHours(13), first.getStart());
+        assertEquals(Duration.ofMinutes(45), first.getDuration());
+        assertNull(finder.firstFreeSlot(MONDAY, MONDAY.plusHours(8), Duration.ofMinutes(1)));
+    }
+
+    @Test
+    public void freeSlotsMatchCheckingEveryMinute() {
+        Random random = new Random(16);
+        List<Calendar> calendars = new ArrayList<>();
+        for (int person = 0; person < 12; person++) {
+            Calendar calendar = new Calendar();
+            for (int id = 1; id <= 60; id++) {
+                calendar.scheduleEvent(block(id, MONDAY.plusMinutes(15L * random.nextInt(4 * 7 * 24)), 15 + random.nextInt(120)));
+            }
+            calendars.add(calendar);
+        }
+        LocalDateTime from = MONDAY.plusDays(1).plusMinutes(7);
+        LocalDateTime to = MONDAY.plusDays(5);
+        int minutes = (int) ChronoUnit.MINUTES.between(from, to);
+        boolean[] busy = new boolean[minutes];
+        for (Calendar calendar : calendars) {
+            for (Event event : calendar.viewAllEvents()) {
+                for (LocalDateTime minute = event.getDateTime(); minute.isBefore(event.getEnd()); minute = minute.plusMinutes(1)) {
+                    long offset = ChronoUnit.MINUTES.between(from, minute);
+                    if (offset >= 0 && offset < minutes) {
+                        busy[(int) offset] = true;
+                    }
+                }
+            }
+        }
+        List<FreeSlotFinder.Slot> expected = new ArrayList<>();
+        for (int start = 0; start < minutes; start++) {
+            if (!busy[start]) {
+                int end = start;
+                while (end < minutes && !busy[end]) {
+                    end++;
+                }
+                if (end - start >= 30) {
+                    expected.add(new FreeSlotFinder.Slot(from.plusMinutes(start), from.plusMinutes(end)));
+                }
+                start = end;
+            }
+        }
+
+        assertEquals(expected, new FreeSlotFinder(calendars).freeSlots(from, to, Duration.ofMinutes(30)));
+    }
+}
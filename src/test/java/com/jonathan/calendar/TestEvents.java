@@ -0,0 +1,76 @@
+package com.jonathan.calendar;
+
+import com.jonathan.events.*;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Generates reproducible events for tests.
+ */
+public final class TestEvents {
+    private static final String[] DESCRIPTIONS = {
+            "Standup", "Budget review", "Dentist", "Gym", "Lecture", "1:1 with manager"};
+
+    private TestEvents() {
+    }
+
+    /**
+     * Generates events with IDs 1 to count, spread over five years from 2020,
+     * sorted by date and time.
+     *
+     * @param count The number of events.
+     * @param seed The random seed.
+     * @return The generated events.
+     */
+    public static List<Event> generate(int count, long seed) {
+        Random random = new Random(seed);
+        List<Event> events = new ArrayList<>(count);
+        LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0);
+        for (int id = 1; id <= count; id++) {
+            Event event = new Event(DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)] + " #" + random.nextInt(500),
+                    EventType.values()[random.nextInt(EventType.values().length)],
+                    start.plusMinutes(random.nextInt(5 * 365 * 24 * 60)),
+                    EventPrio.values()[random.nextInt(EventPrio.values().length)]);
+            event.setID(id);
+            events.add(event);
+        }
+        events.sort(Event.CHRONOLOGICAL);
+        return events;
+    }
+
+    /**
+     * Checks that two events have the same ID and fields.
+     *
+     * @param expected The expected event.
+     * @param actual The actual event.
+     * @return True if every field matches.
+     */
+    public static boolean sameEvent(Event expected, Event actual) {
+        return expected.getID() == actual.getID()
+                && Objects.equals(expected.getDescription(), actual.getDescription())
+                && expected.getType() == actual.getType()
+                && expected.getPriority() == actual.getPriority()
+                && Objects.equals(expected.getDateTime(), actual.getDateTime())
+                && Objects.equals(expected.getRecurrence(), actual.getRecurrence())
+                && Objects.equals(expected.getDuration(), actual.getDuration());
+    }
+
+    /**
+     * Checks that two lists hold events with the same IDs and fields, in the same order.
+     *
+     * @param expected The expected events.
+     * @param actual The actual events.
+     * @return True if both lists match element by element.
+     */
+    public static boolean sameEvents(List<Event> expected, List<Event> actual) {
+        if (expected.size() != actual.size()) {
+            return false;
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            if (!sameEvent(expected.get(i), actual.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,190 @@
+package com.jonathan.calendar.bench;
+
+import com.jonathan.calendar.Calendar;
+import com.jonathan.calendar.store.*;
+import com.jonathan.events.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the in-memory Calendar operations as the number of events grows,
+ * for each kind of event store.
+ *
+ * <p>Run with {@code mvn -P benchmarks verify -Djmh.args="CalendarBenchmark -p size=1000,1000000"}.
+ * The largest sizes need a larger heap, e.g. {@code -jvmArgs -Xmx16g}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CalendarBenchmark {
+    private static final int YEARS = 5;
+    private static final int FIRST_YEAR = 2020;
+    private static final Set<EventType> TYPES = EnumSet.of(EventType.APPOINTMENT, EventType.SCHOOL);
+    private static final LocalDateTime MARCH = LocalDateTime.of(FIRST_YEAR + 2, 3, 1, 0, 0);
+    private static final EventQuery BUDGET_MEETINGS = new EventQuery()
+            .between(MARCH, MARCH.plusMonths(1))
+            .ofTypes(EnumSet.of(EventType.MEETING))
+            .ofPriorities(EnumSet.of(EventPrio.HIGH))
+            .matching("budget");
+    private static final EventQuery URGENT_SCHOOL = new EventQuery()
+            .ofTypes(EnumSet.of(EventType.SCHOOL))
+            .ofPriorities(EnumSet.of(EventPrio.HIGH));
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"indexed", "concurrent", "columnar", "persistent"})
+    public String store;
+
+    private Calendar calendar;
+    private EventGenerator generator;
+    private int nextID;
+
+    static Supplier<EventStore> storeFactory(String store) {
+        switch (store) {
+            case "indexed":
+                return IndexedEventStore::new;
+            case "concurrent":
+                return ConcurrentEventStore::new;
+            case "columnar":
+                return ColumnarEventStore::new;
+            case "persistent":
+                return PersistentEventStore::new;
+            default:
+                throw new IllegalArgumentException("Unknown store: " + store);
+        }
+    }
+
+    /**
+     * Fills a calendar with the given number of generated events.
+     *
+     * @param store The kind of event store.
+     * @param size The number of events.
+     * @return The filled calendar.
+     */
+    static Calendar filledCalendar(String store, int size) {
+        Calendar calendar = new Calendar(storeFactory(store));
+        EventGenerator generator = new EventGenerator(42, FIRST_YEAR, YEARS);
+        for (int i = 0; i < size; i++) {
+            calendar.scheduleEvent(generator.next(calendar.allocateID()));
+        }
+        return calendar;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        calendar = filledCalendar(store, size);
+        generator = new EventGenerator(7, FIRST_YEAR, YEARS);
+    }
+
+    /**
+     * Reschedules an existing event, which updates every index without changing the event count.
+     */
+    @Benchmark
+    public Calendar scheduleEvent() {
+        nextID = nextID % size + 1;
+        calendar.scheduleEvent(generator.next(nextID));
+        return calendar;
+    }
+
+    @Benchmark
+    public List<Event> viewAllEvents() {
+        return calendar.viewAllEvents();
+    }
+
+    @Benchmark
+    public List<Event> searchEventsByDescriptionCommonWord() {
+        return calendar.searchEventsByDescription("standup");
+    }
+
+    @Benchmark
+    public List<Event> searchEventsByDescriptionRarePhrase() {
+        return calendar.searchEventsByDescription("webinar - compliance");
+    }
+
+    @Benchmark
+    public List<Event> searchEventsByDay() {
+        LocalDate date = generator.date();
+        return calendar.searchEventsByDay(date);
+    }
+
+    @Benchmark
+    public List<Event> searchEventsByYear() {
+        return calendar.searchEventsByYear(FIRST_YEAR + 2);
+    }
+
+    @Benchmark
+    public List<Event> searchEventsByType() {
+        return calendar.searchEventsByType(TYPES);
+    }
+
+    /**
+     * HIGH priority meetings in March containing "budget", planned to read only the month.
+     */
+    @Benchmark
+    public List<Event> searchComposite() {
+        return calendar.search(BUDGET_MEETINGS);
+    }
+
+    /**
+     * The same search as {@link #searchComposite()}, written as single-criterion searches intersected by hand.
+     */
+    @Benchmark
+    public List<Event> searchCompositeByIntersecting() {
+        List<Event> march = calendar.eventsBetween(MARCH, MARCH.plusMonths(1));
+        march.retainAll(new HashSet<>(calendar.searchEventsByType(EnumSet.of(EventType.MEETING))));
+        march.retainAll(new HashSet<>(calendar.searchEventsByDescription("budget")));
+        march.removeIf(event -> event.getPriority() != EventPrio.HIGH);
+        return march;
+    }
+
+    /**
+     * HIGH priority school events at any time, planned to read the intersection of two bitmaps.
+     */
+    @Benchmark
+    public List<Event> searchTypeAndPriority() {
+        return calendar.search(URGENT_SCHOOL);
+    }
+
+    /**
+     * HIGH priority meetings in each week of a year, counted from the per-day counters.
+     */
+    @Benchmark
+    public SortedMap<LocalDate, Long> countPerWeek() {
+        return calendar.countEventsPer(Period.ofWeeks(1), MARCH.toLocalDate(), MARCH.toLocalDate().plusYears(1),
+                EnumSet.of(EventType.MEETING), EnumSet.of(EventPrio.HIGH));
+    }
+
+    /**
+     * Counts the same HIGH priority meetings week by week by listing them instead.
+     */
+    @Benchmark
+    public SortedMap<LocalDate, Long> countPerWeekByListing() {
+        SortedMap<LocalDate, Long> perWeek = new TreeMap<>();
+        LocalDateTime week = MARCH;
+        while (week.isBefore(MARCH.plusYears(1))) {
+            LocalDateTime next = week.plusWeeks(1).isAfter(MARCH.plusYears(1)) ? MARCH.plusYears(1) : week.plusWeeks(1);
+            perWeek.put(week.toLocalDate(), calendar.eventsBetween(week, next).stream()
+                    .filter(event -> event.getType() == EventType.MEETING && event.getPriority() == EventPrio.HIGH)
+                    .count());
+            week = next;
+        }
+        return perWeek;
+    }
+
+    /**
+     * Takes a read-only snapshot, in O(1) with the persistent store and by copying with the others.
+     */
+    @Benchmark
+    public Calendar snapshot() {
+        return calendar.snapshot();
+    }
+}
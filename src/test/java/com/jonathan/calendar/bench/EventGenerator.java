@@ -0,0 +1,97 @@
+package com.jonathan.calendar.bench;
+
+import com.jonathan.events.*;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+
+/**
+ * Generates synthetic events with realistic distributions for benchmarks.
+ * Events fall mostly on weekdays and within working hours, on quarter-hour boundaries;
+ * types and priorities are skewed the way a work calendar is; and descriptions combine
+ * a Zipf-distributed subject with a topic, so a few words are very common and most are rare.
+ */
+public final class EventGenerator {
+    private static final String[] SUBJECTS = {
+            "Standup", "Sync", "Review", "Planning", "Lunch", "Interview", "Call", "Workshop",
+            "Retro", "Demo", "Dentist", "Gym", "Lecture", "Exam", "Deadline", "Onboarding",
+            "Budget", "Offsite", "Training", "Doctor", "Haircut", "Flight", "Dinner", "Webinar"};
+    private static final String[] TOPICS = {
+            "payments", "search", "mobile app", "backend", "Q3 roadmap", "hiring", "infra",
+            "customer Acme", "customer Globex", "security audit", "release 2.1", "data platform",
+            "marketing", "design system", "billing", "analytics", "support rotation", "compliance"};
+    private static final EventType[] TYPES = {
+            EventType.MEETING, EventType.MEETING, EventType.MEETING, EventType.MEETING,
+            EventType.TASK, EventType.TASK, EventType.TASK, EventType.WORK, EventType.WORK,
+            EventType.APPOINTMENT, EventType.APPOINTMENT, EventType.SCHOOL, EventType.OTHER};
+    private static final EventPrio[] PRIOS = {
+            EventPrio.HIGH, EventPrio.MID, EventPrio.MID, EventPrio.MID, EventPrio.LOW, EventPrio.LOW};
+
+    private final SplittableRandom random;
+    private final LocalDate start;
+    private final int days;
+    private final double[] subjectWeights;
+
+    /**
+     * Creates a generator of events spread over a number of years.
+     *
+     * @param seed The random seed.
+     * @param firstYear The first year events fall in.
+     * @param years The number of years events are spread over.
+     */
+    public EventGenerator(long seed, int firstYear, int years) {
+        this.random = new SplittableRandom(seed);
+        this.start = LocalDate.of(firstYear, 1, 1);
+        this.days = (int) (start.plusYears(years).toEpochDay() - start.toEpochDay());
+        this.subjectWeights = new double[SUBJECTS.length];
+        double total = 0;
+        for (int rank = 0; rank < SUBJECTS.length; rank++) {
+            total += 1.0 / (rank + 1);
+            subjectWeights[rank] = total;
+        }
+        for (int rank = 0; rank < SUBJECTS.length; rank++) {
+            subjectWeights[rank] /= total;
+        }
+    }
+
+    /**
+     * Generates the next event.
+     *
+     * @param id The ID to give the event.
+     * @return The event.
+     */
+    public Event next(int id) {
+        Event event = new Event(description(), TYPES[random.nextInt(TYPES.length)],
+                dateTime(), PRIOS[random.nextInt(PRIOS.length)]);
+        event.setID(id);
+        return event;
+    }
+
+    /**
+     * Picks a random date in the generator's range, mostly on weekdays.
+     *
+     * @return The date.
+     */
+    public LocalDate date() {
+        LocalDate date = start.plusDays(random.nextInt(days));
+        while (date.getDayOfWeek().getValue() >= DayOfWeek.SATURDAY.getValue() && random.nextInt(10) < 8) {
+            date = date.plusDays(2);
+        }
+        return date.isBefore(start.plusDays(days)) ? date : start;
+    }
+
+    private LocalDateTime dateTime() {
+        int hour = random.nextInt(10) < 9 ? 8 + random.nextInt(10) : random.nextInt(24);
+        return date().atTime(hour, 15 * random.nextInt(4));
+    }
+
+    private String description() {
+        double pick = random.nextDouble();
+        int rank = 0;
+        while (subjectWeights[rank] < pick) {
+            rank++;
+        }
+        return SUBJECTS[rank] + " - " + TOPICS[random.nextInt(TOPICS.length)];
+    }
+}
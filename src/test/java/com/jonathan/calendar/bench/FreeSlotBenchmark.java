@@ -0,0 +1,84 @@
+package com.jonathan.calendar.bench;
+
+import com.jonathan.calendar.Calendar;
+import com.jonathan.calendar.FreeSlotFinder;
+import com.jonathan.events.Event;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures finding free slots across many personal calendars, each holding a year of
+ * work events that last between 15 minutes and 2 hours.
+ *
+ * <p>Run with {@code mvn -P benchmarks verify -Djmh.args="FreeSlotBenchmark -p calendars=100,500"}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FreeSlotBenchmark {
+    private static final int FIRST_YEAR = 2024;
+    private static final int EVENTS_PER_CALENDAR = 2_000;
+    private static final int TEAM_SIZE = 12;
+    private static final Duration SLOT = Duration.ofMinutes(30);
+
+    @Param({"100", "300", "500"})
+    public int calendars;
+
+    private List<Calendar> people;
+    private FreeSlotFinder everyone;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        people = new ArrayList<>(calendars);
+        SplittableRandom durations = new SplittableRandom(16);
+        for (int person = 0; person < calendars; person++) {
+            Calendar calendar = new Calendar();
+            EventGenerator generator = new EventGenerator(person, FIRST_YEAR, 1);
+            List<Event> events = new ArrayList<>(EVENTS_PER_CALENDAR);
+            for (int i = 1; i <= EVENTS_PER_CALENDAR; i++) {
+                Event event = generator.next(i);
+                event.setDuration(Duration.ofMinutes(15 * (1 + durations.nextInt(8))));
+                events.add(event);
+            }
+            calendar.scheduleAll(events);
+            people.add(calendar);
+        }
+        everyone = new FreeSlotFinder(people);
+        random = new SplittableRandom(7);
+    }
+
+    private LocalDateTime randomWeek() {
+        return LocalDateTime.of(FIRST_YEAR, 1, 1, 0, 0).plusWeeks(random.nextInt(50));
+    }
+
+    /**
+     * Finds the first free half hour for a team of twelve in a random week.
+     */
+    @Benchmark
+    public FreeSlotFinder.Slot firstFreeSlotForTeam() {
+        List<Calendar> team = new ArrayList<>(TEAM_SIZE);
+        for (int i = 0; i < TEAM_SIZE; i++) {
+            team.add(people.get(random.nextInt(people.size())));
+        }
+        LocalDateTime week = randomWeek();
+        return new FreeSlotFinder(team).firstFreeSlot(week, week.plusWeeks(1), SLOT);
+    }
+
+    /**
+     * Lists every free half hour shared by all calendars in a random week.
+     */
+    @Benchmark
+    public List<FreeSlotFinder.Slot> freeSlotsForEveryone() {
+        LocalDateTime week = randomWeek();
+        return everyone.freeSlots(week, week.plusWeeks(1), SLOT);
+    }
+}
@@ -0,0 +1,96 @@
+package com.jonathan.calendar.bench;
+
+import com.jonathan.calendar.Calendar;
+import com.jonathan.calendar.io.CalendarFile;
+import com.jonathan.events.Event;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures saving and loading calendars as the number of events grows, and reading the binary
+ * format against reading the same events saved with Java serialization, as earlier versions did.
+ * Files are written to a temporary directory that is deleted after each trial.
+ *
+ * <p>Run with {@code mvn -P benchmarks verify -Djmh.args="PersistenceBenchmark -p size=1000,1000000"}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    private Path directory;
+    private Path saved;
+    private Path serialized;
+    private Path target;
+    private Calendar calendar;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("calendar-bench");
+        saved = directory.resolve("saved.cal");
+        target = directory.resolve("target.cal");
+        calendar = CalendarBenchmark.filledCalendar("indexed", size);
+        calendar.saveCalendar(saved);
+        serialized = directory.resolve("serialized.cal");
+        Map<Integer, Event> map = new HashMap<>();
+        for (Event event : calendar.viewAllEvents()) {
+            map.put(event.getID(), event);
+        }
+        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(serialized)))) {
+            oos.writeObject(map);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public Path saveCalendar() throws IOException {
+        calendar.saveCalendar(target);
+        return target;
+    }
+
+    @Benchmark
+    public CalendarFile.Contents readBinary() throws IOException {
+        return CalendarFile.read(saved);
+    }
+
+    @Benchmark
+    public CalendarFile.Contents readSerialized() throws IOException {
+        return CalendarFile.read(serialized);
+    }
+
+    @Benchmark
+    public Calendar loadCalendarEager() throws IOException {
+        Calendar loaded = new Calendar();
+        loaded.loadCalendar(saved, Calendar.LoadMode.EAGER);
+        return loaded;
+    }
+
+    @Benchmark
+    public Calendar loadCalendarMapped() throws IOException {
+        Calendar loaded = new Calendar();
+        loaded.loadCalendar(saved, Calendar.LoadMode.MAPPED);
+        return loaded;
+    }
+}
@@ -0,0 +1,101 @@
+package com.jonathan.calendar.bench;
+
+import com.jonathan.calendar.Calendar;
+import com.jonathan.calendar.server.CalendarServer;
+import com.jonathan.events.Event;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Load test of the HTTP server against localhost: 32 client threads send requests over
+ * kept-alive connections. Throughput mode reports requests per second and sample-time mode
+ * reports the latency percentiles, including p0.99. The server runs with TCP_NODELAY, as under
+ * {@code --serve}.
+ *
+ * <p>Run with {@code mvn -P benchmarks verify -Djmh.args="ServerBenchmark -bm thrpt,sample"}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class ServerBenchmark {
+    private static final int FIRST_YEAR = 2024;
+    private static final int YEARS = 4;
+
+    @Param({"100000"})
+    public int size;
+
+    private CalendarServer server;
+    private HttpClient client;
+    private String base;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Calendar calendar = Calendar.concurrent();
+        EventGenerator generator = new EventGenerator(21, FIRST_YEAR, YEARS);
+        List<Event> events = new ArrayList<>(size);
+        for (int id = 1; id <= size; id++) {
+            events.add(generator.next(id));
+        }
+        calendar.scheduleAll(events);
+        server = new CalendarServer(calendar, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        base = "http://localhost:" + server.getPort() + "/events";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    private String get(String uri) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(uri)).GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    /**
+     * Retrieves a random event by its ID.
+     */
+    @Benchmark
+    public String getEvent() throws IOException, InterruptedException {
+        return get(base + "/" + (1 + ThreadLocalRandom.current().nextInt(size)));
+    }
+
+    /**
+     * Lists the events of a random day, about a hundred with the default size.
+     */
+    @Benchmark
+    public String searchDay() throws IOException, InterruptedException {
+        LocalDate day = LocalDate.of(FIRST_YEAR, 1, 1).plusDays(ThreadLocalRandom.current().nextInt(365 * YEARS));
+        return get(base + "?day=" + day);
+    }
+
+    /**
+     * Schedules a new event.
+     */
+    @Benchmark
+    public String scheduleEvent() throws IOException, InterruptedException {
+        LocalDate day = LocalDate.of(FIRST_YEAR, 1, 1).plusDays(ThreadLocalRandom.current().nextInt(365 * YEARS));
+        String event = "{\"description\": \"Load test\", \"type\": \"WORK\", \"priority\": \"MID\", \"dateTime\": \""
+                + day.atTime(9, 0) + "\"}";
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base))
+                .POST(HttpRequest.BodyPublishers.ofString(event))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+}
@@ -0,0 +1,158 @@
+package com.jonathan.calendar.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.jonathan.calendar.Calendar;
+import com.jonathan.calendar.TestEvents;
+import com.jonathan.calendar.store.ColumnarEventStore;
+import com.jonathan.events.*;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the binary calendar file format, including a comparison with the
+ * Java serialization format it replaces.
+ */
+public class CalendarFileTest {
+    private static final int COMPARISON_EVENTS = 50_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripsEventsAndLastID() throws IOException {
+        List<Event> events = TestEvents.generate(1_000, 42);
+        Event sparse = new Event(null, null, LocalDateTime.of(1969, 7, 20, 20, 17), null);
+        sparse.setID(5_000);
+        events.add(0, sparse);
+        Path path = folder.getRoot().toPath().resolve("roundtrip.cal");
+
+        long written = CalendarFile.write(path, events, 7_000);
+        assertEquals(Files.size(path), written);
+
+        CalendarFile.Contents contents = CalendarFile.read(path);
+        assertEquals(7_000, contents.getLastID());
+        assertTrue(TestEvents.sameEvents(events, contents.getEvents()));
+        assertNull(contents.getEvents().get(0).getType());
+        assertFalse(Files.exists(path.resolveSibling("roundtrip.cal.tmp")));
+    }
+
+    @Test
+    public void readsLegacySerializedCalendars() throws IOException {
+        CalendarFile.Contents contents = CalendarFile.read(Paths.get("src/main/java/com/jonathan/calendars/demo.cal"));
+        assertFalse(contents.getEvents().isEmpty());
+        for (Event event : contents.getEvents()) {
+            assertTrue(event.getID() <= contents.getLastID());
+        }
+    }
+
+    @Test
+    public void binaryFormatIsSmallerThanSerialization() throws IOException {
+        List<Event> events = TestEvents.generate(COMPARISON_EVENTS, 42);
+        Path binary = folder.getRoot().toPath().resolve("binary.cal");
+        Path legacy = folder.getRoot().toPath().resolve("legacy.cal");
+        CalendarFile.write(binary, events, COMPARISON_EVENTS);
+        Map<Integer, Event> map = new HashMap<>();
+        for (Event event : events) {
+            map.put(event.getID(), event);
+        }
+        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(legacy)))) {
+            oos.writeObject(map);
+        }
+
+        assertEquals(COMPARISON_EVENTS, CalendarFile.read(binary).getEvents().size());
+        assertEquals(COMPARISON_EVENTS, CalendarFile.read(legacy).getEvents().size());
+        assertTrue(Files.size(binary) * 2 < Files.size(legacy));
+    }
+
+    @Test
+    public void recurringEventsSurviveSavesLoadsAndTheJournal() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("series.cal");
+        Calendar calendar = new Calendar();
+        calendar.openJournal(path, Journal.FsyncPolicy.NEVER);
+        List<Event> events = TestEvents.generate(500, 3);
+        calendar.scheduleAll(events);
+        Event review = new Event("Review", EventType.WORK, LocalDateTime.of(2021, 6, 30, 16, 0), EventPrio.HIGH);
+        review.setID(calendar.allocateID());
+        review.setRecurrence(new Recurrence(Recurrence.Frequency.MONTHLY, 2, 12,
+                LocalDateTime.of(2022, 12, 31, 23, 59), List.of(LocalDate.of(2021, 10, 30))));
+        calendar.scheduleEvent(review);
+        Event moved = events.get(10).occurrenceAt(events.get(10).getDateTime());
+        moved.setRecurrence(new Recurrence(Recurrence.Frequency.DAILY, 1));
+        calendar.updateEvent(moved);
+        calendar.closeJournal();
+
+        Calendar replayed = new Calendar();
+        replayed.openJournal(path, Journal.FsyncPolicy.NEVER);
+        assertTrue(TestEvents.sameEvents(calendar.viewAllEvents(), replayed.viewAllEvents()));
+        replayed.saveCalendar(path);
+        replayed.closeJournal();
+
+        for (Calendar.LoadMode mode : Calendar.LoadMode.values()) {
+            Calendar loaded = new Calendar();
+            loaded.loadCalendar(path, mode);
+            assertEquals(501, loaded.numEvents());
+            assertEquals(501, loaded.getIDNum());
+            assertTrue(TestEvents.sameEvents(calendar.viewAllEvents(), loaded.viewAllEvents()));
+            LocalDateTime from = LocalDateTime.of(2021, 1, 1, 0, 0);
+            assertTrue(TestEvents.sameEvents(calendar.eventsBetween(from, from.plusYears(1)),
+                    loaded.eventsBetween(from, from.plusYears(1))));
+            assertEquals(1, loaded.searchEventsByDescription("review").stream()
+                    .filter(event -> event.getRecurrence() != null).count());
+        }
+    }
+
+    @Test
+    public void durationsSurviveSavesLoadsAndTheJournal() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("durations.cal");
+        List<Event> events = TestEvents.generate(400, 15);
+        for (int i = 0; i < events.size(); i += 3) {
+            events.get(i).setDuration(Duration.ofMinutes(15 + i));
+        }
+        events.get(9).setRecurrence(new Recurrence(Recurrence.Frequency.WEEKLY, 1, 10, null, List.of()));
+        Calendar calendar = new Calendar();
+        calendar.scheduleAll(events);
+        calendar.saveCalendar(path);
+
+        Calendar journaled = new Calendar(ColumnarEventStore::new);
+        journaled.openJournal(path, Journal.FsyncPolicy.NEVER);
+        Event longer = journaled.getEventByID(events.get(1).getID());
+        longer.setDuration(Duration.ofHours(5));
+        journaled.updateEvent(longer);
+        Event shorter = journaled.getEventByID(events.get(0).getID());
+        shorter.setDuration(null);
+        journaled.updateEvent(shorter);
+        assertTrue(TestEvents.sameEvent(longer, journaled.getEventByID(longer.getID())));
+        journaled.closeJournal();
+        calendar.updateEvent(longer);
+        calendar.updateEvent(shorter);
+
+        Calendar replayed = new Calendar();
+        replayed.openJournal(path, Journal.FsyncPolicy.NEVER);
+        assertTrue(TestEvents.sameEvents(calendar.viewAllEvents(), replayed.viewAllEvents()));
+        replayed.saveCalendar(path);
+        replayed.closeJournal();
+
+        LocalDateTime from = LocalDateTime.of(2020, 1, 1, 0, 0);
+        for (Calendar.LoadMode mode : Calendar.LoadMode.values()) {
+            Calendar loaded = new Calendar();
+            loaded.loadCalendar(path, mode);
+            assertTrue(TestEvents.sameEvents(calendar.viewAllEvents(), loaded.viewAllEvents()));
+            assertEquals(calendar.findConflicts(from, from.plusYears(5)).toString(),
+                    loaded.findConflicts(from, from.plusYears(5)).toString());
+            assertEquals(calendar.conflictsWith(longer).size(), loaded.conflictsWith(longer).size());
+        }
+    }
+}
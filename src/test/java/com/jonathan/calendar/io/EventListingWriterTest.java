@@ -0,0 +1,78 @@
+package com.jonathan.calendar.io;
+
+import static org.junit.Assert.assertEquals;
+
+import com.jonathan.calendar.Calendar;
+import com.jonathan.calendar.TestEvents;
+import com.jonathan.events.*;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Test;
+
+/**
+ * Unit tests for streaming event listings page by page.
+ */
+public class EventListingWriterTest {
+    private static final String NL = System.lineSeparator();
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final PrintStream out = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+
+    private static String legacyFormat(Event event) {
+        return "Event{ id = " + event.getID() + ", description = '" + event.getDescription() + "'"
+                + ", type = " + event.getType() + ", prio = " + event.getPriority()
+                + ", date = " + event.getDateTime().format(Event.DATE_FORMAT)
+                + ", time = " + event.getDateTime().format(Event.TIME_FORMAT) + " }";
+    }
+
+    @Test
+    public void formatsEventsLikeTheDateTimeFormatters() {
+        List<Event> events = new ArrayList<>(TestEvents.generate(2_000, 5));
+        events.add(new Event(null, null, LocalDateTime.of(12_345, 1, 2, 3, 4), null));
+        events.add(new Event("Ancient", EventType.OTHER, LocalDateTime.of(0, 12, 31, 23, 59), EventPrio.LOW));
+        events.add(new Event("Early", EventType.TASK, LocalDateTime.of(7, 7, 7, 0, 0), EventPrio.HIGH));
+        for (Event event : events) {
+            assertEquals(legacyFormat(event), event.toString());
+        }
+    }
+
+    @Test
+    public void printsOnePageOfAStreamedListing() {
+        Calendar calendar = new Calendar();
+        List<Event> events = TestEvents.generate(50_000, 3);
+        calendar.scheduleAll(events);
+
+        long written = new EventListingWriter(out, 49_990, 5).write("All Events:", calendar.streamAllEvents(), "None.");
+
+        assertEquals(5, written);
+        String expected = "All Events:" + NL + events.subList(49_990, 49_995).stream()
+                .map(EventListingWriterTest::legacyFormat).collect(Collectors.joining(NL)) + NL
+                + "More events follow; use --offset 49995 to see the next page." + NL;
+        assertEquals(expected, bytes.toString(StandardCharsets.UTF_8));
+
+        bytes.reset();
+        EnumSet<EventType> types = EnumSet.of(EventType.MEETING, EventType.SCHOOL);
+        List<Event> ofTypes = calendar.searchEventsByType(types);
+        assertEquals(ofTypes.size() - 2, new EventListingWriter(out, 2, 1_000_000)
+                .write("Types:", calendar.streamEventsByType(types), "None."));
+        assertEquals("Types:" + NL + ofTypes.subList(2, ofTypes.size()).stream()
+                .map(event -> event + NL).collect(Collectors.joining()), bytes.toString(StandardCharsets.UTF_8));
+
+        bytes.reset();
+        new EventListingWriter(out).write("Day:", calendar.streamEventsOn(LocalDate.of(1999, 1, 1)), "None.");
+        assertEquals("None." + NL, bytes.toString(StandardCharsets.UTF_8));
+
+        assertEquals(calendar.viewEventsByPriority(), calendar.streamEventsByPriority().collect(Collectors.toList()));
+        assertEquals(calendar.searchEventsByYear(2022), calendar.streamEventsByYear(2022).collect(Collectors.toList()));
+        LocalDateTime from = LocalDateTime.of(2021, 2, 3, 4, 5);
+        assertEquals(calendar.eventsBetween(from, from.plusDays(9)),
+                calendar.streamEventsBetween(from, from.plusDays(9)).collect(Collectors.toList()));
+        assertEquals(0, new EventListingWriter(out).write("", Stream.empty(), ""));
+    }
+}
@@ -0,0 +1,118 @@
+package com.jonathan.calendar.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.jonathan.calendar.Calendar;
+import com.jonathan.calendar.TestEvents;
+import com.jonathan.events.*;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the change journal and for calendars opened in journal mode.
+ */
+public class JournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replaysAppendedRecordsInOrder() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("events.journal");
+        List<Event> events = TestEvents.generate(200, 3);
+        Event sparse = new Event(null, null, LocalDateTime.of(2024, 2, 29, 12, 0), null);
+        sparse.setID(500);
+        events.add(sparse);
+        try (Journal journal = Journal.open(path, Journal.FsyncPolicy.NEVER, 0)) {
+            for (Event event : events) {
+                journal.appendPut(event);
+            }
+            journal.appendRemove(17);
+        }
+
+        List<Event> replayed = new ArrayList<>();
+        List<Integer> removed = new ArrayList<>();
+        assertEquals(events.size() + 1, Journal.replay(path, replayed::add, removed::add));
+        assertTrue(TestEvents.sameEvents(events, replayed));
+        assertEquals(List.of(17), removed);
+    }
+
+    @Test
+    public void discardsTornRecordAtTheEnd() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("torn.journal");
+        List<Event> events = TestEvents.generate(10, 5);
+        try (Journal journal = Journal.open(path, Journal.FsyncPolicy.ALWAYS, 0)) {
+            for (Event event : events) {
+                journal.appendPut(event);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        assertEquals(9, Journal.replay(path, event -> { }, id -> { }));
+
+        try (Journal journal = Journal.open(path, Journal.FsyncPolicy.ALWAYS, 0)) {
+            journal.appendRemove(1);
+        }
+        List<Integer> removed = new ArrayList<>();
+        assertEquals(10, Journal.replay(path, event -> { }, removed::add));
+        assertEquals(List.of(1), removed);
+    }
+
+    @Test
+    public void journalModeRestoresChangesWithoutSaving() throws IOException {
+        Path snapshot = folder.getRoot().toPath().resolve("work.cal");
+        Calendar calendar = new Calendar();
+        calendar.openJournal(snapshot, Journal.FsyncPolicy.PERIODIC);
+        List<Event> events = TestEvents.generate(100, 11);
+        for (Event event : events) {
+            calendar.scheduleEvent(event);
+        }
+        Event moved = new Event("Moved", EventType.WORK, LocalDateTime.of(2030, 1, 1, 9, 0), EventPrio.HIGH);
+        moved.setID(5);
+        calendar.updateEvent(moved);
+        calendar.removeEvent(6);
+        calendar.closeJournal();
+
+        Calendar reopened = new Calendar();
+        reopened.openJournal(snapshot, Journal.FsyncPolicy.PERIODIC);
+        assertTrue(TestEvents.sameEvents(calendar.viewAllEvents(), reopened.viewAllEvents()));
+        assertNull(reopened.getEventByID(6));
+        assertEquals(100, reopened.getIDNum());
+        assertFalse(Files.exists(snapshot));
+        reopened.closeJournal();
+    }
+
+    @Test
+    public void compactionFoldsTheJournalIntoTheSnapshot() throws Exception {
+        Path snapshot = folder.getRoot().toPath().resolve("compacted.cal");
+        Calendar calendar = new Calendar();
+        calendar.openJournal(snapshot, Journal.FsyncPolicy.NEVER);
+        calendar.setJournalCompactionThreshold(4_096);
+        for (Event event : TestEvents.generate(1_000, 13)) {
+            calendar.scheduleEvent(event);
+        }
+        calendar.compactJournal().get();
+        calendar.removeEvent(1);
+        calendar.closeJournal();
+
+        assertTrue(Files.exists(snapshot));
+        assertFalse(Files.exists(Journal.compactingJournalFor(snapshot)));
+        assertTrue(Files.size(Journal.journalFor(snapshot)) < 4_096);
+        Calendar reopened = new Calendar();
+        reopened.openJournal(snapshot, Journal.FsyncPolicy.NEVER);
+        assertEquals(999, reopened.numEvents());
+        assertTrue(TestEvents.sameEvents(calendar.viewAllEvents(), reopened.viewAllEvents()));
+        reopened.closeJournal();
+    }
+}
@@ -0,0 +1,124 @@
+package com.jonathan.calendar.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.jonathan.calendar.Calendar;
+import com.jonathan.calendar.TestEvents;
+import com.jonathan.calendar.metrics.CalendarMetrics.Operation;
+import com.jonathan.events.*;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Stream;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the histograms behind the calendar metrics and for what a calendar records in them.
+ */
+public class CalendarMetricsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void percentilesStayWithinABucketOfTheExactValues() throws InterruptedException {
+        Histogram histogram = new Histogram();
+        Random random = new Random(19);
+        long[] values = new long[200_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 30);
+        }
+        Thread[] writers = new Thread[4];
+        for (int w = 0; w < writers.length; w++) {
+            int first = w;
+            writers[w] = new Thread(() -> {
+                for (int i = first; i < values.length; i += writers.length) {
+                    histogram.record(values[i]);
+                }
+            });
+            writers[w].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, histogram.count());
+        assertEquals(Arrays.stream(values).sum(), histogram.sum());
+        assertEquals(values[values.length - 1], histogram.max());
+        assertEquals(values[values.length - 1], histogram.valueAtPercentile(100));
+        for (double percentile : new double[] {0, 1, 25, 50, 90, 99, 99.9}) {
+            long exact = values[Math.max(0, (int) Math.ceil(percentile / 100 * values.length) - 1)];
+            long reported = histogram.valueAtPercentile(percentile);
+            assertTrue(percentile + ": " + reported + " vs " + exact, reported >= exact && reported <= exact + exact / 8);
+        }
+        for (long value = 0; value < 1_000_000; value += 1 + value / 3) {
+            int bucket = Histogram.bucketOf(value);
+            assertTrue(value <= Histogram.highestValueIn(bucket));
+            assertTrue(bucket == 0 || value > Histogram.highestValueIn(bucket - 1));
+        }
+        assertEquals(Long.MAX_VALUE, Histogram.highestValueIn(Histogram.bucketOf(Long.MAX_VALUE)));
+        assertEquals(0, new Histogram().valueAtPercentile(50));
+    }
+
+    @Test
+    public void calendarOperationsAreRecordedAndPublished() throws IOException, JMException {
+        Calendar calendar = new Calendar();
+        List<Event> events = TestEvents.generate(1_000, 19);
+        calendar.scheduleAll(events);
+        Event event = new Event("Review", EventType.WORK, LocalDate.of(2021, 3, 4).atTime(10, 0), EventPrio.MID);
+        event.setID(calendar.allocateID());
+        calendar.scheduleEvent(event);
+        calendar.removeEvent(event.getID());
+        int found = 0;
+        for (int day = 1; day <= 28; day++) {
+            found += calendar.searchEventsByDay(LocalDate.of(2021, 2, day)).size();
+        }
+        try (Stream<Event> all = calendar.streamAllEvents()) {
+            all.limit(10).forEach(listed -> { });
+        }
+        assertTrue(calendar.findConflicts(event.getDateTime(), event.getDateTime()).isEmpty());
+        Path path = folder.getRoot().toPath().resolve("metrics.cal");
+        calendar.saveCalendar(path);
+        calendar.loadCalendar(path);
+
+        CalendarMetrics metrics = calendar.getMetrics();
+        assertEquals(1, metrics.latency(Operation.SCHEDULE_ALL).count());
+        assertEquals(1, metrics.latency(Operation.SCHEDULE).count());
+        assertEquals(1, metrics.latency(Operation.REMOVE).count());
+        assertEquals(28, metrics.latency(Operation.SEARCH_BY_DAY).count());
+        assertEquals(found, metrics.resultSizes(Operation.SEARCH_BY_DAY).sum());
+        assertEquals(10, metrics.resultSizes(Operation.VIEW_ALL).sum());
+        assertEquals(1_000, metrics.resultSizes(Operation.LOAD).max());
+        assertEquals(Files.size(path), metrics.getBytesWritten());
+        assertEquals(Files.size(path), metrics.getBytesRead());
+        assertTrue(metrics.latency(Operation.SAVE).max() > 0);
+        assertEquals(1, metrics.latency(Operation.FIND_CONFLICTS).count());
+        assertEquals(0, metrics.latency(Operation.UPDATE).count());
+        assertEquals(Set.of("SCHEDULE", "SCHEDULE_ALL", "REMOVE", "VIEW_ALL", "SEARCH_BY_DAY", "FIND_CONFLICTS",
+                        "SAVE", "LOAD"),
+                metrics.getOperations().keySet());
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = metrics.register("metrics test");
+        try {
+            assertEquals(Files.size(path), server.getAttribute(name, "BytesWritten"));
+            TabularData operations = (TabularData) server.getAttribute(name, "Operations");
+            CompositeData days = (CompositeData) operations.get(new Object[] {"SEARCH_BY_DAY"}).get("value");
+            assertEquals(28L, days.get("count"));
+            assertEquals(name, new Calendar().getMetrics().register("metrics test"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.jonathan.calendar.reminders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.jonathan.calendar.Calendar;
+import com.jonathan.events.*;
+import java.time.*;
+import java.util.*;
+import org.junit.Test;
+
+/**
+ * Tests for the timer wheel and for the reminders a calendar schedules on it,
+ * driven step by step by a clock the test moves forward.
+ */
+public class ReminderSchedulerTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 5, 6, 8, 0);
+
+    /**
+     * A clock that only moves when the test sets it.
+     */
+    private static final class ManualClock extends Clock {
+        private Instant now;
+
+        ManualClock(LocalDateTime start) {
+            set(start);
+        }
+
+        void set(LocalDateTime dateTime) {
+            now = dateTime.toInstant(ZoneOffset.UTC);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    @Test
+    public void wheelExpiresEveryTimeoutAtItsTickAcrossAllLevels() {
+        Random random = new Random(20);
+        long start = 1_700_000_000L;
+        TimerWheel<Integer> wheel = new TimerWheel<>(start);
+        Map<Integer, TimerWheel.Timeout<Integer>> timeouts = new HashMap<>();
+        TreeMap<Long, Set<Integer>> expected = new TreeMap<>();
+        long now = start;
+        int next = 0;
+        for (int round = 0; round < 2_000; round++) {
+            for (int i = 0; i < 20; i++) {
+                int value = next++;
+                long delay = (long) Math.pow(2, random.nextDouble() * 24) - 4;
+                TimerWheel.Timeout<Integer> timeout = wheel.schedule(now + delay, value);
+                timeouts.put(value, timeout);
+                expected.computeIfAbsent(Math.max(now, now + delay), tick -> new HashSet<>()).add(value);
+            }
+            for (int i = 0; i < 5; i++) {
+                TimerWheel.Timeout<Integer> timeout = timeouts.get(random.nextInt(next));
+                boolean pending = expected.values().stream().anyMatch(due -> due.contains(timeout.getValue()));
+                assertEquals(pending, wheel.cancel(timeout));
+                expected.values().forEach(due -> due.remove(timeout.getValue()));
+            }
+            now += random.nextInt(round % 100 == 0 ? 100_000 : 500);
+            Set<Integer> due = new HashSet<>();
+            for (Set<Integer> values : expected.headMap(now, true).values()) {
+                due.addAll(values);
+            }
+            expected.headMap(now, true).clear();
+            List<Integer> expired = wheel.advance(now);
+            assertEquals(due, new HashSet<>(expired));
+            assertEquals(due.size(), expired.size());
+            assertEquals(now, wheel.currentTick());
+            assertEquals(expected.values().stream().mapToInt(Set::size).sum(), wheel.size());
+        }
+        assertTrue(wheel.size() > 100);
+    }
+
+    @Test
+    public void calendarChangesRescheduleRemindersByPriority() {
+        ManualClock clock = new ManualClock(START);
+        List<Reminder> fired = new ArrayList<>();
+        ReminderScheduler reminders = new ReminderScheduler(clock, Duration.ofSeconds(1),
+                ReminderScheduler.DEFAULT_LEAD_TIMES, Runnable::run);
+        reminders.addHandler(fired::add);
+        Calendar calendar = new Calendar();
+        Event past = new Event("Breakfast", EventType.OTHER, START.minusHours(1), EventPrio.LOW);
+        past.setID(calendar.allocateID());
+        calendar.scheduleEvent(past);
+        calendar.setReminders(reminders);
+        assertEquals(0, reminders.pending());
+
+        Event review = new Event("Review", EventType.WORK, START.plusHours(2), EventPrio.HIGH);
+        review.setID(calendar.allocateID());
+        calendar.scheduleEvent(review);
+        Event gym = new Event("Gym", EventType.OTHER, START.plusMinutes(3), EventPrio.LOW);
+        gym.setID(calendar.allocateID());
+        calendar.scheduleEvent(gym);
+        Event standup = new Event("Standup", EventType.MEETING, START.plusMinutes(30), EventPrio.MID);
+        standup.setID(calendar.allocateID());
+        standup.setRecurrence(new Recurrence(Recurrence.Frequency.DAILY, 1, 3, null, List.of()));
+        calendar.scheduleEvent(standup);
+        assertEquals(3, reminders.pending());
+
+        assertEquals(1, reminders.advance());
+        assertEquals(gym, fired.get(0).getEvent());
+        assertEquals(START, fired.get(0).getRemindAt());
+
+        clock.set(START.plusMinutes(15).minusSeconds(1));
+        assertEquals(0, reminders.advance());
+        clock.set(START.plusMinutes(15));
+        assertEquals(1, reminders.advance());
+        assertEquals(START.plusMinutes(30), fired.get(1).getEvent().getDateTime());
+
+        Event moved = new Event("Review", EventType.WORK, START.plusHours(3), EventPrio.HIGH);
+        moved.setID(review.getID());
+        calendar.updateEvent(moved);
+        clock.set(START.plusHours(1));
+        assertEquals(0, reminders.advance());
+        clock.set(START.plusHours(2));
+        assertEquals(1, reminders.advance());
+        assertEquals(moved, fired.get(2).getEvent());
+
+        calendar.removeEvent(gym.getID());
+        clock.set(START.plusDays(1).plusMinutes(15));
+        assertEquals(1, reminders.advance());
+        assertEquals(START.plusDays(1).plusMinutes(30), fired.get(3).getEvent().getDateTime());
+        calendar.removeEvent(standup.getID());
+        clock.set(START.plusDays(5));
+        assertEquals(0, reminders.advance());
+        assertEquals(0, reminders.pending());
+        assertEquals(4, fired.size());
+        reminders.close();
+    }
+}
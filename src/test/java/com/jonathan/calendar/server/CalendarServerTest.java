@@ -0,0 +1,197 @@
+package com.jonathan.calendar.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.jonathan.calendar.Calendar;
+import com.jonathan.calendar.TestEvents;
+import com.jonathan.calendar.store.PersistentEventStore;
+import com.jonathan.events.*;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the HTTP API: every endpoint against the calendar it serves, and several requests on one connection.
+ */
+public class CalendarServerTest {
+    private Calendar calendar;
+    private CalendarServer server;
+    private HttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        calendar = Calendar.concurrent();
+        calendar.scheduleAll(TestEvents.generate(5_000, 21));
+        server = new CalendarServer(calendar, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String json(List<Event> events) {
+        StringBuilder json = new StringBuilder("[");
+        for (Event event : events) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            EventJson.appendTo(json, event);
+        }
+        return json.append(']').toString();
+    }
+
+    @Test
+    public void endpointsAnswerLikeTheCalendar() throws IOException, InterruptedException {
+        String uncached = send("GET", "/events?year=2023", null).body();
+        assertEquals(0, calendar.getQueryCache().size());
+        assertEquals(json(calendar.searchEventsByYear(2023)), uncached);
+        HttpResponse<String> all = send("GET", "/events", null);
+        assertEquals(200, all.statusCode());
+        assertEquals(json(calendar.viewAllEvents()), all.body());
+        LocalDate day = LocalDate.of(2021, 7, 14);
+        assertEquals(json(calendar.searchEventsByDay(day)), send("GET", "/events?day=2021-07-14", null).body());
+        assertEquals(json(calendar.searchEventsByYear(2022)), send("GET", "/events?year=2022", null).body());
+        assertEquals(json(calendar.searchEventsByType(EnumSet.of(EventType.WORK, EventType.TASK))),
+                send("GET", "/events?type=work,TASK", null).body());
+        assertEquals(json(calendar.searchEventsByDescription("gym #4")),
+                send("GET", "/events?description=gym%20%234", null).body());
+
+        String review = "{\"description\": \"Review \\\"Q3\\\"\", \"type\": \"WORK\", \"priority\": \"HIGH\","
+                + " \"dateTime\": \"2030-01-07T10:00\", \"duration\": 60,"
+                + " \"recurrence\": {\"frequency\": \"WEEKLY\", \"interval\": 1, \"count\": 4, \"exceptions\": [\"2030-01-14\"]}}";
+        HttpResponse<String> created = send("POST", "/events", review);
+        assertEquals(201, created.statusCode());
+        int id = calendar.getIDNum();
+        Event scheduled = calendar.getEventByID(id);
+        assertEquals("Review \"Q3\"", scheduled.getDescription());
+        assertEquals(Duration.ofHours(1), scheduled.getDuration());
+        assertEquals(Set.of(LocalDate.of(2030, 1, 14)), scheduled.getRecurrence().getExceptions());
+        assertEquals("{\"event\":" + EventJson.appendTo(new StringBuilder(), scheduled) + ",\"conflicts\":[]}", created.body());
+        assertTrue(TestEvents.sameEvent(scheduled, EventJson.parse(EventJson.appendTo(new StringBuilder(), scheduled).toString())));
+
+        String overlapping = "{\"description\": \"Dentist\", \"type\": \"APPOINTMENT\", \"priority\": \"MID\","
+                + " \"dateTime\": \"2030-01-21T10:30\", \"duration\": 30}";
+        HttpResponse<String> updated = send("PUT", "/events/" + id, review.replace("2030-01-07", "2030-01-21"));
+        assertEquals(200, updated.statusCode());
+        assertEquals(LocalDateTime.of(2030, 1, 21, 10, 0), calendar.getEventByID(id).getDateTime());
+        HttpResponse<String> conflicting = send("POST", "/events", overlapping);
+        assertTrue(conflicting.body().contains(",\"conflicts\":[{\"id\":" + id + ","));
+
+        assertEquals(200, send("GET", "/events/" + id, null).statusCode());
+        assertEquals(200, send("DELETE", "/events/" + id, null).statusCode());
+        assertEquals(404, send("GET", "/events/" + id, null).statusCode());
+        assertEquals(404, send("DELETE", "/events/" + id, null).statusCode());
+        assertEquals(404, send("PUT", "/events/" + id, overlapping).statusCode());
+
+        HttpResponse<String> invalid = send("POST", "/events", "{\"description\": \"No date\", \"type\": \"WORK\", \"priority\": \"LOW\"}");
+        assertEquals(400, invalid.statusCode());
+        assertEquals("{\"error\":\"Missing or invalid \\\"dateTime\\\"\"}", invalid.body());
+        assertEquals(400, send("POST", "/events", "{\"description\": ").statusCode());
+        assertEquals(400, send("GET", "/events?day=14-07-2021", null).statusCode());
+        assertEquals(400, send("GET", "/events/seven", null).statusCode());
+        assertEquals(405, send("PATCH", "/events", "{}").statusCode());
+    }
+
+    @Test
+    public void listingThatFailsMidwayDropsTheConnectionInsteadOfEndingTheResponse() throws Exception {
+        PersistentEventStore failing = new PersistentEventStore() {
+            @Override
+            public Stream<Event> stream() {
+                AtomicInteger read = new AtomicInteger();
+                return super.stream().peek(event -> {
+                    if (read.incrementAndGet() == 2_000) {
+                        throw new UncheckedIOException(new IOException("Segment unreadable"));
+                    }
+                });
+            }
+        };
+        Calendar broken = new Calendar(failing);
+        broken.scheduleAll(TestEvents.generate(5_000, 21));
+        try (CalendarServer brokenServer = new CalendarServer(broken, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            brokenServer.start();
+            URI events = URI.create("http://localhost:" + brokenServer.getPort() + "/events");
+            try {
+                client.send(HttpRequest.newBuilder(events).build(), HttpResponse.BodyHandlers.ofString());
+                fail("A listing cut short must not arrive as a complete response");
+            } catch (IOException expected) {
+                // The connection was closed before the last chunk.
+            }
+            HttpResponse<String> day = client.send(HttpRequest.newBuilder(URI.create(events + "?day=2021-07-14")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, day.statusCode());
+            assertEquals(json(broken.searchEventsByDay(LocalDate.of(2021, 7, 14))), day.body());
+        }
+    }
+
+    @Test
+    public void pipelinedRequestsOnOneConnectionAreAnsweredInOrder() throws IOException {
+        int[] ids = {17, 4_999, 123456};
+        StringBuilder requests = new StringBuilder();
+        for (int id : ids) {
+            requests.append("GET /events/").append(id).append(" HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        }
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            socket.getOutputStream().write(requests.toString().getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().flush();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            for (int id : ids) {
+                String status = readLine(in);
+                int length = -1;
+                for (String header = readLine(in); !header.isEmpty(); header = readLine(in)) {
+                    if (header.toLowerCase(Locale.ROOT).startsWith("content-length:")) {
+                        length = Integer.parseInt(header.substring("content-length:".length()).trim());
+                    }
+                }
+                byte[] body = new byte[length];
+                in.readFully(body);
+                Event event = calendar.getEventByID(id);
+                if (event == null) {
+                    assertEquals("HTTP/1.1 404 Not Found", status);
+                } else {
+                    assertEquals("HTTP/1.1 200 OK", status);
+                    assertEquals(EventJson.appendTo(new StringBuilder(), event).toString(), new String(body, StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int c = in.read(); c != '\n'; c = in.read()) {
+            if (c < 0) {
+                throw new EOFException();
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+}
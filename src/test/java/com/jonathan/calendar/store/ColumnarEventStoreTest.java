@@ -0,0 +1,88 @@
+package com.jonathan.calendar.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.jonathan.calendar.TestEvents;
+import com.jonathan.events.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import org.junit.Test;
+
+/**
+ * Tests for the columnar store: it must answer queries like the indexed store through
+ * any sequence of changes, and hold the same events in less heap than the event objects would take.
+ */
+public class ColumnarEventStoreTest {
+    private static final int FOOTPRINT_EVENTS = 200_000;
+    /**
+     * The least heap an event object with its date and time takes on a 64-bit JVM with compressed
+     * references: the Event, its LocalDateTime and the LocalDate and LocalTime inside it, without
+     * its description or any index.
+     */
+    private static final int EVENT_OBJECT_BYTES = 32 + 24 + 24 + 24;
+
+    static void assertSameQueries(EventStore expected, EventStore actual) {
+        assertEquals(expected.size(), actual.size());
+        assertTrue(TestEvents.sameEvents(expected.all(), actual.all()));
+        LocalDateTime from = LocalDateTime.of(2021, 3, 4, 10, 30, 15);
+        LocalDateTime to = LocalDateTime.of(2021, 6, 1, 0, 0);
+        assertTrue(TestEvents.sameEvents(expected.between(from, to), actual.between(from, to)));
+        LocalDate day = expected.all().get(expected.size() / 2).getDateTime().toLocalDate();
+        assertTrue(TestEvents.sameEvents(expected.onDay(day), actual.onDay(day)));
+        assertTrue(TestEvents.sameEvents(expected.inYear(2023), actual.inYear(2023)));
+        EnumSet<EventType> types = EnumSet.of(EventType.APPOINTMENT, EventType.WORK);
+        assertTrue(TestEvents.sameEvents(expected.ofTypes(types), actual.ofTypes(types)));
+        assertTrue(TestEvents.sameEvents(expected.byPriority(), actual.byPriority()));
+        for (String keyword : List.of("dentist #1", "MANAGER", "#")) {
+            assertTrue(TestEvents.sameEvents(expected.matching(keyword), actual.matching(keyword)));
+        }
+    }
+
+    @Test
+    public void answersQueriesLikeTheIndexedStoreThroughChanges() {
+        IndexedEventStore expected = new IndexedEventStore();
+        ColumnarEventStore actual = new ColumnarEventStore();
+        List<Event> events = TestEvents.generate(20_000, 9);
+        Random random = new Random(9);
+        for (int round = 0; round < 4; round++) {
+            for (Event event : events.subList(round * 5_000, (round + 1) * 5_000)) {
+                expected.put(event);
+                actual.put(event);
+            }
+            for (int i = 0; i < 1_500; i++) {
+                int id = 1 + random.nextInt((round + 1) * 5_000);
+                if (random.nextBoolean()) {
+                    assertEquals(expected.remove(id) == null, actual.remove(id) == null);
+                } else if (expected.get(id) != null) {
+                    Event moved = new Event("Moved " + i, EventType.WORK,
+                            expected.get(id).getDateTime().plusMinutes(random.nextInt(3) - 1), EventPrio.LOW);
+                    moved.setID(id);
+                    assertTrue(TestEvents.sameEvent(expected.put(moved), actual.put(moved)));
+                }
+            }
+            assertSameQueries(expected, actual);
+        }
+
+        Event sparse = new Event(null, null, LocalDateTime.of(2020, 5, 5, 5, 5), null);
+        sparse.setID(-7);
+        actual.put(sparse);
+        assertTrue(TestEvents.sameEvent(sparse, actual.get(-7)));
+        assertNotSame(actual.get(-7), actual.get(-7));
+        assertNull(actual.get(123_456));
+    }
+
+    @Test
+    public void holdsEventsInFewerBytesThanTheEventObjects() {
+        ColumnarEventStore store = new ColumnarEventStore();
+        for (Event event : TestEvents.generate(FOOTPRINT_EVENTS, 1)) {
+            store.put(event);
+        }
+        store.all();
+        assertEquals(FOOTPRINT_EVENTS, store.size());
+        assertTrue(store.footprint() < (long) FOOTPRINT_EVENTS * EVENT_OBJECT_BYTES);
+    }
+}
@@ -0,0 +1,336 @@
+package com.jonathan.calendar.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.jonathan.calendar.Calendar;
+import com.jonathan.calendar.TestEvents;
+import com.jonathan.events.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Tests for the concurrent store: it must answer queries like the indexed store, writers must
+ * keep making progress while readers run, and a concurrent calendar shared by many threads must
+ * neither lose updates nor hand out an ID twice.
+ */
+public class ConcurrentEventStoreTest {
+    private static final int WRITERS = 8;
+    private static final int READERS = 4;
+    private static final int OPERATIONS = 3_000;
+    private static final int SHARED_IDS = 16;
+    private static final int ROUNDS = 200;
+
+    private static void assertSameQueries(EventStore expected, EventStore actual) {
+        assertEquals(expected.size(), actual.size());
+        assertTrue(TestEvents.sameEvents(expected.all(), actual.all()));
+        LocalDateTime from = LocalDateTime.of(2021, 3, 4, 10, 30);
+        LocalDateTime to = LocalDateTime.of(2021, 6, 1, 0, 0);
+        assertTrue(TestEvents.sameEvents(expected.between(from, to), actual.between(from, to)));
+        for (Event event : expected.all().subList(0, Math.min(20, expected.size()))) {
+            LocalDate day = event.getDateTime().toLocalDate();
+            assertTrue(TestEvents.sameEvents(expected.onDay(day), actual.onDay(day)));
+        }
+        assertTrue(TestEvents.sameEvents(expected.inYear(2022), actual.inYear(2022)));
+        EnumSet<EventType> types = EnumSet.of(EventType.MEETING, EventType.SCHOOL);
+        assertTrue(TestEvents.sameEvents(expected.ofTypes(types), actual.ofTypes(types)));
+        assertTrue(TestEvents.sameEvents(expected.byPriority(), actual.byPriority()));
+        for (String keyword : List.of("review #4", "gym", "1:1", "#")) {
+            assertTrue(TestEvents.sameEvents(expected.matching(keyword), actual.matching(keyword)));
+        }
+    }
+
+    @Test
+    public void answersQueriesLikeTheIndexedStore() {
+        IndexedEventStore expected = new IndexedEventStore();
+        ConcurrentEventStore actual = new ConcurrentEventStore();
+        List<Event> events = TestEvents.generate(3_000, 21);
+        Random random = new Random(21);
+        for (Event event : events) {
+            for (EventStore store : List.of(expected, actual)) {
+                store.put(event);
+            }
+            if (random.nextInt(4) == 0) {
+                int id = 1 + random.nextInt(event.getID());
+                assertSame(expected.remove(id), actual.remove(id));
+            }
+        }
+
+        assertSameQueries(expected, actual);
+    }
+
+    /**
+     * Readers keep listing a large store while writers change it. Writes must complete while
+     * reads are running, and every read must see the store as it was between two writes: each
+     * writer puts its events in pairs within one batch, so a read never sees half a pair.
+     */
+    @Test
+    public void writersKeepMakingProgressWhileReadersRun() throws Exception {
+        ConcurrentEventStore store = new ConcurrentEventStore();
+        store.putAll(TestEvents.generate(50_000, 22));
+        AtomicInteger written = new AtomicInteger();
+        AtomicInteger overlapped = new AtomicInteger();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> readers = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            readers.add(pool.submit(() -> {
+                start.await();
+                while (writing.get()) {
+                    int before = written.get();
+                    List<Event> all = store.all();
+                    if (written.get() > before) {
+                        overlapped.incrementAndGet();
+                    }
+                    assertDistinctAndOrdered(all);
+                    assertEquals(0, all.size() % 2);
+                    EventStore snapshot = store.snapshot();
+                    assertEquals(snapshot.size(), snapshot.all().size());
+                }
+                return null;
+            }));
+        }
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            long seed = w;
+            int firstID = 100_000 + w * OPERATIONS;
+            writers.add(pool.submit(() -> {
+                start.await();
+                Random random = new Random(seed);
+                for (int op = 0; op < OPERATIONS; op++) {
+                    int id = firstID + random.nextInt(OPERATIONS / 2) * 2;
+                    List<Event> pair = TestEvents.generate(2, random.nextLong());
+                    pair.get(0).setID(id);
+                    pair.get(1).setID(id + 1);
+                    store.putAll(pair);
+                    written.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+        writing.set(false);
+        for (Future<?> reader : readers) {
+            reader.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(WRITERS * OPERATIONS, written.get());
+        assertTrue(overlapped.get() > 0);
+    }
+
+    /**
+     * Each writer schedules, updates and removes events under IDs of its own, so the final
+     * state of those events is known, and also keeps overwriting a few IDs shared by all writers.
+     * Readers check meanwhile that no result holds two versions of the same event.
+     */
+    @Test
+    public void sharedCalendarLosesNoUpdatesAndNeverReusesAnID() throws Exception {
+        Calendar calendar = Calendar.concurrent();
+        for (int i = 0; i < SHARED_IDS; i++) {
+            Event shared = new Event("Shared slot", EventType.WORK, LocalDateTime.of(2022, 1, 1, 9, 0), EventPrio.MID);
+            shared.setID(calendar.allocateID());
+            calendar.scheduleEvent(shared);
+        }
+        Set<Integer> allocated = ConcurrentHashMap.newKeySet();
+        List<Map<Integer, Event>> expected = new ArrayList<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            Map<Integer, Event> own = new HashMap<>();
+            expected.add(own);
+            long seed = w;
+            writers.add(pool.submit(() -> {
+                start.await();
+                Random random = new Random(seed);
+                List<Integer> ownIDs = new ArrayList<>();
+                for (int op = 0; op < OPERATIONS; op++) {
+                    int choice = random.nextInt(10);
+                    if (choice < 5 || ownIDs.isEmpty()) {
+                        Event event = randomEvent(random);
+                        event.setID(calendar.allocateID());
+                        assertTrue(allocated.add(event.getID()));
+                        calendar.scheduleEvent(event);
+                        own.put(event.getID(), event);
+                        ownIDs.add(event.getID());
+                    } else if (choice < 7) {
+                        Event event = randomEvent(random);
+                        event.setID(ownIDs.get(random.nextInt(ownIDs.size())));
+                        calendar.updateEvent(event);
+                        own.put(event.getID(), event);
+                    } else if (choice < 8) {
+                        int id = ownIDs.remove(random.nextInt(ownIDs.size()));
+                        assertSame(own.remove(id), calendar.removeEvent(id));
+                    } else {
+                        Event event = randomEvent(random);
+                        event.setID(1 + random.nextInt(SHARED_IDS));
+                        calendar.updateEvent(event);
+                    }
+                }
+                return null;
+            }));
+        }
+        List<Future<?>> readers = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            readers.add(pool.submit(() -> {
+                start.await();
+                while (writing.get()) {
+                    assertDistinctAndOrdered(calendar.viewAllEvents());
+                    assertDistinctAndOrdered(calendar.eventsBetween(
+                            LocalDateTime.of(2021, 1, 1, 0, 0), LocalDateTime.of(2023, 1, 1, 0, 0)));
+                    for (Event event : calendar.searchEventsByType(EnumSet.of(EventType.MEETING))) {
+                        assertSame(EventType.MEETING, event.getType());
+                    }
+                    assertDistinctAndOrdered(calendar.searchEventsByDescription("review"));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+        writing.set(false);
+        for (Future<?> reader : readers) {
+            reader.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(SHARED_IDS + allocated.size(), calendar.getIDNum());
+        IndexedEventStore reference = new IndexedEventStore();
+        for (Map<Integer, Event> own : expected) {
+            for (Event event : own.values()) {
+                assertSame(event, calendar.getEventByID(event.getID()));
+                reference.put(event);
+            }
+        }
+        for (int id = 1; id <= SHARED_IDS; id++) {
+            reference.put(calendar.getEventByID(id));
+        }
+        assertEquals(reference.size(), calendar.numEvents());
+        assertTrue(TestEvents.sameEvents(reference.all(), calendar.viewAllEvents()));
+        assertTrue(TestEvents.sameEvents(reference.inYear(2022), calendar.searchEventsByYear(2022)));
+        EnumSet<EventType> types = EnumSet.of(EventType.MEETING, EventType.TASK);
+        assertTrue(TestEvents.sameEvents(reference.ofTypes(types), calendar.searchEventsByType(types)));
+        assertTrue(TestEvents.sameEvents(reference.byPriority(), calendar.viewEventsByPriority()));
+        assertTrue(TestEvents.sameEvents(reference.matching("review #4"), calendar.searchEventsByDescription("review #4")));
+    }
+
+    /**
+     * Writers keep rescheduling a few shared IDs as timed events that take place once or recur,
+     * singly and in batches, and removing them. Between rounds, the store, the series index,
+     * the interval index and the built counters must all hold the same version of each event.
+     */
+    @Test
+    public void updatesToSharedIDsKeepTheStoreAndIndexesInAgreement() throws Exception {
+        Calendar calendar = Calendar.concurrent();
+        LocalDate day = LocalDate.of(2022, 3, 1);
+        LocalDateTime from = day.atStartOfDay();
+        LocalDateTime to = day.plusDays(7).atStartOfDay();
+        calendar.countEvents(day, day.plusDays(7), null, null);
+        int sharedIDs = 2;
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> writers = new ArrayList<>();
+                for (int w = 0; w < WRITERS; w++) {
+                    long seed = round * WRITERS + w;
+                    writers.add(pool.submit(() -> {
+                        start.await();
+                        Random random = new Random(seed);
+                        for (int op = 0; op < 100; op++) {
+                            int choice = random.nextInt(10);
+                            int id = 1 + random.nextInt(sharedIDs);
+                            if (choice < 6) {
+                                calendar.updateEvent(timedEvent(random, id, day));
+                            } else if (choice < 8) {
+                                calendar.scheduleAll(Arrays.asList(
+                                        timedEvent(random, id, day), timedEvent(random, 1 + id % sharedIDs, day)));
+                            } else {
+                                calendar.removeEvent(id);
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> writer : writers) {
+                    writer.get(60, TimeUnit.SECONDS);
+                }
+
+                SortedMap<LocalDate, Long> perDay = new TreeMap<>();
+                for (int i = 0; i < 7; i++) {
+                    perDay.put(day.plusDays(i), 0L);
+                }
+                Set<Integer> stored = new HashSet<>();
+                for (int id = 1; id <= sharedIDs; id++) {
+                    Event event = calendar.getEventByID(id);
+                    if (event != null) {
+                        stored.add(id);
+                        LocalDate date = event.getDateTime().toLocalDate();
+                        perDay.merge(date, 1L, Long::sum);
+                        if (event.getRecurrence() != null) {
+                            perDay.merge(date.plusDays(1), 1L, Long::sum);
+                        }
+                    }
+                }
+                assertEquals(perDay, calendar.countEventsPer(Period.ofDays(1), day, day.plusDays(7), null, null));
+                Set<Integer> overlapping = new HashSet<>();
+                for (Event event : calendar.eventsOverlapping(from, to)) {
+                    overlapping.add(event.getID());
+                    if (event.getRecurrence() == null) {
+                        assertSame(calendar.getEventByID(event.getID()), event);
+                    }
+                }
+                assertEquals(stored, overlapping);
+                assertEquals(stored.size(), calendar.viewAllEvents().size());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Creates an event with a duration in the five days from a given day, recurring on the next day
+     * in one case out of three.
+     */
+    private static Event timedEvent(Random random, int id, LocalDate day) {
+        Event event = new Event("Shared slot", EventType.WORK,
+                day.plusDays(random.nextInt(5)).atTime(8 + random.nextInt(8), 15 * random.nextInt(4)), EventPrio.MID);
+        event.setID(id);
+        event.setDuration(Duration.ofMinutes(30 + 15 * random.nextInt(4)));
+        if (random.nextInt(3) == 0) {
+            event.setRecurrence(new Recurrence(Recurrence.Frequency.DAILY, 1, 2, null, Collections.emptySet()));
+        }
+        return event;
+    }
+
+    private static Event randomEvent(Random random) {
+        return TestEvents.generate(1, random.nextLong()).get(0);
+    }
+
+    private static void assertDistinctAndOrdered(List<Event> events) {
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < events.size(); i++) {
+            assertTrue(ids.add(events.get(i).getID()));
+            if (i > 0) {
+                assertTrue(Event.CHRONOLOGICAL.compare(events.get(i - 1), events.get(i)) < 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.jonathan.calendar.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.jonathan.calendar.TestEvents;
+import com.jonathan.events.*;
+import java.time.LocalDate;
+import java.util.*;
+import org.junit.Test;
+
+/**
+ * Tests for the event counters: every count must match counting the events one by one,
+ * through additions, replacements and removals, and for events changed in place.
+ */
+public class EventCountersTest {
+    private static final LocalDate START = LocalDate.of(2020, 1, 1);
+
+    private static long countEveryEvent(Map<Integer, Event> events, LocalDate from, LocalDate to,
+                                        Set<EventType> types, Set<EventPrio> priorities) {
+        return events.values().stream()
+                .filter(event -> !event.getDateTime().toLocalDate().isBefore(from)
+                        && event.getDateTime().toLocalDate().isBefore(to))
+                .filter(event -> types == null || types.contains(event.getType()))
+                .filter(event -> priorities == null || priorities.contains(event.getPriority()))
+                .count();
+    }
+
+    private static <E extends Enum<E>> Set<E> someOf(Class<E> type, Random random) {
+        if (random.nextInt(3) == 0) {
+            return null;
+        }
+        Set<E> some = EnumSet.noneOf(type);
+        for (E value : type.getEnumConstants()) {
+            if (random.nextBoolean()) {
+                some.add(value);
+            }
+        }
+        return some;
+    }
+
+    private static void assertCountsLikeCountingEveryEvent(EventCounters counters, Map<Integer, Event> events,
+                                                          Random random) {
+        assertEquals(events.size(), counters.size());
+        for (int i = 0; i < 200; i++) {
+            LocalDate from = START.minusDays(30).plusDays(random.nextInt(5 * 365 + 60));
+            LocalDate to = from.plusDays(random.nextBoolean() ? random.nextInt(10) : random.nextInt(1_000));
+            Set<EventType> types = someOf(EventType.class, random);
+            Set<EventPrio> priorities = someOf(EventPrio.class, random);
+            assertEquals(countEveryEvent(events, from, to, types, priorities),
+                    counters.count(from, to, types, priorities));
+        }
+    }
+
+    @Test
+    public void countsLikeCountingEveryEventThroughChanges() {
+        EventCounters counters = new EventCounters();
+        Map<Integer, Event> events = new HashMap<>();
+        List<Event> generated = TestEvents.generate(20_000, 24);
+        counters.putAll(generated.subList(0, 12_000));
+        for (Event event : generated.subList(0, 12_000)) {
+            events.put(event.getID(), event);
+        }
+        Random random = new Random(24);
+        assertCountsLikeCountingEveryEvent(counters, events, random);
+
+        for (Event event : generated.subList(12_000, 20_000)) {
+            if (random.nextBoolean()) {
+                Event moved = new Event(event.getDescription(), event.getType(),
+                        event.getDateTime().plusDays(random.nextInt(400)), EventPrio.HIGH);
+                moved.setID(1 + random.nextInt(12_000));
+                event = moved;
+            }
+            counters.put(event);
+            events.put(event.getID(), event);
+        }
+        for (int i = 0; i < 3_000; i++) {
+            int id = 1 + random.nextInt(20_000);
+            assertEquals(events.remove(id) != null, counters.remove(id));
+        }
+        assertCountsLikeCountingEveryEvent(counters, events, random);
+
+        List<Event> batch = new ArrayList<>(events.values()).subList(0, 2_000);
+        for (Event event : batch) {
+            event.setDateTime(event.getDateTime().minusYears(1));
+            event.setPriority(EventPrio.LOW);
+        }
+        counters.putAll(batch);
+        assertCountsLikeCountingEveryEvent(counters, events, random);
+    }
+
+    @Test
+    public void countsPerBucketAndPerTypeAndPriority() {
+        EventCounters counters = new EventCounters();
+        Map<Integer, Event> events = new HashMap<>();
+        for (Event event : TestEvents.generate(5_000, 25)) {
+            counters.put(event);
+            events.put(event.getID(), event);
+        }
+        Event untyped = new Event("Unsorted", null, START.atTime(9, 0), null);
+        untyped.setID(5_001);
+        counters.put(untyped);
+        events.put(untyped.getID(), untyped);
+        Event ancient = new Event("Founding", EventType.OTHER, LocalDate.of(-500_000, 1, 1).atStartOfDay(), EventPrio.LOW);
+        ancient.setID(5_002);
+        counters.put(ancient);
+        events.put(ancient.getID(), ancient);
+
+        List<LocalDate> months = new ArrayList<>();
+        for (int i = 0; i <= 60; i++) {
+            months.add(START.plusMonths(i));
+        }
+        Set<EventType> work = EnumSet.of(EventType.WORK, EventType.TASK);
+        long[] perMonth = counters.histogram(months, work, null);
+        for (int i = 0; i < 60; i++) {
+            assertEquals(countEveryEvent(events, months.get(i), months.get(i + 1), work, null), perMonth[i]);
+        }
+        LocalDate end = START.plusYears(5);
+        assertEquals(countEveryEvent(events, START, end, null, null), counters.count(START, end, null, null));
+        assertEquals(events.size(), counters.count(LocalDate.MIN, LocalDate.MAX, null, null));
+        long typed = 0;
+        for (Map.Entry<EventType, Long> count : counters.countByType(START, end).entrySet()) {
+            assertEquals(countEveryEvent(events, START, end, EnumSet.of(count.getKey()), null), (long) count.getValue());
+            typed += count.getValue();
+        }
+        assertEquals(countEveryEvent(events, START, end, null, null) - 1, typed);
+        for (Map.Entry<EventPrio, Long> count : counters.countByPriority(START, end).entrySet()) {
+            assertEquals(countEveryEvent(events, START, end, null, EnumSet.of(count.getKey())), (long) count.getValue());
+        }
+        assertEquals(0, counters.count(end, START, null, null));
+        assertArrayEquals(new long[0], counters.histogram(List.of(START), null, null));
+        assertFalse(counters.remove(99_999));
+    }
+}
@@ -0,0 +1,159 @@
+package com.jonathan.calendar.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.jonathan.calendar.TestEvents;
+import com.jonathan.events.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+/**
+ * Tests for composite queries: every store must answer them like filtering every event,
+ * whichever index the planner reads, and the planner must read the most selective one.
+ */
+public class EventQueryTest {
+    private static final LocalDateTime START = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+    private static List<Event> filterEveryEvent(EventStore store, EventQuery query) {
+        return store.all().stream()
+                .filter(query::test)
+                .sorted(query.getOrder().comparator())
+                .limit(query.getLimit())
+                .collect(Collectors.toList());
+    }
+
+    private static <E extends Enum<E>> Set<E> someOf(E[] values, Random random) {
+        Set<E> some = new HashSet<>();
+        for (E value : values) {
+            if (random.nextInt(3) == 0) {
+                some.add(value);
+            }
+        }
+        return some;
+    }
+
+    private static EventQuery randomQuery(Random random) {
+        EventQuery query = new EventQuery();
+        if (random.nextBoolean()) {
+            LocalDateTime from = START.plusHours(random.nextInt(5 * 365 * 24));
+            query = query.between(from, from.plusHours(random.nextBoolean() ? random.nextInt(72) : random.nextInt(9_000)));
+        }
+        if (random.nextBoolean()) {
+            query = query.ofTypes(someOf(EventType.values(), random));
+        }
+        if (random.nextBoolean()) {
+            query = query.ofPriorities(someOf(EventPrio.values(), random));
+        }
+        if (random.nextInt(3) == 0) {
+            query = query.matching(List.of("budget", "#12", "Gym #4", "manager", "zzz").get(random.nextInt(5)));
+        }
+        if (random.nextBoolean()) {
+            query = query.limit(random.nextInt(50));
+        }
+        return query.orderBy(EventQuery.Order.values()[random.nextInt(EventQuery.Order.values().length)]);
+    }
+
+    @Test
+    public void answersLikeFilteringEveryEventThroughChanges() {
+        IndexedEventStore indexed = new IndexedEventStore();
+        ColumnarEventStore columnar = new ColumnarEventStore();
+        PersistentEventStore persistent = new PersistentEventStore();
+        ConcurrentEventStore concurrent = new ConcurrentEventStore();
+        List<EventStore> stores = List.of(indexed, columnar, persistent, concurrent);
+        List<Event> events = TestEvents.generate(20_000, 24);
+        for (EventStore store : stores) {
+            store.putAll(events.subList(0, 15_000));
+        }
+        Random random = new Random(24);
+        Set<IndexedEventStore.Access> plans = EnumSet.noneOf(IndexedEventStore.Access.class);
+        Set<PersistentEventStore.Access> persistentPlans = EnumSet.noneOf(PersistentEventStore.Access.class);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 300; i++) {
+                EventQuery query = randomQuery(random);
+                plans.add(indexed.plan(query));
+                persistentPlans.add(persistent.plan(query));
+                List<Event> expected = filterEveryEvent(indexed, query);
+                for (EventStore store : stores) {
+                    assertTrue(TestEvents.sameEvents(expected, store.query(query)));
+                }
+            }
+            for (Event event : events.subList(15_000 + round * 1_500, 15_000 + (round + 1) * 1_500)) {
+                for (EventStore store : stores) {
+                    store.put(event);
+                }
+            }
+            for (int i = 0; i < 1_000; i++) {
+                int id = 1 + random.nextInt(20_000);
+                for (EventStore store : stores) {
+                    store.remove(id);
+                }
+            }
+        }
+        assertEquals(EnumSet.allOf(IndexedEventStore.Access.class), plans);
+        assertEquals(EnumSet.allOf(PersistentEventStore.Access.class), persistentPlans);
+    }
+
+    @Test
+    public void readsTheMostSelectiveIndex() {
+        IndexedEventStore store = new IndexedEventStore();
+        store.putAll(TestEvents.generate(30_000, 25));
+        LocalDateTime march = LocalDateTime.of(2022, 3, 1, 0, 0);
+        EventQuery highMeetings = new EventQuery()
+                .ofTypes(EnumSet.of(EventType.MEETING))
+                .ofPriorities(EnumSet.of(EventPrio.HIGH));
+
+        assertEquals(IndexedEventStore.Access.SCAN, store.plan(new EventQuery()));
+        assertEquals(IndexedEventStore.Access.BITMAP, store.plan(highMeetings));
+        assertEquals(IndexedEventStore.Access.RANGE, store.plan(highMeetings.between(march, march.plusMonths(1))));
+        assertEquals(IndexedEventStore.Access.DESCRIPTION, store.plan(highMeetings.matching("dentist #123")));
+        assertEquals(IndexedEventStore.Access.BITMAP, store.plan(highMeetings.matching("budget")));
+        assertEquals(IndexedEventStore.Access.RANGE,
+                store.plan(new EventQuery().between(march, march.plusYears(1)).ofTypes(EnumSet.of(EventType.TASK))));
+        assertEquals(IndexedEventStore.Access.BITMAP,
+                store.plan(new EventQuery().between(march, march.plusYears(3)).ofTypes(EnumSet.of(EventType.TASK))));
+
+        EventQuery budget = highMeetings.between(march, march.plusMonths(3)).matching("BUDGET");
+        List<Event> expected = store.between(march, march.plusMonths(3)).stream()
+                .filter(event -> event.getType() == EventType.MEETING && event.getPriority() == EventPrio.HIGH
+                        && event.getDescription().startsWith("Budget review"))
+                .collect(Collectors.toList());
+        assertTrue(expected.size() > 2);
+        assertEquals(expected, store.query(budget));
+        assertEquals(expected.subList(0, 2), store.query(budget.limit(2)));
+        List<Event> latest = new ArrayList<>(expected);
+        Collections.reverse(latest);
+        assertEquals(latest, store.query(budget.orderBy(EventQuery.Order.LATEST_FIRST)));
+        assertTrue(store.query(highMeetings.ofTypes(EnumSet.noneOf(EventType.class))).isEmpty());
+
+        Event precise = new Event("Sync", EventType.MEETING, march.plusSeconds(30), EventPrio.HIGH);
+        precise.setID(30_001);
+        store.put(precise);
+        assertEquals(IndexedEventStore.Access.BITMAP, store.plan(highMeetings));
+        assertEquals(filterEveryEvent(store, highMeetings), store.query(highMeetings));
+    }
+
+    @Test
+    public void persistentStoreReadsTheMostSelectiveIndex() {
+        PersistentEventStore store = new PersistentEventStore();
+        store.putAll(TestEvents.generate(30_000, 25));
+        LocalDateTime march = LocalDateTime.of(2022, 3, 1, 0, 0);
+        EventQuery meetings = new EventQuery().ofTypes(EnumSet.of(EventType.MEETING));
+
+        assertEquals(PersistentEventStore.Access.SCAN, store.plan(new EventQuery()));
+        assertEquals(PersistentEventStore.Access.BUCKETS, store.plan(meetings));
+        assertEquals(PersistentEventStore.Access.BUCKETS, store.plan(meetings.between(march, march.plusMonths(1))));
+        assertEquals(PersistentEventStore.Access.RANGE, store.plan(new EventQuery().between(march, march.plusDays(1))));
+        assertEquals(PersistentEventStore.Access.DESCRIPTION, store.plan(meetings.matching("dentist #123")));
+        assertEquals(PersistentEventStore.Access.DESCRIPTION, store.plan(meetings.matching("budget")));
+        assertEquals(PersistentEventStore.Access.BUCKETS,
+                store.plan(meetings.between(march, march.plusMonths(1)).matching("budget")));
+
+        EventQuery budget = meetings.between(march, march.plusMonths(3)).matching("BUDGET").limit(3);
+        assertEquals(filterEveryEvent(store, budget), store.query(budget));
+        EventQuery latest = budget.orderBy(EventQuery.Order.LATEST_FIRST);
+        assertEquals(filterEveryEvent(store, latest), store.query(latest));
+    }
+}
@@ -0,0 +1,58 @@
+package com.jonathan.calendar.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.jonathan.events.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import org.junit.Test;
+
+/**
+ * Tests for the interval tree: every overlap query must find the same events as checking each event.
+ */
+public class IntervalIndexTest {
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private static List<Event> overlapping(Map<Integer, Event> events, LocalDateTime from, LocalDateTime to) {
+        List<Event> overlapping = new ArrayList<>();
+        for (Event event : events.values()) {
+            if (event.getDateTime().isBefore(to) && !event.getEnd().isBefore(from)) {
+                overlapping.add(event);
+            }
+        }
+        overlapping.sort(Event.CHRONOLOGICAL);
+        return overlapping;
+    }
+
+    @Test
+    public void overlapQueriesMatchCheckingEveryEvent() {
+        Random random = new Random(15);
+        IntervalIndex index = new IntervalIndex();
+        Map<Integer, Event> expected = new HashMap<>();
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 400; i++) {
+                Event event = new Event("Block", EventType.WORK,
+                        EPOCH.plusMinutes(15L * random.nextInt(4 * 24 * 60)), EventPrio.MID);
+                event.setID(1 + random.nextInt(1_000));
+                event.setDuration(Duration.ofMinutes(random.nextInt(10) == 0 ? 7 * 24 * 60 : random.nextInt(240)));
+                assertEquals(expected.put(event.getID(), event), index.put(event, event.getEnd()));
+            }
+            for (int i = 0; i < 100; i++) {
+                int id = 1 + random.nextInt(1_000);
+                assertEquals(expected.remove(id), index.remove(id));
+            }
+            assertEquals(expected.size(), index.size());
+            for (int i = 0; i < 50; i++) {
+                LocalDateTime from = EPOCH.plusMinutes(random.nextInt(70 * 24 * 60));
+                LocalDateTime to = from.plusMinutes(1 + random.nextInt(i % 2 == 0 ? 60 : 7 * 24 * 60));
+                assertEquals(overlapping(expected, from, to), index.overlapping(from, to));
+            }
+        }
+        List<Event> all = new ArrayList<>(expected.values());
+        all.sort(Event.CHRONOLOGICAL);
+        assertEquals(all, index.matching(event -> true));
+        assertNull(index.get(5_000));
+    }
+}
@@ -0,0 +1,84 @@
+package com.jonathan.calendar.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.jonathan.calendar.TestEvents;
+import com.jonathan.calendar.io.CalendarFile;
+import com.jonathan.events.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that a mapped store answers every query like the indexed store holding the same events,
+ * before and after the mapped store is modified.
+ */
+public class MappedEventStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private IndexedEventStore expected;
+    private MappedEventStore mapped;
+
+    @Before
+    public void setUp() throws IOException {
+        List<Event> events = TestEvents.generate(5_000, 7);
+        Path path = folder.getRoot().toPath().resolve("mapped.cal");
+        CalendarFile.write(path, events, events.size());
+        expected = new IndexedEventStore();
+        for (Event event : events) {
+            expected.put(event);
+        }
+        mapped = MappedEventStore.open(path);
+    }
+
+    private void assertSameQueries() {
+        assertEquals(expected.size(), mapped.size());
+        assertTrue(TestEvents.sameEvents(expected.all(), mapped.all()));
+        LocalDateTime from = LocalDateTime.of(2021, 3, 4, 10, 30, 15);
+        LocalDateTime to = LocalDateTime.of(2021, 6, 1, 0, 0);
+        assertTrue(TestEvents.sameEvents(expected.between(from, to), mapped.between(from, to)));
+        LocalDate day = expected.all().get(100).getDateTime().toLocalDate();
+        assertTrue(TestEvents.sameEvents(expected.onDay(day), mapped.onDay(day)));
+        assertTrue(TestEvents.sameEvents(expected.inYear(2022), mapped.inYear(2022)));
+        EnumSet<EventType> types = EnumSet.of(EventType.MEETING, EventType.SCHOOL);
+        assertTrue(TestEvents.sameEvents(expected.ofTypes(types), mapped.ofTypes(types)));
+        assertTrue(TestEvents.sameEvents(expected.byPriority(), mapped.byPriority()));
+        assertTrue(TestEvents.sameEvents(expected.matching("REVIEW #4"), mapped.matching("REVIEW #4")));
+    }
+
+    @Test
+    public void answersQueriesFromTheMapping() {
+        assertSameQueries();
+        assertTrue(TestEvents.sameEvent(expected.get(1234), mapped.get(1234)));
+        assertNull(mapped.get(99_999));
+    }
+
+    @Test
+    public void overlaysChangesOnTheMapping() {
+        Event moved = new Event("Budget review #1", EventType.MEETING, LocalDateTime.of(2021, 4, 1, 9, 0), EventPrio.HIGH);
+        moved.setID(17);
+        Event added = new Event("Offsite", EventType.WORK, LocalDateTime.of(2021, 5, 5, 8, 0), EventPrio.LOW);
+        added.setID(6_000);
+        for (EventStore store : List.of(expected, mapped)) {
+            store.put(moved);
+            store.put(added);
+            store.remove(42);
+            store.remove(6_000);
+            store.put(added);
+        }
+
+        assertSameQueries();
+        assertNull(mapped.get(42));
+        assertTrue(TestEvents.sameEvent(moved, mapped.get(17)));
+    }
+}
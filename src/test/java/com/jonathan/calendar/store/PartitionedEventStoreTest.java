@@ -0,0 +1,139 @@
+package com.jonathan.calendar.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.jonathan.calendar.Calendar;
+import com.jonathan.calendar.TestEvents;
+import com.jonathan.events.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the partitioned store: it must answer queries like the indexed store while months
+ * are evicted to segments and read back, and a query about one month must read only that month.
+ */
+public class PartitionedEventStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void answersQueriesLikeTheIndexedStoreWhileEvictingMonths() throws IOException {
+        IndexedEventStore expected = new IndexedEventStore();
+        PartitionedEventStore actual = new PartitionedEventStore(folder.getRoot().toPath().resolve("segments"), 3_000);
+        List<Event> events = TestEvents.generate(20_000, 23);
+        expected.putAll(events.subList(0, 12_000));
+        actual.putAll(events.subList(0, 12_000));
+        Random random = new Random(23);
+        for (int round = 0; round < 4; round++) {
+            for (Event event : events.subList(12_000 + round * 2_000, 12_000 + (round + 1) * 2_000)) {
+                expected.put(event);
+                actual.put(event);
+            }
+            for (int i = 0; i < 300; i++) {
+                int id = 1 + random.nextInt(12_000 + (round + 1) * 2_000);
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(id) == null, actual.remove(id) == null);
+                } else if (expected.get(id) != null) {
+                    Event moved = new Event("Moved " + round + "." + i, EventType.WORK,
+                            expected.get(id).getDateTime().plusDays(random.nextInt(61) - 30), EventPrio.LOW);
+                    moved.setID(id);
+                    assertTrue(TestEvents.sameEvent(expected.put(moved), actual.put(moved)));
+                }
+            }
+            ColumnarEventStoreTest.assertSameQueries(expected, actual);
+            assertTrue(TestEvents.sameEvents(expected.all(), actual.stream().collect(Collectors.toList())));
+        }
+        assertTrue(actual.partitionCount() >= 60);
+        assertTrue(actual.residentPartitionCount() < 10);
+        assertTrue(actual.evictions() > 50);
+        assertTrue(actual.faults() > 50);
+        assertNull(actual.get(123_456));
+    }
+
+    @Test
+    public void queriesReadOnlyThePartitionsTheyCover() throws IOException {
+        Path segments = folder.getRoot().toPath().resolve("segments");
+        PartitionedEventStore store = new PartitionedEventStore(segments, 1_000);
+        List<Event> events = TestEvents.generate(30_000, 24);
+        store.putAll(events);
+        assertEquals(60, store.partitionCount());
+        try (Stream<Path> files = Files.list(segments)) {
+            assertEquals(58, files.count());
+        }
+
+        LocalDate day = LocalDate.of(2022, 3, 15);
+        store.onDay(day);
+        long faults = store.faults();
+        for (int i = 0; i < 20; i++) {
+            store.onDay(day.plusDays(i % 10));
+            store.between(day.atStartOfDay(), day.atTime(23, 0).plusDays(5));
+        }
+        assertEquals(faults, store.faults());
+
+        store.inYear(2023);
+        assertEquals(faults + 12, store.faults());
+        assertEquals(1, store.stream().limit(10).map(Event::getDateTime).map(LocalDateTime::getMonth).distinct().count());
+
+        Calendar calendar = Calendar.partitioned(folder.getRoot().toPath().resolve("calendar"), 1_000);
+        calendar.scheduleAll(events);
+        assertTrue(TestEvents.sameEvents(events, calendar.viewAllEvents()));
+        assertEquals(store.onDay(day).size(), calendar.searchEventsByDay(day).size());
+    }
+
+    @Test
+    public void evictedEventsComeBackWithTheirSecondsAndExactDurations() throws IOException {
+        PartitionedEventStore store = new PartitionedEventStore(folder.getRoot().toPath().resolve("segments"), 2);
+        Event precise = new Event("Ping", EventType.TASK, LocalDateTime.of(2024, 1, 10, 9, 0, 30), EventPrio.LOW);
+        precise.setID(1);
+        precise.setDuration(Duration.ofSeconds(90));
+        Event series = new Event("Heartbeat", EventType.OTHER, LocalDateTime.of(2024, 1, 11, 8, 15, 5, 250_000_000), EventPrio.LOW);
+        series.setID(2);
+        series.setDuration(Duration.ofMillis(1_500));
+        series.setRecurrence(new Recurrence(Recurrence.Frequency.DAILY, 1, 0,
+                LocalDateTime.of(2024, 1, 20, 8, 15, 5, 250_000_000), List.of(LocalDate.of(2024, 1, 12))));
+        Event untitled = new Event("", EventType.OTHER, LocalDateTime.of(2024, 1, 31, 23, 59, 58, 999_999_999), EventPrio.HIGH);
+        untitled.setID(3);
+        store.putAll(List.of(precise, series, untitled));
+        for (int month = 2; month <= 4; month++) {
+            Event filler = new Event("Filler", EventType.WORK, LocalDateTime.of(2024, month, 1, 9, 0), EventPrio.MID);
+            filler.setID(10 + month);
+            store.put(filler);
+        }
+        assertEquals(2, store.residentPartitionCount());
+        assertEquals(0, store.faults());
+
+        List<Event> january = store.between(LocalDateTime.of(2024, 1, 1, 0, 0), LocalDateTime.of(2024, 1, 31, 23, 59, 59));
+        assertEquals(1, store.faults());
+        assertTrue(TestEvents.sameEvents(List.of(precise, series, untitled), january));
+        assertEquals(1, store.between(LocalDateTime.of(2024, 1, 10, 9, 0, 10), LocalDateTime.of(2024, 1, 10, 9, 0, 40)).size());
+        assertTrue(store.between(LocalDateTime.of(2024, 1, 10, 9, 0), LocalDateTime.of(2024, 1, 10, 9, 0, 30)).isEmpty());
+    }
+
+    @Test
+    public void loadingDeletesTheSegmentsOfTheReplacedStore() throws IOException {
+        Path directory = folder.getRoot().toPath().resolve("calendar");
+        Calendar calendar = Calendar.partitioned(directory, 100);
+        calendar.scheduleAll(TestEvents.generate(2_000, 25));
+        Path saved = folder.getRoot().toPath().resolve("saved.jcal");
+        calendar.saveCalendar(saved);
+        for (int i = 0; i < 3; i++) {
+            calendar.loadCalendar(saved);
+        }
+        assertEquals(2_000, calendar.numEvents());
+        try (Stream<Path> stores = Files.list(directory)) {
+            assertEquals(1, stores.count());
+        }
+    }
+}
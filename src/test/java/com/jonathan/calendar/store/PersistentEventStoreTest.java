@@ -0,0 +1,97 @@
+package com.jonathan.calendar.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.jonathan.calendar.TestEvents;
+import com.jonathan.events.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+/**
+ * Tests for the persistent store: it must answer queries like the indexed store through any
+ * sequence of changes, and every snapshot must keep answering as the store did when it was taken.
+ */
+public class PersistentEventStoreTest {
+
+    private static void change(EventStore store, IndexedEventStore expected, Random random, int bound, int round) {
+        for (int i = 0; i < 1_500; i++) {
+            int id = 1 + random.nextInt(bound);
+            if (random.nextBoolean()) {
+                assertEquals(expected.remove(id) == null, store.remove(id) == null);
+            } else if (expected.get(id) != null) {
+                Event moved = new Event("Moved " + round + "." + i, EventType.WORK,
+                        expected.get(id).getDateTime().plusMinutes(random.nextInt(3) - 1), EventPrio.LOW);
+                moved.setID(id);
+                assertTrue(TestEvents.sameEvent(expected.put(moved), store.put(moved)));
+            }
+        }
+    }
+
+    @Test
+    public void answersQueriesLikeTheIndexedStoreThroughChanges() {
+        IndexedEventStore expected = new IndexedEventStore();
+        PersistentEventStore actual = new PersistentEventStore();
+        List<Event> events = TestEvents.generate(20_000, 22);
+        expected.putAll(events.subList(0, 10_000));
+        actual.putAll(events.subList(0, 10_000));
+        assertSameQueries(expected, actual);
+        Random random = new Random(22);
+        for (int round = 0; round < 4; round++) {
+            for (Event event : events.subList(10_000 + round * 2_500, 10_000 + (round + 1) * 2_500)) {
+                expected.put(event);
+                actual.put(event);
+            }
+            change(actual, expected, random, 10_000 + (round + 1) * 2_500, round);
+            assertSameQueries(expected, actual);
+        }
+        assertNull(actual.get(123_456));
+        assertNull(actual.remove(123_456));
+    }
+
+    private static void assertSameQueries(EventStore expected, EventStore actual) {
+        ColumnarEventStoreTest.assertSameQueries(expected, actual);
+        LocalDate day = expected.all().get(expected.size() / 3).getDateTime().toLocalDate();
+        assertTrue(TestEvents.sameEvents(expected.onDay(day), actual.streamOnDay(day).collect(Collectors.toList())));
+        assertTrue(TestEvents.sameEvents(expected.inYear(2022), actual.streamInYear(2022).collect(Collectors.toList())));
+        Set<EventType> types = EnumSet.of(EventType.MEETING, EventType.SCHOOL, EventType.TASK);
+        assertTrue(TestEvents.sameEvents(expected.ofTypes(types), actual.streamOfTypes(types).collect(Collectors.toList())));
+        assertTrue(TestEvents.sameEvents(expected.byPriority(), actual.streamByPriority().collect(Collectors.toList())));
+    }
+
+    @Test
+    public void snapshotsKeepAnsweringAsTheStoreDidWhenTaken() {
+        IndexedEventStore expected = new IndexedEventStore();
+        PersistentEventStore store = new PersistentEventStore();
+        List<Event> events = TestEvents.generate(8_000, 23);
+        expected.putAll(events);
+        store.putAll(events);
+        Random random = new Random(23);
+        List<PersistentEventStore> snapshots = new ArrayList<>();
+        List<IndexedEventStore> copies = new ArrayList<>();
+        for (int round = 0; round < 5; round++) {
+            snapshots.add(store.snapshot());
+            IndexedEventStore copy = new IndexedEventStore();
+            copy.putAll(expected.all());
+            copies.add(copy);
+            change(store, expected, random, 8_000, round);
+        }
+        assertSameQueries(expected, store);
+        for (int i = 0; i < snapshots.size(); i++) {
+            assertSameQueries(copies.get(i), snapshots.get(i));
+        }
+
+        PersistentEventStore snapshot = snapshots.get(0);
+        try {
+            snapshot.remove(events.get(0).getID());
+            fail("A snapshot must be read-only");
+        } catch (UnsupportedOperationException expectedFailure) {
+            assertEquals(8_000, snapshot.size());
+        }
+        assertTrue(snapshot == snapshot.snapshot());
+    }
+}
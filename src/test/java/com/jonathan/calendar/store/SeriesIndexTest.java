@@ -0,0 +1,98 @@
+package com.jonathan.calendar.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.jonathan.calendar.TestEvents;
+import com.jonathan.events.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import org.junit.Test;
+
+/**
+ * Tests for the interval index over recurring events: every window query must list
+ * the same occurrences as stepping through each series from its start.
+ */
+public class SeriesIndexTest {
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2020, 1, 31, 9, 30);
+
+    /**
+     * Lists the occurrences of every series in a window by stepping through each series from its start.
+     */
+    private static List<Event> expand(Collection<Event> series, LocalDateTime from, LocalDateTime to) {
+        List<Event> occurrences = new ArrayList<>();
+        for (Event event : series) {
+            Recurrence recurrence = event.getRecurrence();
+            for (long n = 0; recurrence.getCount() == 0 || n < recurrence.getCount(); n++) {
+                LocalDateTime occurrence = recurrence.occurrence(event.getDateTime(), n);
+                if (!occurrence.isBefore(to)
+                        || (recurrence.getUntil() != null && occurrence.isAfter(recurrence.getUntil()))) {
+                    break;
+                }
+                if (!occurrence.isBefore(from) && !recurrence.getExceptions().contains(occurrence.toLocalDate())) {
+                    occurrences.add(event.occurrenceAt(occurrence));
+                }
+            }
+        }
+        occurrences.sort(Event.CHRONOLOGICAL);
+        return occurrences;
+    }
+
+    private static Event randomSeries(Random random, int id) {
+        LocalDateTime start = EPOCH.plusMinutes(random.nextInt(3 * 365 * 24 * 60));
+        Recurrence.Frequency frequency = Recurrence.Frequency.values()[random.nextInt(4)];
+        int count = random.nextInt(3) == 0 ? 1 + random.nextInt(40) : 0;
+        LocalDateTime until = random.nextInt(3) == 0 ? start.plusDays(random.nextInt(2_000)) : null;
+        List<LocalDate> exceptions = new ArrayList<>();
+        for (int i = random.nextInt(3); i > 0; i--) {
+            exceptions.add(start.toLocalDate().plusDays(random.nextInt(400)));
+        }
+        Event event = new Event("Series " + id, EventType.values()[random.nextInt(6)], start, EventPrio.MID);
+        event.setID(id);
+        event.setRecurrence(new Recurrence(frequency, 1 + random.nextInt(3), count, until, exceptions));
+        return event;
+    }
+
+    @Test
+    public void windowQueriesMatchSteppingThroughEverySeries() {
+        Random random = new Random(14);
+        SeriesIndex index = new SeriesIndex();
+        Map<Integer, Event> expected = new HashMap<>();
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 200; i++) {
+                Event series = randomSeries(random, 1 + random.nextInt(600));
+                assertEquals(expected.put(series.getID(), series), index.put(series));
+            }
+            for (int i = 0; i < 50; i++) {
+                int id = 1 + random.nextInt(600);
+                assertEquals(expected.remove(id), index.remove(id));
+            }
+            assertEquals(expected.size(), index.size());
+            List<Event> all = new ArrayList<>(expected.values());
+            all.sort(Event.CHRONOLOGICAL);
+            assertEquals(all, index.all());
+            for (int i = 0; i < 30; i++) {
+                LocalDateTime from = EPOCH.plusHours(random.nextInt(6 * 365 * 24));
+                LocalDateTime to = from.plusHours(1 + random.nextInt(i % 3 == 0 ? 24 : 90 * 24));
+                assertTrue(TestEvents.sameEvents(expand(expected.values(), from, to), index.occurrencesBetween(from, to)));
+            }
+        }
+        assertNull(index.get(100_000));
+    }
+
+    @Test
+    public void monthlySeriesKeepTheirDayAndEndAtTheirLastOccurrence() {
+        Recurrence monthly = new Recurrence(Recurrence.Frequency.MONTHLY, 1, 0, LocalDateTime.of(2020, 5, 31, 9, 29),
+                List.of(LocalDate.of(2020, 3, 31)));
+        LocalDateTime start = LocalDateTime.of(2020, 1, 31, 9, 30);
+
+        assertEquals(List.of(start, LocalDateTime.of(2020, 2, 29, 9, 30), LocalDateTime.of(2020, 4, 30, 9, 30)),
+                monthly.occurrencesBetween(start, start.minusYears(1), start.plusYears(1)));
+        assertEquals(LocalDateTime.of(2020, 4, 30, 9, 30), monthly.lastOccurrence(start));
+        assertNull(new Recurrence(Recurrence.Frequency.DAILY, 1).lastOccurrence(start));
+        assertEquals(LocalDateTime.of(2020, 2, 28, 9, 30),
+                new Recurrence(Recurrence.Frequency.WEEKLY, 2, 3, null, List.of()).lastOccurrence(start));
+    }
+}
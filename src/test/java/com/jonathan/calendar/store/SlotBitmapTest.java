@@ -0,0 +1,91 @@
+package com.jonathan.calendar.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.BitSet;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests for the compressed bitmap: it must hold the same values as a {@link BitSet} whether
+ * its chunks are sparse arrays or dense bitsets, and combine sets like one.
+ */
+public class SlotBitmapTest {
+
+    /**
+     * Fills a bitmap and a BitSet alike: the first chunk dense, the second sparse, the third
+     * around the size at which a chunk changes container.
+     */
+    private static SlotBitmap fill(BitSet expected, Random random) {
+        SlotBitmap bitmap = new SlotBitmap();
+        for (int i = 0; i < 40_000; i++) {
+            int value = random.nextInt(65_536);
+            bitmap.add(value);
+            expected.set(value);
+        }
+        for (int i = 0; i < 300; i++) {
+            int value = 65_536 + random.nextInt(65_536);
+            bitmap.add(value);
+            expected.set(value);
+        }
+        for (int i = 0; i < 4_500; i++) {
+            int value = 3 * 65_536 + random.nextInt(8_192);
+            bitmap.add(value);
+            expected.set(value);
+        }
+        return bitmap;
+    }
+
+    private static void assertSame(BitSet expected, SlotBitmap actual) {
+        assertEquals(expected.cardinality(), actual.cardinality());
+        assertArrayEquals(expected.stream().toArray(), actual.toArray());
+    }
+
+    @Test
+    public void holdsTheValuesOfABitSetThroughAddsAndRemoves() {
+        Random random = new Random(24);
+        BitSet expected = new BitSet();
+        SlotBitmap bitmap = fill(expected, random);
+        assertSame(expected, bitmap);
+        for (int i = 0; i < 60_000; i++) {
+            int value = random.nextInt(4 * 65_536);
+            assertEquals(expected.get(value), bitmap.contains(value));
+            bitmap.remove(value);
+            expected.clear(value);
+        }
+        assertSame(expected, bitmap);
+        for (int value = 3 * 65_536; value < 4 * 65_536; value++) {
+            bitmap.remove(value);
+        }
+        expected.clear(3 * 65_536, 4 * 65_536);
+        assertSame(expected, bitmap);
+        bitmap.add(5);
+        expected.set(5);
+        assertSame(expected, bitmap);
+    }
+
+    @Test
+    public void combinesSetsLikeBitSets() {
+        Random random = new Random(25);
+        BitSet first = new BitSet();
+        BitSet second = new BitSet();
+        SlotBitmap firstBitmap = fill(first, random);
+        SlotBitmap secondBitmap = fill(second, random);
+        for (int i = 0; i < 2_000; i++) {
+            int value = 2 * 65_536 + random.nextInt(65_536);
+            secondBitmap.add(value);
+            second.set(value);
+        }
+
+        BitSet and = (BitSet) first.clone();
+        and.and(second);
+        assertSame(and, SlotBitmap.and(firstBitmap, secondBitmap));
+        BitSet or = (BitSet) first.clone();
+        or.or(second);
+        assertSame(or, SlotBitmap.or(firstBitmap, secondBitmap));
+        assertSame(first, SlotBitmap.or(firstBitmap, new SlotBitmap()));
+        assertEquals(0, SlotBitmap.and(firstBitmap, new SlotBitmap()).cardinality());
+        assertSame(first, firstBitmap);
+    }
+}